@@ -19,13 +19,13 @@ package evaluation.evaluators;
 import evaluation.storage.ClassifierResults;
 import experiments.ClassifierLists;
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import weka.classifiers.Classifier;
@@ -110,8 +110,7 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
      */
     public synchronized ClassifierResults[] crossValidateWithStats(Classifier[] classifiers, final Instances dataset) throws Exception {
         
-        if (folds == null || !previousRelationName.equals(dataset.relationName()))
-            buildFolds(dataset);
+        buildFoldsIfNeeded(dataset);
         
         if (cloneClassifiers)
             cloneClassifiers(classifiers);
@@ -130,7 +129,7 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
                 futureResultsPerFold.get(i).add(null);
         }
         if (multiThread)
-            executor = Executors.newFixedThreadPool(numThreads);
+            executor = MultiThreadable.getSharedExecutor(numThreads);
         
         //for each fold as test
         for(int fold = 0; fold < numFolds; fold++){
@@ -138,23 +137,14 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
             final Instances train = trainTest[0];
             final Instances test = trainTest[1];
             
-            String foldStr = "cvFold"+fold;
-            
             //for each classifier in ensemble
             for (int classifierIndex = 0; classifierIndex < classifiers.length; ++classifierIndex) {
                 
                 // get the classifier instance to be used this fold
                 final Classifier foldClassifier = cloneClassifiers ? foldClassifiers[classifierIndex][fold] : classifiers[classifierIndex];
-                final SingleTestSetEvaluator tester = new SingleTestSetEvaluator(seed, cloneData, setClassMissing);
+                final int testFold = fold;
                 
-                Callable<ClassifierResults> eval = () -> {
-                    long estimateTime = System.nanoTime();
-                    ClassifierResults res = tester.evaluate(foldClassifier, train, test);
-                    estimateTime = System.nanoTime() - estimateTime;
-                    res.setErrorEstimateTime(estimateTime);
-                    res.setDatasetName(res.getDatasetName()+"_"+foldStr);
-                    return res;
-                };
+                Callable<ClassifierResults> eval = () -> evaluateFold(foldClassifier, train, test, testFold);
                 
                 if (!multiThread) {
                     //compute the result now
@@ -197,6 +187,42 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
         return results;
     }
     
+    /**
+     * Builds the classifier on all but the given fold and evaluates it on that fold, 
+     * for callers that want to control which folds are run, e.g. to stop evaluating 
+     * a classifier that is clearly performing badly after a few folds. 
+     * 
+     * Folds must already have been built with buildFolds() or buildFoldsIfNeeded(). 
+     * Calls for different folds may be run concurrently, so long as each uses its own 
+     * classifier instance
+     */
+    public ClassifierResults evaluateFold(Classifier classifier, int fold) throws Exception {
+        Instances[] trainTest = buildTrainTestSet(fold);
+        return evaluateFold(classifier, trainTest[0], trainTest[1], fold);
+    }
+    
+    private ClassifierResults evaluateFold(Classifier classifier, Instances train, Instances test, int fold) throws Exception {
+        SingleTestSetEvaluator tester = new SingleTestSetEvaluator(seed, cloneData, setClassMissing);
+        
+        long estimateTime = System.nanoTime();
+        ClassifierResults res = tester.evaluate(classifier, train, test);
+        estimateTime = System.nanoTime() - estimateTime;
+        res.setErrorEstimateTime(estimateTime);
+        res.setDatasetName(res.getDatasetName()+"_cvFold"+fold);
+        return res;
+    }
+    
+    /**
+     * Combines the results of evaluateFold() for every fold into a single results object 
+     * with predictions in the order of the original dataset, as returned by evaluate()
+     */
+    public ClassifierResults combineFoldResults(ClassifierResults[] foldResults, String classifierName, Instances dataset) throws Exception {
+        double[] trueClassVals = dataset.attributeToDoubleArray(dataset.classIndex());
+        ClassifierResults res = concatenateAndReorderFoldPredictions(foldResults, classifierName, dataset.relationName(), trueClassVals);
+        res.findAllStatsOnce();
+        return res;
+    }
+    
     private ClassifierResults concatenateAndReorderFoldPredictions(ClassifierResults[] foldResults, String fullClassifierName, String fullDatasetName, double[] trueClassVals) throws Exception {
         ClassifierResults res = new ClassifierResults(foldResults[0].numClasses());
         res.setTimeUnit(TimeUnit.NANOSECONDS);
@@ -394,6 +420,14 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
         return trainTest;
     }
 
+    /**
+     * Builds the folds for this dataset, unless they have already been built for it
+     */
+    public synchronized void buildFoldsIfNeeded(Instances dataset) throws Exception {
+        if (folds == null || !previousRelationName.equals(dataset.relationName()))
+            buildFolds(dataset);
+    }
+
     public void buildFolds(Instances dataset) throws Exception {
         previousRelationName = dataset.relationName();
         
@@ -569,6 +603,7 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
     @Override
     public Evaluator cloneEvaluator() {
         CrossValidationEvaluator ev = new CrossValidationEvaluator(this.seed, this.cloneData, this.setClassMissing, this.cloneClassifiers, this.maintainClassifiers);
+        ev.setNumFolds(this.numFolds);
         //INTENTIONALLY NOT COPYING ACROSS FOLDS. That is a utility to help speed things up
         
         //If people try to clone evaluators with folds already built, safer to force
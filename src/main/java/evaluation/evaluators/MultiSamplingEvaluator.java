@@ -22,7 +22,7 @@ package evaluation.evaluators;
 import evaluation.storage.ClassifierResults;
 import java.util.concurrent.ExecutorService;
 import tsml.classifiers.MultiThreadable;
-import weka.classifiers.AbstractClassifier;
+import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
 
 /**
@@ -55,9 +55,10 @@ public abstract class MultiSamplingEvaluator extends SamplingEvaluator implement
     /**
      * If true, the classifiers shall be cloned when building and predicting on each fold. 
      * 
-     * This is achieved via AbstractClassifier.makeCopy(...), and therefore the classifier
-     * and all relevant/wanted info/hyperparamters that may have been set up prior to giving 
-     * the classifier to the evaluator must be properly (de-)serialisable.
+     * This is achieved via ClassifierTools.makeCopy(...). ConfigurationCopyable classifiers 
+     * are copied from their parameters, otherwise the classifier and all relevant/wanted 
+     * info/hyperparamters that may have been set up prior to giving the classifier to the 
+     * evaluator must be properly (de-)serialisable.
      * 
      * Useful if a particular classifier maintains information after one buildclassifier that 
      * might not be replaced or effect the next call to buildclassifier. Ideally, this 
@@ -162,9 +163,10 @@ public abstract class MultiSamplingEvaluator extends SamplingEvaluator implement
     /**
      * If true, the classifiers shall be cloned when building and predicting on each fold. 
      * 
-     * This is achieved via AbstractClassifier.makeCopy(...), and therefore the classifier
-     * and all relevant/wanted info/hyperparamters that may have been set up prior to giving 
-     * the classifier to the evaluator must be properly (de-)serialisable.
+     * This is achieved via ClassifierTools.makeCopy(...). ConfigurationCopyable classifiers 
+     * are copied from their parameters, otherwise the classifier and all relevant/wanted 
+     * info/hyperparamters that may have been set up prior to giving the classifier to the 
+     * evaluator must be properly (de-)serialisable.
      * 
      * Useful if a particular classifier maintains information after one buildclassifier that 
      * might not be replaced or effect the next call to buildclassifier. Ideally, this 
@@ -179,9 +181,10 @@ public abstract class MultiSamplingEvaluator extends SamplingEvaluator implement
     /**
      * If true, the classifiers shall be cloned when building and predicting on each fold. 
      * 
-     * This is achieved via AbstractClassifier.makeCopy(...), and therefore the classifier
-     * and all relevant/wanted info/hyperparamters that may have been set up prior to giving 
-     * the classifier to the evaluator must be properly (de-)serialisable.
+     * This is achieved via ClassifierTools.makeCopy(...). ConfigurationCopyable classifiers 
+     * are copied from their parameters, otherwise the classifier and all relevant/wanted 
+     * info/hyperparamters that may have been set up prior to giving the classifier to the 
+     * evaluator must be properly (de-)serialisable.
      * 
      * Useful if a particular classifier maintains information after one buildclassifier that 
      * might not be replaced or effect the next call to buildclassifier. Ideally, this 
@@ -197,7 +200,7 @@ public abstract class MultiSamplingEvaluator extends SamplingEvaluator implement
         // clone them all here in one go for efficiency of serialisation
         foldClassifiers = new Classifier[1][];
 
-        foldClassifiers[0] = AbstractClassifier.makeCopies(classifier, numFolds);
+        foldClassifiers[0] = ClassifierTools.makeCopies(classifier, numFolds);
     }
     
     protected void cloneClassifiers(Classifier[] classifiers) throws Exception {
@@ -205,7 +208,7 @@ public abstract class MultiSamplingEvaluator extends SamplingEvaluator implement
         foldClassifiers = new Classifier[classifiers.length][];
 
         for (int c = 0; c < classifiers.length; ++c)
-            foldClassifiers[c] = AbstractClassifier.makeCopies(classifiers[c], numFolds);
+            foldClassifiers[c] = ClassifierTools.makeCopies(classifiers[c], numFolds);
     }
     
     /**
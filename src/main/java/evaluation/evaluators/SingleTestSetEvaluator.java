@@ -17,9 +17,11 @@
 package evaluation.evaluators;
 
 import evaluation.storage.ClassifierResults;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import static utilities.GenericTools.indexOfMax;
 
+import machine_learning.classifiers.ensembles.AbstractEnsemble;
 import tsml.classifiers.Interpretable;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
@@ -66,7 +68,21 @@ public class SingleTestSetEvaluator extends Evaluator {
         res.setSplit("train"); //todo revisit, or leave with the assumption that calling method will set this to test when needed
 
         res.turnOffZeroTimingsErrors();
-        for (Instance testinst : insts) {
+        if (classifier instanceof AbstractEnsemble && !vis && insts.numInstances() > 0) {
+            //ensembles can classify the whole set at once, with their modules in parallel
+            AbstractEnsemble ensemble = (AbstractEnsemble) classifier;
+            double[] trueClassVals = insts.attributeToDoubleArray(insts.classIndex());
+            if (setClassMissing)
+                for (Instance testinst : insts)
+                    testinst.setClassMissing();
+
+            double[][] dists = ensemble.distributionForInstances(insts);
+            List<Long> predTimes = ensemble.getTestResults().getPredictionTimes();
+            int offset = predTimes.size() - dists.length;
+            for (int i = 0; i < dists.length; i++)
+                res.addPrediction(trueClassVals[i], dists[i], indexOfMax(dists[i]), predTimes.get(offset + i), "");
+        }
+        else for (Instance testinst : insts) {
             double trueClassVal = testinst.classValue();
             if (setClassMissing)
                 testinst.setClassMissing();
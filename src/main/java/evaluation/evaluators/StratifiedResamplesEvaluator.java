@@ -22,9 +22,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import tsml.classifiers.MultiThreadable;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 
@@ -188,7 +188,7 @@ public class StratifiedResamplesEvaluator extends MultiSamplingEvaluator {
                 futureResultsPerFold.get(i).add(null);
         }
         if (multiThread)
-            executor = Executors.newFixedThreadPool(numThreads);
+            executor = MultiThreadable.getSharedExecutor(numThreads);
         
         
         for (int classifierIndex = 0; classifierIndex < classifiers.length; ++classifierIndex) {
@@ -24,28 +24,52 @@ import evaluation.tuning.searchers.GridSearcher;
 import evaluation.tuning.searchers.ParameterSearcher;
 import experiments.data.DatasetLoading;
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import utilities.ClassifierTools;
 import utilities.FileHandlingTools;
 import utilities.InstanceTools;
+import utilities.ThreadingUtilities;
 import machine_learning.classifiers.SaveEachParameter;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.functions.SMO;
 import weka.classifiers.functions.supportVector.PolyKernel;
 import weka.core.Instances;
 import tsml.classifiers.Checkpointable;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 
 /**
+ * Evaluates the parameter sets given by a searcher over a parameter space and returns the best, 
+ * ties resolved randomly. 
+ * 
+ * If multithreading is enabled, up to numThreads parameter sets are evaluated at once, each with its 
+ * own copy of the classifier and evaluator. Results are still stored in the order given by the searcher, 
+ * so the parameter set chosen is the same as when evaluating sequentially. 
+ * 
+ * If racing is enabled and the evaluator is a CrossValidationEvaluator, the parameter sets are instead 
+ * evaluated by successive halving: every set is evaluated on the first racingMinFolds folds, the best 
+ * 1/racingEta of them are kept and evaluated on racingEta times as many folds, and so on until the 
+ * survivors have been evaluated on every fold. The best is then chosen from the survivors' full 
+ * cross validation results. 
  *
  * @author James Large (james.large@uea.ac.uk)
  */
 public class Tuner 
-        implements SaveEachParameter,Checkpointable, TrainTimeContractable {
+        implements SaveEachParameter,Checkpointable, TrainTimeContractable, MultiThreadable {
     
     //Main 3 design choices.
     private ParameterSearcher searcher;                      //default = new GridSearcher();
@@ -71,8 +95,19 @@ public class Tuner
     long trainContractTimeNanos; //TrainTimeContractClassifier  //note, leaving in nanos for max fidelity, max val of long = 2^64-1 = 586 years in nanoseconds
     boolean trainTimeContract = false; //TrainTimeContractClassifier
     
+    private int numThreads = 1; //MultiThreadable
+    private boolean multiThread = false; //MultiThreadable
+    
     ////////// end interface variables
     
+    /**
+     * if true and the evaluator is a CrossValidationEvaluator, parameter sets that are performing 
+     * poorly after a few folds are dropped instead of being evaluated on every fold, see class comment
+     */
+    private boolean racing = false;
+    private int racingMinFolds = 3;
+    private int racingEta = 3;
+    
     private boolean includeMarkersInParaLine = true;
     
     /**
@@ -145,7 +180,7 @@ public class Tuner
     public AbstractClassifier cloneClassifierIfNeeded(AbstractClassifier classifier) throws Exception {
         if (cloneClassifierForEachParameterEval) {
             //for some reason, the (abstract classifiers)' copy method returns a (classifier interface) reference...
-            return (AbstractClassifier)AbstractClassifier.makeCopy(classifier); 
+            return (AbstractClassifier)ClassifierTools.makeCopy(classifier); 
         }
         else {
             //just reuse the same instance of the classifier, assume that no info 
@@ -182,6 +217,41 @@ public class Tuner
         this.includeMarkersInParaLine = includeMarkersInParaLine;
     }
     
+    public boolean getRacing() {
+        return racing;
+    }
+
+    public void setRacing(boolean racing) {
+        this.racing = racing;
+    }
+
+    public int getRacingMinFolds() {
+        return racingMinFolds;
+    }
+
+    /**
+     * @param racingMinFolds number of folds every parameter set is evaluated on before any are dropped
+     */
+    public void setRacingMinFolds(int racingMinFolds) {
+        if (racingMinFolds < 1)
+            throw new IllegalArgumentException("racingMinFolds must be at least 1, given: " + racingMinFolds);
+        this.racingMinFolds = racingMinFolds;
+    }
+
+    public int getRacingEta() {
+        return racingEta;
+    }
+
+    /**
+     * @param racingEta after each round of folds, 1/racingEta of the parameter sets are kept, and 
+     *                  evaluated on racingEta times as many folds in total in the next round 
+     */
+    public void setRacingEta(int racingEta) {
+        if (racingEta < 2)
+            throw new IllegalArgumentException("racingEta must be at least 2, given: " + racingEta);
+        this.racingEta = racingEta;
+    }
+    
     public ParameterSearcher getSearcher() {
         return searcher;
     }
@@ -230,18 +300,26 @@ public class Tuner
     public ClassifierResults evaluateParameterSet(AbstractClassifier baseClassifier, Instances trainSet, ParameterSet parameterSet) throws Exception { 
         Instances data = cloneDataIfNeeded(trainSet);
         AbstractClassifier classifier = cloneClassifierIfNeeded(baseClassifier); 
-            
+        
+        return evaluateParameterSet(classifier, data, parameterSet, evaluator);
+    }
+    
+    private ClassifierResults evaluateParameterSet(AbstractClassifier classifier, Instances data, ParameterSet parameterSet, Evaluator evaluator) throws Exception { 
         String[] options = parameterSet.toOptionsList();
         classifier.setOptions(options);
 
         ClassifierResults results = evaluator.evaluate(classifier, data);
+        setParameterSetResultsInfo(results, parameterSet);
+        
+        return results;
+    }
+    
+    private void setParameterSetResultsInfo(ClassifierResults results, ParameterSet parameterSet) {
         results.setEstimatorName("TunedClassifier:"+classifierName);
         results.setDatasetName(datasetName);
         results.setFoldID(seed);
         results.setSplit("train");
         results.setParas(parameterSet.toClassifierResultsParaLine(includeMarkersInParaLine));
-        
-        return results;
     }
     
     public ParameterResults tune(AbstractClassifier baseClassifier, Instances trainSet, ParameterSpace parameterSpace) throws Exception {
@@ -259,12 +337,20 @@ public class Tuner
         searcher.setParameterSpace(parameterSpace);
         Iterator<ParameterSet> iter = searcher.iterator();
         
+        if (racing && evaluator instanceof CrossValidationEvaluator) {
+            bestParaSetAndResults = resolveTies(race(baseClassifier, trainSet, iter, startTime));
+            return bestParaSetAndResults;
+        }
+        
         //for resolving ties for the best paraset
         List<ParameterResults> tiesBestSoFar = new ArrayList<>();
         
+        if (multiThread)
+            tuneMultiThreaded(baseClassifier, trainSet, iter, startTime, tiesBestSoFar);
+        
         //iterate over the space
         int parameterSetID = -1;
-        while (iter.hasNext()) {
+        while (!multiThread && iter.hasNext()) {
             parameterSetID++;
             ParameterSet pset = iter.next();
             long thisParaStartTime = System.nanoTime();
@@ -289,7 +375,7 @@ public class Tuner
 //                int numParasEvald = parameterSetID + 1; 
 //                long avgTimePerPara = totalTimeSoFar / numParasEvald;
                 
-                if (withinTrainContract(totalTimeSoFar+maxParaEvalTime))
+                if (!withinTrainContract(totalTimeSoFar+maxParaEvalTime))
                     break;
             }
             
@@ -317,6 +403,267 @@ public class Tuner
         return bestParaSetAndResults;
     }
     
+    /**
+     * Evaluates up to numThreads parameter sets at once. Results are stored/saved in the order the 
+     * searcher gave the parameter sets, so ties are resolved as in the sequential case. When contracting, 
+     * no new parameter sets are started once the time so far plus the longest single evaluation so far 
+     * would break the contract
+     */
+    private void tuneMultiThreaded(AbstractClassifier baseClassifier, Instances trainSet, Iterator<ParameterSet> iter, long startTime, List<ParameterResults> tiesBestSoFar) throws Exception {
+        ExecutorService executor = MultiThreadable.getSharedExecutor(numThreads);
+        Queue<ParameterSetEvaluation> running = new ArrayDeque<>();
+        long maxParaEvalTime = 0;
+        boolean outOfTime = false;
+        
+        int parameterSetID = -1;
+        try {
+            while (true) {
+                while (running.size() < numThreads && !outOfTime && iter.hasNext()) {
+                    parameterSetID++;
+                    ParameterSet pset = iter.next();
+                    if (saveParameters && parametersAlreadyEvaluated(parameterSetID))
+                        continue;
+                    
+                    //each concurrent evaluation needs its own classifier and evaluator
+                    ParameterSetEvaluation eval = new ParameterSetEvaluation(parameterSetID, pset, 
+                            (AbstractClassifier)ClassifierTools.makeCopy(baseClassifier), 
+                            cloneDataIfNeeded(trainSet), evaluator.cloneEvaluator());
+                    eval.future = executor.submit(eval);
+                    running.add(eval);
+                }
+                
+                ParameterSetEvaluation eval = running.poll();
+                if (eval == null)
+                    break;
+                
+                ClassifierResults results = eval.future.get();
+                if (saveParameters)
+                    saveParaResults(eval.id, results);
+                else 
+                    storeParaResult(eval.pset, results, tiesBestSoFar);
+                
+                if (trainTimeContract) {
+                    if (eval.evalTime > maxParaEvalTime) 
+                        maxParaEvalTime = eval.evalTime;
+                    
+                    long totalTimeSoFar = System.nanoTime() - startTime;
+                    if (!withinTrainContract(totalTimeSoFar+maxParaEvalTime))
+                        outOfTime = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private class ParameterSetEvaluation implements Callable<ClassifierResults> {
+        final int id;
+        final ParameterSet pset;
+        final AbstractClassifier classifier;
+        final Instances data;
+        final Evaluator evaluator;
+        
+        Future<ClassifierResults> future;
+        long evalTime; //visible to the thread that gets the future's result
+
+        ParameterSetEvaluation(int id, ParameterSet pset, AbstractClassifier classifier, Instances data, Evaluator evaluator) {
+            this.id = id;
+            this.pset = pset;
+            this.classifier = classifier;
+            this.data = data;
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public ClassifierResults call() throws Exception {
+            long startTime = System.nanoTime();
+            ClassifierResults results = evaluateParameterSet(classifier, data, pset, evaluator);
+            evalTime = System.nanoTime() - startTime;
+            return results;
+        }
+    }
+    
+    /**
+     * Successive halving over the folds of the CrossValidationEvaluator, see class comment. Only the 
+     * survivors of the race have full results, so only they are saved and compared at the end, along 
+     * with any parameter sets already fully evaluated and saved by a previous run. 
+     * 
+     * When contracting, the first round of folds is always run for every parameter set. If after any 
+     * later round the time so far plus the longest round so far would break the contract, only the 
+     * leader(s) are kept and evaluated on the remaining folds
+     * 
+     * @return the ties for best parameter set
+     */
+    private List<ParameterResults> race(AbstractClassifier baseClassifier, Instances trainSet, Iterator<ParameterSet> iter, long startTime) throws Exception {
+        CrossValidationEvaluator cv = (CrossValidationEvaluator)evaluator;
+        Instances data = cloneDataIfNeeded(trainSet);
+        cv.buildFoldsIfNeeded(data);
+        int numFolds = cv.getNumFolds();
+        
+        //keyed by parameter set id, so that ties are stored in the order given by the searcher
+        TreeMap<Integer, ParameterResults> finished = new TreeMap<>();
+        List<RacingEntry> alive = new ArrayList<>();
+        
+        int parameterSetID = -1;
+        while (iter.hasNext()) {
+            parameterSetID++;
+            ParameterSet pset = iter.next();
+            if (saveParameters && parametersAlreadyEvaluated(parameterSetID)) {
+                ClassifierResults results = new ClassifierResults(parameterSavingPath + buildParaFilename(parameterSetID));
+                finished.put(parameterSetID, new ParameterResults(pset, results));
+            }
+            else 
+                alive.add(new RacingEntry(parameterSetID, pset, numFolds));
+        }
+        
+        int foldsDone = 0;
+        int foldsTarget = Math.min(racingMinFolds, numFolds);
+        long maxRoundTime = 0;
+        while (!alive.isEmpty() && foldsDone < numFolds) {
+            long roundStartTime = System.nanoTime();
+            evaluateFolds(baseClassifier, cv, alive, foldsDone, foldsTarget);
+            foldsDone = foldsTarget;
+            
+            long roundTime = System.nanoTime() - roundStartTime;
+            if (roundTime > maxRoundTime)
+                maxRoundTime = roundTime;
+            
+            if (foldsDone < numFolds) {
+                for (RacingEntry entry : alive)
+                    entry.score = evalMetric.apply(concatenateFoldResults(entry.foldResults, foldsDone));
+                
+                int numToKeep = (alive.size() + racingEta - 1) / racingEta;
+                if (trainTimeContract && !withinTrainContract(System.nanoTime() - startTime + maxRoundTime))
+                    numToKeep = 1;
+                alive = selectSurvivors(alive, numToKeep);
+                
+                foldsTarget = Math.min(numFolds, foldsDone * racingEta);
+            }
+        }
+        
+        for (RacingEntry entry : alive) {
+            ClassifierResults results = cv.combineFoldResults(entry.foldResults, classifierName, data);
+            setParameterSetResultsInfo(results, entry.pset);
+            if (saveParameters)
+                saveParaResults(entry.id, results);
+            finished.put(entry.id, new ParameterResults(entry.pset, results));
+        }
+        
+        List<ParameterResults> tiesBestSoFar = new ArrayList<>();
+        for (ParameterResults paraResults : finished.values())
+            storeParaResult(paraResults.paras, paraResults.results, tiesBestSoFar);
+        return tiesBestSoFar;
+    }
+    
+    /**
+     * Evaluates each entry on the folds [fromFold, toFold), concurrently if multithreading is enabled
+     */
+    private void evaluateFolds(AbstractClassifier baseClassifier, CrossValidationEvaluator cv, List<RacingEntry> entries, int fromFold, int toFold) throws Exception {
+        List<Callable<ClassifierResults>> jobs = new ArrayList<>();
+        for (RacingEntry entry : entries) {
+            for (int fold = fromFold; fold < toFold; fold++) {
+                final int testFold = fold;
+                jobs.add(() -> {
+                    //concurrent folds each need their own classifier
+                    AbstractClassifier classifier = multiThread ? 
+                            (AbstractClassifier)ClassifierTools.makeCopy(baseClassifier) : 
+                            cloneClassifierIfNeeded(baseClassifier);
+                    classifier.setOptions(entry.pset.toOptionsList());
+                    return cv.evaluateFold(classifier, testFold);
+                });
+            }
+        }
+        
+        List<ClassifierResults> results;
+        if (multiThread) {
+            try {
+                results = ThreadingUtilities.computeAll(MultiThreadable.getSharedExecutor(numThreads), jobs, true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        else {
+            results = new ArrayList<>(jobs.size());
+            for (Callable<ClassifierResults> job : jobs)
+                results.add(job.call());
+        }
+        
+        int job = 0;
+        for (RacingEntry entry : entries)
+            for (int fold = fromFold; fold < toFold; fold++)
+                entry.foldResults[fold] = results.get(job++);
+    }
+    
+    /**
+     * Keeps the numToKeep best scoring entries, plus any tied with the worst of those, in their original order
+     */
+    private static List<RacingEntry> selectSurvivors(List<RacingEntry> entries, int numToKeep) {
+        List<RacingEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingDouble((RacingEntry e) -> e.score).reversed());
+        double cutoff = sorted.get(numToKeep - 1).score;
+        
+        List<RacingEntry> survivors = new ArrayList<>();
+        for (RacingEntry entry : entries)
+            if (entry.score >= cutoff)
+                survivors.add(entry);
+        return survivors;
+    }
+    
+    /**
+     * Predictions of the first numFolds folds in fold order, for scoring a parameter set part way through the race
+     */
+    private static ClassifierResults concatenateFoldResults(ClassifierResults[] foldResults, int numFolds) throws Exception {
+        int numInsts = 0;
+        for (int fold = 0; fold < numFolds; fold++)
+            numInsts += foldResults[fold].numInstances();
+        
+        double[] trueClassVals = new double[numInsts];
+        double[] preds = new double[numInsts];
+        double[][] dists = new double[numInsts][];
+        long[] times = new long[numInsts];
+        String[] descs = new String[numInsts];
+        
+        int i = 0;
+        for (int fold = 0; fold < numFolds; fold++) {
+            ClassifierResults foldRes = foldResults[fold];
+            for (int j = 0; j < foldRes.numInstances(); j++, i++) {
+                trueClassVals[i] = foldRes.getTrueClassValue(j);
+                preds[i] = foldRes.getPredClassValue(j);
+                dists[i] = foldRes.getProbabilityDistribution(j);
+                times[i] = foldRes.getPredictionTime(j);
+                descs[i] = foldRes.getPredDescription(j);
+            }
+        }
+        
+        ClassifierResults res = new ClassifierResults(foldResults[0].numClasses());
+        res.setTimeUnit(TimeUnit.NANOSECONDS);
+        res.turnOffZeroTimingsErrors();
+        res.addAllPredictions(trueClassVals, preds, dists, times, descs);
+        res.findAllStatsOnce();
+        return res;
+    }
+    
+    private static class RacingEntry {
+        final int id;
+        final ParameterSet pset;
+        final ClassifierResults[] foldResults;
+        double score;
+
+        RacingEntry(int id, ParameterSet pset, int numFolds) {
+            this.id = id;
+            this.pset = pset;
+            this.foldResults = new ClassifierResults[numFolds];
+        }
+    }
+    
     private boolean canWeEvaluateAnotherParaSet(long maxParaEvalTime, long totalTimeSoFar) {
         return trainContractTimeNanos - totalTimeSoFar > maxParaEvalTime;
     }
@@ -494,6 +841,18 @@ public class Tuner
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            this.multiThread = true;
+        }
+        else {
+            this.numThreads = 1;
+            this.multiThread = false;
+        }
+    }
+
     public void setTrainTimeLimit(long amount) {
         trainTimeContract = true;
         trainContractTimeNanos =amount;
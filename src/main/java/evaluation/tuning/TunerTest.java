@@ -0,0 +1,153 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package evaluation.tuning;
+
+import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetLoading;
+import machine_learning.classifiers.kNN;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.functions.SMO;
+import weka.core.Instances;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TunerTest {
+
+    private static ParameterSpace buildSMOSpace() {
+        double[] cs = new double[7];
+        for (int i = 0; i < cs.length; i++)
+            cs[i] = Math.pow(10.0, i - 3);
+
+        ParameterSpace space = new ParameterSpace();
+        space.addParameter("C", cs);
+        return space;
+    }
+
+    private static ParameterSpace buildKNNSpace() {
+        ParameterSpace space = new ParameterSpace();
+        space.addParameter("K", new int[] { 1, 2, 3, 5, 7, 9, 11, 15, 21, 31 });
+        return space;
+    }
+
+    private static AbstractClassifier buildClassifier(boolean smo) {
+        if (smo) {
+            SMO svm = new SMO();
+            svm.setRandomSeed(0);
+            return svm;
+        }
+        return new kNN();
+    }
+
+    private static ParameterResults tune(Tuner tuner, Instances train, ParameterSpace space, boolean smo) throws Exception {
+        tuner.setSeed(0);
+        return tuner.tune(buildClassifier(smo), train, space);
+    }
+
+    @Test
+    public void testMultiThreadedMatchesSequential() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+
+        for (boolean smo : new boolean[] { true, false }) {
+            ParameterSpace space = smo ? buildSMOSpace() : buildKNNSpace();
+            ParameterResults serial = tune(new Tuner(), train, space, smo);
+
+            Tuner threaded = new Tuner();
+            threaded.enableMultiThreading(3);
+            ParameterResults parallel = tune(threaded, train, space, smo);
+
+            Assert.assertEquals(serial.paras.toString(), parallel.paras.toString());
+            Assert.assertEquals(serial.score, parallel.score, 0);
+            Assert.assertArrayEquals(serial.results.getPredClassValsAsArray(), parallel.results.getPredClassValsAsArray(), 0);
+        }
+    }
+
+    @Test
+    public void testRacingFindsSameBest() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+
+        for (boolean smo : new boolean[] { true, false }) {
+            ParameterSpace space = smo ? buildSMOSpace() : buildKNNSpace();
+            ParameterResults full = tune(new Tuner(), train, space, smo);
+
+            for (int numThreads : new int[] { 1, 3 }) {
+                Tuner racer = new Tuner();
+                racer.setRacing(true);
+                racer.enableMultiThreading(numThreads);
+                ParameterResults raced = tune(racer, train, space, smo);
+
+                //may differ from the full search's choice only when resolving ties for best
+                Assert.assertEquals(full.score, raced.score, 0);
+
+                //the winner of the race is evaluated on every fold, so its results are those of a full cv
+                Tuner evaluator = new Tuner();
+                evaluator.setSeed(0);
+                ClassifierResults winner = evaluator.evaluateParameterSet(buildClassifier(smo), train, raced.paras);
+                Assert.assertEquals(train.numInstances(), raced.results.numInstances());
+                Assert.assertEquals(winner.getAcc(), raced.results.getAcc(), 0);
+                Assert.assertArrayEquals(winner.getPredClassValsAsArray(), raced.results.getPredClassValsAsArray(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testRacingEvaluatesFewerFolds() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        ParameterSpace space = buildKNNSpace();
+        int numSets = space.numUniqueParameterSets();
+
+        Tuner racer = new Tuner();
+        racer.setRacing(true);
+        racer.setSeed(0);
+        CountingKNN.builds.set(0);
+        racer.tune(new CountingKNN(), train, space);
+
+        //all sets on 3 folds, at least the best third on 6 more, and at least one on the last
+        Assert.assertTrue(CountingKNN.builds.get() >= numSets * 3 + 4 * 6 + 1);
+        Assert.assertTrue(CountingKNN.builds.get() < numSets * 10);
+    }
+
+    @Test
+    public void testContractStopsEarly() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        ParameterSpace space = buildKNNSpace();
+
+        for (int numThreads : new int[] { 1, 3 }) {
+            Tuner tuner = new Tuner();
+            tuner.enableMultiThreading(numThreads);
+            tuner.setTrainTimeLimit(1);
+            tuner.setSeed(0);
+            CountingKNN.builds.set(0);
+            tuner.tune(new CountingKNN(), train, space);
+
+            //the first evaluation(s) always complete, after which no more are started
+            Assert.assertEquals(numThreads * 10, CountingKNN.builds.get());
+        }
+    }
+
+    public static class CountingKNN extends kNN {
+        static final AtomicInteger builds = new AtomicInteger();
+
+        @Override
+        public void buildClassifier(Instances data) throws Exception {
+            builds.incrementAndGet();
+            super.buildClassifier(data);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import machine_learning.classifiers.ensembles.SaveableEnsemble;
 import machine_learning.classifiers.tuned.TunedRandomForest;
 import tsml.classifiers.*;
 import tsml.classifiers.early_classification.AbstractEarlyClassifier;
+import utilities.KryoSerialisation;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
@@ -226,8 +227,17 @@ public class ClassifierExperiments {
                 inst.replaceMissingValues(new double[data[1].numAttributes()]);
         }
 
-        setupClassifierExperimentalOptions(expSettings, expSettings.classifier, data[0]);
-        ClassifierResults[] results = runExperiment(expSettings, data[0], data[1], expSettings.classifier);
+        // the serialisation format is global, so restore it for whatever runs next in this JVM
+        boolean kryoWasEnabled = KryoSerialisation.isEnabled();
+        ClassifierResults[] results;
+        try {
+            if (expSettings.kryoSerialisation)
+                KryoSerialisation.setEnabled(true);
+            setupClassifierExperimentalOptions(expSettings, expSettings.classifier, data[0]);
+            results = runExperiment(expSettings, data[0], data[1], expSettings.classifier);
+        } finally {
+            KryoSerialisation.setEnabled(kryoWasEnabled);
+        }
         LOGGER.log(Level.INFO, "Experiment finished " + expSettings.toShortString() + ", Test Acc:" + results[1].getAcc());
 
         return results;
@@ -724,11 +734,16 @@ public class ClassifierExperiments {
 
         LOGGER.log(Level.FINE, "Attempting classifier serialisation, to " + filename);
 
-        FileOutputStream fos = new FileOutputStream(filename);
-        try (ObjectOutputStream out = new ObjectOutputStream(fos)) {
-            out.writeObject(classifier);
-            fos.close();
-            out.close();
+        if (KryoSerialisation.isEnabled()) {
+            KryoSerialisation.saveToFile(classifier, filename);
+        }
+        else {
+            FileOutputStream fos = new FileOutputStream(filename);
+            try (ObjectOutputStream out = new ObjectOutputStream(fos)) {
+                out.writeObject(classifier);
+                fos.close();
+                out.close();
+            }
         }
 
         LOGGER.log(Level.FINE, "Classifier serialised successfully");
@@ -125,6 +125,10 @@ public class ExperimentalArguments implements Runnable {
     @Parameter(names = {"-sc", "--serialiseClassifier"}, arity = 1, description = "(boolean) If true, and the classifier is serialisable, the classifier will be serialised to the --supportingFilesPath after training, but before testing.")
     public boolean serialiseTrainedClassifier = false;
 
+    @Parameter(names = {"-kryo", "--kryoSerialisation"}, arity = 1, description = "(boolean) If true, checkpoints and serialised classifiers are written with Kryo instead of gzipped Java serialisation, "
+            + "which is faster, with files of a similar size. Checkpoints in either format can be loaded regardless.")
+    public boolean kryoSerialisation = false;
+
     @Parameter(names = {"--force"}, arity = 1, description = "(boolean) If true, the evaluation will occur even if what would be the resulting files already exists. The old files will be overwritten with the new evaluation results.")
     public boolean forceEvaluation = false;
 
@@ -16,6 +16,7 @@
  */
 package machine_learning.classifiers;
 
+import tsml.classifiers.ConfigurationCopyable;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Capabilities;
 import weka.core.Instance;
@@ -37,7 +38,8 @@ import static utilities.ArrayUtilities.sum;
  *
  * @author Matthew Middlehurst
  **/
-public class ContinuousIntervalTree extends AbstractClassifier implements Randomizable, Serializable {
+public class ContinuousIntervalTree extends AbstractClassifier implements Randomizable, ConfigurationCopyable,
+        Serializable {
 
     private static double log2 = Math.log(2);
 
@@ -99,6 +101,17 @@ public class ContinuousIntervalTree extends AbstractClassifier implements Random
         return seed;
     }
 
+    @Override //ConfigurationCopyable
+    public ContinuousIntervalTree copyConfiguration() {
+        ContinuousIntervalTree tree = new ContinuousIntervalTree();
+        tree.useMargin = useMargin;
+        tree.k = k;
+        tree.maxDepth = maxDepth;
+        tree.seed = seed;
+        tree.m_Debug = m_Debug;
+        return tree;
+    }
+
     @Override
     public void buildClassifier(Instances data) throws Exception {
         numAttributes = data.numAttributes() - 1;
@@ -17,17 +17,20 @@
 package machine_learning.classifiers;
 
 import experiments.data.DatasetLoading;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.eigen.Eigen;
-import org.nd4j.linalg.factory.Nd4j;
 import tsml.classifiers.MultiThreadable;
 import tsml.transformers.ROCKET;
 import utilities.ClassifierTools;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.matrix.Maths;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static utilities.InstanceTools.resampleTrainAndTestInstances;
 
@@ -36,6 +39,10 @@ import static utilities.InstanceTools.resampleTrainAndTestInstances;
  * <p>
  * Based on RidgeClassifierCV from sklearn.
  * https://scikit-learn.org/stable/modules/generated/sklearn.linear_model.RidgeClassifierCV.html
+ * <p>
+ * The Gram matrix of the centred and scaled data is accumulated a block of attributes at a time straight from the
+ * instances, the rows split between threads if multithreaded. One eigendecomposition of it gives the leave-one-out
+ * error of every alpha.
  *
  * @author Matthew Middlehurst
  */
@@ -45,11 +52,14 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
     private final double[] alphas = {1.00000000e-03, 4.64158883e-03, 2.15443469e-02, 1.00000000e-01,
             4.64158883e-01, 2.15443469e+00, 1.00000000e+01, 4.64158883e+01, 2.15443469e+02, 1.00000000e+03};
 
-    private INDArray coefficients;
+    //number of attributes read from the instances at a time when forming the Gram matrix
+    private static final int BLOCK_SIZE = 256;
+
+    //[class][attribute]
+    private double[][] coefficients;
     private double[] intercept;
 
     private int numThreads = 1;
-    private static boolean printedNumThreadsError = false;
 
     private double bestScore = -999999;
 
@@ -67,35 +77,15 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
         if (instances.classIndex() != instances.numAttributes() - 1)
             throw new Exception("Class attribute must be the final index.");
 
-        //Set to OMP_NUM_THREADS=1 for single thread run
-        //Check if OMP_NUM_THREADS matches numThreads
-        if (!printedNumThreadsError) {
-            String value = System.getenv("OMP_NUM_THREADS");
-            if (value == null && numThreads != Runtime.getRuntime().availableProcessors())
-                System.err.println("RidgeClassifierCV: OMP_NUM_THREADS environmental variable not set. Set it to the " +
-                        "number of threads you wish to use or set numThreads to " +
-                        "Runtime.getRuntime().availableProcessors(). Must be consistent with numThreads field." +
-                        System.lineSeparator() + "Example: OMP_NUM_THREADS=1 java tsml.jar");
-            if (value != null && Integer.parseInt(value) != numThreads)
-                System.err.println("RidgeClassifierCV: OMP_NUM_THREADS environmental variable and numThreads do not " +
-                        "match.");
-            printedNumThreadsError = true;
-        }
-
         bestScore = -999999;
 
-        double[][] data = new double[instances.numInstances()][instances.numAttributes() - 1];
-        for (int i = 0; i < data.length; i++) {
-            Instance inst = instances.get(i);
-            for (int n = 0; n < data[i].length; n++) {
-                data[i][n] = inst.value(n);
-            }
-        }
+        int numInstances = instances.numInstances();
+        int numAttributes = instances.numAttributes() - 1;
 
         double[][] labels;
         if (instances.numClasses() > 2) {
-            labels = new double[data.length][instances.numClasses()];
-            for (int i = 0; i < data.length; i++) {
+            labels = new double[numInstances][instances.numClasses()];
+            for (int i = 0; i < numInstances; i++) {
                 Instance inst = instances.get(i);
                 for (int n = 0; n < labels[i].length; n++) {
                     if (inst.classValue() == n) {
@@ -106,8 +96,8 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
                 }
             }
         } else {
-            labels = new double[data.length][1];
-            for (int i = 0; i < data.length; i++) {
+            labels = new double[numInstances][1];
+            for (int i = 0; i < numInstances; i++) {
                 if (instances.get(i).classValue() == 1) {
                     labels[i][0] = 1;
                 } else {
@@ -116,56 +106,66 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
             }
         }
 
-        double[] xOffset = new double[data[0].length];
+        double[] xOffset = new double[numAttributes];
         double[] yOffset = new double[labels[0].length];
-        double[] xScale = new double[data[0].length];
-        preprocessData(data, labels, xOffset, yOffset, xScale);
+        double[] xScale = new double[numAttributes];
+        preprocessData(instances, labels, xOffset, yOffset, xScale);
 
         //original uses SVD when no. instances > no. attributes
-        INDArray matrix = Nd4j.create(data);
-        INDArray q = matrix.mmul(matrix.transpose());
-        INDArray eigvals = Eigen.symmetricGeneralizedEigenvalues(q);
-        INDArray qt_y = q.transpose();
-        qt_y = qt_y.mmul(Nd4j.create(labels));
+        double[] eigvals = new double[numInstances];
+        //eigenvectors as rows, q[i] is the eigenvector of eigvals[i]
+        double[][] q = symmetricEigen(gramMatrix(instances, xOffset, xScale), eigvals);
+
+        double[][] qt_y = new double[numInstances][labels[0].length];
+        for (int i = 0; i < numInstances; i++) {
+            for (int r = 0; r < numInstances; r++) {
+                for (int n = 0; n < qt_y[i].length; n++) {
+                    qt_y[i][n] += q[i][r] * labels[r][n];
+                }
+            }
+        }
 
-        INDArray bestCoef = null;
+        //the eigenvector closest to the constant vector is left out, the intercept is fit separately
+        double[] k = new double[numInstances];
+        double sw = Math.sqrt(numInstances) / numInstances;
+        for (int i = 0; i < numInstances; i++) {
+            for (int r = 0; r < numInstances; r++) {
+                k[i] += sw * q[i][r];
+            }
+        }
+        for (int i = 0; i < k.length; i++) k[i] = Math.abs(k[i]);
+        int idx = argmax(k);
+
+        double[][] bestCoef = null;
         for (double alpha : alphas) {
-            double[] w = new double[(int) eigvals.size(0)];
+            double[] w = new double[numInstances];
             for (int i = 0; i < w.length; i++) {
-                w[i] = 1. / (eigvals.getDouble(i) + alpha);
+                w[i] = 1. / (eigvals[i] + alpha);
             }
-
-            double[][] p = new double[1][data.length];
-            Arrays.fill(p[0], Math.sqrt(data.length) / data.length);
-            INDArray sw = Nd4j.create(p);
-            double[] k = sw.mmul(q).toDoubleVector();
-            for (int i = 0; i < k.length; i++) k[i] = Math.abs(k[i]);
-            int idx = argmax(k);
             w[idx] = 0;
 
-            double[][] d = new double[w.length][(int) qt_y.size(1)];
-            for (int i = 0; i < d.length; i++) {
-                for (int n = 0; n < d[i].length; n++) {
-                    d[i][n] = w[i] * qt_y.getDouble(i, n);
-                }
-            }
-
-            INDArray coefs = q.mmul(Nd4j.create(d));
-
-            double[] sums = new double[w.length];
-            for (int i = 0; i < w.length; i++) {
-                for (int n = 0; n < q.size(0); n++) {
-                    sums[n] += w[i] * Math.pow(q.getDouble(n, i), 2);
+            //dual coefficients and the diagonal of the inverse of the regularised Gram matrix, which
+            //gives the leave-one-out residuals without refitting
+            double[][] coefs = new double[numInstances][labels[0].length];
+            double[] sums = new double[numInstances];
+            for (int i = 0; i < numInstances; i++) {
+                if (w[i] == 0) continue;
+                for (int r = 0; r < numInstances; r++) {
+                    double qw = q[i][r] * w[i];
+                    sums[r] += qw * q[i][r];
+                    for (int n = 0; n < coefs[r].length; n++) {
+                        coefs[r][n] += qw * qt_y[i][n];
+                    }
                 }
             }
 
             double e = 0;
             for (int i = 0; i < sums.length; i++) {
-                for (int n = 0; n < coefs.size(1); n++) {
-                    e += Math.pow(coefs.getDouble(i, n) / sums[i], 2);
+                for (int n = 0; n < coefs[i].length; n++) {
+                    e += Math.pow(coefs[i][n] / sums[i], 2);
                 }
             }
-            e /= sums.length * coefs.size(1);
+            e /= sums.length * coefs[0].length;
             e = 1 - e;
 
             if (e > bestScore) {
@@ -174,43 +174,48 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
             }
         }
 
-        INDArray a = bestCoef.transpose().mmul(matrix);
-        double[][] b = a.size(0) == 1 ? new double[][]{a.toDoubleVector()} : a.toDoubleMatrix();
-        for (int i = 0; i < b.length; i++) {
-            for (int n = 0; n < b[i].length; n++) {
-                b[i][n] /= xScale[n];
+        coefficients = new double[labels[0].length][numAttributes];
+        for (int r = 0; r < numInstances; r++) {
+            Instance inst = instances.get(r);
+            for (int n = 0; n < numAttributes; n++) {
+                double x = (inst.value(n) - xOffset[n]) / xScale[n];
+                for (int c = 0; c < coefficients.length; c++) {
+                    coefficients[c][n] += bestCoef[r][c] * x;
+                }
             }
         }
 
-        double[][] c = new double[][]{xOffset};
-        coefficients = Nd4j.create(b).transpose();
-        INDArray d = Nd4j.create(c).mmul(coefficients);
         intercept = new double[yOffset.length];
-        for (int i = 0; i < intercept.length; i++) {
-            intercept[i] = yOffset[i] - d.getDouble(i);
+        for (int c = 0; c < coefficients.length; c++) {
+            double d = 0;
+            for (int n = 0; n < numAttributes; n++) {
+                coefficients[c][n] /= xScale[n];
+                d += xOffset[n] * coefficients[c][n];
+            }
+            intercept[c] = yOffset[c] - d;
         }
     }
 
     @Override
     public double classifyInstance(Instance inst) {
-        double[][] data = new double[1][(int) coefficients.size(0)];
-        for (int i = 0; i < data[0].length; i++) {
-            data[0][i] = inst.value(i);
-        }
-
-        double[] x = Nd4j.create(data).mmul(coefficients).toDoubleVector();
-        for (int i = 0; i < intercept.length; i++) {
-            x[i] += intercept[i];
+        double[] x = new double[intercept.length];
+        for (int c = 0; c < x.length; c++) {
+            double sum = intercept[c];
+            for (int i = 0; i < coefficients[c].length; i++) {
+                sum += inst.value(i) * coefficients[c][i];
+            }
+            x[c] = sum;
         }
 
         return x.length > 1 ? argmax(x) : (x[0] > 0 ? 1 : 0);
     }
 
-    private void preprocessData(double[][] data, double[][] labels, double[] xOffset, double[] yOffset,
+    private void preprocessData(Instances instances, double[][] labels, double[] xOffset, double[] yOffset,
                                 double[] xScale) {
-        for (int i = 0; i < data.length; i++) {
-            for (int n = 0; n < data[i].length; n++) {
-                xOffset[n] += data[i][n];
+        for (int i = 0; i < labels.length; i++) {
+            Instance inst = instances.get(i);
+            for (int n = 0; n < xOffset.length; n++) {
+                xOffset[n] += inst.value(n);
             }
 
             for (int n = 0; n < labels[i].length; n++) {
@@ -219,16 +224,18 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
         }
 
         for (int i = 0; i < xOffset.length; i++) {
-            xOffset[i] /= data.length;
+            xOffset[i] /= labels.length;
         }
 
         for (int i = 0; i < yOffset.length; i++) {
             yOffset[i] /= labels.length;
         }
 
-        for (int i = 0; i < data.length; i++) {
-            for (int n = 0; n < data[i].length; n++) {
-                data[i][n] -= xOffset[n];
+        for (int i = 0; i < labels.length; i++) {
+            Instance inst = instances.get(i);
+            for (int n = 0; n < xScale.length; n++) {
+                double x = inst.value(n) - xOffset[n];
+                xScale[n] += x * x;
             }
 
             for (int n = 0; n < labels[i].length; n++) {
@@ -236,22 +243,309 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
             }
         }
 
-        for (double[] row : data) {
-            for (int n = 0; n < row.length; n++) {
-                xScale[n] += row[n] * row[n];
+        for (int i = 0; i < xScale.length; i++) {
+            xScale[i] = Math.sqrt(xScale[i]);
+            if (xScale[i] == 0) xScale[i] = 1;
+        }
+    }
+
+    /**
+     * Forms the Gram matrix of the centred and scaled instances, copying BLOCK_SIZE attributes of every instance
+     * at a time and adding their products to the lower triangle. Threads take every numThreads'th row.
+     */
+    private double[][] gramMatrix(Instances instances, double[] xOffset, double[] xScale) throws Exception {
+        int numInstances = instances.numInstances();
+        int numAttributes = xOffset.length;
+        double[][] gram = new double[numInstances][numInstances];
+        double[][] block = new double[numInstances][Math.min(BLOCK_SIZE, numAttributes)];
+
+        int threads = Math.min(numThreads, numInstances);
+        ExecutorService ex = threads > 1 ? MultiThreadable.getSharedExecutor(threads) : null;
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            tasks.add(() -> {
+                addBlockProducts(gram, block, first, threads);
+                return null;
+            });
+        }
+
+        for (int start = 0; start < numAttributes; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, numAttributes - start);
+            for (int i = 0; i < numInstances; i++) {
+                Instance inst = instances.get(i);
+                for (int n = 0; n < length; n++) {
+                    block[i][n] = (inst.value(start + n) - xOffset[start + n]) / xScale[start + n];
+                }
+                for (int n = length; n < block[i].length; n++) {
+                    block[i][n] = 0;
+                }
+            }
+
+            if (ex == null) {
+                addBlockProducts(gram, block, 0, 1);
+            } else {
+                try {
+                    for (Future<Void> f : ex.invokeAll(tasks)) {
+                        f.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
             }
         }
 
-        for (int i = 0; i < xOffset.length; i++) {
-            xScale[i] = Math.sqrt(xScale[i]);
-            if (xScale[i] == 0) xScale[i] = 1;
+        for (int i = 0; i < numInstances; i++) {
+            for (int n = 0; n < i; n++) {
+                gram[n][i] = gram[i][n];
+            }
         }
+        return gram;
+    }
 
-        for (int i = 0; i < data.length; i++) {
-            for (int n = 0; n < data[i].length; n++) {
-                data[i][n] /= xScale[n];
+    private static void addBlockProducts(double[][] gram, double[][] block, int first, int step) {
+        for (int i = first; i < block.length; i += step) {
+            double[] a = block[i];
+            double[] row = gram[i];
+            //four rows at a time, for independent sums and fewer reads of a
+            int n = 0;
+            for (; n + 3 <= i; n += 4) {
+                double[] b0 = block[n], b1 = block[n + 1], b2 = block[n + 2], b3 = block[n + 3];
+                double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                for (int j = 0; j < a.length; j++) {
+                    double x = a[j];
+                    sum0 += x * b0[j];
+                    sum1 += x * b1[j];
+                    sum2 += x * b2[j];
+                    sum3 += x * b3[j];
+                }
+                row[n] += sum0;
+                row[n + 1] += sum1;
+                row[n + 2] += sum2;
+                row[n + 3] += sum3;
+            }
+            for (; n <= i; n++) {
+                double[] b = block[n];
+                double sum = 0;
+                for (int j = 0; j < a.length; j++) {
+                    sum += a[j] * b[j];
+                }
+                row[n] += sum;
+            }
+        }
+    }
+
+    /**
+     * Eigendecomposition of a symmetric matrix by Householder tridiagonalisation and the QL algorithm, as in
+     * weka.core.matrix.EigenvalueDecomposition, but with the eigenvectors held as rows so the rotations run along
+     * arrays. Overwrites the given matrix.
+     *
+     * @param a symmetric matrix
+     * @param d filled with the eigenvalues in ascending order
+     * @return the eigenvectors as rows, in the order of the eigenvalues
+     */
+    static double[][] symmetricEigen(double[][] a, double[] d) {
+        int n = a.length;
+        //v[j][k] holds element k of column j of the EISPACK V matrix, starting as a as it is symmetric
+        double[][] v = a;
+        double[] e = new double[n];
+
+        //Householder reduction to tridiagonal form
+        for (int j = 0; j < n; j++) {
+            d[j] = v[j][n - 1];
+        }
+
+        for (int i = n - 1; i > 0; i--) {
+            double scale = 0.0;
+            double h = 0.0;
+            for (int k = 0; k < i; k++) {
+                scale = scale + Math.abs(d[k]);
+            }
+            if (scale == 0.0) {
+                e[i] = d[i - 1];
+                for (int j = 0; j < i; j++) {
+                    d[j] = v[j][i - 1];
+                    v[j][i] = 0.0;
+                    v[i][j] = 0.0;
+                }
+            } else {
+                for (int k = 0; k < i; k++) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                double f = d[i - 1];
+                double g = Math.sqrt(h);
+                if (f > 0) {
+                    g = -g;
+                }
+                e[i] = scale * g;
+                h = h - f * g;
+                d[i - 1] = f - g;
+                for (int j = 0; j < i; j++) {
+                    e[j] = 0.0;
+                }
+
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    v[i][j] = f;
+                    double[] vj = v[j];
+                    g = e[j] + vj[j] * f;
+                    for (int k = j + 1; k <= i - 1; k++) {
+                        g += vj[k] * d[k];
+                        e[k] += vj[k] * f;
+                    }
+                    e[j] = g;
+                }
+                f = 0.0;
+                for (int j = 0; j < i; j++) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                double hh = f / (h + h);
+                for (int j = 0; j < i; j++) {
+                    e[j] -= hh * d[j];
+                }
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    g = e[j];
+                    double[] vj = v[j];
+                    for (int k = j; k <= i - 1; k++) {
+                        vj[k] -= (f * e[k] + g * d[k]);
+                    }
+                    d[j] = vj[i - 1];
+                    vj[i] = 0.0;
+                }
+            }
+            d[i] = h;
+        }
+
+        //accumulate transformations
+        for (int i = 0; i < n - 1; i++) {
+            v[i][n - 1] = v[i][i];
+            v[i][i] = 1.0;
+            double[] vi1 = v[i + 1];
+            double h = d[i + 1];
+            if (h != 0.0) {
+                for (int k = 0; k <= i; k++) {
+                    d[k] = vi1[k] / h;
+                }
+                for (int j = 0; j <= i; j++) {
+                    double[] vj = v[j];
+                    double g = 0.0;
+                    for (int k = 0; k <= i; k++) {
+                        g += vi1[k] * vj[k];
+                    }
+                    for (int k = 0; k <= i; k++) {
+                        vj[k] -= g * d[k];
+                    }
+                }
+            }
+            for (int k = 0; k <= i; k++) {
+                vi1[k] = 0.0;
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            d[j] = v[j][n - 1];
+            v[j][n - 1] = 0.0;
+        }
+        v[n - 1][n - 1] = 1.0;
+        e[0] = 0.0;
+
+        //symmetric tridiagonal QL algorithm
+        for (int i = 1; i < n; i++) {
+            e[i - 1] = e[i];
+        }
+        e[n - 1] = 0.0;
+
+        double f = 0.0;
+        double tst1 = 0.0;
+        double eps = Math.pow(2.0, -52.0);
+        for (int l = 0; l < n; l++) {
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (m < n) {
+                if (Math.abs(e[m]) <= eps * tst1) {
+                    break;
+                }
+                m++;
+            }
+
+            if (m > l) {
+                do {
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2.0 * e[l]);
+                    double r = Maths.hypot(p, 1.0);
+                    if (p < 0) {
+                        r = -r;
+                    }
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for (int i = l + 2; i < n; i++) {
+                        d[i] -= h;
+                    }
+                    f = f + h;
+
+                    p = d[m];
+                    double c = 1.0;
+                    double c2 = c;
+                    double c3 = c;
+                    double el1 = e[l + 1];
+                    double s = 0.0;
+                    double s2 = 0.0;
+                    for (int i = m - 1; i >= l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Maths.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+
+                        double[] vi = v[i];
+                        double[] vi1 = v[i + 1];
+                        for (int k = 0; k < n; k++) {
+                            h = vi1[k];
+                            vi1[k] = s * vi[k] + c * h;
+                            vi[k] = c * vi[k] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > eps * tst1);
+            }
+            d[l] = d[l] + f;
+            e[l] = 0.0;
+        }
+
+        //sort eigenvalues and corresponding vectors
+        for (int i = 0; i < n - 1; i++) {
+            int k = i;
+            double p = d[i];
+            for (int j = i + 1; j < n; j++) {
+                if (d[j] < p) {
+                    k = j;
+                    p = d[j];
+                }
+            }
+            if (k != i) {
+                d[k] = d[i];
+                d[i] = p;
+                double[] t = v[i];
+                v[i] = v[k];
+                v[k] = t;
             }
         }
+        return v;
     }
 
     private int argmax(double[] arr) {
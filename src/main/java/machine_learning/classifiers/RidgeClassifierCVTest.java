@@ -0,0 +1,82 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package machine_learning.classifiers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.transformers.ROCKET;
+import weka.core.Instances;
+import weka.core.matrix.EigenvalueDecomposition;
+import weka.core.matrix.Matrix;
+
+import java.util.Random;
+
+public class RidgeClassifierCVTest {
+
+    @Test
+    public void testSymmetricEigenMatchesWeka() {
+        Random rand = new Random(0);
+        int n = 40;
+        double[][] a = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                a[i][j] = a[j][i] = rand.nextGaussian();
+            }
+        }
+
+        EigenvalueDecomposition expected = new EigenvalueDecomposition(new Matrix(a));
+        double[][] expectedVectors = expected.getV().getArray();
+
+        double[][] copy = new double[n][];
+        for (int i = 0; i < n; i++) copy[i] = a[i].clone();
+        double[] eigvals = new double[n];
+        double[][] vectors = RidgeClassifierCV.symmetricEigen(copy, eigvals);
+
+        Assert.assertArrayEquals(expected.getRealEigenvalues(), eigvals, 0);
+        for (int i = 0; i < n; i++) {
+            for (int r = 0; r < n; r++) {
+                Assert.assertEquals(expectedVectors[r][i], vectors[i][r], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiThreadedMatchesSingleThreaded() throws Exception {
+        Instances[] data = DatasetLoading.sampleGunPoint(0);
+        ROCKET rocket = new ROCKET(500);
+        rocket.setSeed(0);
+        Instances train = rocket.fitTransform(data[0]);
+        Instances test = rocket.transform(data[1]);
+
+        RidgeClassifierCV single = new RidgeClassifierCV();
+        single.buildClassifier(train);
+        RidgeClassifierCV multi = new RidgeClassifierCV();
+        multi.enableMultiThreading(3);
+        multi.buildClassifier(train);
+
+        Assert.assertEquals(single.getBestScore(), multi.getBestScore(), 1e-12);
+        int correct = 0;
+        for (int i = 0; i < test.numInstances(); i++) {
+            double pred = single.classifyInstance(test.instance(i));
+            Assert.assertEquals(pred, multi.classifyInstance(test.instance(i)), 0);
+            if (pred == test.instance(i).classValue()) correct++;
+        }
+        Assert.assertTrue(correct > 0.9 * test.numInstances());
+    }
+}
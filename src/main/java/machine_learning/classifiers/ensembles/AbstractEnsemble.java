@@ -61,6 +61,7 @@ import machine_learning.classifiers.ensembles.weightings.ModuleWeightingScheme;
  *          - Optional filewriting for individuals' and ensemble's results
  *          - Can train from scratch, or build on results saved to file in ClassifierResults format
  *          - Can thread the component evaluation/building, current just assigning one thread per base classifier
+ *          - Can thread the classification of a batch of test instances, again one thread per base classifier
  * 
  * TODO Expand javadoc
  * 
@@ -976,6 +977,70 @@ public abstract class AbstractEnsemble extends EnhancedAbstractClassifier implem
             
         }
 
+        return distributionForInstance(instance, ins, 0);
+    }
+
+    /**
+     * Classifies a batch of test instances. When multithreading and classifying from scratch, each module 
+     * classifies the whole batch as a single job, with the modules running concurrently, and the ensemble 
+     * then combines their distributions instance by instance. The results are the same as calling 
+     * distributionForInstance(...) on each instance in turn, including the test results recorded.
+     * 
+     * @return [instance][class] distributions
+     */
+    public double[][] distributionForInstances(Instances data) throws Exception {
+        double[][] dists = new double[data.numInstances()][];
+        if (readIndividualsResults || !multiThread || modules.length < 2) {
+            for (int i = 0; i < dists.length; i++)
+                dists[i] = distributionForInstance(data.instance(i));
+            return dists;
+        }
+
+        Instances insts = this.transform == null ? data : transform.transform(data);
+
+        List<Callable<double[][]>> moduleJobs = new ArrayList<>(modules.length);
+        final long[][] predTimes = new long[modules.length][insts.numInstances()];
+        for (int m = 0; m < modules.length; m++) {
+            final Classifier classifier = modules[m].getClassifier();
+            final long[] moduleTimes = predTimes[m];
+            moduleJobs.add(() -> {
+                double[][] moduleDists = new double[insts.numInstances()][];
+                for (int i = 0; i < moduleDists.length; i++) {
+                    long startTime = System.nanoTime();
+                    moduleDists[i] = classifier.distributionForInstance(insts.instance(i));
+                    moduleTimes[i] = System.nanoTime() - startTime;
+                }
+                return moduleDists;
+            });
+        }
+        ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+        List<double[][]> moduleDists = ThreadingUtilities.computeAll(executor, moduleJobs, true);
+
+        try {
+            for (int i = 0; i < dists.length; i++) {
+                double[][] instDists = new double[modules.length][];
+                long[] instTimes = new long[modules.length];
+                long modulesTime = 0;
+                for (int m = 0; m < modules.length; m++) {
+                    instDists[m] = moduleDists.get(m)[i];
+                    instTimes[m] = predTimes[m][i];
+                    modulesTime += instTimes[m];
+                }
+                votingScheme.setBatchDistributions(modules, instDists, instTimes);
+                dists[i] = distributionForInstance(data.instance(i), insts.instance(i), modulesTime);
+            }
+        } finally {
+            votingScheme.setBatchDistributions(null, null, null);
+        }
+        return dists;
+    }
+
+    /**
+     * @param instance the instance as given, used to track repeat calls on the same instance
+     * @param ins the instance after any transform, passed to the modules
+     * @param modulesPredTime time already spent by the modules classifying ins as part of a batch
+     */
+    private double[] distributionForInstance(Instance instance, Instance ins, long modulesPredTime) throws Exception {
         if (testResults == null || (testInstCounter == 0 && prevTestInstance == null)) {//definitely the first call, not e.g the first inst being classified for the second time
             printlnDebug("\n**TEST**");
 
@@ -998,7 +1063,7 @@ public abstract class AbstractEnsemble extends EnhancedAbstractClassifier implem
         }
         else {//need to classify them normally
             dist = votingScheme.distributionForInstance(modules, ins);
-            predTime = System.nanoTime() - startTime;
+            predTime = System.nanoTime() - startTime + modulesPredTime;
         }
         
         testResults.turnOffZeroTimingsErrors();
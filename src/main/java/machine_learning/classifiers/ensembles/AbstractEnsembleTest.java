@@ -0,0 +1,80 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package machine_learning.classifiers.ensembles;
+
+import evaluation.evaluators.SingleTestSetEvaluator;
+import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetLoading;
+import machine_learning.classifiers.kNN;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+public class AbstractEnsembleTest {
+
+    private static CAWPE buildCAWPE(Instances train, int numThreads) throws Exception {
+        CAWPE cawpe = new CAWPE();
+        cawpe.setSeed(0);
+        cawpe.setClassifiers(new Classifier[] { new kNN(), new NaiveBayes(), new J48() }, null, null);
+        cawpe.enableMultiThreading(numThreads);
+        cawpe.buildClassifier(train);
+        return cawpe;
+    }
+
+    @Test
+    public void testBatchMatchesSingleInstances() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+
+        CAWPE serial = buildCAWPE(data[0], 1);
+        double[][] expected = new double[data[1].numInstances()][];
+        for (int i = 0; i < expected.length; i++)
+            expected[i] = serial.distributionForInstance(data[1].instance(i));
+
+        CAWPE threaded = buildCAWPE(data[0], 2);
+        double[][] dists = threaded.distributionForInstances(data[1]);
+
+        Assert.assertEquals(expected.length, dists.length);
+        for (int i = 0; i < expected.length; i++)
+            Assert.assertArrayEquals(expected[i], dists[i], 0);
+
+        //the modules' test results are recorded as they would be one instance at a time
+        for (int m = 0; m < serial.getModules().length; m++) {
+            ClassifierResults expectedModule = serial.getModules()[m].testResults;
+            ClassifierResults module = threaded.getModules()[m].testResults;
+            Assert.assertEquals(expectedModule.getProbabilityDistributions().size(), module.getProbabilityDistributions().size());
+            for (int i = 0; i < expected.length; i++)
+                Assert.assertArrayEquals(expectedModule.getProbabilityDistribution(i), module.getProbabilityDistribution(i), 0);
+        }
+        Assert.assertEquals(expected.length, threaded.getTestResults().getPredictionTimes().size());
+    }
+
+    @Test
+    public void testEvaluatorUsesBatch() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+
+        ClassifierResults expected = new SingleTestSetEvaluator(0, true, true).evaluate(buildCAWPE(data[0], 1), data[1]);
+        ClassifierResults results = new SingleTestSetEvaluator(0, true, true).evaluate(buildCAWPE(data[0], 2), data[1]);
+
+        Assert.assertEquals(expected.getAcc(), results.getAcc(), 0);
+        Assert.assertArrayEquals(expected.getPredClassValsAsArray(), results.getPredClassValsAsArray(), 0);
+        Assert.assertArrayEquals(expected.getTrueClassValsAsArray(), results.getTrueClassValsAsArray(), 0);
+    }
+}
@@ -107,7 +107,7 @@ public abstract class BestIndividual extends ModuleVotingScheme {
 
     @Override
     public double[] distributionForInstance(EnsembleModule[] modules, Instance testInstance) throws Exception {
-        return modules[bestModule].getClassifier().distributionForInstance(testInstance);
+        return moduleDistribution(modules[bestModule], testInstance);
     }
     
 }
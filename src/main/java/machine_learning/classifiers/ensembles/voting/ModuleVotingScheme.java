@@ -36,6 +36,12 @@ public abstract class ModuleVotingScheme implements DebugPrinting, Serializable
     protected int numClasses;  
     public boolean needTrainPreds = false;
     
+    //distributions of each module for the instance about to be classified, if already
+    //found as part of a batch of test instances
+    private transient EnsembleModule[] batchModules;
+    private transient double[][] batchDists;
+    private transient long[] batchPredTimes;
+    
     public void trainVotingScheme(EnsembleModule[] modules, int numClasses) throws Exception {
         this.numClasses = numClasses;
     }
@@ -108,10 +114,52 @@ public abstract class ModuleVotingScheme implements DebugPrinting, Serializable
         return dist;
     }
     
+    /**
+     * Sets the distributions already found by each module for the next instance to be classified, so that 
+     * distributionForInstance(...) uses these instead of asking the modules' classifiers again. Pass nulls 
+     * to clear. 
+     * 
+     * @param dists [module][class] distributions
+     * @param predTimes time taken by each module to find its distribution, in nanoseconds
+     */
+    public void setBatchDistributions(EnsembleModule[] modules, double[][] dists, long[] predTimes) {
+        this.batchModules = modules;
+        this.batchDists = dists;
+        this.batchPredTimes = predTimes;
+    }
+    
+    private int batchIndex(EnsembleModule module) {
+        if (batchModules != null)
+            for (int m = 0; m < batchModules.length; m++)
+                if (batchModules[m] == module)
+                    return m;
+        return -1;
+    }
+    
+    /**
+     * @return the distribution of the given module for the current instance, from the current batch if one 
+     * has been set, else from its classifier
+     */
+    protected double[] moduleDistribution(EnsembleModule module, Instance inst) throws Exception {
+        int m = batchIndex(module);
+        if (m != -1)
+            return batchDists[m];
+        return module.getClassifier().distributionForInstance(inst);
+    }
+    
     protected double[] distributionForNewInstance(EnsembleModule module, Instance inst) throws Exception {
-        long startTime = System.nanoTime();
-        double[] dist = module.getClassifier().distributionForInstance(inst);
-        long predTime = System.nanoTime() - startTime;
+        double[] dist;
+        long predTime;
+        int m = batchIndex(module);
+        if (m != -1) {
+            dist = batchDists[m];
+            predTime = batchPredTimes[m];
+        }
+        else {
+            long startTime = System.nanoTime();
+            dist = module.getClassifier().distributionForInstance(inst);
+            predTime = System.nanoTime() - startTime;
+        }
 
         storeModuleTestResult(module, dist, predTime);
         
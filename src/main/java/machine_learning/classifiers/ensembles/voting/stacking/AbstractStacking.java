@@ -120,11 +120,7 @@ public abstract class AbstractStacking extends ModuleVotingScheme {
         double[][] dists = new double[modules.length][];
         
         for(int m = 0; m < modules.length; m++){
-            long startTime = System.nanoTime();
-            dists[m] = modules[m].getClassifier().distributionForInstance(testInstance);
-            long predTime = System.nanoTime() - startTime;
-            
-            storeModuleTestResult(modules[m], dists[m], predTime);
+            dists[m] = distributionForNewInstance(modules[m], testInstance);
             
             for (int c = 0; c < numClasses; c++) 
                 dists[m][c] *= modules[m].priorWeight * modules[m].posteriorWeights[c];
@@ -36,6 +36,7 @@ import java.util.Arrays;
 
 import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.Checkpointable;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import machine_learning.classifiers.SaveEachParameter;
 import tsml.classifiers.Tuneable;
@@ -64,7 +65,7 @@ import tsml.classifiers.Tuneable;
  * @author James Large (james.large@uea.ac.uk)
  */
 public class TunedClassifier extends EnhancedAbstractClassifier 
-        implements SaveEachParameter,ParameterSplittable,Checkpointable, TrainTimeContractable {
+        implements SaveEachParameter,ParameterSplittable,Checkpointable, TrainTimeContractable, MultiThreadable {
 
     ParameterSpace space = null;
     Tuner tuner = null;
@@ -86,6 +87,9 @@ public class TunedClassifier extends EnhancedAbstractClassifier
     
     boolean PS_parameterSplitting = false; //ParameterSplittable
     int PS_paraSetID = -1; //ParameterSplittable
+    
+    int numThreads = 1; //MultiThreadable
+    boolean multiThreadingSet = false; //MultiThreadable
     ////////// end interface variables
 
     /**
@@ -397,6 +401,12 @@ public class TunedClassifier extends EnhancedAbstractClassifier
         return tuner.withinTrainContract(start);
     }
 
+
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = numThreads;
+        this.multiThreadingSet = true;
+    }
     
     /**
      * To be called at start of buildClassifier
@@ -411,5 +421,9 @@ public class TunedClassifier extends EnhancedAbstractClassifier
         
         if (trainTimeContract)
             tuner.setTrainTimeLimit(this.trainContractTimeNanos);
+        
+        //passed on even when 1, to turn off threading enabled by an earlier call
+        if (multiThreadingSet)
+            tuner.enableMultiThreading(numThreads);
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers;
+
+import utilities.KryoSerialisation;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append only checkpoint file for classifiers which build an ensemble one member at a time. Each checkpoint appends a
+ * segment holding only the members built since the last one, plus a snapshot of the rest of the classifiers state
+ * needed to resume. Loading concatenates the members of every segment and returns the state from the last.
+ *
+ * The state is serialised on the calling thread when append is called, so it is consistent with the members passed.
+ * The members, which must not be changed once appended, are serialised and written on a background thread so the
+ * build can carry on. Segments are length prefixed and checksummed, a segment cut short by the process being killed
+ * mid write is ignored on load along with anything after it.
+ *
+ * Objects are written with Kryo if KryoSerialisation is enabled, otherwise with gzipped Java serialisation.
+ */
+public class CheckpointLog implements Closeable {
+
+    private final File file;
+
+    private ExecutorService writer;
+    private final LinkedList<Future<?>> pending = new LinkedList<>();
+
+    public CheckpointLog(String filename) {
+        this.file = new File(filename);
+    }
+
+    public boolean exists() {
+        return file.exists() && file.length() > 0;
+    }
+
+    /**
+     * Queue a segment to be appended to the log.
+     *
+     * @param members ensemble members built since the last append
+     * @param state   everything else needed to resume the build, serialised before this returns
+     */
+    public synchronized void append(List<? extends Serializable> members, Serializable state) throws IOException {
+        checkFailures();
+
+        byte[] stateBytes = serialise(state);
+        ArrayList<Serializable> newMembers = new ArrayList<>(members);
+
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "CheckpointLog-" + file.getName());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        pending.add(writer.submit(() -> {
+            write(serialise(newMembers), stateBytes);
+            return null;
+        }));
+    }
+
+    /**
+     * Wait for all queued segments to be written.
+     *
+     * @throws IOException if any write failed
+     */
+    public synchronized void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            waitFor(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Flush then stop the writer thread.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (writer != null) {
+                writer.shutdown();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Delete the log, waiting for any queued writes first.
+     */
+    public synchronized boolean delete() throws IOException {
+        flush();
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * Read back all complete segments.
+     *
+     * @return the members of every segment in order and the state from the last, or null if there are no complete
+     * segments
+     */
+    public synchronized Contents load() throws Exception {
+        flush();
+
+        ArrayList<Object> members = new ArrayList<>();
+        Object state = null;
+        long validLength = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] memberBytes, stateBytes;
+                try {
+                    int memberLength = in.readInt();
+                    int stateLength = in.readInt();
+                    long checksum = in.readLong();
+                    if (memberLength < 0 || stateLength < 0)
+                        break;
+
+                    memberBytes = new byte[memberLength];
+                    stateBytes = new byte[stateLength];
+                    in.readFully(memberBytes);
+                    in.readFully(stateBytes);
+
+                    if (checksum(memberBytes, stateBytes) != checksum)
+                        break;
+                } catch (EOFException e) {
+                    break;
+                }
+
+                members.addAll((List<?>) deserialise(memberBytes));
+                state = deserialise(stateBytes);
+                validLength += 16 + memberBytes.length + stateBytes.length;
+            }
+        }
+
+        //drop a torn tail so new segments follow the last complete one
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+
+        return state == null ? null : new Contents(members, state);
+    }
+
+    //Rethrow the failure of any finished write, without waiting on those still queued. Writes finish in order
+    private void checkFailures() throws IOException {
+        while (!pending.isEmpty() && pending.getFirst().isDone()) {
+            waitFor(pending.removeFirst());
+        }
+    }
+
+    private void waitFor(Future<?> f) throws IOException {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            pending.clear();
+            throw new IOException("Failed to write checkpoint to " + file, e.getCause());
+        }
+    }
+
+    private void write(byte[] memberBytes, byte[] stateBytes) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file, true);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(memberBytes.length);
+            out.writeInt(stateBytes.length);
+            out.writeLong(checksum(memberBytes, stateBytes));
+            out.write(memberBytes);
+            out.write(stateBytes);
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    private static long checksum(byte[] memberBytes, byte[] stateBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(memberBytes);
+        crc.update(stateBytes);
+        return crc.getValue();
+    }
+
+    private static byte[] serialise(Object obj) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        if (KryoSerialisation.isEnabled()) {
+            KryoSerialisation.writeObject(obj, bos);
+        } else {
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bos))) {
+                out.writeObject(obj);
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static Object deserialise(byte[] bytes) throws IOException, ClassNotFoundException {
+        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+        if (KryoSerialisation.isKryoStream(bis))
+            return KryoSerialisation.readObject(bis);
+
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(bis))) {
+            return in.readObject();
+        }
+    }
+
+    public static class Contents {
+        private final List<Object> members;
+        private final Object state;
+
+        private Contents(List<Object> members, Object state) {
+            this.members = members;
+            this.state = state;
+        }
+
+        public List<Object> getMembers() {
+            return members;
+        }
+
+        public Object getState() {
+            return state;
+        }
+    }
+}
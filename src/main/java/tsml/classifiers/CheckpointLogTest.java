@@ -0,0 +1,130 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers;
+
+import experiments.data.DatasetLoading;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.interval_based.DrCIF;
+import utilities.KryoSerialisation;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CheckpointLogTest {
+
+    @After
+    public void disable() {
+        KryoSerialisation.setEnabled(false);
+    }
+
+    @Test
+    public void testAppendAndLoad() throws Exception {
+        for (boolean kryo : new boolean[] { false, true }) {
+            KryoSerialisation.setEnabled(kryo);
+            File file = tempFile();
+
+            try (CheckpointLog log = new CheckpointLog(file.getPath())) {
+                Assert.assertFalse(log.exists());
+                log.append(Arrays.asList(0, 1, 2), "first");
+                log.append(Collections.emptyList(), "second");
+                log.append(Arrays.asList(3, 4), "third");
+            }
+
+            CheckpointLog.Contents contents = new CheckpointLog(file.getPath()).load();
+            Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), contents.getMembers());
+            Assert.assertEquals("third", contents.getState());
+        }
+    }
+
+    @Test
+    public void testTornTailIgnored() throws Exception {
+        File file = tempFile();
+        CheckpointLog log = new CheckpointLog(file.getPath());
+        log.append(Arrays.asList("a", "b"), 1);
+        log.append(Collections.singletonList("c"), 2);
+        log.flush();
+        long length = file.length();
+
+        //a segment cut short part way through its members
+        log.append(Arrays.asList("d", "e"), 3);
+        log.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+
+        log = new CheckpointLog(file.getPath());
+        CheckpointLog.Contents contents = log.load();
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), contents.getMembers());
+        Assert.assertEquals(2, contents.getState());
+        Assert.assertEquals(length, file.length());
+
+        log.append(Collections.singletonList("f"), 4);
+        contents = log.load();
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "f"), contents.getMembers());
+        Assert.assertEquals(4, contents.getState());
+        log.close();
+    }
+
+    @Test
+    public void testDrCIFResume() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        File dir = Files.createTempDirectory("checkpoint").toFile();
+        File file = new File(dir, "DrCIF0.log");
+        file.deleteOnExit();
+        dir.deleteOnExit();
+
+        DrCIF full = new DrCIF();
+        full.setSeed(0);
+        full.setNumTrees(150);
+        full.setCheckpointPath(dir.getPath() + File.separator);
+        full.buildClassifier(data[0]);
+
+        //keep only the checkpoint made after 100 trees, as if killed before the end of the build
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long segment = 16 + in.readInt() + in.readInt();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(segment);
+            }
+        }
+        Assert.assertEquals(100, new CheckpointLog(file.getPath()).load().getMembers().size());
+
+        DrCIF resumed = new DrCIF();
+        resumed.setSeed(0);
+        resumed.setNumTrees(150);
+        resumed.setCheckpointPath(dir.getPath() + File.separator);
+        resumed.buildClassifier(data[0]);
+
+        for (Instance i : data[1]) {
+            Assert.assertArrayEquals(full.distributionForInstance(i), resumed.distributionForInstance(i), 0);
+        }
+        Assert.assertEquals(150, new CheckpointLog(file.getPath()).load().getMembers().size());
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("checkpoint", ".log");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+}
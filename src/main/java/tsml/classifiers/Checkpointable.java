@@ -18,6 +18,7 @@
 package tsml.classifiers;
 
 import utilities.FileUtils;
+import utilities.KryoSerialisation;
 
 import java.io.*;
 import java.util.concurrent.TimeUnit;
@@ -54,22 +55,36 @@ public interface Checkpointable extends Serializable {
      */
     default boolean setCheckpointTimeHours(int t){ return false;};
 
-    //Override both if not using Java serialisation
+    //Override both if not using Java serialisation. Written with Kryo if KryoSerialisation is enabled, either format
+    //is read back
     default void saveToFile(String filename) throws Exception {
         try (FileUtils.FileLock fileLocker = new FileUtils.FileLock(filename);
-             FileOutputStream fos = new FileOutputStream(fileLocker.getFile());
-             GZIPOutputStream gos = new GZIPOutputStream(fos);
-             ObjectOutputStream out = new ObjectOutputStream(gos)) {
-            out.writeObject(this);
+             FileOutputStream fos = new FileOutputStream(fileLocker.getFile())) {
+            if (KryoSerialisation.isEnabled()) {
+                try (BufferedOutputStream bos = new BufferedOutputStream(fos)) {
+                    KryoSerialisation.writeObject(this, bos);
+                }
+            } else {
+                try (GZIPOutputStream gos = new GZIPOutputStream(fos);
+                     ObjectOutputStream out = new ObjectOutputStream(gos)) {
+                    out.writeObject(this);
+                }
+            }
         }
     }
     default void loadFromFile(String filename) throws Exception{
         Object obj = null;
         try (FileUtils.FileLock fileLocker = new FileUtils.FileLock(filename);
              FileInputStream fis = new FileInputStream(fileLocker.getFile());
-             GZIPInputStream gis = new GZIPInputStream(fis);
-             ObjectInputStream in = new ObjectInputStream(gis)) {
-            obj = in.readObject();
+             BufferedInputStream bis = new BufferedInputStream(fis)) {
+            if (KryoSerialisation.isKryoStream(bis)) {
+                obj = KryoSerialisation.readObject(bis);
+            } else {
+                try (GZIPInputStream gis = new GZIPInputStream(bis);
+                     ObjectInputStream in = new ObjectInputStream(gis)) {
+                    obj = in.readObject();
+                }
+            }
         }
         if(obj != null) {
             copyFromSerObject(obj);
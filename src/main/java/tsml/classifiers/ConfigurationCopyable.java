@@ -0,0 +1,40 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers;
+
+import weka.classifiers.Classifier;
+
+/**
+ * For classifiers which can create a new untrained copy of themselves from their parameters alone, without the
+ * serialisation round trip of AbstractClassifier.makeCopy. Any trained model or training data held by the classifier
+ * is not copied, and unchanging parameter objects such as base classifier templates and functions may be shared
+ * between copies.
+ *
+ * Evaluators, tuners and ensembles should copy through ClassifierTools.makeCopy, which uses this where available and
+ * falls back to AbstractClassifier.makeCopy otherwise.
+ */
+public interface ConfigurationCopyable {
+
+    /**
+     * Create a new untrained classifier with the same parameters as this one.
+     *
+     * @return untrained copy of this classifier
+     * @throws Exception unable to create the copy
+     */
+    Classifier copyConfiguration() throws Exception;
+}
@@ -507,6 +507,23 @@ abstract public class EnhancedAbstractClassifier extends AbstractClassifier impl
         this.classifierName = classifierName;
     }
 
+    /**
+     * Copies the parameters held by EnhancedAbstractClassifier from other into this, for use by ConfigurationCopyable
+     * classifiers. Nothing from a trained classifier is copied, the random number generator is reset from the seed.
+     *
+     * @param other classifier to copy parameters from
+     */
+    protected void copyConfigurationFrom(EnhancedAbstractClassifier other) {
+        seed = other.seed;
+        seedClassifier = other.seedClassifier;
+        rand = new Random(seed);
+        classifierName = other.classifierName;
+        estimateOwnPerformance = other.estimateOwnPerformance;
+        trainEstimateMethod = other.trainEstimateMethod;
+        m_Debug = other.m_Debug;
+        setDebug(other.debug);
+    }
+
     public void setDebug(boolean b){
         debug=b;
     }
@@ -17,9 +17,14 @@
  
 package tsml.classifiers;
 
+import utilities.SharedComputePool;
+
 /**
  * Interface that allows the user to allow a classifier to use multiple threads, how this happens is determined by the
  * classifier. Exact API for this and how threading is handled codebase-wide is still to be decided 02/08/2019
+ *
+ * Classes should run their threaded work through getSharedExecutor(numThreads) rather than starting thread pools of
+ * their own, so that all classes running at once share the cores given by setSharedPoolSize.
  * 
  * Known classifiers: AbstractEnsemble, BOSS, cBOSS, BOSSIndividual, MultiSamplingEvaluator
  * 
@@ -39,4 +44,24 @@ public interface MultiThreadable {
     default void enableMultiThreading() {
         enableMultiThreading(Runtime.getRuntime().availableProcessors()-1);
     }
+
+    /**
+     * Sets the number of threads in the pool shared by all multithreaded classes, by default the number of available
+     * processors. A class enabled with more threads than this will only run this many tasks at once.
+     */
+    static void setSharedPoolSize(int numThreads) {
+        SharedComputePool.setParallelism(numThreads);
+    }
+
+    static int getSharedPoolSize() {
+        return SharedComputePool.getParallelism();
+    }
+
+    /**
+     * @return executor for a single class running at most numThreads of its tasks at once on the shared pool, which
+     * also records the CPU time used by its tasks
+     */
+    static SharedComputePool.ComponentExecutor getSharedExecutor(int numThreads) {
+        return SharedComputePool.getExecutor(numThreads);
+    }
 }
@@ -17,6 +17,7 @@
  
 package tsml.classifiers.dictionary_based;
 
+import com.carrotsearch.hppc.IntIntHashMap;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import weka.classifiers.AbstractClassifier;
@@ -28,7 +29,6 @@ import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 /**
@@ -73,6 +73,9 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     protected int seed = 0;
     protected Random rand;
 
+    //index from word to the train bags containing it, built on first use
+    private transient InvertedIndex index;
+
     protected static final long serialVersionUID = 22551L;
 
     public IndividualBOSS(int wordLength, int alphabetSize, int windowSize, boolean normalise, boolean multiThread, int numThreads, ExecutorService ex) {
@@ -130,21 +133,159 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         this.numThreads = numThreads;
     }
 
-    public static class Bag extends HashMap<BitWordInt, Integer> {
+    //histogram of word => count. Words are counted in a primitive map while the bag is built, then packed into
+    //arrays sorted by word so that two bags can be compared in a single pass without boxing or hashing
+    public static class Bag implements Serializable {
         double classVal;
         protected static final long serialVersionUID = 22552L;
 
-        public Bag() {
-            super();
-        }
+        private int[] words = new int[0];
+        private int[] counts = new int[0];
+        private transient IntIntHashMap wordCounts;
+
+        public Bag() { }
 
         public Bag(int classValue) {
-            super();
             classVal = classValue;
         }
 
         public double getClassVal() { return classVal; }
         public void setClassVal(double classVal) { this.classVal = classVal; }
+
+        public void addWord(int word) {
+            if (wordCounts == null)
+                wordCounts = new IntIntHashMap();
+            wordCounts.addTo(word, 1);
+        }
+
+        /**
+         * Moves the words added since the last call into the sorted arrays used for distance calculations, must
+         * be called once the bag is built
+         */
+        public void pack() {
+            if (wordCounts == null)
+                return;
+
+            for (int i = 0; i < words.length; i++)
+                wordCounts.addTo(words[i], counts[i]);
+
+            words = wordCounts.keys().toArray();
+            Arrays.sort(words);
+            counts = new int[words.length];
+            for (int i = 0; i < words.length; i++)
+                counts[i] = wordCounts.get(words[i]);
+
+            wordCounts = null;
+        }
+
+        public int size() { return words.length; }
+        public int getWord(int i) { return words[i]; }
+        public int getCount(int i) { return counts[i]; }
+
+        public BitWordInt getBitWord(int i, int wordLength) {
+            BitWordInt word = new BitWordInt();
+            word.setWord(words[i]);
+            word.setLength((byte)wordLength);
+            return word;
+        }
+    }
+
+    /**
+     * Inverted index from each word in a set of bags to the bags containing it and their counts. Finding the
+     * nearest neighbour of a query bag only touches the bags sharing a word with it, rather than comparing the query
+     * to every bag in turn.
+     */
+    private static class InvertedIndex {
+        private final int numBags;
+
+        private final int[] words;
+        private final int[] offsets;
+        private final int[] postingBags;
+        private final int[] postingCounts;
+
+        InvertedIndex(List<Bag> bags) {
+            numBags = bags.size();
+
+            //number of bags containing each word
+            IntIntHashMap frequency = new IntIntHashMap();
+            int numPostings = 0;
+            for (Bag bag : bags) {
+                for (int word : bag.words)
+                    frequency.addTo(word, 1);
+                numPostings += bag.words.length;
+            }
+
+            words = frequency.keys().toArray();
+            Arrays.sort(words);
+
+            offsets = new int[words.length + 1];
+            for (int i = 0; i < words.length; i++)
+                offsets[i + 1] = offsets[i] + frequency.get(words[i]);
+
+            postingBags = new int[numPostings];
+            postingCounts = new int[numPostings];
+            int[] next = Arrays.copyOf(offsets, words.length);
+            for (int i = 0; i < numBags; i++) {
+                Bag bag = bags.get(i);
+                for (int n = 0; n < bag.words.length; n++) {
+                    int k = Arrays.binarySearch(words, bag.words[n]);
+                    postingBags[next[k]] = i;
+                    postingCounts[next[k]++] = bag.counts[n];
+                }
+            }
+        }
+
+        /**
+         * Finds the nearest neighbour of the query bag, with the same result as comparing it to every indexed bag
+         * in order using BOSSdistance.
+         *
+         * @param exclude index of a bag to skip, i.e. for leave-one-out, or -1
+         * @return index of the nearest bag, or -1 if there are no other bags
+         */
+        int nearestNeighbour(Bag query, int exclude) {
+            //the distance to a bag is the distance to an empty bag plus the difference for each shared word
+            long[] corrections = new long[numBags];
+            long emptyDist = 0;
+
+            int from = 0;
+            for (int i = 0; i < query.words.length; i++) {
+                int valA = query.counts[i];
+                emptyDist += valA*valA;
+
+                int k = Arrays.binarySearch(words, from, words.length, query.words[i]);
+                if (k < 0) {
+                    from = -k - 1;
+                    continue;
+                }
+                from = k;
+
+                for (int p = offsets[k]; p < offsets[k + 1]; p++) {
+                    int valB = postingCounts[p];
+                    corrections[postingBags[p]] += (valA-valB)*(valA-valB) - valA*valA;
+                }
+            }
+
+            double bestDist = Double.MAX_VALUE;
+            int nn = -1;
+            for (int i = 0; i < numBags; i++) {
+                if (i == exclude)
+                    continue;
+
+                double dist = emptyDist + corrections[i];
+                if (dist < bestDist) {
+                    bestDist = dist;
+                    nn = i;
+                }
+            }
+
+            return nn;
+        }
+    }
+
+    private synchronized InvertedIndex getIndex() {
+        if (index == null)
+            index = new InvertedIndex(bags);
+        return index;
     }
 
     public int getWindowSize() { return windowSize; }
@@ -406,14 +547,12 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
             if (numerosityReduction && word.equals(lastWord))
                 continue;
 
-            Integer val = bag.get(word);
-            if (val == null)
-                val = 0;
-            bag.put(word, ++val);
+            bag.addWord(word.getWord().intValue());
 
             lastWord = word;
         }
 
+        bag.pack();
         return bag;
     }
 
@@ -489,25 +628,25 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
      */
     protected Bag createBagFromWords(int thisWordLength, BitWordInt[] words) {
         Bag bag = new Bag();
-        BitWordInt lastWord = new BitWordInt();
+        int lastWord = 0;
+
+        //equivalent to BitWordInt.shorten(), without copying every word to shorten it
+        int shift = wordLength != thisWordLength ? (BitWordInt.MAX_LENGTH-thisWordLength)*BitWordInt.BITS_PER_LETTER
+                : 0;
 
         for (BitWordInt w : words) {
-            BitWordInt word = new BitWordInt(w);
-            if (wordLength != thisWordLength)
-                word.shorten(BitWordInt.MAX_LENGTH-thisWordLength);
+            int word = w.getWord().intValue() >>> shift;
 
             //add to bag, unless num reduction applies
-            if (numerosityReduction && word.equals(lastWord))
+            if (numerosityReduction && word == lastWord)
                 continue;
 
-            Integer val = bag.get(word);
-            if (val == null)
-                val = 0;
-            bag.put(word, ++val);
+            bag.addWord(word);
 
             lastWord = word;
         }
 
+        bag.pack();
         return bag;
     }
 
@@ -528,11 +667,12 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         breakpoints = MCB(data); //breakpoints to be used for making sfa words for train AND test data
         SFAwords = new BitWordInt[data.numInstances()][];
         bags = new ArrayList<>(data.numInstances());
+        index = null;
         rand = new Random(seed);
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = MultiThreadable.getSharedExecutor(numThreads);
 
             ArrayList<Future<Bag>> futures = new ArrayList<>(data.numInstances());
 
@@ -572,12 +712,15 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     public double BOSSdistance(Bag instA, Bag instB, double bestDist) {
         double dist = 0.0;
 
-        //find dist only from values in instA
-        for (Map.Entry<BitWordInt, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null)
-                valB = 0;
+        //find dist only from values in instA, both bags are sorted by word so B is walked alongside A
+        int b = 0;
+        for (int a = 0; a < instA.words.length; a++) {
+            int word = instA.words[a];
+            while (b < instB.words.length && instB.words[b] < word)
+                b++;
+
+            int valA = instA.counts[a];
+            int valB = b < instB.words.length && instB.words[b] == word ? instB.counts[b] : 0;
             dist += (valA-valB)*(valA-valB);
 
             if (dist > bestDist)
@@ -592,19 +735,9 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         IndividualBOSS.Bag testBag = BOSSTransform(instance);
 
         //1NN BOSS distance
-        double bestDist = Double.MAX_VALUE;
-        double nn = -1;
-
-        for (int i = 0; i < bags.size(); ++i) {
-            double dist = BOSSdistance(testBag, bags.get(i), bestDist);
+        int nn = getIndex().nearestNeighbour(testBag, -1);
 
-            if (dist < bestDist) {
-                bestDist = dist;
-                nn = bags.get(i).getClassVal();
-            }
-        }
-
-        return nn;
+        return nn == -1 ? -1 : bags.get(nn).getClassVal();
     }
 
     /**
@@ -618,23 +751,10 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     public double classifyInstance(int testIndex) throws Exception{
         IndividualBOSS.Bag testBag = bags.get(testIndex);
 
-        //1NN BOSS distance
-        double bestDist = Double.MAX_VALUE;
-        double nn = -1;
-
-        for (int i = 0; i < bags.size(); ++i) {
-            if (i == testIndex) //skip 'this' one, leave-one-out
-                continue;
-
-            double dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-            if (dist < bestDist) {
-                bestDist = dist;
-                nn = bags.get(i).getClassVal();
-            }
-        }
+        //1NN BOSS distance, skipping 'this' one, leave-one-out
+        int nn = getIndex().nearestNeighbour(testBag, testIndex);
 
-        return nn;
+        return nn == -1 ? -1 : bags.get(nn).getClassVal();
     }
 
     public class TestNearestNeighbourThread implements Callable<Double>{
@@ -649,19 +769,9 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
             IndividualBOSS.Bag testBag = BOSSTransform(inst);
 
             //1NN BOSS distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = -1;
-
-            for (int i = 0; i < bags.size(); ++i) {
-                double dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bags.get(i).getClassVal();
-                }
-            }
+            int nn = getIndex().nearestNeighbour(testBag, -1);
 
-            return nn;
+            return nn == -1 ? -1 : bags.get(nn).getClassVal();
         }
     }
 
@@ -676,23 +786,10 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         public Double call() {
             IndividualBOSS.Bag testBag = bags.get(testIndex);
 
-            //1NN BOSS distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = -1;
+            //1NN BOSS distance, skipping 'this' one, leave-one-out
+            int nn = getIndex().nearestNeighbour(testBag, testIndex);
 
-            for (int i = 0; i < bags.size(); ++i) {
-                if (i == testIndex) //skip 'this' one, leave-one-out
-                    continue;
-
-                double dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bags.get(i).getClassVal();
-                }
-            }
-
-            return nn;
+            return nn == -1 ? -1 : bags.get(nn).getClassVal();
         }
     }
 
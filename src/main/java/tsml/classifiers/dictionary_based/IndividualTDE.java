@@ -33,6 +33,7 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.UnassignedClassException;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -74,8 +75,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     protected boolean cleanAfterBuild = false;
     protected int seriesLength;
 
-    //feature selection
-    private ObjectHashSet<SerialisableComparablePair<BitWord, Byte>> chiSquare;
+    //feature selection, bag of the features kept
+    private Bag chiSquare;
     protected int chiLimit = 2;
 
     protected int ensembleID = -1;
@@ -92,6 +93,9 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     private int lastNNIdx;
     private Bag lastNNBag;
 
+    //index from word to the train bags containing it, built on first use
+    private transient InvertedIndex index;
+
     private static final long serialVersionUID = 2L;
 
     public IndividualTDE(int wordLength, int alphabetSize, int windowSize, boolean normalise, int levels, boolean IGB,
@@ -171,21 +175,287 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         this.numThreads = numThreads;
     }
 
-    //map of <word, level> => count
-    public static class Bag extends HashMap<SerialisableComparablePair<BitWord, Byte>, Integer> {
+    //histogram of <word, level> => count, bigrams have a level of -1. Words are counted in primitive maps while
+    //the bag is built, then packed into arrays sorted by key so that two bags can be compared in a single pass
+    //without boxing or hashing. Bigrams come first keyed by the bigram word, followed by unigrams keyed by their
+    //level in the upper 32 bits and word in the lower 32 bits
+    public static class Bag implements Serializable {
         private int classVal;
 
-        public Bag() {
-            super();
-        }
+        private long[] keys = new long[0];
+        private int[] counts = new int[0];
+        private int numBigrams = 0;
+        private transient LongIntHashMap unigramCounts, bigramCounts;
+
+        private static final long serialVersionUID = 1L;
+
+        public Bag() { }
 
         public Bag(int classValue) {
-            super();
             classVal = classValue;
         }
 
         public int getClassVal() { return classVal; }
         public void setClassVal(int classVal) { this.classVal = classVal; }
+
+        public void addWord(int word, byte level) {
+            addWord(word, level, 1);
+        }
+
+        private void addWord(int word, byte level, int count) {
+            if (unigramCounts == null)
+                unigramCounts = new LongIntHashMap();
+            unigramCounts.addTo(((long)level << 32) | (word & 0xFFFFFFFFL), count);
+        }
+
+        public void addBigram(long bigram) {
+            addBigram(bigram, 1);
+        }
+
+        private void addBigram(long bigram, int count) {
+            if (bigramCounts == null)
+                bigramCounts = new LongIntHashMap();
+            bigramCounts.addTo(bigram, count);
+        }
+
+        /**
+         * Moves the words added since the last call into the sorted arrays used for distance calculations, must
+         * be called once the bag is built
+         */
+        public void pack() {
+            if (unigramCounts == null && bigramCounts == null)
+                return;
+
+            for (int i = 0; i < keys.length; i++) {
+                if (i < numBigrams)
+                    addBigram(keys[i], counts[i]);
+                else
+                    addWord((int)keys[i], (byte)(keys[i] >> 32), counts[i]);
+            }
+
+            long[] bigrams = bigramCounts == null ? new long[0] : bigramCounts.keys().toArray();
+            long[] unigrams = unigramCounts == null ? new long[0] : unigramCounts.keys().toArray();
+            Arrays.sort(bigrams);
+            Arrays.sort(unigrams);
+
+            numBigrams = bigrams.length;
+            keys = new long[bigrams.length + unigrams.length];
+            counts = new int[keys.length];
+            for (int i = 0; i < bigrams.length; i++) {
+                keys[i] = bigrams[i];
+                counts[i] = bigramCounts.get(bigrams[i]);
+            }
+            for (int i = 0; i < unigrams.length; i++) {
+                keys[numBigrams + i] = unigrams[i];
+                counts[numBigrams + i] = unigramCounts.get(unigrams[i]);
+            }
+
+            unigramCounts = null;
+            bigramCounts = null;
+        }
+
+        public int size() { return keys.length; }
+        public int getCount(int i) { return counts[i]; }
+        public byte getLevel(int i) { return i < numBigrams ? -1 : (byte)(keys[i] >> 32); }
+        public long getWord(int i) { return i < numBigrams ? keys[i] : (int)keys[i]; }
+
+        public BitWord getBitWord(int i, int wordLength) {
+            BitWord word;
+            if (i < numBigrams) {
+                word = new BitWordLong();
+                word.setLength((byte)32);
+            }
+            else {
+                word = new BitWordInt();
+                word.setLength((byte)wordLength);
+            }
+            word.setWord(getWord(i));
+            return word;
+        }
+
+        /**
+         * @return position of the first key at or after from that is not ordered before key i of the other bag
+         */
+        private int seek(int from, Bag other, int i) {
+            long key = other.keys[i];
+            int end;
+            if (i < other.numBigrams) {
+                end = numBigrams;
+            }
+            else {
+                end = keys.length;
+                if (from < numBigrams)
+                    from = numBigrams;
+            }
+
+            while (from < end && keys[from] < key)
+                from++;
+            return from;
+        }
+
+        /**
+         * @return whether position j of this bag, as found by seek(), holds key i of the other bag
+         */
+        private boolean matches(int j, Bag other, int i) {
+            int end = i < other.numBigrams ? numBigrams : keys.length;
+            return j < end && keys[j] == other.keys[i];
+        }
+
+        /**
+         * @return new bag containing only the words of this bag which are also in the passed bag
+         */
+        private Bag retain(Bag features) {
+            Bag bag = new Bag(classVal);
+            bag.keys = new long[keys.length];
+            bag.counts = new int[keys.length];
+
+            int n = 0, f = 0;
+            for (int i = 0; i < keys.length; i++) {
+                f = features.seek(f, this, i);
+                if (features.matches(f, this, i)) {
+                    if (i < numBigrams)
+                        bag.numBigrams++;
+                    bag.keys[n] = keys[i];
+                    bag.counts[n++] = counts[i];
+                }
+            }
+
+            bag.keys = Arrays.copyOf(bag.keys, n);
+            bag.counts = Arrays.copyOf(bag.counts, n);
+            return bag;
+        }
+    }
+
+    /**
+     * Inverted index from each word in a set of bags to the bags containing it and their counts. Finding the
+     * nearest neighbour of a query bag only touches the bags sharing a word with it, rather than comparing the query
+     * to every bag in turn.
+     *
+     * Keys are ordered as in Bag, postings for each key are ordered by bag index.
+     */
+    private static class InvertedIndex {
+        private final int numBags;
+
+        private final long[] keys;
+        private final int numBigrams;
+        private final int[] offsets;
+        private final int[] postingBags;
+        private final int[] postingCounts;
+
+        InvertedIndex(List<Bag> bags) {
+            numBags = bags.size();
+
+            //number of bags containing each word
+            LongIntHashMap bigramFrequency = new LongIntHashMap();
+            LongIntHashMap unigramFrequency = new LongIntHashMap();
+            int numPostings = 0;
+            for (int i = 0; i < numBags; i++) {
+                Bag bag = bags.get(i);
+                for (int n = 0; n < bag.keys.length; n++) {
+                    if (n < bag.numBigrams)
+                        bigramFrequency.addTo(bag.keys[n], 1);
+                    else
+                        unigramFrequency.addTo(bag.keys[n], 1);
+                }
+                numPostings += bag.keys.length;
+            }
+
+            long[] bigrams = bigramFrequency.keys().toArray();
+            long[] unigrams = unigramFrequency.keys().toArray();
+            Arrays.sort(bigrams);
+            Arrays.sort(unigrams);
+
+            numBigrams = bigrams.length;
+            keys = new long[bigrams.length + unigrams.length];
+            System.arraycopy(bigrams, 0, keys, 0, bigrams.length);
+            System.arraycopy(unigrams, 0, keys, numBigrams, unigrams.length);
+
+            offsets = new int[keys.length + 1];
+            for (int i = 0; i < keys.length; i++) {
+                offsets[i + 1] = offsets[i] + (i < numBigrams ? bigramFrequency.get(keys[i])
+                        : unigramFrequency.get(keys[i]));
+            }
+
+            postingBags = new int[numPostings];
+            postingCounts = new int[numPostings];
+            int[] next = Arrays.copyOf(offsets, keys.length);
+            for (int i = 0; i < numBags; i++) {
+                Bag bag = bags.get(i);
+                for (int n = 0; n < bag.keys.length; n++) {
+                    int k = indexOf(bag, n, 0);
+                    postingBags[next[k]] = i;
+                    postingCounts[next[k]++] = bag.counts[n];
+                }
+            }
+        }
+
+        /**
+         * @return position of key i of the bag in this index searching from position from, or a negative value if
+         * it is not present
+         */
+        private int indexOf(Bag bag, int i, int from) {
+            if (i < bag.numBigrams)
+                return Arrays.binarySearch(keys, from, numBigrams, bag.keys[i]);
+            else
+                return Arrays.binarySearch(keys, Math.max(from, numBigrams), keys.length, bag.keys[i]);
+        }
+
+        /**
+         * Finds the nearest neighbour of the query bag, with the same result as comparing it to every indexed bag
+         * in order using histogramIntersection or BOSSdistance.
+         *
+         * @param exclude index of a bag to skip, i.e. for leave-one-out, or -1
+         * @return index of the nearest bag
+         */
+        int nearestNeighbour(Bag query, boolean histogramIntersection, int exclude) {
+            //similarity for histogram intersection. For BOSS distance, a query word missing from a bag is compared
+            //to a count of 1, so the distance is the distance to an empty bag plus the difference for each shared
+            //word
+            long[] scores = new long[numBags];
+            long emptyDist = 0;
+
+            int from = 0;
+            for (int i = 0; i < query.keys.length; i++) {
+                int valA = query.counts[i];
+                emptyDist += (valA-1)*(valA-1);
+
+                int k = indexOf(query, i, from);
+                if (k < 0) {
+                    from = -k - 1;
+                    continue;
+                }
+                from = k;
+
+                for (int p = offsets[k]; p < offsets[k + 1]; p++) {
+                    int valB = postingCounts[p];
+                    if (histogramIntersection)
+                        scores[postingBags[p]] += Math.min(valA, valB);
+                    else
+                        scores[postingBags[p]] += (valA-valB)*(valA-valB) - (valA-1)*(valA-1);
+                }
+            }
+
+            double bestDist = Double.MAX_VALUE;
+            int nn = 0;
+            for (int i = 0; i < numBags; i++) {
+                if (i == exclude)
+                    continue;
+
+                double dist = histogramIntersection ? -scores[i] : emptyDist + scores[i];
+                if (dist < bestDist) {
+                    bestDist = dist;
+                    nn = i;
+                }
+            }
+
+            return nn;
+        }
+    }
+
+    private synchronized InvertedIndex getIndex() {
+        if (index == null)
+            index = new InvertedIndex(bags);
+        return index;
     }
 
     public int getWindowSize() { return windowSize; }
@@ -560,22 +830,21 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     }
 
     private void trainChiSquared() {
-        // Chi2 Test
-        ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>> featureCount
-                = new ObjectIntHashMap<>(bags.get(0).size());
+        // Chi2 Test, the keys of bigrams and unigrams can overlap so they are counted separately
+        LongIntHashMap[] featureCount = { new LongIntHashMap(), new LongIntHashMap() };
         DoubleDoubleHashMap classProb = new DoubleDoubleHashMap(10);
-        DoubleObjectHashMap<ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>>> observed
-                = new DoubleObjectHashMap<>(bags.get(0).size());
+        DoubleObjectHashMap<LongIntHashMap[]> observed = new DoubleObjectHashMap<>(bags.get(0).size());
 
         // count number of samples with this word
         for (Bag bag : bags) {
             if (!observed.containsKey(bag.classVal)) {
-                observed.put(bag.classVal, new ObjectIntHashMap<>());
+                observed.put(bag.classVal, new LongIntHashMap[]{ new LongIntHashMap(), new LongIntHashMap() });
             }
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> word : bag.entrySet()) {
-                if (word.getValue() > 0) {
-                    featureCount.putOrAdd(word.getKey(), 1, 1);
-                    observed.get(bag.classVal).putOrAdd(word.getKey(), 1, 1);
+            for (int i = 0; i < bag.size(); i++) {
+                if (bag.counts[i] > 0) {
+                    int type = i < bag.numBigrams ? 0 : 1;
+                    featureCount[type].putOrAdd(bag.keys[i], 1, 1);
+                    observed.get(bag.classVal)[type].putOrAdd(bag.keys[i], 1, 1);
                 }
             }
 
@@ -583,42 +852,36 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         }
 
         // chi-squared: observed minus expected occurrence
-        chiSquare = new ObjectHashSet<>(featureCount.size());
+        chiSquare = new Bag();
         for (DoubleDoubleCursor classLabel : classProb) {
             classLabel.value /= bags.size();
             if (observed.get(classLabel.key) != null) {
-                ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>> observe = observed.get(classLabel.key);
-                for (ObjectIntCursor<SerialisableComparablePair<BitWord, Byte>> feature : featureCount) {
-                    double expected = classLabel.value * feature.value;
-                    double chi = observe.get(feature.key) - expected;
-                    double newChi = chi * chi / expected;
-                    if (newChi >= chiLimit && !chiSquare.contains(feature.key)) {
-                        chiSquare.add(feature.key);
+                LongIntHashMap[] observe = observed.get(classLabel.key);
+                for (int type = 0; type < 2; type++) {
+                    for (LongIntCursor feature : featureCount[type]) {
+                        double expected = classLabel.value * feature.value;
+                        double chi = observe[type].get(feature.key) - expected;
+                        double newChi = chi * chi / expected;
+                        if (newChi >= chiLimit) {
+                            if (type == 0)
+                                chiSquare.addBigram(feature.key);
+                            else
+                                chiSquare.addWord((int)feature.key, (byte)(feature.key >> 32));
+                        }
                     }
                 }
             }
         }
+        chiSquare.pack();
 
         // best elements above limit
         for (int i = 0; i < bags.size(); i++) {
-            Bag newBag = new Bag(bags.get(i).classVal);
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> cursor : bags.get(i).entrySet()) {
-                if (chiSquare.contains(cursor.getKey())) {
-                    newBag.put(cursor.getKey(), cursor.getValue());
-                }
-            }
-            bags.set(i, newBag);
+            bags.set(i, filterChiSquared(bags.get(i)));
         }
     }
 
     private Bag filterChiSquared(Bag bag) {
-        Bag newBag = new Bag(bag.classVal);
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> cursor : bag.entrySet()) {
-            if (chiSquare.contains(cursor.getKey())) {
-                newBag.put(cursor.getKey(), cursor.getValue());
-            }
-        }
-        return newBag;
+        return bag.retain(chiSquare);
     }
 
     /**
@@ -629,27 +892,24 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
      */
     private Bag createSPBagSingle(double[][] dfts) {
         Bag bag = new Bag();
-        BitWord lastWord = new BitWordInt();
-        BitWord[] words = new BitWord[dfts.length];
+        int lastWord = 0;
+        int[] words = new int[dfts.length];
 
         int wInd = 0;
         int trivialMatchCount = 0;
 
         for (double[] d : dfts) {
-            BitWord word = createWord(d);
+            int word = createWord(d).getWord().intValue();
             words[wInd] = word;
 
             if (useBigrams) {
                 if (wInd - windowSize >= 0) {
-                    BitWord bigram = new BitWordLong(words[wInd - windowSize], word);
-
-                    SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(bigram, (byte) -1);
-                    bag.merge(key, 1, Integer::sum);
+                    bag.addBigram(bigram(words[wInd - windowSize], word));
                 }
             }
 
             //add to bag, unless num reduction applies
-            if (numerosityReduction && word.equals(lastWord)) {
+            if (numerosityReduction && word == lastWord) {
                 ++trivialMatchCount;
                 ++wInd;
             }
@@ -665,6 +925,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             }
         }
 
+        bag.pack();
         applyPyramidWeights(bag);
 
         return bag;
@@ -742,29 +1003,27 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
      */
     private Bag createSPBagFromWords(int thisWordLength, BitWord[] words) {
         Bag bag = new Bag();
-        BitWord lastWord = new BitWordInt();
-        BitWord[] newWords = new BitWord[words.length];
+        int lastWord = 0;
+        int[] newWords = new int[words.length];
+
+        //equivalent to BitWord.shorten() for the max word length, no classifier currently uses past 16.
+        int shift = wordLength != thisWordLength ? (16-thisWordLength)*BitWordInt.BITS_PER_LETTER : 0;
 
         int wInd = 0;
         int trivialMatchCount = 0; //keeps track of how many words have been the same so far
 
         for (BitWord w : words) {
-            BitWord word = new BitWordInt(w);
-            if (wordLength != thisWordLength)
-                word.shorten(16-thisWordLength); //max word length, no classifier currently uses past 16.
+            int word = w.getWord().intValue() >>> shift;
             newWords[wInd] = word;
 
             if (useBigrams) {
                 if (wInd - windowSize >= 0) {
-                    BitWord bigram = new BitWordLong(newWords[wInd - windowSize], word);
-
-                    SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(bigram, (byte) -1);
-                    bag.merge(key, 1, Integer::sum);
+                    bag.addBigram(bigram(newWords[wInd - windowSize], word));
                 }
             }
 
             //add to bag, unless num reduction applies
-            if (numerosityReduction && word.equals(lastWord)) {
+            if (numerosityReduction && word == lastWord) {
                 ++trivialMatchCount;
                 ++wInd;
             }
@@ -780,6 +1039,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             }
         }
 
+        bag.pack();
         applyPyramidWeights(bag);
 
         return bag;
@@ -799,12 +1059,13 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             bag.setClassVal(bags.get(inst).classVal);
             bags.set(inst, bag); //overwrite old
         }
+        index = null;
     }
 
     protected void applyPyramidWeights(Bag bag) {
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> ent : bag.entrySet()) {
+        for (int i = 0; i < bag.size(); i++) {
             //find level that this quadrant is on
-            int quadrant = ent.getKey().var2;
+            int quadrant = bag.getLevel(i);
             int qEnd = 0;
             int level = 0;
             while (qEnd < quadrant) {
@@ -813,12 +1074,18 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             }
 
             //double val = ent.getValue() * (Math.pow(levelWeighting, levels-level-1)); //weighting ^ (levels - level)
-            int val = ent.getValue() * (int)Math.pow(2,level);
-            bag.put(ent.getKey(), val);
+            bag.counts[i] *= (int)Math.pow(2,level);
         }
     }
 
-    private void addWordToPyramid(BitWord word, int wInd, Bag bag) {
+    /**
+     * @return bigram of two unigram words, same as the value of a BitWordLong made from them
+     */
+    protected static long bigram(int firstWord, int secondWord) {
+        return ((long)firstWord << 32) | (secondWord & 0xFFFFFFFFL);
+    }
+
+    private void addWordToPyramid(int word, int wInd, Bag bag) {
         int qStart = 0; //for this level, whats the start index for quadrants
         //e.g level 0 = 0
         //    level 1 = 1
@@ -830,8 +1097,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             int pos = wInd + (windowSize/2); //use the middle of the window as its position
             int quadrant = qStart + (pos/quadrantSize);
 
-            SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(word, (byte)quadrant);
-            bag.merge(key, 1, Integer::sum);
+            bag.addWord(word, (byte)quadrant);
 
             qStart += numQuadrants;
         }
@@ -868,7 +1134,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = MultiThreadable.getSharedExecutor(numThreads);
 
             ArrayList<Future<Bag>> futures = new ArrayList<>(data.numInstances());
 
@@ -888,6 +1154,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         }
 
         if (useFeatureSelection) trainChiSquared();
+        index = null;
 
         if (cleanAfterBuild) {
             clean();
@@ -915,11 +1182,12 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     public double BOSSdistance(Bag instA, Bag instB, double bestDist) {
         double dist = 0.0;
 
-        //find dist only from values in instA
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null) valB = 1;
+        //find dist only from values in instA, both bags are sorted by key so B is walked alongside A
+        int b = 0;
+        for (int a = 0; a < instA.size(); a++) {
+            b = instB.seek(b, instA, a);
+            int valA = instA.counts[a];
+            int valB = instB.matches(b, instA, a) ? instB.counts[b] : 1;
             dist += (valA-valB)*(valA-valB);
 
             if (dist > bestDist)
@@ -937,13 +1205,13 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
         double sim = 0.0;
 
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null)
+        int b = 0;
+        for (int a = 0; a < instA.size(); a++) {
+            b = instB.seek(b, instA, a);
+            if (!instB.matches(b, instA, a))
                 continue;
 
-            sim += Math.min(valA,valB);
+            sim += Math.min(instA.counts[a], instB.counts[b]);
         }
 
         return sim;
@@ -956,20 +1224,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         if (useFeatureSelection) testBag = filterChiSquared(testBag);
 
         //1NN distance
-        double bestDist = Double.MAX_VALUE;
-        int nn = 0;
-
-        for (int i = 0; i < bags.size(); ++i) {
-            double dist;
-            if (histogramIntersection)
-                dist = -histogramIntersection(testBag, bags.get(i));
-            else dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-            if (dist < bestDist) {
-                bestDist = dist;
-                nn = i;
-            }
-        }
+        int nn = getIndex().nearestNeighbour(testBag, histogramIntersection, -1);
 
         if (savePredInfo) {
             lastNNIdx = subsampleIndices.get(nn);
@@ -1008,24 +1263,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     public double classifyInstance(int testIndex) throws Exception{
         Bag testBag = bags.get(testIndex);
 
-        //1NN distance
-        double bestDist = Double.MAX_VALUE;
-        int nn = 0;
-
-        for (int i = 0; i < bags.size(); ++i) {
-            if (i == testIndex) //skip 'this' one, leave-one-out
-                continue;
-
-            double dist;
-            if (histogramIntersection)
-                dist = -histogramIntersection(testBag, bags.get(i));
-            else dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-            if (dist < bestDist) {
-                bestDist = dist;
-                nn = i;
-            }
-        }
+        //1NN distance, skipping 'this' one, leave-one-out
+        int nn = getIndex().nearestNeighbour(testBag, histogramIntersection, testIndex);
 
         return bags.get(nn).getClassVal();
     }
@@ -1051,22 +1290,9 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             if (useFeatureSelection) testBag = filterChiSquared(testBag);
 
             //1NN distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = 0;
-
-            for (Bag bag : bags) {
-                double dist;
-                if (histogramIntersection)
-                    dist = -histogramIntersection(testBag, bag);
-                else dist = BOSSdistance(testBag, bag, bestDist);
+            int nn = getIndex().nearestNeighbour(testBag, histogramIntersection, -1);
 
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bag.classVal;
-                }
-            }
-
-            return nn;
+            return (double) bags.get(nn).classVal;
         }
     }
 
@@ -1081,26 +1307,10 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         public Double call() {
             Bag testBag = bags.get(testIndex);
 
-            //1NN distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = 0;
-
-            for (int i = 0; i < bags.size(); ++i) {
-                if (i == testIndex) //skip 'this' one, leave-one-out
-                    continue;
-
-                double dist;
-                if (histogramIntersection)
-                    dist = -histogramIntersection(testBag, bags.get(i));
-                else dist = BOSSdistance(testBag, bags.get(i), bestDist);
+            //1NN distance, skipping 'this' one, leave-one-out
+            int nn = getIndex().nearestNeighbour(testBag, histogramIntersection, testIndex);
 
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bags.get(i).classVal;
-                }
-            }
-
-            return nn;
+            return (double) bags.get(nn).classVal;
         }
     }
 
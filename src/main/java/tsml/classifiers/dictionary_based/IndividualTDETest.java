@@ -0,0 +1,126 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.classifiers.dictionary_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IndividualTDETest {
+
+    // bag and the equivalent map of <level, word> => count, bigrams use a level of -1
+    private static IndividualTDE.Bag randomBag(Random rand, Map<String, Integer> counts) {
+        IndividualTDE.Bag bag = new IndividualTDE.Bag();
+        for (int i = 0; i < 200; i++) {
+            int word = rand.nextInt(20) - 10;
+            if (rand.nextBoolean()) {
+                // bigram values which collide with the packed key of a unigram word at level 1
+                long bigram = rand.nextBoolean() ? IndividualTDE.bigram(1, word) : rand.nextInt(20);
+                bag.addBigram(bigram);
+                counts.merge(-1 + ":" + bigram, 1, Integer::sum);
+            }
+            else {
+                byte level = (byte)rand.nextInt(3);
+                bag.addWord(word, level);
+                counts.merge(level + ":" + word, 1, Integer::sum);
+            }
+        }
+        bag.pack();
+        return bag;
+    }
+
+    @Test
+    public void testBagMatchesMap() {
+        Random rand = new Random(0);
+        Map<String, Integer> counts = new HashMap<>();
+        IndividualTDE.Bag bag = randomBag(rand, counts);
+
+        Assert.assertEquals(counts.size(), bag.size());
+        for (int i = 0; i < bag.size(); i++) {
+            Assert.assertEquals(counts.get(bag.getLevel(i) + ":" + bag.getWord(i)), (Integer)bag.getCount(i));
+        }
+    }
+
+    @Test
+    public void testDistancesMatchMap() {
+        Random rand = new Random(1);
+        IndividualTDE tde = new IndividualTDE(8, 4, 10, true, 1, false);
+
+        for (int n = 0; n < 20; n++) {
+            Map<String, Integer> countsA = new HashMap<>();
+            Map<String, Integer> countsB = new HashMap<>();
+            IndividualTDE.Bag bagA = randomBag(rand, countsA);
+            IndividualTDE.Bag bagB = randomBag(rand, countsB);
+
+            double dist = 0, sim = 0;
+            for (Map.Entry<String, Integer> entry : countsA.entrySet()) {
+                Integer valB = countsB.get(entry.getKey());
+                int diff = entry.getValue() - (valB == null ? 1 : valB);
+                dist += diff * diff;
+                if (valB != null) sim += Math.min(entry.getValue(), valB);
+            }
+
+            Assert.assertEquals(dist, tde.BOSSdistance(bagA, bagB, Double.MAX_VALUE), 0);
+            Assert.assertEquals(Double.MAX_VALUE, tde.BOSSdistance(bagA, bagB, dist - 1), 0);
+            Assert.assertEquals(sim, tde.histogramIntersection(bagA, bagB), 0);
+        }
+    }
+
+    private static void assertIndexMatchesLinearSearch(IndividualTDE tde, boolean histogramIntersection)
+            throws Exception {
+        ArrayList<IndividualTDE.Bag> bags = tde.getBags();
+        for (int n = 0; n < bags.size(); n++) {
+            double bestDist = Double.MAX_VALUE;
+            int nn = 0;
+            for (int i = 0; i < bags.size(); i++) {
+                if (i == n) continue;
+
+                double dist = histogramIntersection ? -tde.histogramIntersection(bags.get(n), bags.get(i))
+                        : tde.BOSSdistance(bags.get(n), bags.get(i), bestDist);
+                if (dist < bestDist) {
+                    bestDist = dist;
+                    nn = i;
+                }
+            }
+
+            Assert.assertEquals(bags.get(nn).getClassVal(), tde.classifyInstance(n), 0);
+        }
+    }
+
+    @Test
+    public void testNearestNeighbourMatchesLinearSearch() throws Exception {
+        Instances train = DatasetLoading.sampleGunPoint(0)[0];
+
+        IndividualTDE tde = new IndividualTDE(8, 4, 20, true, 2, false);
+        tde.buildClassifier(train);
+        assertIndexMatchesLinearSearch(tde, true);
+
+        tde = new IndividualTDE(8, 4, 20, true, 2, false);
+        tde.setHistogramIntersection(false);
+        tde.buildClassifier(train);
+        assertIndexMatchesLinearSearch(tde, false);
+
+        tde.changeNumLevels(1);
+        assertIndexMatchesLinearSearch(tde, false);
+    }
+}
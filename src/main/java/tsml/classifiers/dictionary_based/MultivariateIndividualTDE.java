@@ -24,6 +24,7 @@ import com.carrotsearch.hppc.ObjectIntHashMap;
 import com.carrotsearch.hppc.cursors.DoubleDoubleCursor;
 import com.carrotsearch.hppc.cursors.ObjectIntCursor;
 import evaluation.storage.ClassifierResults;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.dictionary_based.bitword.BitWord;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import tsml.classifiers.dictionary_based.bitword.BitWordLong;
@@ -535,13 +536,12 @@ public class MultivariateIndividualTDE extends IndividualTDE {
                         int pos = wInd + (windowSize/2); //use the middle of the window as its position
                         int quadrant = qStart + (pos/quadrantSize);
 
-                        SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(word,
-                                (byte)quadrant);
-                        bag.merge(key, 1, Integer::sum);
+                        bag.addWord(word.getWord().intValue(), (byte)quadrant);
 
                         qStart += numQuadrants;
                     }
                 }
+                bag.pack();
                 applyPyramidWeights(bag);
                 tempBags.add(bag);
             }
@@ -622,7 +622,7 @@ public class MultivariateIndividualTDE extends IndividualTDE {
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = MultiThreadable.getSharedExecutor(numThreads);
 
             ArrayList<Future<BagMV>> futures = new ArrayList<>(data.numInstances());
 
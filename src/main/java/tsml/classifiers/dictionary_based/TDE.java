@@ -36,7 +36,6 @@ import weka.core.*;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -402,7 +401,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         }
 
         if (multiThread) {
-            ex = Executors.newFixedThreadPool(numThreads);
+            ex = MultiThreadable.getSharedExecutor(numThreads);
         }
 
         //Contracting
@@ -1327,20 +1326,23 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         });
 
         HashMap<SerialisableComparablePair<Byte, String>, Integer> histWords = new HashMap<>();
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : histogram.entrySet()) {
-            String word = entry.getKey().var2 == -1 ? ((BitWordLong) entry.getKey().var1).toStringBigram()
-                    : ((BitWordInt) entry.getKey().var1).toStringUnigram();
+        for (int i = 0; i < histogram.size(); i++) {
+            BitWord bitWord = histogram.getBitWord(i, tde.getWordLength());
+            String word = histogram.getLevel(i) == -1 ? ((BitWordLong) bitWord).toStringBigram()
+                    : ((BitWordInt) bitWord).toStringUnigram();
 
-            keys.add(new SerialisableComparablePair<>(entry.getKey().var2, word));
-            histWords.put(new SerialisableComparablePair<>(entry.getKey().var2, word), entry.getValue());
+            keys.add(new SerialisableComparablePair<>(histogram.getLevel(i), word));
+            histWords.put(new SerialisableComparablePair<>(histogram.getLevel(i), word), histogram.getCount(i));
         }
 
         HashMap<SerialisableComparablePair<Byte, String>, Integer> nearestWords = new HashMap<>();
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : nearestHistogram.entrySet()) {
-            String word = entry.getKey().var2 == -1 ? ((BitWordLong) entry.getKey().var1).toStringBigram()
-                    : ((BitWordInt) entry.getKey().var1).toStringUnigram();
-            keys.add(new SerialisableComparablePair<>(entry.getKey().var2, word));
-            nearestWords.put(new SerialisableComparablePair<>(entry.getKey().var2, word), entry.getValue());
+        for (int i = 0; i < nearestHistogram.size(); i++) {
+            BitWord bitWord = nearestHistogram.getBitWord(i, tde.getWordLength());
+            String word = nearestHistogram.getLevel(i) == -1 ? ((BitWordLong) bitWord).toStringBigram()
+                    : ((BitWordInt) bitWord).toStringUnigram();
+            keys.add(new SerialisableComparablePair<>(nearestHistogram.getLevel(i), word));
+            nearestWords.put(new SerialisableComparablePair<>(nearestHistogram.getLevel(i), word),
+                    nearestHistogram.getCount(i));
         }
 
         int numLevels = 1;
@@ -1523,16 +1525,17 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
             if (classCount[cls] >= 1) continue;
             classCount[cls]++;
 
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : bag.entrySet()) {
-                SerialisableComparablePair<BitWord, Byte> key = entry.getKey();
+            for (int i = 0; i < bag.size(); i++) {
+                BitWord bitWord = bag.getBitWord(i, tde.getWordLength());
 
-                String word = key.var2 == -1 ? ((BitWordLong) key.var1).toStringBigram()
-                        : ((BitWordInt) key.var1).toStringUnigram();
+                String word = bag.getLevel(i) == -1 ? ((BitWordLong) bitWord).toStringBigram()
+                        : ((BitWordInt) bitWord).toStringUnigram();
 
-                SerialisableComparablePair<Byte, String> newKey = new SerialisableComparablePair<>(key.var2, word);
+                SerialisableComparablePair<Byte, String> newKey = new SerialisableComparablePair<>(bag.getLevel(i),
+                        word);
                 Integer val = classCounts[cls].get(newKey);
                 if (val == null) val = 0;
-                classCounts[cls].put(newKey, val + entry.getValue());
+                classCounts[cls].put(newKey, val + bag.getCount(i));
             }
         }
 
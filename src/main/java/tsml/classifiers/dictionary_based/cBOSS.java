@@ -507,7 +507,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
 
         if (multiThread) {
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = MultiThreadable.getSharedExecutor(numThreads);
         }
 
         //required to deal with multivariate datasets, each channel is split into its own instances
@@ -17,6 +17,10 @@
  
 package tsml.classifiers.distance_based.distances;
 
+import tsml.data_containers.TimeSeriesInstance;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Arrays;
 
 /**
@@ -26,17 +30,34 @@ import java.util.Arrays;
  * measure. Simple distance measures need not fit at all, therefore the fit method is empty for those implementations
  * . fit() should always be called before any distance measurements.
  * <p>
+ * The rows / matrix used during computation are held in a per-thread workspace, so a single configured instance can
+ * be shared between threads and the rows are recycled between calls rather than reallocated.
+ * <p>
  * Contributors: goastler
  */
 public abstract class MatrixBasedDistanceMeasure extends BaseDistanceMeasure {
 
     private boolean recordCostMatrix = false;
-    // the distance matrix produced by the distance function
-    private double[][] costMatrix;
-    private double[] oddRow;
-    private double[] evenRow;
-    private int numCols;
-    private boolean recycleRows;
+    // the resources used during computation, one set per thread
+    private transient ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * The rows / matrix used by a single thread to compute distances. The rows are kept between calls and only grown
+     * when a longer series is seen.
+     */
+    private static class Workspace {
+        // the distance matrix produced by the distance function
+        private double[][] costMatrix;
+        private double[] oddRow = new double[0];
+        private double[] evenRow = new double[0];
+        private int numCols = -1;
+        private boolean recycleRows;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        workspace = ThreadLocal.withInitial(Workspace::new);
+    }
 
     /**
      * Indicate that a new distance is being computed and a corresponding matrix or pair or rows are required
@@ -44,34 +65,66 @@ public abstract class MatrixBasedDistanceMeasure extends BaseDistanceMeasure {
      * @param numCols
      */
     protected void setup(int numRows, int numCols, boolean recycleRows) {
-        oddRow = null;
-        evenRow = null;
-        costMatrix = null;
-        this.numCols = numCols;
-        this.recycleRows = recycleRows;
+        final Workspace workspace = this.workspace.get();
+        workspace.costMatrix = null;
+        workspace.numCols = numCols;
+        workspace.recycleRows = recycleRows;
         if(recordCostMatrix) {
-            costMatrix = new double[numRows][numCols];
-            for(double[] array : costMatrix) Arrays.fill(array, getFillerValue());
-        } else {
-            oddRow = new double[numCols];
-            evenRow = new double[numCols];
+            workspace.costMatrix = new double[numRows][numCols];
+            for(double[] array : workspace.costMatrix) Arrays.fill(array, getFillerValue());
+        } else if(workspace.oddRow.length < numCols) {
+            // rows are reused between calls, so only allocate when the current rows are too short. Rows may therefore
+            // be longer than numCols, so implementations must not rely on the row length
+            workspace.oddRow = new double[numCols];
+            workspace.evenRow = new double[numCols];
         }
     }
-    
+
+    /**
+     * Compute the distance between two multivariate series held as raw arrays, indexed by [dimension][time point].
+     * This is the fast path which all the other distance methods funnel into, avoiding any boxing / unboxing of values.
+     * @param a
+     * @param b
+     * @param limit
+     * @return
+     */
+    @Override public abstract double distanceMultivariate(double[][] a, double[][] b, double limit);
+
+    @Override public double distance(final TimeSeriesInstance a, final TimeSeriesInstance b, final double limit) {
+        // extract the raw values once rather than unboxing per cell of the cost matrix
+        return distanceMultivariate(a.toValueArray(), b.toValueArray(), limit);
+    }
+
+    @Override public double distanceUnivariate(final double[] a, final double[] b, final double limit) {
+        return distanceMultivariate(new double[][] {a}, new double[][] {b}, limit);
+    }
+
+    /**
+     * Find the length of the longest dimension in a multivariate series.
+     * @param series
+     * @return
+     */
+    protected static int maxLength(double[][] series) {
+        int max = 0;
+        for(double[] dim : series) {
+            max = Math.max(max, dim.length);
+        }
+        return max;
+    }
+
     protected double getFillerValue() {
         return Double.POSITIVE_INFINITY;
     }
 
     /**
-     * Indicate that distance has been computed and any resources can be discarded. This preserves the distance matrix if set to do so, and discards all other resources. This is helpful to avoid the DistanceMeasure(s) retaining various rows / matrices post computation, never to be needed again but remaining in use in memory.
+     * Indicate that distance has been computed. This preserves the distance matrix if set to do so. The recycled rows are kept in the thread's workspace for the next computation.
      */
     protected void teardown() {
-        oddRow = null;
-        evenRow = null;
-        numCols = -1;
-        recycleRows = false;
+        final Workspace workspace = this.workspace.get();
+        workspace.numCols = -1;
+        workspace.recycleRows = false;
         if(!recordCostMatrix) {
-            costMatrix = null;
+            workspace.costMatrix = null;
         }
     }
 
@@ -81,21 +134,25 @@ public abstract class MatrixBasedDistanceMeasure extends BaseDistanceMeasure {
      * @return
      */
     protected double[] getRow(int i) {
+        final Workspace workspace = this.workspace.get();
         if(recordCostMatrix) {
-            return costMatrix[i];
-        } else if(recycleRows) {
-            return i % 2 == 0 ? evenRow : oddRow;
+            return workspace.costMatrix[i];
+        } else if(workspace.recycleRows) {
+            return i % 2 == 0 ? workspace.evenRow : workspace.oddRow;
         } else {
-            return new double[numCols];
+            return new double[workspace.numCols];
         }
     }
-    
+
+    /**
+     * @return the cost matrix recorded by the last distance computed on the calling thread
+     */
     public double[][] costMatrix() {
-        return costMatrix;
+        return workspace.get().costMatrix;
     }
 
     public void clear() {
-        costMatrix = null;
+        workspace.get().costMatrix = null;
     }
 
     public boolean isRecordCostMatrix() {
@@ -18,6 +18,12 @@
 package tsml.classifiers.distance_based.distances.dtw;
 
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.lower_bounds.Envelope;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbImproved;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbKim;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBound;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBounded;
 import tsml.classifiers.distance_based.utils.collections.checks.Checks;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
 import tsml.data_containers.TimeSeries;
@@ -25,28 +31,47 @@ import tsml.data_containers.TimeSeriesInstance;
 import utilities.Utilities;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * DTW distance measure.
  * <p>
  * Contributors: goastler
  */
-public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
+public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW, LowerBounded {
 
     public static double cost(final TimeSeriesInstance a, final int aIndex, final TimeSeriesInstance b, final int bIndex) {
         double sum = 0;
         for(int i = 0; i < a.getNumDimensions(); i++) {
             final TimeSeries aDim = a.get(i);
             final TimeSeries bDim = b.get(i);
-            final double aValue = aDim.get(aIndex);
-            final double bValue = bDim.get(bIndex);
-            final double sqDiff = StrictMath.pow(aValue - bValue, 2);
-            sum += sqDiff;
+            final double diff = aDim.getValue(aIndex) - bDim.getValue(bIndex);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Squared euclidean cost between two time points of multivariate series held as [dimension][time point] arrays.
+     * Note x * x is bit-for-bit identical to StrictMath.pow(x, 2).
+     */
+    public static double cost(final double[][] a, final int aIndex, final double[][] b, final int bIndex) {
+        if(a.length == 1) {
+            // univariate fast path
+            final double diff = a[0][aIndex] - b[0][bIndex];
+            return diff * diff;
+        }
+        double sum = 0;
+        for(int i = 0; i < a.length; i++) {
+            final double diff = a[i][aIndex] - b[i][bIndex];
+            sum += diff * diff;
         }
         return sum;
     }
 
     private double window = 1;
+    // the cascade of lower bounds to prune with, cheapest first
+    private LowerBound lowerBound = new LowerBoundCascade(new LbKim(), new LbImproved());
 
     @Override public void setWindow(final double window) {
         this.window = Checks.requireUnitInterval(window);
@@ -56,17 +81,45 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
         return window;
     }
 
-    public double distance(TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
+    public LowerBound getLowerBound() {
+        return lowerBound;
+    }
+
+    public void setLowerBound(final LowerBound lowerBound) {
+        this.lowerBound = Objects.requireNonNull(lowerBound);
+    }
+
+    /**
+     * The envelope radius matching the window for equal length series. The window spans floor(window * length) time 
+     * points either side of the diagonal.
+     */
+    private int findRadius(int length) {
+        return (int) Math.floor(window * length);
+    }
+
+    @Override public Envelope buildEnvelope(final double[][] series) {
+        return new Envelope(series, findRadius(maxLength(series)));
+    }
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        if(b.getRadius() < Math.min(findRadius(b.getLength()), b.getLength() - 1)) {
+            // envelope was built for a narrower window so would overestimate
+            return 0;
+        }
+        return lowerBound.lowerBound(a, b, limit);
+    }
+
+    @Override public double distanceMultivariate(double[][] a, double[][] b, final double limit) {
 
         // make a the longest time series
-        if(a.getMaxLength() < b.getMaxLength()) {
-            TimeSeriesInstance tmp = a;
+        if(maxLength(a) < maxLength(b)) {
+            double[][] tmp = a;
             a = b;
             b = tmp;
         }
         
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        final int aLength = maxLength(a);
+        final int bLength = maxLength(b);
         setup(aLength, bLength, true);
         
         // step is the increment of the mid point for each row
@@ -136,7 +189,7 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
         }
 
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
+        final double distance = row[bLength - 1];
         teardown();
         return distance;
     }
@@ -25,6 +25,13 @@ import tsml.data_containers.TimeSeriesInstances;
 import utilities.InstanceTools;
 import weka.core.Instances;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static tsml.classifiers.distance_based.distances.dtw.spaces.DDTWDistanceSpace.newDDTWDistance;
 
 /**
@@ -115,6 +122,54 @@ public class DTWDistanceTest {
         Assert.assertEquals(distance, otherDistance, 0d);
     }
     
+    @Test
+    public void testConcurrentDistances() throws Exception {
+        // a single instance should be usable from several threads at once, recycling its rows per thread
+        final DTWDistance dtw = new DTWDistance();
+        dtw.setWindow(0.5);
+        final Random random = new Random(0);
+        final List<double[]> series = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            // vary the length so the recycled rows are sometimes longer than required
+            final double[] values = new double[10 + random.nextInt(30)];
+            for(int j = 0; j < values.length; j++) {
+                values[j] = random.nextGaussian();
+            }
+            series.add(values);
+        }
+        final double[][] expected = new double[series.size()][series.size()];
+        for(int i = 0; i < series.size(); i++) {
+            for(int j = 0; j < series.size(); j++) {
+                final DTWDistance other = new DTWDistance();
+                other.setWindow(0.5);
+                expected[i][j] = other.distanceUnivariate(series.get(i), series.get(j));
+            }
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<double[][]>> futures = new ArrayList<>();
+            for(int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    final double[][] distances = new double[series.size()][series.size()];
+                    for(int i = 0; i < series.size(); i++) {
+                        for(int j = 0; j < series.size(); j++) {
+                            distances[i][j] = dtw.distanceUnivariate(series.get(i), series.get(j));
+                        }
+                    }
+                    return distances;
+                }));
+            }
+            for(Future<double[][]> future : futures) {
+                final double[][] distances = future.get();
+                for(int i = 0; i < series.size(); i++) {
+                    Assert.assertArrayEquals(expected[i], distances[i], 0d);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     public static class DTWParamTest extends ParamHandlerTest {
 
         @Override public Object getHandler() {
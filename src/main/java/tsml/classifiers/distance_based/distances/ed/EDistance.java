@@ -25,10 +25,20 @@ import tsml.data_containers.TimeSeriesInstance;
 public class EDistance extends BaseDistanceMeasure {
     
     public double distance(final TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
+        return distanceMultivariate(a.toValueArray(), b.toValueArray(), limit);
+    }
+
+    @Override public double distanceUnivariate(final double[] a, final double[] b, final double limit) {
+        return distanceMultivariate(new double[][] {a}, new double[][] {b}, limit);
+    }
+
+    @Override public double distanceMultivariate(final double[][] a, final double[][] b, final double limit) {
         double sum = 0;
 
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        int aLength = 0;
+        for(double[] dim : a) {
+            aLength = Math.max(aLength, dim.length);
+        }
 
         for(int i = 0; i < aLength; i++) {
             sum += DTWDistance.cost(a, i, b, i);
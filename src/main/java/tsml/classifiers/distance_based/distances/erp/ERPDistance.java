@@ -19,6 +19,10 @@ package tsml.classifiers.distance_based.distances.erp;
 
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
 import tsml.classifiers.distance_based.distances.dtw.DTW;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.lower_bounds.Envelope;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbErp;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBounded;
 import tsml.classifiers.distance_based.utils.collections.checks.Checks;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
 import tsml.data_containers.TimeSeries;
@@ -32,7 +36,7 @@ import java.util.Arrays;
  * <p>
  * Contributors: goastler
  */
-public class ERPDistance extends MatrixBasedDistanceMeasure {
+public class ERPDistance extends MatrixBasedDistanceMeasure implements LowerBounded {
 
     public static final String WINDOW_FLAG = DTW.WINDOW_FLAG;
     public static final String G_FLAG = "g";
@@ -51,38 +55,57 @@ public class ERPDistance extends MatrixBasedDistanceMeasure {
         double sum = 0;
         for(int i = 0; i < a.getNumDimensions(); i++) {
             final TimeSeries aDim = a.get(i);
-            final double aValue = aDim.get(aIndex);
-            final double sqDiff = StrictMath.pow(aValue - g, 2);
-            sum += sqDiff;
+            final double diff = aDim.getValue(aIndex) - g;
+            sum += diff * diff;
         }
         return sum;
     }
     
     public double cost(TimeSeriesInstance a, int aIndex, TimeSeriesInstance b, int bIndex) {
+        return DTWDistance.cost(a, aIndex, b, bIndex);
+    }
+
+    public double cost(final double[][] a, final int aIndex) {
         double sum = 0;
-        for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final TimeSeries bDim = b.get(i);
-            final double aValue = aDim.get(aIndex);
-            final double bValue = bDim.get(bIndex);
-            final double sqDiff = StrictMath.pow(aValue - bValue, 2);
-            sum += sqDiff;
+        for(int i = 0; i < a.length; i++) {
+            final double diff = a[i][aIndex] - g;
+            sum += diff * diff;
         }
         return sum;
     }
+
+    public double cost(double[][] a, int aIndex, double[][] b, int bIndex) {
+        return DTWDistance.cost(a, aIndex, b, bIndex);
+    }
     
+    private int findRadius(int length) {
+        return (int) Math.floor(window * length);
+    }
+
+    @Override public Envelope buildEnvelope(final double[][] series) {
+        return new Envelope(series, findRadius(maxLength(series)));
+    }
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        if(b.getRadius() < Math.min(findRadius(b.getLength()), b.getLength() - 1)) {
+            // envelope was built for a narrower window so would overestimate
+            return 0;
+        }
+        return LbErp.lowerBound(a, b, g, limit);
+    }
+
     @Override
-    public double distance(TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
+    public double distanceMultivariate(double[][] a, double[][] b, final double limit) {
         
         // make a the longest time series
-        if(a.getMaxLength() < b.getMaxLength()) {
-            TimeSeriesInstance tmp = a;
+        if(maxLength(a) < maxLength(b)) {
+            double[][] tmp = a;
             a = b;
             b = tmp;
         }
         
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        final int aLength = maxLength(a);
+        final int bLength = maxLength(b);
         setup(aLength, bLength, true);
 
         // step is the increment of the mid point for each row
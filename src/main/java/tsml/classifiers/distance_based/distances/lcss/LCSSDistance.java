@@ -19,9 +19,10 @@ package tsml.classifiers.distance_based.distances.lcss;
 
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
 import tsml.classifiers.distance_based.distances.dtw.DTW;
+import tsml.classifiers.distance_based.distances.lower_bounds.Envelope;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbLcss;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBounded;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import tsml.data_containers.TimeSeries;
-import tsml.data_containers.TimeSeriesInstance;
 
 import java.util.Arrays;
 
@@ -30,7 +31,7 @@ import java.util.Arrays;
  * <p>
  * Contributors: goastler
  */
-public class LCSSDistance extends MatrixBasedDistanceMeasure {
+public class LCSSDistance extends MatrixBasedDistanceMeasure implements LowerBounded {
     
     // delta === warp
     // epsilon === diff between two values before they're considered the same AKA tolerance
@@ -49,32 +50,43 @@ public class LCSSDistance extends MatrixBasedDistanceMeasure {
         this.epsilon = epsilon;
     }
 
-    private boolean approxEqual(TimeSeriesInstance a, int aIndex, TimeSeriesInstance b, int bIndex) {
-        double sum = 0;
-        for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final TimeSeries bDim = b.get(i);
-            final Double aValue = aDim.get(aIndex);
-            final Double bValue = bDim.get(bIndex);
-            if(Math.abs(aValue - bValue) > epsilon) {
+    private boolean approxEqual(double[][] a, int aIndex, double[][] b, int bIndex) {
+        for(int i = 0; i < a.length; i++) {
+            if(Math.abs(a[i][aIndex] - b[i][bIndex]) > epsilon) {
                 return false;
             }
         }
         return true;
     }
 
+    private int findRadius(int length) {
+        return (int) Math.floor(window * length);
+    }
+
+    @Override public Envelope buildEnvelope(final double[][] series) {
+        return new Envelope(series, findRadius(maxLength(series)));
+    }
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        if(b.getRadius() < Math.min(findRadius(b.getLength()), b.getLength() - 1)) {
+            // envelope was built for a narrower window so would overestimate
+            return 0;
+        }
+        return LbLcss.lowerBound(a, b, epsilon, limit);
+    }
+
     @Override
-    public double distance(TimeSeriesInstance a, TimeSeriesInstance b, double limit) {
+    public double distanceMultivariate(double[][] a, double[][] b, double limit) {
         
         // make a the longest time series
-        if(a.getMaxLength() < b.getMaxLength()) {
-            TimeSeriesInstance tmp = a;
+        if(maxLength(a) < maxLength(b)) {
+            double[][] tmp = a;
             a = b;
             b = tmp;
         }
         
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        final int aLength = maxLength(a);
+        final int bLength = maxLength(b);
         setup(aLength, bLength, true);
         
         // 22/10/19 goastler - limit LCSS such that if any value in the current window is larger than the limit then we can stop here, no point in doing the extra work
@@ -173,7 +185,7 @@ public class LCSSDistance extends MatrixBasedDistanceMeasure {
         }
         
         // last value in the current row is the distance
-        final double distance = 1d - row[row.length - 1] / Math.min(aLength, bLength);
+        final double distance = 1d - row[bLength - 1] / Math.min(aLength, bLength);
         teardown();
         return distance;
     }
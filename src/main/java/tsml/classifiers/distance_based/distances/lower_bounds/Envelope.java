@@ -0,0 +1,148 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The upper and lower warping envelope of a time series, i.e. the max and min value within a window of the given 
+ * radius around each time point. An envelope only depends on the series it was built from, so it can be built once per
+ * series (e.g. once per train instance) and reused for every lower bound computed against that series.
+ */
+public class Envelope implements Serializable {
+
+    private final double[][] series;
+    private final double[][] upper;
+    private final double[][] lower;
+    private final int radius;
+    // the length of every dimension, or -1 if the dimensions differ in length
+    private final int length;
+
+    /**
+     * @param series the series in [dimension][time point] form. This is not copied, so must not be altered afterwards.
+     * @param radius the number of time points either side of each time point to consider.
+     */
+    public Envelope(double[][] series, int radius) {
+        if(radius < 0) {
+            throw new IllegalArgumentException("radius cannot be negative: " + radius);
+        }
+        this.series = Objects.requireNonNull(series);
+        this.radius = radius;
+        upper = new double[series.length][];
+        lower = new double[series.length][];
+        int length = series.length > 0 ? series[0].length : -1;
+        for(int i = 0; i < series.length; i++) {
+            if(series[i].length != length) {
+                length = -1;
+            }
+            upper[i] = new double[series[i].length];
+            lower[i] = new double[series[i].length];
+            fill(series[i], radius, upper[i], lower[i]);
+        }
+        this.length = length;
+    }
+
+    /**
+     * Populate the upper and lower envelope of a series in linear time using Lemire's streaming min / max.
+     * @param series the series
+     * @param radius the number of time points either side of each time point to consider
+     * @param upper the array to populate with the upper envelope. Must be at least as long as the series.
+     * @param lower the array to populate with the lower envelope. Must be at least as long as the series.
+     */
+    public static void fill(double[] series, int radius, double[] upper, double[] lower) {
+        final int length = series.length;
+        if(length == 0) {
+            return;
+        }
+        radius = Math.min(radius, length - 1);
+        // the indices of the candidate max / min values in the current window, held as a queue of descending / 
+        // ascending values respectively. Each index enters the queues at most once, hence arrays of length size.
+        final int[] maxIndices = new int[length];
+        final int[] minIndices = new int[length];
+        int maxHead = 0, maxTail = 0, minHead = 0, minTail = 0;
+        for(int j = 0; j < length + radius; j++) {
+            if(j < length) {
+                // add the next value to the window, discarding any values it dominates
+                final double value = series[j];
+                while(maxTail > maxHead && series[maxIndices[maxTail - 1]] <= value) {
+                    maxTail--;
+                }
+                maxIndices[maxTail++] = j;
+                while(minTail > minHead && series[minIndices[minTail - 1]] >= value) {
+                    minTail--;
+                }
+                minIndices[minTail++] = j;
+            }
+            // the window centred on i is now complete
+            final int i = j - radius;
+            if(i >= 0) {
+                // discard any values which have fallen out of the window
+                while(maxIndices[maxHead] < i - radius) {
+                    maxHead++;
+                }
+                while(minIndices[minHead] < i - radius) {
+                    minHead++;
+                }
+                upper[i] = series[maxIndices[maxHead]];
+                lower[i] = series[minIndices[minHead]];
+            }
+        }
+    }
+
+    /**
+     * @param other a series in [dimension][time point] form
+     * @return true if the other series has the same number of dimensions and all dimensions are the same length as
+     * the series underlying this envelope. Envelope based bounds only hold for equal length series.
+     */
+    public boolean fits(double[][] other) {
+        if(length < 0 || other.length != series.length) {
+            return false;
+        }
+        for(double[] dim : other) {
+            if(dim.length != length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public double[][] getSeries() {
+        return series;
+    }
+
+    public double[] getUpper(int dimension) {
+        return upper[dimension];
+    }
+
+    public double[] getLower(int dimension) {
+        return lower[dimension];
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getNumDimensions() {
+        return series.length;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+/**
+ * LB_Keogh style lower bound for ERP. Every time point bar the first must either be aligned to a time point within the
+ * window of the other series or to the gap value, g. Therefore the envelope is widened to include g.
+ * <p>
+ * Note ERPDistance never costs the first time point of either series, hence the first time point is skipped.
+ */
+public class LbErp {
+
+    private LbErp() {}
+
+    public static double lowerBound(final double[][] a, final Envelope b, final double g, final double limit) {
+        if(!b.fits(a)) {
+            return 0;
+        }
+        final int length = b.getLength();
+        double sum = 0;
+        for(int i = 1; i < length; i++) {
+            // sum the cost over dimensions before adding to the total, mirroring ERP's cell cost
+            double cost = 0;
+            for(int j = 0; j < a.length; j++) {
+                cost += LbKeogh.cost(a[j][i], Math.max(g, b.getUpper(j)[i]), Math.min(g, b.getLower(j)[i]));
+            }
+            sum += cost;
+            if(sum > limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+/**
+ * LB_Improved lower bound for DTW. The first pass is LB_Keogh, which projects the query onto the envelope of the 
+ * candidate. The second pass adds the LB_Keogh of the candidate against the envelope of that projection. The first 
+ * pass exits early if the limit is already exceeded, so there is no need to run LB_Keogh beforehand in a cascade.
+ * <p>
+ * Lemire, Daniel. "Faster retrieval with a two-pass dynamic-time-warping lower bound." Pattern recognition 42.9 
+ * (2009): 2169-2180.
+ */
+public class LbImproved implements LowerBound {
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        if(!b.fits(a)) {
+            return 0;
+        }
+        final int length = b.getLength();
+        final double[][] projection = new double[a.length][length];
+        // first pass: LB_Keogh whilst recording the projection of a onto the envelope of b
+        double sum = 0;
+        for(int i = 0; i < length; i++) {
+            // sum the cost over dimensions before adding to the total, mirroring DTW's cell cost
+            double cost = 0;
+            for(int j = 0; j < a.length; j++) {
+                final double value = a[j][i];
+                final double upper = b.getUpper(j)[i];
+                final double lower = b.getLower(j)[i];
+                if(value > upper) {
+                    final double diff = value - upper;
+                    cost += diff * diff;
+                    projection[j][i] = upper;
+                } else if(value < lower) {
+                    final double diff = lower - value;
+                    cost += diff * diff;
+                    projection[j][i] = lower;
+                } else {
+                    projection[j][i] = value;
+                }
+            }
+            sum += cost;
+            if(sum > limit) {
+                return sum;
+            }
+        }
+        // second pass: b against the envelope of the projection
+        final double[][] bSeries = b.getSeries();
+        final double[][] upper = new double[a.length][length];
+        final double[][] lower = new double[a.length][length];
+        for(int j = 0; j < a.length; j++) {
+            Envelope.fill(projection[j], b.getRadius(), upper[j], lower[j]);
+        }
+        for(int i = 0; i < length; i++) {
+            double cost = 0;
+            for(int j = 0; j < a.length; j++) {
+                cost += LbKeogh.cost(bSeries[j][i], upper[j][i], lower[j][i]);
+            }
+            sum += cost;
+            if(sum > limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    @Override public String toString() {
+        return "LbImproved";
+    }
+}
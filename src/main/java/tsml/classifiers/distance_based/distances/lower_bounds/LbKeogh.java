@@ -0,0 +1,68 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+/**
+ * LB_Keogh lower bound for DTW. Each time point in one series must be aligned to at least one time point within the 
+ * window of the other series, so the squared distance to the envelope of the other series is a lower bound. For 
+ * multivariate series the bound is summed over dimensions, which holds for dependent DTW.
+ * <p>
+ * Keogh, Eamonn, and Chotirat Ann Ratanamahatana. "Exact indexing of dynamic time warping." Knowledge and information 
+ * systems 7.3 (2005): 358-386.
+ */
+public class LbKeogh implements LowerBound {
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        if(!b.fits(a)) {
+            return 0;
+        }
+        final int length = b.getLength();
+        double sum = 0;
+        for(int i = 0; i < length; i++) {
+            // sum the cost over dimensions before adding to the total, mirroring DTW's cell cost
+            double cost = 0;
+            for(int j = 0; j < a.length; j++) {
+                cost += cost(a[j][i], b.getUpper(j)[i], b.getLower(j)[i]);
+            }
+            sum += cost;
+            if(sum > limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The squared distance from a value to the nearest side of an envelope, or zero if the value is inside the 
+     * envelope.
+     */
+    public static double cost(double value, double upper, double lower) {
+        if(value > upper) {
+            final double diff = value - upper;
+            return diff * diff;
+        } else if(value < lower) {
+            final double diff = lower - value;
+            return diff * diff;
+        }
+        return 0;
+    }
+
+    @Override public String toString() {
+        return "LbKeogh";
+    }
+}
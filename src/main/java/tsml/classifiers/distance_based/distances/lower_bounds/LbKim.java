@@ -0,0 +1,61 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+/**
+ * LB_Kim lower bound for DTW, using the first and last time points only. Every warping path aligns the first time 
+ * points and the last time points, so the cost of those two cells is a lower bound regardless of the window size or
+ * the lengths of the series. Cost is squared euclidean summed over dimensions, as per DTW.
+ * <p>
+ * Kim, Sang-Wook, Sanghyun Park, and Wesley W. Chu. "An index-based approach for similarity search supporting time 
+ * warping in large sequence databases." Proceedings 17th International Conference on Data Engineering. IEEE, 2001.
+ */
+public class LbKim implements LowerBound {
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        final double[][] bSeries = b.getSeries();
+        if(a.length != bSeries.length || a.length == 0) {
+            return 0;
+        }
+        final int aLength = a[0].length;
+        final int bLength = bSeries[0].length;
+        if(aLength == 0 || bLength == 0) {
+            return 0;
+        }
+        double first = 0;
+        double last = 0;
+        for(int i = 0; i < a.length; i++) {
+            if(a[i].length != aLength || bSeries[i].length != bLength) {
+                return 0;
+            }
+            final double firstDiff = a[i][0] - bSeries[i][0];
+            first += firstDiff * firstDiff;
+            final double lastDiff = a[i][aLength - 1] - bSeries[i][bLength - 1];
+            last += lastDiff * lastDiff;
+        }
+        if(aLength == 1 && bLength == 1) {
+            // first and last are the same cell
+            return first;
+        }
+        return first + last;
+    }
+
+    @Override public String toString() {
+        return "LbKim";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+/**
+ * Lower bound for LCSS. A time point can only be part of the common subsequence if it lies within epsilon of the 
+ * envelope of the other series in every dimension. Therefore the number of such time points bounds the length of the
+ * longest common subsequence.
+ */
+public class LbLcss {
+
+    private LbLcss() {}
+
+    public static double lowerBound(final double[][] a, final Envelope b, final double epsilon, final double limit) {
+        if(!b.fits(a) || b.getLength() == 0) {
+            return 0;
+        }
+        final int length = b.getLength();
+        int count = 0;
+        for(int i = 0; i < length; i++) {
+            boolean match = true;
+            for(int j = 0; j < a.length && match; j++) {
+                // mirror the approximate equality check in LCSSDistance so the bound is exact under rounding
+                final double value = a[j][i];
+                match = value - b.getUpper(j)[i] <= epsilon && b.getLower(j)[i] - value <= epsilon;
+            }
+            if(match) {
+                count++;
+            }
+        }
+        return 1d - (double) count / length;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.io.Serializable;
+
+/**
+ * A cheap lower bound on an elastic distance. Lower bounds are used to prune distance computations which cannot beat
+ * the distance limit (e.g. the distance to the current nearest neighbour) without running the full distance.
+ */
+public interface LowerBound extends Serializable {
+
+    /**
+     * Lower bound the distance between a series and the series underlying an envelope. The bound must never exceed the
+     * distance between the two series. Once the bound exceeds the limit the computation may stop early and return any 
+     * value above the limit.
+     * @param a the series in [dimension][time point] form
+     * @param b the envelope of the other series
+     * @param limit the distance limit
+     * @return the lower bound
+     */
+    double lowerBound(double[][] a, Envelope b, double limit);
+    
+    default double lowerBound(double[][] a, Envelope b) {
+        return lowerBound(a, b, Double.POSITIVE_INFINITY);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Run several lower bounds in turn, cheapest first, stopping as soon as one exceeds the limit. The tightest of the 
+ * bounds computed is returned.
+ */
+public class LowerBoundCascade implements LowerBound {
+
+    private final List<LowerBound> bounds;
+
+    public LowerBoundCascade(LowerBound... bounds) {
+        this(Arrays.asList(bounds));
+    }
+    
+    public LowerBoundCascade(List<LowerBound> bounds) {
+        this.bounds = Objects.requireNonNull(bounds);
+    }
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        double max = 0;
+        for(LowerBound bound : bounds) {
+            max = Math.max(max, bound.lowerBound(a, b, limit));
+            if(max > limit) {
+                break;
+            }
+        }
+        return max;
+    }
+
+    public List<LowerBound> getBounds() {
+        return bounds;
+    }
+
+    @Override public String toString() {
+        return "LowerBoundCascade" + bounds;
+    }
+}
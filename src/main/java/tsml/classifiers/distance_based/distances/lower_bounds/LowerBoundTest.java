@@ -0,0 +1,199 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.erp.ERPDistance;
+import tsml.classifiers.distance_based.distances.lcss.LCSSDistance;
+import tsml.classifiers.distance_based.distances.wdtw.WDTWDistance;
+import tsml.classifiers.distance_based.knn.KNN;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LowerBoundTest {
+    
+    private static List<double[][]> buildSeries(int numDimensions, int length) {
+        final Random random = new Random(0);
+        final List<double[][]> series = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            final double[][] values = new double[numDimensions][length];
+            for(int j = 0; j < numDimensions; j++) {
+                double value = 0;
+                for(int k = 0; k < length; k++) {
+                    // random walk to give series some shape
+                    value += random.nextGaussian();
+                    values[j][k] = value;
+                }
+            }
+            series.add(values);
+        }
+        return series;
+    }
+    
+    private static void assertBounded(LowerBounded distanceMeasure, List<double[][]> series) {
+        for(double[][] a : series) {
+            for(double[][] b : series) {
+                final Envelope envelope = distanceMeasure.buildEnvelope(b);
+                final double lowerBound = distanceMeasure.lowerBound(a, envelope);
+                final double distance = distanceMeasure.distanceMultivariate(a, b);
+                final double otherDistance = distanceMeasure.distanceMultivariate(b, a);
+                Assert.assertTrue(distanceMeasure + ": " + lowerBound + " > " + distance, lowerBound <= distance);
+                Assert.assertTrue(distanceMeasure + ": " + lowerBound + " > " + otherDistance, lowerBound <= otherDistance);
+            }
+        }
+    }
+    
+    @Test
+    public void testEnvelope() {
+        final double[] series = buildSeries(1, 50).get(0)[0];
+        for(int radius : new int[] {0, 1, 3, 10, 49, 100}) {
+            final Envelope envelope = new Envelope(new double[][] {series}, radius);
+            for(int i = 0; i < series.length; i++) {
+                double max = Double.NEGATIVE_INFINITY;
+                double min = Double.POSITIVE_INFINITY;
+                for(int j = Math.max(0, i - radius); j <= Math.min(series.length - 1, i + radius); j++) {
+                    max = Math.max(max, series[j]);
+                    min = Math.min(min, series[j]);
+                }
+                Assert.assertEquals(max, envelope.getUpper(0)[i], 0d);
+                Assert.assertEquals(min, envelope.getLower(0)[i], 0d);
+            }
+        }
+    }
+    
+    @Test
+    public void testDTWBounds() {
+        for(int numDimensions : new int[] {1, 3}) {
+            final List<double[][]> series = buildSeries(numDimensions, 30);
+            for(double window : new double[] {0, 0.1, 0.5, 1}) {
+                final DTWDistance dtw = new DTWDistance();
+                dtw.setWindow(window);
+                assertBounded(dtw, series);
+                // each bound in the cascade must hold in isolation too
+                for(LowerBound lowerBound : new LowerBound[] {new LbKim(), new LbKeogh(), new LbImproved()}) {
+                    dtw.setLowerBound(lowerBound);
+                    assertBounded(dtw, series);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testImprovedTighterThanKeogh() {
+        final List<double[][]> series = buildSeries(1, 30);
+        final DTWDistance dtw = new DTWDistance();
+        dtw.setWindow(0.1);
+        for(double[][] a : series) {
+            for(double[][] b : series) {
+                final Envelope envelope = dtw.buildEnvelope(b);
+                Assert.assertTrue(new LbKeogh().lowerBound(a, envelope) <= new LbImproved().lowerBound(a, envelope));
+            }
+        }
+    }
+    
+    @Test
+    public void testWDTWBounds() {
+        for(int numDimensions : new int[] {1, 3}) {
+            final List<double[][]> series = buildSeries(numDimensions, 30);
+            for(double g : new double[] {0.01, 0.1, 1}) {
+                final WDTWDistance wdtw = new WDTWDistance();
+                wdtw.setG(g);
+                assertBounded(wdtw, series);
+            }
+        }
+    }
+    
+    @Test
+    public void testERPBounds() {
+        for(int numDimensions : new int[] {1, 3}) {
+            final List<double[][]> series = buildSeries(numDimensions, 30);
+            for(double window : new double[] {0, 0.1, 0.5, 1}) {
+                for(double g : new double[] {-1, 0, 0.5}) {
+                    final ERPDistance erp = new ERPDistance();
+                    erp.setWindow(window);
+                    erp.setG(g);
+                    assertBounded(erp, series);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testLCSSBounds() {
+        for(int numDimensions : new int[] {1, 3}) {
+            final List<double[][]> series = buildSeries(numDimensions, 30);
+            for(double window : new double[] {0, 0.1, 0.5, 1}) {
+                for(double epsilon : new double[] {0.1, 1, 3}) {
+                    final LCSSDistance lcss = new LCSSDistance();
+                    lcss.setWindow(window);
+                    lcss.setEpsilon(epsilon);
+                    assertBounded(lcss, series);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testUnequalLength() {
+        final DTWDistance dtw = new DTWDistance();
+        dtw.setWindow(0.2);
+        final double[][] a = {{1, 2, 3, 4, 5}};
+        final double[][] b = {{5, 4, 3}};
+        final double distance = dtw.distanceMultivariate(a, b);
+        // envelope based bounds do not apply, but LB_Kim still does
+        final double lowerBound = dtw.lowerBound(a, dtw.buildEnvelope(b));
+        Assert.assertEquals(20, lowerBound, 0d);
+        Assert.assertTrue(lowerBound <= distance);
+        Assert.assertEquals(0, new LbKeogh().lowerBound(a, dtw.buildEnvelope(b)), 0d);
+    }
+    
+    @Test
+    public void testKNNPredictionsUnchanged() throws Exception {
+        final Instances[] insts = DatasetLoading.sampleGunPoint(0);
+        final TimeSeriesInstances train = Converter.fromArff(insts[0]);
+        final TimeSeriesInstances test = Converter.fromArff(insts[1]);
+        final List<double[]> expected = new ArrayList<>();
+        for(boolean lowerBound : new boolean[] {false, true}) {
+            final KNN knn = new KNN();
+            final DTWDistance dtw = new DTWDistance();
+            dtw.setWindow(0.1);
+            knn.setDistanceMeasure(dtw);
+            knn.setEarlyAbandonDistances(true);
+            knn.setLowerBoundDistances(lowerBound);
+            knn.setSeed(0);
+            knn.buildClassifier(train);
+            for(int i = 0; i < test.numInstances(); i++) {
+                final double[] distribution = knn.distributionForInstance(test.get(i));
+                if(lowerBound) {
+                    Assert.assertArrayEquals(expected.get(i), distribution, 0d);
+                } else {
+                    expected.add(distribution);
+                }
+            }
+        }
+    }
+}
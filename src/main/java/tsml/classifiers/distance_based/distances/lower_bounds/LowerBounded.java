@@ -0,0 +1,55 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lower_bounds;
+
+import tsml.classifiers.distance_based.distances.DistanceMeasure;
+import tsml.data_containers.TimeSeriesInstance;
+
+/**
+ * A distance measure which can be lower bounded. Envelopes should be built once per series and cached by the caller,
+ * e.g. once per train instance in a nearest neighbour search, as building an envelope is the expensive part of the
+ * lower bound.
+ */
+public interface LowerBounded extends DistanceMeasure {
+
+    /**
+     * Build the envelope of a series for use with this distance measure's current parameters. The envelope must be 
+     * rebuilt if the parameters change.
+     * @param series the series in [dimension][time point] form
+     * @return the envelope
+     */
+    Envelope buildEnvelope(double[][] series);
+    
+    default Envelope buildEnvelope(TimeSeriesInstance inst) {
+        return buildEnvelope(inst.toValueArray());
+    }
+
+    /**
+     * Lower bound the distance between two series. This is symmetric in the sense that the bound holds for 
+     * distance(a, b) and distance(b, a). If the series cannot be bounded (e.g. unequal length) then zero is returned.
+     * @param a the series in [dimension][time point] form
+     * @param b the envelope of the other series, as built by this distance measure
+     * @param limit the distance limit. Computation may stop early once the bound exceeds the limit.
+     * @return the lower bound
+     */
+    double lowerBound(double[][] a, Envelope b, double limit);
+    
+    default double lowerBound(double[][] a, Envelope b) {
+        return lowerBound(a, b, Double.POSITIVE_INFINITY);
+    }
+}
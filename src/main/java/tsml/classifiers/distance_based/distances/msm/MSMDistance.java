@@ -20,8 +20,6 @@ package tsml.classifiers.distance_based.distances.msm;
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import tsml.data_containers.TimeSeries;
-import tsml.data_containers.TimeSeriesInstance;
 
 import java.util.Arrays;
 
@@ -78,16 +76,10 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
      * @param cIndex
      * @return
      */
-    private double cost(final TimeSeriesInstance a, final int aIndex, final TimeSeriesInstance b, final int bIndex, final TimeSeriesInstance c, final int cIndex) {
+    private double cost(final double[][] a, final int aIndex, final double[][] b, final int bIndex, final double[][] c, final int cIndex) {
         double sum = 0;
-        for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final TimeSeries bDim = b.get(i);
-            final TimeSeries cDim = c.get(i);
-            final Double aValue = aDim.get(aIndex);
-            final Double bValue = bDim.get(bIndex);
-            final Double cValue = cDim.get(cIndex);
-            sum += findCost(aValue, bValue, cValue);
+        for(int i = 0; i < a.length; i++) {
+            sum += findCost(a[i][aIndex], b[i][bIndex], c[i][cIndex]);
         }
         return sum;
     }
@@ -100,30 +92,26 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
      * @param bIndex
      * @return
      */
-    private double directCost(final TimeSeriesInstance a, final int aIndex, final TimeSeriesInstance b, final int bIndex) {
+    private double directCost(final double[][] a, final int aIndex, final double[][] b, final int bIndex) {
         double sum = 0;
-        for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final TimeSeries bDim = b.get(i);
-            final Double aValue = aDim.get(aIndex);
-            final Double bValue = bDim.get(bIndex);
-            sum += Math.abs(aValue - bValue);
+        for(int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i][aIndex] - b[i][bIndex]);
         }
         return sum;
     }
 
     @Override
-    public double distance(TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
+    public double distanceMultivariate(double[][] a, double[][] b, final double limit) {
 
         // make a the longest time series
-        if(a.getMaxLength() < b.getMaxLength()) {
-            TimeSeriesInstance tmp = a;
+        if(maxLength(a) < maxLength(b)) {
+            double[][] tmp = a;
             a = b;
             b = tmp;
         }
 
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        final int aLength = maxLength(a);
+        final int bLength = maxLength(b);
         setup(aLength, bLength, true);
 
         // step is the increment of the mid point for each row
@@ -197,7 +185,7 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
         }
         
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
+        final double distance = row[bLength - 1];
         teardown();
         return distance;
     }
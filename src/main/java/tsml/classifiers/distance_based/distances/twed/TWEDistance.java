@@ -18,8 +18,8 @@
 package tsml.classifiers.distance_based.distances.twed;
 
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
 import utilities.ArrayUtilities;
 
@@ -39,42 +39,31 @@ public class TWEDistance
     public static final String NU_FLAG = "n";
     public static final String LAMBDA_FLAG = "l";
 
-    private double cost(final TimeSeriesInstance a, final int aIndex, final TimeSeriesInstance b, final int bIndex) {
-        double sum = 0;
-        for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final TimeSeries bDim = b.get(i);
-            final double aValue = aDim.get(aIndex);
-            final double bValue = bDim.get(bIndex);
-            final double sqDiff = StrictMath.pow(aValue - bValue, 2);
-            sum += sqDiff;
-        }
-        return sum;
+    private double cost(final double[][] a, final int aIndex, final double[][] b, final int bIndex) {
+        return DTWDistance.cost(a, aIndex, b, bIndex);
     }
     
-    private double cellCost(final TimeSeriesInstance a, final int aIndex) {
+    private double cellCost(final double[][] a, final int aIndex) {
         double sum = 0;
-        for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final double aValue = aDim.get(aIndex);
-            final double sq = StrictMath.pow(aValue, 2);
-            sum += sq;
+        for(int i = 0; i < a.length; i++) {
+            final double value = a[i][aIndex];
+            sum += value * value;
         }
         return sum;
     }
     
     @Override
-    public double distance(TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
+    public double distanceMultivariate(double[][] a, double[][] b, final double limit) {
 
         // make a the longest time series
-        if(a.getMaxLength() < b.getMaxLength()) {
-            TimeSeriesInstance tmp = a;
+        if(maxLength(a) < maxLength(b)) {
+            double[][] tmp = a;
             a = b;
             b = tmp;
         }
 
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        final int aLength = maxLength(a);
+        final int bLength = maxLength(b);
         setup(aLength + 1, bLength + 1, true);
 
         // step is the increment of the mid point for each row
@@ -171,7 +160,7 @@ public class TWEDistance
         }
         
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
+        final double distance = row[bLength];
         teardown();
         return distance;
     }
@@ -18,11 +18,18 @@
 package tsml.classifiers.distance_based.distances.wdtw;
 
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.lower_bounds.Envelope;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbImproved;
+import tsml.classifiers.distance_based.distances.lower_bounds.LbKim;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBound;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBoundCascade;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBounded;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
 import tsml.data_containers.TimeSeriesInstance;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 import static tsml.classifiers.distance_based.distances.dtw.DTWDistance.cost;
 
@@ -32,10 +39,13 @@ import static tsml.classifiers.distance_based.distances.dtw.DTWDistance.cost;
  * Contributors: goastler
  */
 public class WDTWDistance
-    extends MatrixBasedDistanceMeasure implements WDTW {
+    extends MatrixBasedDistanceMeasure implements WDTW, LowerBounded {
 
     private double g = 0.05;
-    private double[] weights = new double[0];
+    // volatile as the weights may be grown by one thread whilst another is computing a distance
+    private volatile double[] weights = new double[0];
+    // the cascade of (unweighted) DTW lower bounds to prune with, cheapest first
+    private LowerBound lowerBound = new LowerBoundCascade(new LbKim(), new LbImproved());
 
     @Override
     public double getG() {
@@ -51,30 +61,65 @@ public class WDTWDistance
         this.g = g;
     }
     
-    private void generateWeights(int length) {
+    private double[] generateWeights(int length) {
+        double[] weights = this.weights;
         if(weights.length < length) {
             final double halfLength = (double) length / 2;
-            double[] oldWeights = weights;
+            final double[] oldWeights = weights;
+            // populate the new weights before publishing them so other threads never see a partially filled array
             weights = new double[length];
             System.arraycopy(oldWeights, 0, weights, 0, oldWeights.length);
             for(int i = oldWeights.length; i < length; i++) {
                 weights[i] = 1d / (1d + Math.exp(-g * (i - halfLength)));
             }
+            this.weights = weights;
         }
+        return weights;
+    }
+
+    public LowerBound getLowerBound() {
+        return lowerBound;
+    }
+
+    public void setLowerBound(final LowerBound lowerBound) {
+        this.lowerBound = Objects.requireNonNull(lowerBound);
+    }
+
+    @Override public Envelope buildEnvelope(final double[][] series) {
+        // WDTW is unconstrained, so the envelope covers the whole series
+        return new Envelope(series, Math.max(0, maxLength(series) - 1));
+    }
+
+    @Override public double lowerBound(final double[][] a, final Envelope b, final double limit) {
+        final int length = Math.max(maxLength(a), maxLength(b.getSeries()));
+        if(length == 0 || b.getRadius() < b.getLength() - 1) {
+            return 0;
+        }
+        // every cell cost is weighted by at least the smallest weight, so the weighted DTW is bounded by the unweighted
+        // DTW bound scaled by the smallest weight
+        final double[] weights = generateWeights(length);
+        double minWeight = weights[0];
+        for(int i = 1; i < length; i++) {
+            minWeight = Math.min(minWeight, weights[i]);
+        }
+        if(minWeight <= 0) {
+            return 0;
+        }
+        return minWeight * lowerBound.lowerBound(a, b, limit / minWeight);
     }
 
     @Override
-    public double distance(TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
+    public double distanceMultivariate(double[][] a, double[][] b, final double limit) {
         
         // make a the longest time series
-        if(a.getMaxLength() < b.getMaxLength()) {
-            TimeSeriesInstance tmp = a;
+        if(maxLength(a) < maxLength(b)) {
+            double[][] tmp = a;
             a = b;
             b = tmp;
         }
 
-        final int aLength = a.getMaxLength();
-        final int bLength = b.getMaxLength();
+        final int aLength = maxLength(a);
+        final int bLength = maxLength(b);
         setup(aLength, bLength, true);
 
         // step is the increment of the mid point for each row
@@ -83,7 +128,7 @@ public class WDTWDistance
         final double windowSize = window * bLength;
 
         // generate weights for soft weighting of costs
-        generateWeights(Math.max(aLength, bLength));
+        final double[] weights = generateWeights(Math.max(aLength, bLength));
 
         // row index
         int i = 0;
@@ -150,7 +195,7 @@ public class WDTWDistance
         }
         
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
+        final double distance = row[bLength - 1];
         teardown();
         return distance;
     }
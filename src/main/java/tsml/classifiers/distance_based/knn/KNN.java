@@ -26,6 +26,8 @@ import experiments.data.DatasetLoading;
 import tsml.classifiers.TrainEstimateTimeable;
 import tsml.classifiers.distance_based.distances.DistanceMeasure;
 import tsml.classifiers.distance_based.distances.ed.EDistance;
+import tsml.classifiers.distance_based.distances.lower_bounds.Envelope;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBounded;
 import tsml.classifiers.distance_based.utils.classifiers.configs.Configs;
 import tsml.classifiers.distance_based.utils.collections.pruned.PrunedMap;
 import tsml.classifiers.distance_based.utils.classifiers.BaseClassifier;
@@ -123,6 +125,7 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
             knn.setAutoK(false);
             knn.setEarlyPredict(false);
             knn.setEarlyAbandonDistances(false);
+            knn.setLowerBoundDistances(false);
             knn.setNeighbourhoodSizeLimit(-1);
             knn.setNeighbourhoodSizeLimitProportional(1d);
         });
@@ -142,6 +145,11 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
     private int neighbourhoodSize;
     private boolean earlyPredict;
     private boolean earlyAbandonDistances;
+    // prune neighbours using the lower bound of the distance measure, if it has one. This requires early abandoning to
+    // be enabled, otherwise there is no limit to prune against
+    private boolean lowerBoundDistances;
+    // the envelope of each train inst for lower bounding, built lazily as envelopes depend on the distance measure params
+    private transient Envelope[] envelopes;
     private boolean autoK;
     private int bestK;
     
@@ -156,6 +164,7 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
     
     public static final String EARLY_PREDICT_FLAG = "p";
     public static final String EARLY_ABANDON_DISTANCES_FLAG = "e";
+    public static final String LOWER_BOUND_DISTANCES_FLAG = "l";
     public static final String NEIGHBOURHOOD_SIZE_LIMIT_FLAG = "n";
     public static final String AUTO_K_FLAG = "a";
     
@@ -188,6 +197,7 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         return super.getParams()
                        .add(DistanceMeasure.DISTANCE_MEASURE_FLAG, distanceMeasure)
                        .add(EARLY_ABANDON_DISTANCES_FLAG, earlyAbandonDistances)
+                       .add(LOWER_BOUND_DISTANCES_FLAG, lowerBoundDistances)
                        .add(EARLY_PREDICT_FLAG, earlyPredict)
                        .add(NEIGHBOURHOOD_SIZE_LIMIT_FLAG, neighbourhoodSizeLimit)
                        .add(AUTO_K_FLAG, autoK);
@@ -197,6 +207,7 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         super.setParams(params);
         setDistanceMeasure(params.get(DistanceMeasure.DISTANCE_MEASURE_FLAG, distanceMeasure));
         setEarlyAbandonDistances(params.get(EARLY_ABANDON_DISTANCES_FLAG, earlyAbandonDistances));
+        setLowerBoundDistances(params.get(LOWER_BOUND_DISTANCES_FLAG, lowerBoundDistances));
         setEarlyPredict(params.get(EARLY_PREDICT_FLAG, earlyPredict));
         setAutoK(params.get(AUTO_K_FLAG, autoK));
     }
@@ -264,6 +275,7 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
                 super.buildClassifier(data);
                 neighbourhoodSize = 0;
                 trainData = data;
+                envelopes = null;
                 longestAddNeighbourTime = 0;
                 runTimer.reset();
                 runTimer.start(timeStamp);
@@ -424,6 +436,7 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
 
     public void setDistanceMeasure(final DistanceMeasure distanceMeasure) {
         this.distanceMeasure = Objects.requireNonNull(distanceMeasure);
+        envelopes = null;
     }
 
     public int getK() {
@@ -462,6 +475,33 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         this.earlyAbandonDistances = earlyAbandonDistances;
     }
 
+    public boolean isLowerBoundDistances() {
+        return lowerBoundDistances;
+    }
+
+    public void setLowerBoundDistances(final boolean lowerBoundDistances) {
+        this.lowerBoundDistances = lowerBoundDistances;
+    }
+    
+    private boolean lowerBoundActive() {
+        return lowerBoundDistances && earlyAbandonDistances && distanceMeasure instanceof LowerBounded;
+    }
+
+    /**
+     * Get the envelope of a train inst, building it if not already cached.
+     */
+    private Envelope getEnvelope(int instIndexInTrainData) {
+        if(envelopes == null) {
+            envelopes = new Envelope[trainData.numInstances()];
+        }
+        Envelope envelope = envelopes[instIndexInTrainData];
+        if(envelope == null) {
+            envelope = ((LowerBounded) distanceMeasure).buildEnvelope(trainData.get(instIndexInTrainData));
+            envelopes[instIndexInTrainData] = envelope;
+        }
+        return envelope;
+    }
+
     @Override public long getTrainTimeLimit() {
         return trainTimeLimit;
     }
@@ -535,6 +575,8 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         private int homogeneousLabelIndex = -1;
         private final List<List<Integer>> unseenNeighbourIndicesByClass;
         private final List<Integer> availableClassIndices = new UnorderedArrayList<>();
+        // the values of the target for lower bounding, populated on demand
+        private transient double[][] targetValues;
         
         public boolean isTargetInTrainData() {
             return targetIndexInTrainData >= 0;
@@ -548,6 +590,18 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
             }
         }
 
+        private double[][] getTargetValues() {
+            if(targetValues == null) {
+                if(isTargetInTrainData()) {
+                    // reuse the values held by the envelope to save copying the target again
+                    targetValues = getEnvelope(targetIndexInTrainData).getSeries();
+                } else {
+                    targetValues = target.toValueArray();
+                }
+            }
+            return targetValues;
+        }
+
         public void setK(int k) {
             if(nearestNeighbourIndices.setLimit(k)) {
                 updateDistribution = true;
@@ -648,8 +702,16 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
                     limit = Math.max(this.limit, altSearch.getLimit());
                 }
 
-                // compute the distance to the neighbour
-                distance = distanceMeasure.distance(getTarget(), neighbour, limit);
+                // compute the distance to the neighbour, skipping the computation if the lower bound shows the
+                // neighbour cannot be within the limit. Note the lower bound is valid in both directions, so it holds
+                // for the alt search too
+                if(limit != Double.POSITIVE_INFINITY && lowerBoundActive()
+                        && ((LowerBounded) distanceMeasure).lowerBound(getTargetValues(),
+                        getEnvelope(neighbourIndexInTrainData), limit) > limit) {
+                    distance = Double.POSITIVE_INFINITY;
+                } else {
+                    distance = distanceMeasure.distance(getTarget(), neighbour, limit);
+                }
                 nearest = add(neighbourIndexInTrainData, distance);
                 
                 if(nearest && earlyPredict) {
@@ -22,6 +22,7 @@ import evaluation.evaluators.Evaluator;
 import evaluation.evaluators.OutOfBagEvaluator;
 import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainEstimateTimeable;
 import tsml.classifiers.distance_based.utils.classifiers.*;
 import tsml.classifiers.distance_based.utils.classifiers.checkpointing.CheckpointConfig;
@@ -41,7 +42,8 @@ import tsml.data_containers.TimeSeriesInstances;
 import utilities.ClassifierTools;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static utilities.ArrayUtilities.*;
 import static utilities.Utilities.argMax;
@@ -52,7 +54,7 @@ import static utilities.Utilities.argMax;
  * Contributors: goastler
  */
 public class ProximityForest extends BaseClassifier implements ContractedTrain, ContractedTest, TrainEstimateTimeable,
-                                                                       Checkpointed, MemoryWatchable {
+                                                                       Checkpointed, MemoryWatchable, MultiThreadable {
 
     public static void main(String[] args) throws Exception {
 ////        Thread.sleep(10000);
@@ -156,6 +158,13 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
     private double[][] trainEstimateDistributions;
     private final StopWatch evaluationTimer = new StopWatch();
     private long[] trainEstimatePredictionTimes;
+    // seeds drawn for the trees after the last tree in the forest, i.e. trees being built. Checkpointed so trees lost
+    // mid build are rebuilt with the same seeds on resuming.
+    private List<Integer> treeSeeds;
+    // the number of trees to build / predict with concurrently
+    private int numThreads = 1;
+    // executor on the shared pool for building / predicting trees in parallel. Not checkpointed, recreated on demand.
+    private transient ExecutorService executor;
 
     @Override public long getMaxMemoryUsage() {
         return memoryWatcher.getMaxMemoryUsage();
@@ -196,6 +205,7 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
                 checkpointConfig.resetCheckpointingTime();
                 // no constituents to start with
                 trees = new ArrayList<>();
+                treeSeeds = new ArrayList<>();
                 treeEvaluators = new ArrayList<>();
                 treeTrainResults = new ArrayList<>();
                 // zero tree build time so the first tree build will always set the bar
@@ -220,8 +230,6 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
         // whether work has been done in this call to buildClassifier
         boolean workDone = false;
-        // maintain a timer for how long trees take to build
-        final StopWatch trainStageTimer = new StopWatch();
         // while remaining time / more trees need to be built
         if(estimateOwnPerformance && trainEstimateMethod.equals(TrainEstimateMethod.CV)) {
             // if there's a train contract then need to spend half the time CV'ing
@@ -254,65 +262,69 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
             LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
             getLogger().info("cross validation finished, acc " + trainResults.getAcc());
         }
-        while(
-                // there's remaining trees to be built
-                insideNumTreeLimit()
-                &&
-                // and there's remaining time left to build more trees
-                insideTrainTimeLimit(runTimer.elapsedTime() + longestTrainStageTime)
-        ) {
-            // reset the tree build timer
-            trainStageTimer.resetAndStart();
-            // setup a new tree
-            final int treeIndex = trees.size();
-            final ProximityTree tree = proximityTreeBuilder.build();
-            final int treeSeed = rand.nextInt();
-            tree.setSeed(treeSeed);
-            // setup the constituent
-            trees.add(tree);
-            // estimate the performance of the tree
-            if(estimateOwnPerformance && trainEstimateMethod.equals(TrainEstimateMethod.OOB)) {
-                // the timer for contracting the estimate of train error
-                evaluationTimer.start();
-                // build train estimate based on method
-                final OutOfBagEvaluator oobe = new OutOfBagEvaluator();
-                oobe.setCloneClassifier(false);
-                oobe.setSeed(treeSeed);
-                treeEvaluators.add(oobe);
-                getLogger().info(() -> "oob evaluating tree " + treeIndex);
-                // evaluate the tree
-                final ClassifierResults treeEvaluationResults = oobe.evaluate(tree, trainData);
-                treeTrainResults.add(treeEvaluationResults);
-                // for each index in the test data of the oobe
-                final List<Integer> outOfBagTestDataIndices = oobe.getOutOfBagTestDataIndices();
-                // for each instance in the oobe test data, add the distribution and prediction time to the corresponding instance predictions in the train estimate results
-                for(int oobeIndex = 0; oobeIndex < outOfBagTestDataIndices.size(); oobeIndex++) {
-                    final int trainDataIndex = outOfBagTestDataIndices.get(oobeIndex);
-                    // get the corresponding distribution from the oobe results
-                    double[] distribution = treeEvaluationResults.getProbabilityDistribution(oobeIndex);
-                    distribution = vote(treeIndex, distribution);
-                    // get the corresponding distribution from the train estimate distribution
-                    // add tree's distribution for this instance onto the overall train estimate distribution for this instance
-                    add(trainEstimateDistributions[trainDataIndex], distribution);
-                    // add the prediction time from the oobe to the time for this instance in the train estimate
-                    trainEstimatePredictionTimes[trainDataIndex] += treeEvaluationResults.getPredictionTime(oobeIndex);
+        final boolean oob = estimateOwnPerformance && trainEstimateMethod.equals(TrainEstimateMethod.OOB);
+        // trees are built on the shared pool, starting the next tree as soon as a thread frees up. A single thread
+        // reduces to building trees one at a time.
+        final CompletionService<TreeBuild> completionService =
+                numThreads > 1 ? new ExecutorCompletionService<>(getExecutor()) : null;
+        // trees which finished ahead of a tree before them, held until they can be added in order
+        final Map<Integer, TreeBuild> finishedBuilds = new HashMap<>();
+        int nextTreeIndex = trees.size();
+        int numRunning = 0;
+        while(true) {
+            // start trees while there are free threads, trees left to build and time left to build them
+            while(numRunning < numThreads
+                    &&
+                    // there's remaining trees to be built
+                    (!hasNumTreeLimit() || nextTreeIndex < numTreeLimit)
+                    &&
+                    // and there's remaining time left to build more trees
+                    insideTrainTimeLimit(runTimer.elapsedTime() + longestTrainStageTime)
+            ) {
+                // setup a new tree. Seeds are drawn in tree order, so each tree is independent of thread timings
+                final int treeIndex = nextTreeIndex++;
+                final int seedIndex = treeIndex - trees.size();
+                if(seedIndex == treeSeeds.size()) {
+                    treeSeeds.add(rand.nextInt());
                 }
-                treeEvaluationResults.setErrorEstimateMethod(getEstimatorMethod());
-                evaluationTimer.stop();
+                final int treeSeed = treeSeeds.get(seedIndex);
+                final ProximityTree tree = proximityTreeBuilder.build();
+                tree.setSeed(treeSeed);
+                final OutOfBagEvaluator oobe;
+                if(oob) {
+                    // build train estimate based on method
+                    oobe = new OutOfBagEvaluator();
+                    oobe.setCloneClassifier(false);
+                    oobe.setSeed(treeSeed);
+                } else {
+                    oobe = null;
+                }
+                final Callable<TreeBuild> task = () -> buildTree(treeIndex, treeSeed, tree, oobe, trainData);
+                if(completionService == null) {
+                    finishedBuilds.put(treeIndex, task.call());
+                } else {
+                    completionService.submit(task);
+                }
+                numRunning++;
+            }
+            if(numRunning == 0) {
+                break;
+            }
+            // wait for the next tree to finish
+            TreeBuild build = completionService == null ? finishedBuilds.get(trees.size()) : take(completionService);
+            numRunning--;
+            finishedBuilds.put(build.treeIndex, build);
+            // the longest time a single tree has taken is the time the contract needs to allow to start another
+            longestTrainStageTime = Math.max(longestTrainStageTime, build.evaluationTime + build.buildTime);
+            // add the finished trees in tree order
+            while((build = finishedBuilds.remove(trees.size())) != null) {
+                addTree(build, oob);
             }
-            // build the tree if not producing train estimate OR rebuild after evaluation
-            getLogger().info(() -> "building tree " + treeIndex);
-            tree.setRebuild(true);
-            tree.buildClassifier(trainData);
-            // tree fully built
-            trainStageTimer.stop();
             workDone = true;
-            // optional checkpoint
+            // optional checkpoint. Trees still being built are not part of the checkpoint, but their seeds are
             saveCheckpoint();
             // update train timer
             LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
-            // update longest tree build time
-            longestTrainStageTime = Math.max(longestTrainStageTime, trainStageTimer.elapsedTime());
         }
         // if work has been done towards estimating the train error via OOB
         if(estimateOwnPerformance && workDone && trainEstimateMethod.equals(TrainEstimateMethod.OOB)) {
@@ -353,25 +365,30 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
     public double[] distributionForInstance(final TimeSeriesInstance instance) throws Exception {
         // start timer
         testTimer.resetAndStart();
-        // track how long every stage (i.e. every tree prediction) takes, recording the longest
-        long longestTestStageTimeNanos = 0;
-        // time each stage of the prediction
-        final StopWatch testStageTimer = new StopWatch();
+        // track how long the longest tree prediction takes so no tree is started which would exceed the contract
+        final AtomicLong longestTestStageTimeNanos = new AtomicLong();
+        final long timeStamp = System.nanoTime();
         final double[] finalDistribution = new double[getNumClasses()];
-        // while there's remaining constituents to be examined and remaining test time
-        for(int i = 0;
-            i < trees.size()
-            &&
-            (testTimeLimit <= 0 || testTimer.elapsedTime() + longestTestStageTimeNanos < testTimeLimit)
-                ; i++) {
-            testStageTimer.resetAndStart();
-            // let the constituent vote
-            final double[] distribution = vote(i, instance);
-            // add the vote to the total votes
-            add(finalDistribution, distribution);
-            // update timings
-            testStageTimer.stop();
-            longestTestStageTimeNanos = Math.max(longestTestStageTimeNanos, testStageTimer.elapsedTime());
+        // predict with every tree at once, a tree skipping its prediction if there's not enough test time remaining
+        final List<Callable<double[]>> tasks = new ArrayList<>(trees.size());
+        for(final ProximityTree tree : trees) {
+            tasks.add(() -> {
+                final long startTime = System.nanoTime();
+                if(testTimeLimit > 0 && startTime - timeStamp + longestTestStageTimeNanos.get() >= testTimeLimit) {
+                    return null;
+                }
+                final double[] distribution = tree.distributionForInstance(instance);
+                longestTestStageTimeNanos.accumulateAndGet(System.nanoTime() - startTime, Math::max);
+                return distribution;
+            });
+        }
+        final List<double[]> distributions = invoke(tasks);
+        // let the constituents vote in order, as tie breaks consume random numbers
+        for(final double[] distribution : distributions) {
+            if(distribution != null) {
+                // add the vote to the total votes
+                add(finalDistribution, vote(distribution, getRandom()));
+            }
         }
         // normalise the final vote, i.e. [71,29] --> [.71,.29]
         normalise(finalDistribution);
@@ -380,15 +397,139 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         return finalDistribution;
     }
     
-    private double[] vote(int constituentIndex, TimeSeriesInstance instance) throws Exception {
-        final ProximityTree tree = trees.get(constituentIndex);
-        final double[] distribution = tree.distributionForInstance(instance);
-        return vote(constituentIndex, distribution);
+    /**
+     * Add a finished tree to the forest, merging its out-of-bag predictions into the train estimate.
+     */
+    private void addTree(TreeBuild build, boolean oob) {
+        trees.add(build.tree);
+        treeSeeds.remove(0);
+        if(build.evaluationTime > 0) {
+            // evaluation ran alongside building across threads, so attribute the evaluation's share of the tree's
+            // time to the evaluation timer rather than the summed thread time (which may exceed the run time)
+            evaluationTimer.add(build.evaluationTime / numThreads);
+        }
+        if(!oob) {
+            return;
+        }
+        treeEvaluators.add(build.evaluator);
+        final ClassifierResults treeEvaluationResults = build.evaluationResults;
+        treeTrainResults.add(treeEvaluationResults);
+        // ties are broken by the tree's own random source, so the estimate does not depend on when the tree finished
+        final Random voteRandom = new Random(build.treeSeed);
+        // for each index in the test data of the oobe
+        final List<Integer> outOfBagTestDataIndices = build.evaluator.getOutOfBagTestDataIndices();
+        // for each instance in the oobe test data, add the distribution and prediction time to the corresponding instance predictions in the train estimate results
+        for(int oobeIndex = 0; oobeIndex < outOfBagTestDataIndices.size(); oobeIndex++) {
+            final int trainDataIndex = outOfBagTestDataIndices.get(oobeIndex);
+            // get the corresponding distribution from the oobe results
+            double[] distribution = treeEvaluationResults.getProbabilityDistribution(oobeIndex);
+            distribution = vote(distribution, voteRandom);
+            // add tree's distribution for this instance onto the overall train estimate distribution for this instance
+            add(trainEstimateDistributions[trainDataIndex], distribution);
+            // add the prediction time from the oobe to the time for this instance in the train estimate
+            trainEstimatePredictionTimes[trainDataIndex] += treeEvaluationResults.getPredictionTime(oobeIndex);
+        }
+        treeEvaluationResults.setErrorEstimateMethod(getEstimatorMethod());
+    }
+
+    /**
+     * Evaluate (optionally) and build a single tree. This runs concurrently with other trees so must not touch the 
+     * state of the forest.
+     */
+    private TreeBuild buildTree(int treeIndex, int treeSeed, ProximityTree tree, OutOfBagEvaluator oobe,
+                                TimeSeriesInstances trainData) throws Exception {
+        final TreeBuild build = new TreeBuild();
+        build.treeIndex = treeIndex;
+        build.treeSeed = treeSeed;
+        build.tree = tree;
+        build.evaluator = oobe;
+        long timeStamp = System.nanoTime();
+        if(oobe != null) {
+            getLogger().info(() -> "oob evaluating tree " + treeIndex);
+            // evaluate the tree
+            build.evaluationResults = oobe.evaluate(tree, trainData);
+            build.evaluationTime = System.nanoTime() - timeStamp;
+            timeStamp = System.nanoTime();
+        }
+        // build the tree if not producing train estimate OR rebuild after evaluation
+        getLogger().info(() -> "building tree " + treeIndex);
+        tree.setRebuild(true);
+        tree.buildClassifier(trainData);
+        build.buildTime = System.nanoTime() - timeStamp;
+        return build;
     }
     
-    private double[] vote(int constituentIndex, double[] distribution) {
+    // the outcome of building a single tree
+    private static class TreeBuild {
+        private int treeIndex;
+        private int treeSeed;
+        private ProximityTree tree;
+        private OutOfBagEvaluator evaluator;
+        private ClassifierResults evaluationResults;
+        private long evaluationTime;
+        private long buildTime;
+    }
+
+    /**
+     * Run a set of tasks, in parallel if multithreading is enabled. Results are returned in task order.
+     */
+    private <A> List<A> invoke(List<Callable<A>> tasks) throws Exception {
+        final List<A> results = new ArrayList<>(tasks.size());
+        if(numThreads <= 1 || tasks.size() <= 1) {
+            for(Callable<A> task : tasks) {
+                results.add(task.call());
+            }
+        } else {
+            for(Future<A> future : getExecutor().invokeAll(tasks)) {
+                results.add(get(future));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the next task to finish and return its result.
+     */
+    private static <A> A take(CompletionService<A> completionService) throws Exception {
+        return get(completionService.take());
+    }
+
+    private static <A> A get(Future<A> future) throws Exception {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        if(executor == null) {
+            executor = MultiThreadable.getSharedExecutor(numThreads);
+        }
+        return executor;
+    }
+
+    @Override public void enableMultiThreading(int numThreads) {
+        // may be asked for zero threads on a single core machine
+        numThreads = Math.max(1, numThreads);
+        if(numThreads != this.numThreads && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        this.numThreads = numThreads;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    private static double[] vote(double[] distribution, Random random) {
         // vote for the highest probability class
-        final int index = argMax(distribution, getRandom());
+        final int index = argMax(distribution, random);
         return oneHot(distribution.length, index);
     }
 
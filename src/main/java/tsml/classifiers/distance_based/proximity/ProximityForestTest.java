@@ -0,0 +1,71 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.proximity;
+
+import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstances;
+
+public class ProximityForestTest {
+    
+    private static ProximityForest build(TimeSeriesInstances train, int numThreads, boolean oob) throws Exception {
+        final ProximityForest pf = ProximityForest.CONFIGS.get(oob ? "PF_R1_OOB" : "PF_R1").build();
+        pf.setNumTreeLimit(10);
+        pf.setSeed(0);
+        pf.setEstimateOwnPerformance(oob);
+        pf.enableMultiThreading(numThreads);
+        pf.buildClassifier(train);
+        return pf;
+    }
+    
+    @Test
+    public void testMultiThreadedPredictionsMatchSingleThreaded() throws Exception {
+        // without a train estimate the trees are seeded in the same order regardless of threads, so predictions match
+        final TimeSeriesInstances[] data = DatasetLoading.sampleItalyPowerDemandTS(0);
+        final ProximityForest serial = build(data[0], 1, false);
+        final ProximityForest parallel = build(data[0], 4, false);
+        Assert.assertTrue(parallel.isFullyBuilt());
+        for(int i = 0; i < data[1].numInstances(); i++) {
+            Assert.assertArrayEquals(serial.distributionForInstance(data[1].get(i)), 
+                    parallel.distributionForInstance(data[1].get(i)), 0d);
+        }
+    }
+    
+    @Test
+    public void testMultiThreadedOutOfBagMatchesSingleThreaded() throws Exception {
+        // out-of-bag votes are tie broken per tree, so the estimate does not depend on the order trees finish in
+        final TimeSeriesInstances[] data = DatasetLoading.sampleItalyPowerDemandTS(0);
+        final ProximityForest serial = build(data[0], 1, true);
+        final ProximityForest parallel = build(data[0], 4, true);
+        Assert.assertTrue(parallel.isFullyBuilt());
+        final ClassifierResults serialResults = serial.getTrainResults();
+        final ClassifierResults parallelResults = parallel.getTrainResults();
+        Assert.assertEquals(data[0].numInstances(), parallelResults.numInstances());
+        Assert.assertArrayEquals(serialResults.getPredClassValsAsArray(), parallelResults.getPredClassValsAsArray(), 0d);
+        for(int i = 0; i < data[0].numInstances(); i++) {
+            Assert.assertArrayEquals(serialResults.getProbabilityDistribution(i), 
+                    parallelResults.getProbabilityDistribution(i), 0d);
+        }
+        for(int i = 0; i < data[1].numInstances(); i++) {
+            Assert.assertArrayEquals(serial.distributionForInstance(data[1].get(i)),
+                    parallel.distributionForInstance(data[1].get(i)), 0d);
+        }
+    }
+}
@@ -26,6 +26,8 @@ import tsml.classifiers.distance_based.distances.dtw.spaces.*;
 import tsml.classifiers.distance_based.distances.ed.spaces.EDistanceSpace;
 import tsml.classifiers.distance_based.distances.erp.spaces.ERPDistanceRestrictedContinuousSpace;
 import tsml.classifiers.distance_based.distances.lcss.spaces.LCSSDistanceRestrictedContinuousSpace;
+import tsml.classifiers.distance_based.distances.lower_bounds.Envelope;
+import tsml.classifiers.distance_based.distances.lower_bounds.LowerBounded;
 import tsml.classifiers.distance_based.distances.msm.spaces.MSMDistanceSpace;
 import tsml.classifiers.distance_based.distances.transformed.TransformDistanceMeasure;
 import tsml.classifiers.distance_based.distances.twed.spaces.TWEDistanceSpace;
@@ -129,6 +131,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
                         pt.setPartitionExaminationReordering(false);
                         pt.setEarlyExemplarCheck(false);
                         pt.setEarlyAbandonDistances(false);
+                        pt.setLowerBoundDistances(false);
                         pt.setDimensionConversion(DimensionConversionMode.NONE);
                         pt.setDistanceMode(DistanceMode.DEPENDENT);
                         pt.setDimensionSamplingMode(DimensionSamplingMode.SINGLE);
@@ -193,6 +196,9 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
     private boolean breadthFirst = false;
     // whether to use early abandon in the distance computations
     private boolean earlyAbandonDistances;
+    // whether to prune distance computations using the lower bound of the distance measure, if it has one. Requires 
+    // early abandoning to be enabled
+    private boolean lowerBoundDistances;
     // whether to use a quick check for exemplars
     private boolean earlyExemplarCheck;
     // enhanced early abandon distance computation via ordering partition examination to hit the most likely closest exemplar sooner
@@ -600,6 +606,14 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         this.earlyAbandonDistances = earlyAbandonDistances;
     }
 
+    public boolean isLowerBoundDistances() {
+        return lowerBoundDistances;
+    }
+
+    public void setLowerBoundDistances(final boolean lowerBoundDistances) {
+        this.lowerBoundDistances = lowerBoundDistances;
+    }
+
     public boolean isPartitionExaminationReordering() {
         return partitionExaminationReordering;
     }
@@ -623,6 +637,8 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         // store pairwise set of data in the partition and corresponding exemplar
         private List<Integer> exemplarIndicesInSplitData;
         private List<TimeSeriesInstance> exemplars;
+        // the envelope of each exemplar for lower bounding distances, built on demand
+        private transient Envelope[] exemplarEnvelopes;
         private List<List<Integer>> partitionedDataIndicesInSplitData; // each list is a partition containing indices of insts in that partition. I.e. [[1,2,3],[4,5,6]] means partition 0 contains the 1,2,3rd inst at this split while partition 1 contains 4,5,6th inst at this split
         
         // partitionIndices houses all the partitions to look at when partitioning. This obviously stays consistent (i.e. look at all partitions in order) when not using early abandon
@@ -790,7 +806,17 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         private Transformer getCachedTransformer(Transformer transformer) {
             if(transformerCache != null) {
                 // get from internal source
-                return transformerCache.computeIfAbsent(transformer, x -> new CachedTransformer(transformer));
+                final CachedTransformer cachedTransformer = transformerCache.computeIfAbsent(transformer, x -> {
+                    final CachedTransformer cached = new CachedTransformer(transformer);
+                    // the same instance objects are transformed repeatedly, so avoid hashing their content on every
+                    // lookup
+                    cached.setKeyMode(CachedTransformer.KeyMode.IDENTITY);
+                    return cached;
+                });
+                // only cache the transforms of the data at this split. Any other instance, e.g. a test instance, is
+                // transformed without being cached, otherwise the cache would grow with every prediction
+                cachedTransformer.fit(transformedDataAtSplit);
+                return cachedTransformer;
             } else {
                 return transformer;
             }
@@ -984,6 +1010,22 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
             return distanceMeasure;
         }
         
+        private boolean lowerBoundActive() {
+            return lowerBoundDistances && earlyAbandonDistances && distanceMeasure instanceof LowerBounded;
+        }
+        
+        private Envelope getExemplarEnvelope(int i) {
+            if(exemplarEnvelopes == null) {
+                exemplarEnvelopes = new Envelope[exemplars.size()];
+            }
+            Envelope envelope = exemplarEnvelopes[i];
+            if(envelope == null) {
+                envelope = ((LowerBounded) distanceMeasure).buildEnvelope(exemplars.get(i));
+                exemplarEnvelopes[i] = envelope;
+            }
+            return envelope;
+        }
+        
         public int findPartitionIndexFor(final TimeSeriesInstance inst, int instIndexInSplitData, List<Integer> partitionIndices) {
             final int partitionIndexIndex = findPartitionIndexIndexFor(inst, instIndexInSplitData, partitionIndices);
             return partitionIndices.get(partitionIndexIndex);
@@ -1007,6 +1049,8 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
             final PrunedMap<Double, Integer> filter = PrunedMap.asc(1);
             // maintain a limit on distance computation
             double limit = Double.POSITIVE_INFINITY;
+            // the values of the inst for lower bounding, populated on demand
+            double[][] instValues = null;
             // loop through exemplars / partitions
             for(int i = 0; i < partitionIndicesIterator.size(); i++) {
                 final Integer exemplarIndexInSplitData = exemplarIndicesInSplitData.get(i);
@@ -1015,8 +1059,21 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
                     return i;
                 }
                 final TimeSeriesInstance exemplar = exemplars.get(i);
-                // find the distance
-                final double distance = distanceMeasure.distance(exemplar, inst, limit);
+                // find the distance, skipping the computation if the lower bound shows the exemplar cannot be within 
+                // the limit
+                final double distance;
+                if(limit != Double.POSITIVE_INFINITY && lowerBoundActive()) {
+                    if(instValues == null) {
+                        instValues = inst.toValueArray();
+                    }
+                    if(((LowerBounded) distanceMeasure).lowerBound(instValues, getExemplarEnvelope(i), limit) > limit) {
+                        distance = Double.POSITIVE_INFINITY;
+                    } else {
+                        distance = distanceMeasure.distance(exemplar, inst, limit);
+                    }
+                } else {
+                    distance = distanceMeasure.distance(exemplar, inst, limit);
+                }
                 // add the distance and partition to the map
                 if(filter.add(distance, i)) {
                     // new min dist
@@ -59,6 +59,14 @@ public class BiCache<A, B, C> extends Cached implements Serializable {
         cache.clear();
     }
 
+    public int size() {
+        int size = 0;
+        for(HashMap<B, C> subCache : cache.values()) {
+            size += subCache.size();
+        }
+        return size;
+    }
+
     public boolean remove(A firstKey, B secondKey) {
         HashMap<B, C> subCache = cache.get(firstKey);
         if(subCache != null) {
@@ -0,0 +1,401 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.classifiers.distance_based.utils.collections.cache;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread safe cache bounded by a memory budget. Each value is weighed in bytes on insertion and the least recently
+ * used entries are evicted once the budget is exceeded. Evicted values can optionally be spilled to disk, in which case
+ * they are read back (and removed from disk) the next time they are requested.
+ * <p>
+ * The cache is split into independently locked segments to allow concurrent access. Each segment holds an equal share
+ * of the budget. Values are computed outside of the lock, so concurrent requests for the same missing key may compute
+ * the value more than once.
+ *
+ * @param <K> the key type. Keys are compared using equals / hashCode, wrap keys in {@link IdentityKey} to compare by
+ *           identity instead.
+ * @param <V> the value type. Must be serializable to be spilled to disk.
+ */
+public class BoundedCache<K, V> extends Cached implements Serializable {
+
+    private static final int DEFAULT_NUM_SEGMENTS = 16;
+
+    /**
+     * Estimates the number of bytes a value occupies in memory.
+     */
+    public interface Weigher<V> extends Serializable {
+        long weigh(V value);
+    }
+
+    private final Segment<K, V>[] segments;
+    private final long memoryBudget;
+    private final Weigher<? super V> weigher;
+    // where to spill evicted values to, or null to discard them
+    private File spillDirectory;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder spills = new LongAdder();
+
+    /**
+     * @param memoryBudget the max number of bytes to use for storing values
+     * @param weigher the function to estimate the size of each value
+     */
+    public BoundedCache(long memoryBudget, Weigher<? super V> weigher) {
+        this(memoryBudget, weigher, DEFAULT_NUM_SEGMENTS);
+    }
+
+    /**
+     * @param memoryBudget the max number of bytes to use for storing values
+     * @param weigher the function to estimate the size of each value
+     * @param numSegments the number of independently locked segments, i.e. the number of threads which can access the
+     *                    cache without contention
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(long memoryBudget, Weigher<? super V> weigher, int numSegments) {
+        if(memoryBudget <= 0) {
+            throw new IllegalArgumentException("memory budget must be positive: " + memoryBudget);
+        }
+        if(numSegments <= 0) {
+            throw new IllegalArgumentException("number of segments must be positive: " + numSegments);
+        }
+        if(weigher == null) {
+            throw new NullPointerException("weigher cannot be null");
+        }
+        this.memoryBudget = memoryBudget;
+        this.weigher = weigher;
+        segments = new Segment[numSegments];
+        for(int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<>(Math.max(1, memoryBudget / numSegments));
+        }
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int hash = key.hashCode();
+        // spread the high bits down as the lower bits of some hash codes (e.g. identity) vary little
+        hash ^= hash >>> 16;
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    /**
+     * @return the cached value or null if not cached
+     */
+    public V get(K key) {
+        if(isRead()) {
+            final Segment<K, V> segment = segmentFor(key);
+            final File file;
+            synchronized(segment) {
+                final Entry<V> entry = segment.entries.get(key);
+                if(entry != null) {
+                    hits.increment();
+                    return entry.value;
+                }
+                file = segment.spilled.remove(key);
+            }
+            if(file != null) {
+                final V value = unspill(file);
+                if(value != null) {
+                    hits.increment();
+                    put(key, value);
+                    return value;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public boolean contains(K key) {
+        if(!isRead()) {
+            return false;
+        }
+        final Segment<K, V> segment = segmentFor(key);
+        synchronized(segment) {
+            return segment.entries.containsKey(key) || segment.spilled.containsKey(key);
+        }
+    }
+
+    /**
+     * Cache a value. Values larger than a segment's share of the memory budget are not cached.
+     */
+    public void put(K key, V value) {
+        if(!isWrite()) {
+            return;
+        }
+        final long weight = weigher.weigh(value);
+        final Segment<K, V> segment = segmentFor(key);
+        final Map<K, V> evicted = new HashMap<>();
+        synchronized(segment) {
+            final Entry<V> previous = segment.entries.remove(key);
+            if(previous != null) {
+                segment.bytes -= previous.weight;
+            }
+            deleteQuietly(segment.spilled.remove(key));
+            if(weight > segment.memoryBudget) {
+                return;
+            }
+            segment.entries.put(key, new Entry<>(value, weight));
+            segment.bytes += weight;
+            // evict least recently used entries until back within budget
+            final Iterator<Map.Entry<K, Entry<V>>> iterator = segment.entries.entrySet().iterator();
+            while(segment.bytes > segment.memoryBudget) {
+                final Map.Entry<K, Entry<V>> eldest = iterator.next();
+                iterator.remove();
+                segment.bytes -= eldest.getValue().weight;
+                evictions.increment();
+                evicted.put(eldest.getKey(), eldest.getValue().value);
+            }
+        }
+        if(spillDirectory != null) {
+            // write outside of the lock as disk io is slow
+            for(Map.Entry<K, V> entry : evicted.entrySet()) {
+                final File file = spill(entry.getValue());
+                if(file != null) {
+                    synchronized(segment) {
+                        if(segment.entries.containsKey(entry.getKey())) {
+                            // reinserted whilst spilling, so the spilled copy is stale
+                            deleteQuietly(file);
+                        } else {
+                            deleteQuietly(segment.spilled.put(entry.getKey(), file));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the cached value or compute and cache the value if absent.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if(value == null) {
+            value = function.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public V remove(K key) {
+        final Segment<K, V> segment = segmentFor(key);
+        synchronized(segment) {
+            deleteQuietly(segment.spilled.remove(key));
+            final Entry<V> entry = segment.entries.remove(key);
+            if(entry == null) {
+                return null;
+            }
+            segment.bytes -= entry.weight;
+            return entry.value;
+        }
+    }
+
+    public void clear() {
+        for(Segment<K, V> segment : segments) {
+            synchronized(segment) {
+                segment.entries.clear();
+                segment.bytes = 0;
+                segment.spilled.values().forEach(BoundedCache::deleteQuietly);
+                segment.spilled.clear();
+            }
+        }
+    }
+
+    private File spill(V value) {
+        try {
+            final File file = File.createTempFile("cache", ".ser", spillDirectory);
+            try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeObject(value);
+            }
+            spills.increment();
+            return file;
+        } catch(IOException e) {
+            // cannot spill, so the value is simply dropped from the cache
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unspill(File file) {
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (V) in.readObject();
+        } catch(IOException | ClassNotFoundException e) {
+            // e.g. the file has been removed since spilling, treat as a miss
+            return null;
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        if(file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * @return the number of values held in memory
+     */
+    public int size() {
+        int size = 0;
+        for(Segment<K, V> segment : segments) {
+            synchronized(segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of values spilled to disk
+     */
+    public int getSpilledSize() {
+        int size = 0;
+        for(Segment<K, V> segment : segments) {
+            synchronized(segment) {
+                size += segment.spilled.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated number of bytes used by values held in memory
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for(Segment<K, V> segment : segments) {
+            synchronized(segment) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Spilled files are deleted when they are read back, removed, replaced or cleared. Call clear() when finished with
+     * the cache to delete any still on disk.
+     *
+     * @param spillDirectory the directory to spill evicted values to, or null to discard evicted values
+     */
+    public void setSpillDirectory(final File spillDirectory) {
+        if(spillDirectory != null && !spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create spill directory: " + spillDirectory);
+        }
+        this.spillDirectory = spillDirectory;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getSpillCount() {
+        return spills.sum();
+    }
+
+    public double getHitRate() {
+        final long hits = getHitCount();
+        final long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void resetMetrics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        spills.reset();
+    }
+
+    @Override public String toString() {
+        return "BoundedCache{" +
+                       "size=" + size() +
+                       ", spilled=" + getSpilledSize() +
+                       ", bytes=" + getBytes() +
+                       ", memoryBudget=" + memoryBudget +
+                       ", hitRate=" + getHitRate() +
+                       ", evictions=" + getEvictionCount() +
+                       '}';
+    }
+
+    private static class Entry<V> implements Serializable {
+        private final V value;
+        private final long weight;
+
+        private Entry(final V value, final long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static class Segment<K, V> implements Serializable {
+        private final long memoryBudget;
+        // access ordered so iteration starts at the least recently used entry
+        private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<K, File> spilled = new HashMap<>();
+        private long bytes;
+
+        private Segment(final long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+        }
+    }
+
+    /**
+     * Wraps a key so it is compared by identity rather than equals / hashCode. This avoids hashing / comparing the
+     * content of large keys, at the cost of missing when an equal but distinct object is looked up.
+     */
+    public static final class IdentityKey<A> implements Serializable {
+        private final A key;
+
+        public IdentityKey(final A key) {
+            this.key = key;
+        }
+
+        public A get() {
+            return key;
+        }
+
+        @Override public boolean equals(final Object o) {
+            return o instanceof IdentityKey && ((IdentityKey<?>) o).key == key;
+        }
+
+        @Override public int hashCode() {
+            return System.identityHashCode(key);
+        }
+    }
+}
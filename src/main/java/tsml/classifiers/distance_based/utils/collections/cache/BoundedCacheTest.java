@@ -0,0 +1,134 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.classifiers.distance_based.utils.collections.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BoundedCacheTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static BoundedCache<Integer, double[]> buildCache(long memoryBudget) {
+        // single segment so eviction order is predictable
+        return new BoundedCache<>(memoryBudget, value -> (long) value.length * Double.BYTES, 1);
+    }
+    
+    @Test
+    public void testPutGet() {
+        final BoundedCache<Integer, double[]> cache = buildCache(1 << 20);
+        Assert.assertNull(cache.get(1));
+        cache.put(1, new double[] {1, 2});
+        cache.put(2, new double[] {3});
+        Assert.assertArrayEquals(new double[] {1, 2}, cache.get(1), 0d);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(24, cache.getBytes());
+        cache.put(1, new double[] {4});
+        Assert.assertArrayEquals(new double[] {4}, cache.get(1), 0d);
+        Assert.assertEquals(16, cache.getBytes());
+        Assert.assertArrayEquals(new double[] {3}, cache.remove(2), 0d);
+        Assert.assertNull(cache.remove(2));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final BoundedCache<Integer, double[]> cache = buildCache(3 * Double.BYTES);
+        cache.put(1, new double[1]);
+        cache.put(2, new double[1]);
+        cache.put(3, new double[1]);
+        // touch 1 so 2 is the least recently used
+        cache.get(1);
+        cache.put(4, new double[1]);
+        Assert.assertTrue(cache.contains(1));
+        Assert.assertFalse(cache.contains(2));
+        Assert.assertTrue(cache.contains(3));
+        Assert.assertTrue(cache.contains(4));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        // too large to ever fit
+        cache.put(5, new double[4]);
+        Assert.assertFalse(cache.contains(5));
+        Assert.assertEquals(3, cache.size());
+    }
+    
+    @Test
+    public void testSpill() throws Exception {
+        final BoundedCache<Integer, double[]> cache = buildCache(2 * Double.BYTES);
+        cache.setSpillDirectory(folder.newFolder());
+        for(int i = 0; i < 5; i++) {
+            cache.put(i, new double[] {i});
+        }
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(3, cache.getSpilledSize());
+        Assert.assertEquals(3, cache.getSpillCount());
+        for(int i = 0; i < 5; i++) {
+            Assert.assertArrayEquals(new double[] {i}, cache.get(i), 0d);
+        }
+        Assert.assertEquals(5, cache.getHitCount());
+        // values read back are deleted from disk, so only the values currently spilled have files
+        Assert.assertEquals(cache.getSpilledSize(), cache.getSpillDirectory().list().length);
+        cache.clear();
+        Assert.assertEquals(0, cache.getSpilledSize());
+        Assert.assertEquals(0, cache.getSpillDirectory().list().length);
+    }
+    
+    @Test
+    public void testIdentityKey() {
+        final BoundedCache<Object, double[]> cache = new BoundedCache<>(1 << 20, value -> value.length);
+        final String a = new String("a");
+        final String b = new String("a");
+        cache.put(new BoundedCache.IdentityKey<>(a), new double[] {1});
+        Assert.assertNotNull(cache.get(new BoundedCache.IdentityKey<>(a)));
+        Assert.assertNull(cache.get(new BoundedCache.IdentityKey<>(b)));
+    }
+    
+    @Test
+    public void testConcurrent() throws Exception {
+        final BoundedCache<Integer, double[]> cache = new BoundedCache<>(100 * Double.BYTES, value -> value.length * Double.BYTES);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for(int t = 0; t < 4; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    for(int i = 0; i < 10000; i++) {
+                        final int key = (i * 7 + offset) % 500;
+                        final double[] value = cache.computeIfAbsent(key, k -> new double[] {k});
+                        Assert.assertEquals(key, value[0], 0d);
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(cache.getBytes() <= cache.getMemoryBudget());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.utils.collections.cache;
+
+/**
+ * A bounded, thread safe cache mapping a pair of ints to a double, e.g. the distance between the i-th and j-th
+ * instance. The pair is packed into the long key of a {@link LongDoubleCache}.
+ */
+public class IntDoubleBiCache extends LongDoubleCache {
+
+    /**
+     * @param memoryBudget the max number of bytes to use for storing entries
+     */
+    public IntDoubleBiCache(long memoryBudget) {
+        super(memoryBudget);
+    }
+
+    /**
+     * @param memoryBudget the max number of bytes to use for storing entries
+     * @param numSegments the number of independently locked segments, i.e. the number of threads which can access the
+     *                    cache without contention. Rounded up to a power of 2.
+     */
+    public IntDoubleBiCache(long memoryBudget, int numSegments) {
+        super(memoryBudget, numSegments);
+    }
+
+    /**
+     * Pack the pair of keys into a single key. Override to alter how pairs are keyed, e.g. symmetrically.
+     */
+    protected long key(int firstKey, int secondKey) {
+        return ((long) firstKey << 32) | (secondKey & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the cached value or the default value if not cached
+     */
+    public double getOrDefault(int firstKey, int secondKey, double defaultValue) {
+        return getOrDefault(key(firstKey, secondKey), defaultValue);
+    }
+
+    /**
+     * @return the cached value or NaN if not cached
+     */
+    public double get(int firstKey, int secondKey) {
+        return get(key(firstKey, secondKey));
+    }
+
+    public boolean contains(int firstKey, int secondKey) {
+        return contains(key(firstKey, secondKey));
+    }
+
+    public void put(int firstKey, int secondKey, double value) {
+        put(key(firstKey, secondKey), value);
+    }
+
+    public boolean remove(int firstKey, int secondKey) {
+        return remove(key(firstKey, secondKey));
+    }
+
+    /**
+     * Get the cached value, computing and caching it if absent. The function is run outside of any lock so 
+     * expensive computations (e.g. distances) do not block other threads. Therefore two threads may compute the same
+     * value concurrently, in which case the last one wins.
+     */
+    public double computeIfAbsent(int firstKey, int secondKey, Function function) {
+        return computeIfAbsent(key(firstKey, secondKey), key -> function.apply(firstKey, secondKey));
+    }
+
+    @FunctionalInterface
+    public interface Function {
+        double apply(int firstKey, int secondKey);
+    }
+}
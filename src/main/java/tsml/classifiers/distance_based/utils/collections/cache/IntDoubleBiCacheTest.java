@@ -0,0 +1,157 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.utils.collections.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class IntDoubleBiCacheTest {
+    
+    @Test
+    public void testPutGet() {
+        final IntDoubleBiCache cache = new IntDoubleBiCache(1 << 20);
+        Assert.assertTrue(Double.isNaN(cache.get(1, 2)));
+        cache.put(1, 2, 3.5);
+        cache.put(-1, 7, -2);
+        Assert.assertEquals(3.5, cache.get(1, 2), 0d);
+        Assert.assertEquals(-2, cache.get(-1, 7), 0d);
+        // order matters
+        Assert.assertFalse(cache.contains(2, 1));
+        cache.put(1, 2, 4);
+        Assert.assertEquals(4, cache.get(1, 2), 0d);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.remove(1, 2));
+        Assert.assertFalse(cache.remove(1, 2));
+        Assert.assertFalse(cache.contains(1, 2));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(3, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+    
+    @Test
+    public void testSymmetric() {
+        final IntDoubleBiCache cache = new SymmetricIntDoubleBiCache(1 << 20);
+        cache.put(5, 3, 1);
+        Assert.assertEquals(1, cache.get(3, 5), 0d);
+        cache.put(3, 5, 2);
+        Assert.assertEquals(2, cache.get(5, 3), 0d);
+        Assert.assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void testComputeIfAbsent() {
+        final IntDoubleBiCache cache = new IntDoubleBiCache(1 << 20);
+        final int[] count = {0};
+        for(int i = 0; i < 3; i++) {
+            Assert.assertEquals(6, cache.computeIfAbsent(2, 3, (a, b) -> {
+                count[0]++;
+                return a * b;
+            }), 0d);
+        }
+        Assert.assertEquals(1, count[0]);
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+    
+    @Test
+    public void testBounded() {
+        // 1KB budget over a single segment
+        final IntDoubleBiCache cache = new IntDoubleBiCache(1024, 1);
+        final int maxSize = cache.getMaxSize();
+        Assert.assertTrue(maxSize * 17 <= 1024);
+        for(int i = 0; i < 1000; i++) {
+            cache.put(i, i, i);
+            Assert.assertTrue(cache.size() <= maxSize);
+        }
+        Assert.assertEquals(maxSize, cache.size());
+        Assert.assertEquals(1000 - maxSize, cache.getEvictionCount());
+        // whatever remains must map to the right values, i.e. eviction has not corrupted the table
+        int found = 0;
+        for(int i = 0; i < 1000; i++) {
+            if(cache.contains(i, i)) {
+                Assert.assertEquals(i, cache.get(i, i), 0d);
+                found++;
+            }
+        }
+        Assert.assertEquals(maxSize, found);
+    }
+    
+    @Test
+    public void testClockKeepsReferencedEntries() {
+        final IntDoubleBiCache cache = new IntDoubleBiCache(1024, 1);
+        final int maxSize = cache.getMaxSize();
+        for(int i = 0; i < maxSize; i++) {
+            cache.put(i, 0, i);
+        }
+        // touch the first entry, then keep adding new entries. The touched entry gets a second chance each time the 
+        // clock passes it, so should outlive the untouched ones
+        for(int i = maxSize; i < maxSize * 2 - 1; i++) {
+            cache.get(0, 0);
+            cache.put(i, 0, i);
+        }
+        Assert.assertTrue(cache.contains(0, 0));
+    }
+    
+    @Test
+    public void testConcurrent() throws Exception {
+        final IntDoubleBiCache cache = new SymmetricIntDoubleBiCache(1 << 16, 4);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for(int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for(int i = 0; i < 200; i++) {
+                        for(int j = 0; j < 200; j++) {
+                            final double value = cache.computeIfAbsent(i, j, (a, b) -> Math.min(a, b) * 1000 + Math.max(a, b));
+                            Assert.assertEquals(Math.min(i, j) * 1000 + Math.max(i, j), value, 0d);
+                        }
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(cache.size() <= cache.getMaxSize());
+        Assert.assertEquals(4 * 200 * 200, cache.getHitCount() + cache.getMissCount());
+    }
+    
+    @Test
+    public void testSymmetricBiCacheStoresOnce() {
+        final SymmetricBiCache<String, Double> cache = new SymmetricBiCache<>();
+        cache.put("a", "b", 1d);
+        cache.put("b", "a", 2d);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2d, cache.get("a", "b"), 0d);
+        // distinct keys with the same hash code
+        cache.put("Aa", "BB", 3d);
+        cache.put("BB", "Aa", 4d);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(4d, cache.get("Aa", "BB"), 0d);
+        Assert.assertTrue(cache.remove("BB", "Aa"));
+        Assert.assertEquals(1, cache.size());
+    }
+}
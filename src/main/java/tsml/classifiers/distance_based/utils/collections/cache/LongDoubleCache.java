@@ -0,0 +1,379 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.utils.collections.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * A bounded, thread safe cache mapping a long to a double. Keys and values are held in primitive arrays rather than
+ * boxed in maps, so the cache costs ~17 bytes per entry and can be bounded by a memory budget. Once full, entries are
+ * evicted using the clock (second chance) approximation of LRU. Composite keys (e.g. a pair of ints) can be packed
+ * into the long key.
+ * <p>
+ * The table is split into independently locked segments to allow concurrent access. Each segment is an open
+ * addressing hash table with linear probing, which grows as required until it reaches its share of the memory budget.
+ */
+public class LongDoubleCache extends Cached implements Serializable {
+
+    // key, value and state arrays per entry
+    private static final int BYTES_PER_ENTRY = Long.BYTES + Double.BYTES + 1;
+    private static final int DEFAULT_NUM_SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // slot states. Referenced entries have been read / written since the clock hand last passed them.
+    private static final byte EMPTY = 0;
+    private static final byte UNREFERENCED = 1;
+    private static final byte REFERENCED = 2;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param memoryBudget the max number of bytes to use for storing entries
+     */
+    public LongDoubleCache(long memoryBudget) {
+        this(memoryBudget, DEFAULT_NUM_SEGMENTS);
+    }
+
+    /**
+     * @param memoryBudget the max number of bytes to use for storing entries
+     * @param numSegments the number of independently locked segments, i.e. the number of threads which can access the
+     *                    cache without contention. Rounded up to a power of 2.
+     */
+    public LongDoubleCache(long memoryBudget, int numSegments) {
+        if(memoryBudget <= 0) {
+            throw new IllegalArgumentException("memory budget must be positive: " + memoryBudget);
+        }
+        if(numSegments <= 0) {
+            throw new IllegalArgumentException("number of segments must be positive: " + numSegments);
+        }
+        numSegments = powerOfTwoAtLeast(numSegments);
+        // largest power of 2 capacity per segment which fits within the budget. Min of 2 slots so there's always an
+        // empty slot to terminate probing.
+        final long slotsPerSegment = memoryBudget / BYTES_PER_ENTRY / numSegments;
+        final int capacity = (int) Math.max(2, Long.highestOneBit(Math.min(slotsPerSegment, 1 << 30)));
+        segments = new Segment[numSegments];
+        for(int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(capacity);
+        }
+        segmentShift = 64 - Integer.numberOfTrailingZeros(numSegments);
+    }
+
+    private static int powerOfTwoAtLeast(int value) {
+        final int highestOneBit = Integer.highestOneBit(value);
+        return highestOneBit == value ? value : highestOneBit << 1;
+    }
+
+    private static long hash(long key) {
+        // murmur3 64 bit finaliser to spread the bits of the packed keys
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private Segment segmentFor(long hash) {
+        // use the high bits for the segment as the low bits are used for the slot within the segment
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * @return the cached value or the default value if not cached
+     */
+    public double getOrDefault(long key, double defaultValue) {
+        if(isRead()) {
+            final long hash = hash(key);
+            final Segment segment = segmentFor(hash);
+            synchronized(segment) {
+                final int index = segment.find(key, hash);
+                if(index >= 0) {
+                    hits.increment();
+                    segment.states[index] = REFERENCED;
+                    return segment.values[index];
+                }
+            }
+        }
+        misses.increment();
+        return defaultValue;
+    }
+
+    /**
+     * @return the cached value or NaN if not cached
+     */
+    public double get(long key) {
+        return getOrDefault(key, Double.NaN);
+    }
+
+    public boolean contains(long key) {
+        if(!isRead()) {
+            return false;
+        }
+        final long hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized(segment) {
+            return segment.find(key, hash) >= 0;
+        }
+    }
+
+    public void put(long key, double value) {
+        if(!isWrite()) {
+            return;
+        }
+        final long hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized(segment) {
+            if(segment.put(key, hash, value)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    public boolean remove(long key) {
+        final long hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized(segment) {
+            final int index = segment.find(key, hash);
+            if(index >= 0) {
+                segment.removeAt(index);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Get the cached value, computing and caching it if absent. The function is run outside of any lock so 
+     * expensive computations (e.g. distances) do not block other threads. Therefore two threads may compute the same
+     * value concurrently, in which case the last one wins.
+     */
+    public double computeIfAbsent(long key, LongToDoubleFunction function) {
+        if(isRead()) {
+            final long hash = hash(key);
+            final Segment segment = segmentFor(hash);
+            synchronized(segment) {
+                final int index = segment.find(key, hash);
+                if(index >= 0) {
+                    hits.increment();
+                    segment.states[index] = REFERENCED;
+                    return segment.values[index];
+                }
+            }
+        }
+        misses.increment();
+        final double value = function.applyAsDouble(key);
+        put(key, value);
+        return value;
+    }
+
+    public void clear() {
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the max number of entries the cache can hold before evicting
+     */
+    public int getMaxSize() {
+        return segments.length * maxSize(segments[0].maxCapacity);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        final long hits = getHitCount();
+        final long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void resetMetrics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override public String toString() {
+        return getClass().getSimpleName() + "{size=" + size() + ", maxSize=" + getMaxSize() + ", hits=" + getHitCount()
+                       + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    private static int maxSize(int capacity) {
+        // keep the load factor at 3/4 to keep probe sequences short
+        return Math.max(1, capacity / 4 * 3);
+    }
+
+    private static class Segment implements Serializable {
+        private long[] keys;
+        private double[] values;
+        private byte[] states;
+        private int mask;
+        private int maxSize;
+        private final int maxCapacity;
+        private int size;
+        // the position of the clock hand for eviction
+        private int hand;
+
+        private Segment(int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            values = new double[capacity];
+            states = new byte[capacity];
+            mask = capacity - 1;
+            maxSize = maxSize(capacity);
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final double[] oldValues = values;
+            final byte[] oldStates = states;
+            allocate(keys.length * 2);
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldStates[i] != EMPTY) {
+                    int index = (int) hash(oldKeys[i]) & mask;
+                    while(states[index] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                    states[index] = oldStates[i];
+                }
+            }
+            hand = 0;
+        }
+
+        private int find(long key, long hash) {
+            int index = (int) hash & mask;
+            while(states[index] != EMPTY) {
+                if(keys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * @return true if an entry was evicted to make room
+         */
+        private boolean put(long key, long hash, double value) {
+            int index = find(key, hash);
+            if(index >= 0) {
+                values[index] = value;
+                states[index] = REFERENCED;
+                return false;
+            }
+            boolean evicted = false;
+            if(size >= maxSize) {
+                if(keys.length < maxCapacity) {
+                    grow();
+                } else {
+                    evict();
+                    evicted = true;
+                }
+            }
+            index = (int) hash & mask;
+            while(states[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            // new entries start unreferenced so a scan through the cache does not flush out frequently used entries
+            states[index] = UNREFERENCED;
+            size++;
+            return evicted;
+        }
+
+        private void evict() {
+            // sweep the clock hand, giving referenced entries a second chance, until an unreferenced entry is found
+            while(true) {
+                final byte state = states[hand];
+                if(state == REFERENCED) {
+                    states[hand] = UNREFERENCED;
+                } else if(state == UNREFERENCED) {
+                    removeAt(hand);
+                    return;
+                }
+                hand = (hand + 1) & mask;
+            }
+        }
+
+        private void removeAt(int index) {
+            // backward shift deletion: move later entries in the probe sequence into the gap so lookups never stop
+            // short at an empty slot
+            int gap = index;
+            int next = index;
+            while(true) {
+                next = (next + 1) & mask;
+                if(states[next] == EMPTY) {
+                    break;
+                }
+                final int home = (int) hash(keys[next]) & mask;
+                // the entry can fill the gap if its home slot is not cyclically within (gap, next]
+                final boolean between = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+                if(!between) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    states[gap] = states[next];
+                    gap = next;
+                }
+            }
+            states[gap] = EMPTY;
+            size--;
+        }
+
+        private void clear() {
+            // release the memory of a grown table
+            allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+            size = 0;
+            hand = 0;
+        }
+    }
+}
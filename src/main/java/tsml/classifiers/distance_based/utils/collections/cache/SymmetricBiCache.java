@@ -17,14 +17,36 @@
  
 package tsml.classifiers.distance_based.utils.collections.cache;
 
+import java.util.Objects;
+
+/**
+ * A BiCache where the order of the keys does not matter. Each pair is stored once, ordered by the hash codes of the 
+ * keys. Only distinct keys sharing a hash code cannot be ordered that way, in which case whichever order the pair was 
+ * first stored under is used.
+ */
 public class SymmetricBiCache<A, B> extends BiCache<A, A, B> {
 
     // todo cache state read / write
 
+    /**
+     * @return negative if the keys are already in canonical order, positive if they need swapping or zero if they 
+     * cannot be ordered
+     */
+    private int compare(final A firstKey, final A secondKey) {
+        return Integer.compare(Objects.hashCode(firstKey), Objects.hashCode(secondKey));
+    }
+    
+    private boolean isUnordered(final A firstKey, final A secondKey) {
+        return compare(firstKey, secondKey) == 0 && !Objects.equals(firstKey, secondKey);
+    }
+
     @Override
     public B get(final A firstKey, final A secondKey) {
+        if(compare(firstKey, secondKey) > 0) {
+            return super.get(secondKey, firstKey);
+        }
         B result = super.get(firstKey, secondKey);
-        if(result == null) {
+        if(result == null && isUnordered(firstKey, secondKey)) {
             result = super.get(secondKey, firstKey);
         }
         return result;
@@ -32,13 +54,21 @@ public class SymmetricBiCache<A, B> extends BiCache<A, A, B> {
 
     @Override
     public void put(final A firstKey, final A secondKey, final B value) {
-        super.put(firstKey, secondKey, value);
+        if(compare(firstKey, secondKey) > 0 
+                   || (isUnordered(firstKey, secondKey) && super.get(secondKey, firstKey) != null)) {
+            super.put(secondKey, firstKey, value);
+        } else {
+            super.put(firstKey, secondKey, value);
+        }
     }
 
     @Override
     public boolean remove(final A firstKey, final A secondKey) {
+        if(compare(firstKey, secondKey) > 0) {
+            return super.remove(secondKey, firstKey);
+        }
         boolean removed = super.remove(firstKey, secondKey);
-        if(!removed) {
+        if(!removed && isUnordered(firstKey, secondKey)) {
             removed = super.remove(secondKey, firstKey);
         }
         return removed;
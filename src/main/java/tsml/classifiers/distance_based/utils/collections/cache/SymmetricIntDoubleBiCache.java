@@ -0,0 +1,40 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.utils.collections.cache;
+
+/**
+ * An IntDoubleBiCache where the order of the keys does not matter, e.g. for caching symmetric distances. Each pair is
+ * stored once under the ordered (min, max) key.
+ */
+public class SymmetricIntDoubleBiCache extends IntDoubleBiCache {
+
+    public SymmetricIntDoubleBiCache(final long memoryBudget) {
+        super(memoryBudget);
+    }
+
+    public SymmetricIntDoubleBiCache(final long memoryBudget, final int numSegments) {
+        super(memoryBudget, numSegments);
+    }
+
+    @Override protected long key(final int firstKey, final int secondKey) {
+        if(firstKey > secondKey) {
+            return super.key(secondKey, firstKey);
+        }
+        return super.key(firstKey, secondKey);
+    }
+}
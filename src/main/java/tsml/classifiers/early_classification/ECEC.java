@@ -3,7 +3,7 @@ package tsml.classifiers.early_classification;
 import evaluation.evaluators.CrossValidationEvaluator;
 import evaluation.storage.ClassifierResults;
 import tsml.classifiers.EnhancedAbstractClassifier;
-import weka.classifiers.AbstractClassifier;
+import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 import weka.core.Randomizable;
@@ -61,7 +61,7 @@ public class ECEC extends EarlyDecisionMaker implements Randomizable, LoadableEa
                 CrossValidationEvaluator cv = new CrossValidationEvaluator();
                 cv.setSeed(seed);
                 cv.setNumFolds(5);
-                ClassifierResults r = cv.crossValidateWithStats(AbstractClassifier.makeCopy(classifiers[i]),
+                ClassifierResults r = cv.crossValidateWithStats(ClassifierTools.makeCopy(classifiers[i]),
                         truncatedData);
                 trainProbabilities[i] = r.getProbabilityDistributionsAsArray();
             }
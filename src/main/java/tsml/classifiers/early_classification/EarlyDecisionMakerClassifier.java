@@ -18,7 +18,7 @@ import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
 import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.interval_based.TSF;
-import weka.classifiers.AbstractClassifier;
+import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -114,7 +114,7 @@ public class EarlyDecisionMakerClassifier extends AbstractEarlyClassifier implem
                 Instances newData = truncateInstances(data, length, thresholds[i]);
                 if (normalise) newData = zNormaliseWithClass(newData);
 
-                classifiers[i] = AbstractClassifier.makeCopy(classifier);
+                classifiers[i] = ClassifierTools.makeCopy(classifier);
                 classifiers[i].buildClassifier(newData);
             }
 
@@ -124,7 +124,7 @@ public class EarlyDecisionMakerClassifier extends AbstractEarlyClassifier implem
             else{
                 Classifier[] blankClassifiers = new Classifier[thresholds.length];
                 for (int i = 0; i < blankClassifiers.length; i++) {
-                    blankClassifiers[i] = AbstractClassifier.makeCopy(classifier);
+                    blankClassifiers[i] = ClassifierTools.makeCopy(classifier);
                 }
                 decisionMaker.fit(data, blankClassifiers, thresholds);
             }
@@ -17,7 +17,7 @@ package tsml.classifiers.early_classification;
 import evaluation.evaluators.CrossValidationEvaluator;
 import evaluation.storage.ClassifierResults;
 import tsml.classifiers.EnhancedAbstractClassifier;
-import weka.classifiers.AbstractClassifier;
+import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 import weka.core.Randomizable;
@@ -91,7 +91,7 @@ public class SR1CF1 extends EarlyDecisionMaker implements Randomizable, Loadable
                 CrossValidationEvaluator cv = new CrossValidationEvaluator();
                 cv.setSeed(seed);
                 cv.setNumFolds(5);
-                ClassifierResults r = cv.crossValidateWithStats(AbstractClassifier.makeCopy(classifiers[i]),
+                ClassifierResults r = cv.crossValidateWithStats(ClassifierTools.makeCopy(classifiers[i]),
                         truncatedData);
                 cvProbabilities[i] = r.getProbabilityDistributionsAsArray();
             }
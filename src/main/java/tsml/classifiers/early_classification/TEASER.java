@@ -18,7 +18,7 @@ import com.carrotsearch.hppc.IntIntHashMap;
 import evaluation.evaluators.CrossValidationEvaluator;
 import evaluation.storage.ClassifierResults;
 import tsml.classifiers.EnhancedAbstractClassifier;
-import weka.classifiers.AbstractClassifier;
+import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
 import weka.classifiers.functions.LibSVM;
 import weka.core.*;
@@ -82,7 +82,7 @@ public class TEASER extends EarlyDecisionMaker implements Randomizable, Loadable
                 CrossValidationEvaluator cv = new CrossValidationEvaluator();
                 cv.setSeed(seed);
                 cv.setNumFolds(5);
-                ClassifierResults r = cv.crossValidateWithStats(AbstractClassifier.makeCopy(classifiers[i]),
+                ClassifierResults r = cv.crossValidateWithStats(ClassifierTools.makeCopy(classifiers[i]),
                         truncatedData);
                 trainProbabilities[i] = r.getProbabilityDistributionsAsArray();
             }
@@ -215,7 +215,7 @@ public class TEASER extends EarlyDecisionMaker implements Randomizable, Loadable
                     for (int n = 0; n < noFolds; n++) {
                         Instances cvTrain = probData.trainCV(noFolds, n);
                         Instances cvTest = probData.testCV(noFolds, n);
-                        LibSVM svmCV = (LibSVM) AbstractClassifier.makeCopy(svmCandidate);
+                        LibSVM svmCV = (LibSVM) ClassifierTools.makeCopy(svmCandidate);
                         svmCV.buildClassifier(cvTrain);
 
                         for (Instance inst : cvTest) {
@@ -25,6 +25,7 @@ import machine_learning.classifiers.ensembles.AbstractEnsemble;
 import machine_learning.classifiers.ensembles.voting.MajorityConfidence;
 import machine_learning.classifiers.ensembles.weightings.TrainAcc;
 import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import tsml.classifiers.Tuneable;
 import tsml.classifiers.dictionary_based.BOSS;
@@ -82,6 +83,18 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
     private int defaultSettings = 2;
     private Resizer resizer;
 
+    /**
+     * Relative cost of building each module, used to split a contract between them. Equal unless set through 
+     * setComponentCosts(...), never changed by a build so that rebuilding the same configuration is reproducible
+     */
+    protected double[] componentCosts;
+
+    /**
+     * Time taken to build each module (and estimate its performance) in the last build, which can be passed 
+     * to setComponentCosts(...) to split the contract of a later build
+     */
+    protected transient double[] observedComponentCosts;
+
     @Override
     public TechnicalInformation getTechnicalInformation() {
         TechnicalInformation 	result;
@@ -315,13 +328,16 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
             printDebug(" \n ");
         }
 
+        setupComponentThreading();
         if (trainTimeContract){
             printLineDebug(" In build of HC2: contract time = "+trainContractTimeNanos/1000000000/60/60+" hours ");
             setupContracting();
         }
 
+        observedComponentCosts = null;
         super.buildClassifier(Converter.toArff(data));
         trainResults.setParas(getParameters());
+        recordComponentCosts();
         printLineDebug("*************** Finished HIVE-COTE Build with train time " +
                 (trainResults.getBuildTime()/1000000000/60/60.0) + " hours, Train+Estimate time = "+(trainResults.getBuildPlusEstimateTime()/1000000000/60/60.0)+" hours ***************");
 
@@ -350,13 +366,16 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
             printDebug(" \n ");
         }
 
+        setupComponentThreading();
         if (trainTimeContract){
             printLineDebug(" In build of HC2: contract time = "+trainContractTimeNanos/1000000000/60/60+" hours ");
             setupContracting();
         }
 
+        observedComponentCosts = null;
         super.buildClassifier(data);
         trainResults.setParas(getParameters());
+        recordComponentCosts();
         printLineDebug("*************** Finished HIVE-COTE Build with train time " +
                 (trainResults.getBuildTime()/1000000000/60/60.0) + " hours, Train+Estimate time = "+(trainResults.getBuildPlusEstimateTime()/1000000000/60/60.0)+" hours ***************");
 
@@ -396,9 +415,10 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
      *      a 10fold cv) will very likely overshoot the contract, since the classifier would be
      *      trying to keep to contract on each fold and the full build individually, not in total. 
      *      This is an active research question moreso than an implementation question
-     *  3) The contract currently does not consider whether the ensemble is being threaded,
-     *      i.e. even if it can run the building of two or more classifiers in parallel, 
-     *      this will still naively set the contract per classifier as amount/numClassifiers
+     *  3) The time is split in proportion to the cost of each classifier set through 
+     *      setComponentCosts(...), equally otherwise. When threaded, 
+     *      the classifiers are built concurrently and each gets its share of the threads multiplied
+     *      by the full time, up to the full time. 
      */
     /**
      * Overriding TrainTimeContract methods
@@ -444,16 +464,92 @@ public class HIVE_COTE extends AbstractEnsemble implements TechnicalInformationH
         //force nanos in setting base classifier contracts in case e.g. 1 hour was passed, 1/5 = 0...
         TimeUnit highFidelityUnit = TimeUnit.NANOSECONDS;
         long conservativeBaseClassifierContract = (long) (BASE_CLASSIFIER_CONTRACT_PROP * highFidelityUnit.convert(trainContractTimeNanos, contractTrainTimeUnit));
-        long highFidelityTimePerClassifier;
-        if(multiThread)
-            highFidelityTimePerClassifier= (conservativeBaseClassifierContract);
-        else
-            highFidelityTimePerClassifier= (conservativeBaseClassifierContract) / numContractableClassifiers;
+
+        double[] costs = new double[modules.length];
+        double totalCost = 0;
+        for (int i = 0; i < modules.length; i++) {
+            if (!modules[i].isTrainTimeContractable())
+                continue;
+            costs[i] = componentCosts != null && componentCosts.length == modules.length && componentCosts[i] > 0
+                    ? componentCosts[i] : 1;
+            totalCost += costs[i];
+        }
+
+        //when threaded, the modules are built concurrently on numThreads threads, so all the threads for the 
+        //full time are shared between them
+        double concurrency = multiThread ? Math.min(numThreads, numContractableClassifiers) : 1;
         printLineDebug(" Setting up contract\nTotal Contract = "+(trainContractTimeNanos/1000000000/60/60)+" hours");
-        printLineDebug(" Per Classifier = "+highFidelityTimePerClassifier+" Nanos");
+        for (int i = 0; i < modules.length; i++) {
+            if (!modules[i].isTrainTimeContractable())
+                continue;
+            long highFidelityTimePerClassifier = (long) Math.min(conservativeBaseClassifierContract,
+                    conservativeBaseClassifierContract * concurrency * costs[i] / totalCost);
+            printLineDebug(" " + modules[i].getModuleName() + " = " + highFidelityTimePerClassifier + " Nanos");
+            ((TrainTimeContractable) modules[i].getClassifier()).setTrainTimeLimit(highFidelityUnit, highFidelityTimePerClassifier);
+        }
+    }
+
+    /**
+     * When threaded, splits the ensemble's threads between the modules, as they are built and make predictions 
+     * concurrently. Serial modules take one thread each and the multithreaded modules share the rest, at least one 
+     * each, so at most numThreads threads are busy at once. The split is fixed, threads of a module which 
+     * finishes early are not passed on to the others.
+     */
+    protected void setupComponentThreading() {
+        if (!multiThread)
+            return;
+        int numParallel = 0;
         for (EnsembleModule module : modules)
-            if(module.isTrainTimeContractable())
-                ((TrainTimeContractable) module.getClassifier()).setTrainTimeLimit(highFidelityUnit, highFidelityTimePerClassifier);
+            if (module.isMultiThreadable())
+                numParallel++;
+        if (numParallel == 0)
+            return;
+
+        int parallelThreads = Math.max(numParallel, numThreads - (modules.length - numParallel));
+        int m = 0;
+        for (EnsembleModule module : modules) {
+            if (module.isMultiThreadable()) {
+                int moduleThreads = parallelThreads / numParallel + (m++ < parallelThreads % numParallel ? 1 : 0);
+                ((MultiThreadable) module.getClassifier()).enableMultiThreading(moduleThreads);
+            }
+        }
+    }
+
+    /**
+     * Keeps the time taken to build each module (and estimate its performance), see getObservedComponentCosts()
+     */
+    protected void recordComponentCosts() {
+        double[] costs = new double[modules.length];
+        for (int i = 0; i < modules.length; i++) {
+            if (modules[i].trainResults == null)
+                return;
+            long time = modules[i].trainResults.getBuildPlusEstimateTimeInNanos();
+            if (time <= 0)
+                time = modules[i].trainResults.getBuildTimeInNanos();
+            if (time <= 0)
+                return;
+            costs[i] = time;
+        }
+        observedComponentCosts = costs;
+    }
+
+    /**
+     * @param costs relative cost of building each module, in the order of the modules
+     */
+    public void setComponentCosts(double... costs) {
+        this.componentCosts = costs;
+    }
+
+    public double[] getComponentCosts() {
+        return componentCosts;
+    }
+
+    /**
+     * @return time taken to build each module in the last build, in the order of the modules, or null if 
+     *      not known. Not used for contracting unless passed to setComponentCosts(...)
+     */
+    public double[] getObservedComponentCosts() {
+        return observedComponentCosts;
     }
 
     public void setAlpha(double alpha){
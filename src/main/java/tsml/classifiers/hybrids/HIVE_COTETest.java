@@ -0,0 +1,69 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.hybrids;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.MultiThreadable;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class HIVE_COTETest {
+
+    @Test
+    public void testThreadsSplitBetweenModules() {
+        ThreadRecorder[] parallel = { new ThreadRecorder(), new ThreadRecorder(), new ThreadRecorder() };
+        HIVE_COTE hc = new HIVE_COTE();
+        hc.setClassifiers(new Classifier[] { parallel[0], new NaiveBayes(), parallel[1], parallel[2] }, null, null);
+
+        //the serial module takes one thread, the other 7 are shared between the multithreaded modules
+        hc.enableMultiThreading(8);
+        hc.setupComponentThreading();
+        Assert.assertEquals(3, parallel[0].numThreads);
+        Assert.assertEquals(2, parallel[1].numThreads);
+        Assert.assertEquals(2, parallel[2].numThreads);
+
+        //fewer threads than modules, so the modules do not all run at once and each gets one
+        hc.enableMultiThreading(2);
+        hc.setupComponentThreading();
+        for (ThreadRecorder recorder : parallel)
+            Assert.assertEquals(1, recorder.numThreads);
+    }
+
+    private static class ThreadRecorder extends AbstractClassifier implements MultiThreadable {
+
+        private int numThreads;
+
+        @Override
+        public void enableMultiThreading(int numThreads) {
+            this.numThreads = numThreads;
+        }
+
+        @Override
+        public void buildClassifier(Instances data) {
+        }
+
+        @Override
+        public double classifyInstance(Instance instance) {
+            return 0;
+        }
+    }
+}
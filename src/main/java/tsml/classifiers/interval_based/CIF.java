@@ -38,6 +38,7 @@ import weka.core.*;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
@@ -53,7 +54,7 @@ import static utilities.Utilities.argMax;
  * @author Matthew Middlehurst
  **/
 public class CIF extends EnhancedAbstractClassifier implements TechnicalInformationHandler, TrainTimeContractable,
-        Checkpointable, Tuneable, MultiThreadable, Visualisable, Interpretable {
+        Checkpointable, Tuneable, MultiThreadable, Visualisable, Interpretable, ConfigurationCopyable {
 
     /**
      * Paper defining CIF.
@@ -145,6 +146,8 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
     private long lastCheckpointTime = 0;
     private long checkpointTimeDiff = 0;
     private boolean internalContractCheckpointHandling = false;
+    private transient CheckpointLog checkpointLog;
+    private transient int checkpointedTrees = 0;
 
     /**
      * Flags and data required if Contracting
@@ -189,6 +192,12 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
      */
     private transient Catch22 c22;
 
+    /**
+     * Memo of train interval features shared between trees, bounded by a memory budget
+     */
+    private long intervalCacheMemoryBudget = Runtime.getRuntime().maxMemory() / 8;
+    private transient IntervalFeatureCache intervalCache;
+
     protected static final long serialVersionUID = 1L;
 
     /**
@@ -270,6 +279,16 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         base = c;
     }
 
+    /**
+     * Set the memory budget for the train interval features shared between trees. Caching is disabled if not
+     * positive.
+     *
+     * @param b max number of bytes to use
+     */
+    public void setIntervalCacheMemoryBudget(long b) {
+        intervalCacheMemoryBudget = b;
+    }
+
     /**
      * Set whether to perform bagging with replacement.
      *
@@ -362,8 +381,17 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         getTSCapabilities().test(data);
 
         File file = new File(checkpointPath + "CIF" + seed + ".ser");
-        //if checkpointing and serialised files exist load said files
-        if (checkpoint && file.exists()) {
+        checkpointedTrees = 0;
+        if (checkpoint)
+            checkpointLog = new CheckpointLog(checkpointPath + "CIF" + seed + ".log");
+        CheckpointLog.Contents checkpointed = checkpoint && checkpointLog.exists() ? checkpointLog.load() : null;
+        //if checkpointing and a checkpoint log or serialised file exist load said files
+        if (checkpointed != null) {
+            if (debug)
+                System.out.println("Loading from checkpoint log");
+            loadCheckpoint(checkpointed);
+        }
+        else if (checkpoint && file.exists()) {
             //path checkpoint files will be saved to
             if (debug)
                 System.out.println("Loading from checkpoint file");
@@ -437,8 +465,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         }
 
         if (multiThread) {
-            ex = Executors.newFixedThreadPool(numThreads);
-            if (checkpoint) System.out.println("Unable to checkpoint until end of build when multi threading.");
+            ex = MultiThreadable.getSharedExecutor(numThreads);
         }
 
         c22 = new Catch22();
@@ -470,11 +497,15 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         in.setValue(testHolder.numAttributes() - 1, -1);
         testHolder.add(in);
 
+        intervalCache = new IntervalFeatureCache(numInstances, 1, numDimensions, seriesLength, startNumAttributes,
+                intervalCacheMemoryBudget);
+
         if (multiThread) {
             multiThreadBuildCIF(data, result);
         } else {
             buildCIF(data, result);
         }
+        intervalCache = null;
 
         if (trees.size() == 0) {//Not enough time to build a single classifier
             throw new Exception((" ERROR in CIF, no trees built, contract time probably too low. Contract time = "
@@ -482,7 +513,9 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         }
 
         if (checkpoint) {
-            saveToFile(checkpointPath);
+            if (checkpointedTrees < trees.size())
+                checkpoint();
+            checkpointLog.close();
         }
 
         trainResults.setTimeUnit(TimeUnit.NANOSECONDS);
@@ -596,6 +629,8 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
             int instIdx = 0;
             int lastIdx = -1;
 
+            double[] features = new double[numAttributes];
+
             //2. Generate and store attributes
             for (int k = 0; k < numInstances; k++) {
                 //For each instance
@@ -627,27 +662,17 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 }
 
                 for (int j = 0; j < numIntervals; j++) {
-                    //extract the interval
-                    double[] series = dimensions[instIdx][intervalDimension[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
-
                     //process features
-
+                    intervalFeatures(c22, instIdx, intervalDimension[j], interval[j],
+                            dimensions[instIdx][intervalDimension[j]], subsampleAtt, features);
                     for (int g = 0; g < numAttributes; g++) {
-                        if (subsampleAtt[g] < 22) {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtt[g], j, intervalArray));
-                        } else {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    FeatureSet.calcFeatureByIndex(subsampleAtt[g], interval[j][0],
-                                            interval[j][1], series));
-                        }
+                        result.instance(k).setValue(j * numAttributes + g, features[g]);
                     }
                 }
             }
 
             //3. Create and build tree using all the features. Feature selection
-            Classifier tree = AbstractClassifier.makeCopy(base);
+            Classifier tree = ClassifierTools.makeCopy(base);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (i + 1));
 
@@ -673,18 +698,11 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                             continue;
 
                         for (int j = 0; j < numIntervals; j++) {
-                            double[] series = dimensions[n][intervalDimension[j]];
-                            double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
-
+                            //process features
+                            intervalFeatures(c22, n, intervalDimension[j], interval[j],
+                                    dimensions[n][intervalDimension[j]], subsampleAtt, features);
                             for (int g = 0; g < numAttributes; g++) {
-                                if (subsampleAtt[g] < 22) {
-                                    testHolder.instance(0).setValue(j * numAttributes + g,
-                                            c22.getSummaryStatByIndex(subsampleAtt[g], j, intervalArray));
-                                } else {
-                                    testHolder.instance(0).setValue(j * numAttributes + g,
-                                            FeatureSet.calcFeatureByIndex(subsampleAtt[g], interval[j][0],
-                                                    interval[j][1], series));
-                                }
+                                testHolder.instance(0).setValue(j * numAttributes + g, features[g]);
                             }
                         }
 
@@ -703,17 +721,15 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
             subsampleAtts.add(subsampleAtt);
             intervalDimensions.add(intervalDimension);
 
-            //Timed checkpointing if enabled, else checkpoint every 100 trees
-            if (checkpoint && ((checkpointTime > 0 && System.nanoTime() - lastCheckpointTime > checkpointTime)
-                    || trees.size() % 100 == 0)) {
-                saveToFile(checkpointPath);
+            if (checkpoint && checkpointDue()) {
+                checkpoint();
             }
         }
     }
 
     /**
      * Build the CIF classifier using multiple threads.
-     * Unable to checkpoint until after the build process while using multiple threads.
+     * Trees are added and checkpointed in order as they finish.
      * For each base classifier
      *      generate random intervals
      *      do the transfrorms
@@ -758,6 +774,10 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                             trainDistributions[n][k] += h.trainDistribution[n][k];
                     }
                 }
+
+                if (checkpoint && checkpointDue()) {
+                    checkpoint();
+                }
             }
         }
     }
@@ -857,6 +877,30 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         this.bagging = other.bagging;
         this.trainTimeContract = other.trainTimeContract;
         this.contractTime = other.contractTime;
+        this.intervalCacheMemoryBudget = other.intervalCacheMemoryBudget;
+    }
+
+    /**
+     * Creates an untrained CIF with the same parameters as this, sharing the base classifier template.
+     *
+     * @return untrained copy of this CIF
+     */
+    @Override //ConfigurationCopyable
+    public CIF copyConfiguration() {
+        CIF cif = new CIF();
+        cif.copyConfigurationFrom(this);
+        cif.copyParameters(this);
+        cif.checkpoint = checkpoint;
+        cif.checkpointPath = checkpointPath;
+        cif.checkpointTime = checkpointTime;
+        cif.internalContractCheckpointHandling = internalContractCheckpointHandling;
+        cif.maxClassifiers = maxClassifiers;
+        cif.numThreads = numThreads;
+        cif.multiThread = multiThread;
+        cif.visSavePath = visSavePath;
+        cif.visNumTopAtts = visNumTopAtts;
+        cif.interpSavePath = interpSavePath;
+        return cif;
     }
 
     /**
@@ -918,20 +962,12 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 Catch22 c22 = new Catch22();
                 c22.setOutlierNormalise(outlierNorm);
 
+                double[] features = new double[numAttributes];
                 for (int j = 0; j < numIntervals; j++) {
-                    double[] series = dimensions[intervalDimensions.get(i)[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[j][0],
-                            intervals.get(i)[j][1] + 1);
-
+                    intervalFeatures(c22, intervals.get(i)[j], dimensions[intervalDimensions.get(i)[j]],
+                            subsampleAtts.get(i), features);
                     for (int g = 0; g < numAttributes; g++) {
-                        if (subsampleAtts.get(i)[g] < 22) {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(i)[g], j, intervalArray));
-                        } else {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[g], intervals.get(i)[j][0],
-                                            intervals.get(i)[j][1], series));
-                        }
+                        testHolder.instance(0).setValue(j * numAttributes + g, features[g]);
                     }
                 }
 
@@ -1059,6 +1095,101 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         if (internalContractCheckpointHandling) checkpointTimeDiff += System.nanoTime() - lastCheckpointTime;
     }
 
+    /**
+     * Timed checkpointing if enabled, else checkpoint every 100 trees.
+     *
+     * @return true if a checkpoint should be made after the tree just added
+     */
+    private boolean checkpointDue() {
+        return (checkpointTime > 0 && System.nanoTime() - lastCheckpointTime > checkpointTime)
+                || trees.size() % 100 == 0;
+    }
+
+    /**
+     * Appends the trees built since the last checkpoint and the current build state to the checkpoint log. The state
+     * is serialised before returning, the trees are written in the background while the build continues.
+     *
+     * @throws Exception unable to serialise the state or an earlier write failed
+     */
+    private void checkpoint() throws Exception {
+        lastCheckpointTime = System.nanoTime();
+
+        ArrayList<CheckpointedTree> newTrees = new ArrayList<>(trees.size() - checkpointedTrees);
+        for (int i = checkpointedTrees; i < trees.size(); i++) {
+            newTrees.add(new CheckpointedTree(trees.get(i), intervals.get(i), subsampleAtts.get(i),
+                    intervalDimensions.get(i)));
+        }
+        checkpointLog.append(newTrees, checkpointState());
+        checkpointedTrees = trees.size();
+
+        if (internalContractCheckpointHandling) checkpointTimeDiff += System.nanoTime() - lastCheckpointTime;
+    }
+
+    /**
+     * Copy of the values restored by copyFromSerObject without the ensemble, which is held in the checkpoint log.
+     *
+     * @return CIF object holding the build state
+     */
+    private CIF checkpointState() {
+        CIF state = new CIF();
+        state.numClassifiers = numClassifiers;
+        state.attSubsampleSize = attSubsampleSize;
+        state.numAttributes = numAttributes;
+        state.startNumAttributes = startNumAttributes;
+        state.outlierNorm = outlierNorm;
+        state.useSummaryStats = useSummaryStats;
+        state.numIntervals = numIntervals;
+        state.minIntervalLength = minIntervalLength;
+        state.maxIntervalLength = maxIntervalLength;
+        state.base = base;
+        state.bagging = bagging;
+        state.oobCounts = oobCounts;
+        state.trainDistributions = trainDistributions;
+        state.trainTimeContract = trainTimeContract;
+        state.contractTime = contractTime;
+        state.maxClassifiers = maxClassifiers;
+        state.visSavePath = visSavePath;
+        state.visNumTopAtts = visNumTopAtts;
+        state.interpSavePath = interpSavePath;
+        state.seriesLength = seriesLength;
+        state.numInstances = numInstances;
+        state.numDimensions = numDimensions;
+        state.trainResults = trainResults;
+        state.seedClassifier = seedClassifier;
+        state.seed = seed;
+        state.rand = rand;
+        state.estimateOwnPerformance = estimateOwnPerformance;
+        state.trainEstimateMethod = trainEstimateMethod;
+        state.numClasses = numClasses;
+        state.checkpointTimeDiff = checkpointTimeDiff;
+        state.lastCheckpointTime = lastCheckpointTime;
+        return state;
+    }
+
+    /**
+     * Restores the build state and trees read from the checkpoint log.
+     *
+     * @param checkpointed contents of the checkpoint log
+     * @throws Exception if the state is not a CIF object
+     */
+    private void loadCheckpoint(CheckpointLog.Contents checkpointed) throws Exception {
+        copyFromSerObject(checkpointed.getState());
+
+        int size = Math.max(numClassifiers, checkpointed.getMembers().size());
+        trees = new ArrayList<>(size);
+        intervals = new ArrayList<>(size);
+        subsampleAtts = new ArrayList<>(size);
+        intervalDimensions = new ArrayList<>(size);
+        for (Object member : checkpointed.getMembers()) {
+            CheckpointedTree t = (CheckpointedTree) member;
+            trees.add(t.tree);
+            intervals.add(t.interval);
+            subsampleAtts.add(t.subsampleAtts);
+            intervalDimensions.add(t.intervalDimensions);
+        }
+        checkpointedTrees = trees.size();
+    }
+
     /**
      * Copies values from a loaded CIF object into this object.
      *
@@ -1410,6 +1541,79 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         return interpCount;
     }
 
+    /**
+     * Extract the subsampled features of an interval of a train instance, reusing any features already computed for
+     * the same interval by other trees.
+     *
+     * @param c22           catch22 transformer for the calling thread
+     * @param instance      index of the train instance
+     * @param dimension     index of the dimension
+     * @param interval      start and end points of the interval
+     * @param series        the dimension of the instance to extract the interval from
+     * @param subsampleAtts the attributes to extract
+     * @param features      array to write the extracted features to
+     * @throws Exception unable to extract features
+     */
+    private void intervalFeatures(Catch22 c22, int instance, int dimension, int[] interval, double[] series,
+                                  int[] subsampleAtts, double[] features) throws Exception {
+        long intervalKey = intervalCache.intervalKey(instance, 0, dimension, interval[0], interval[1]);
+        int[] missingAtts = new int[subsampleAtts.length];
+        int[] missingPositions = new int[subsampleAtts.length];
+        int numMissing = 0;
+
+        for (int a = 0; a < subsampleAtts.length; a++) {
+            features[a] = intervalCache.get(intervalKey, subsampleAtts[a]);
+            if (Double.isNaN(features[a])) {
+                missingAtts[numMissing] = subsampleAtts[a];
+                missingPositions[numMissing++] = a;
+            }
+        }
+
+        if (numMissing > 0) {
+            double[] missingFeatures = new double[numMissing];
+            intervalFeatures(c22, interval, series, Arrays.copyOf(missingAtts, numMissing), missingFeatures);
+            for (int i = 0; i < numMissing; i++) {
+                features[missingPositions[i]] = missingFeatures[i];
+                intervalCache.put(intervalKey, missingAtts[i], missingFeatures[i]);
+            }
+        }
+    }
+
+    /**
+     * Extract features of an interval. The catch22 features are calculated together so intermediate values are shared
+     * between them.
+     *
+     * @param c22      catch22 transformer for the calling thread
+     * @param interval start and end points of the interval
+     * @param series   the dimension of the instance to extract the interval from
+     * @param atts     the attributes to extract
+     * @param features array to write the extracted features to
+     * @throws Exception unable to extract features
+     */
+    private static void intervalFeatures(Catch22 c22, int[] interval, double[] series, int[] atts,
+                                         double[] features) throws Exception {
+        int[] c22Atts = new int[atts.length];
+        int[] c22Positions = new int[atts.length];
+        int numC22Atts = 0;
+
+        for (int a = 0; a < atts.length; a++) {
+            if (atts[a] < 22) {
+                c22Atts[numC22Atts] = atts[a];
+                c22Positions[numC22Atts++] = a;
+            } else {
+                features[a] = FeatureSet.calcFeatureByIndex(atts[a], interval[0], interval[1], series);
+            }
+        }
+
+        if (numC22Atts > 0) {
+            double[] intervalArray = Arrays.copyOfRange(series, interval[0], interval[1] + 1);
+            double[] c22Features = c22.getSummaryStats(intervalArray, Arrays.copyOf(c22Atts, numC22Atts), null);
+            for (int i = 0; i < numC22Atts; i++) {
+                features[c22Positions[i]] = c22Features[i];
+            }
+        }
+    }
+
     /**
      * Nested class to find and store three simple summary features for an interval
      */
@@ -1467,6 +1671,23 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         }
     }
 
+    /**
+     * A tree and the intervals, attributes and dimensions it uses, as written to the checkpoint log.
+     */
+    private static class CheckpointedTree implements Serializable {
+        private final Classifier tree;
+        private final int[][] interval;
+        private final int[] subsampleAtts;
+        private final int[] intervalDimensions;
+
+        private CheckpointedTree(Classifier tree, int[][] interval, int[] subsampleAtts, int[] intervalDimensions) {
+            this.tree = tree;
+            this.interval = interval;
+            this.subsampleAtts = subsampleAtts;
+            this.intervalDimensions = intervalDimensions;
+        }
+    }
+
     /**
      * Class to hold data about a CIF tree when multi threading.
      */
@@ -1581,6 +1802,8 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
             int instIdx = 0;
             int lastIdx = -1;
 
+            double[] features = new double[numAttributes];
+
             //2. Generate and store attributes
             for (int k = 0; k < numInstances; k++) {
                 //For each instance
@@ -1613,26 +1836,17 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 }
 
                 for (int j = 0; j < numIntervals; j++) {
-                    //extract the interval
-                    double[] series = dimensions[instIdx][intervalDimensions[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
-
+                    //process features
+                    intervalFeatures(c22, instIdx, intervalDimensions[j], interval[j],
+                            dimensions[instIdx][intervalDimensions[j]], subsampleAtts, features);
                     for (int g = 0; g < numAttributes; g++) {
-                        //process features
-                        if (subsampleAtts[g] < 22) {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts[g], j, intervalArray));
-                        } else {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    FeatureSet.calcFeatureByIndex(subsampleAtts[g], interval[j][0],
-                                            interval[j][1], series));
-                        }
+                        result.instance(k).setValue(j * numAttributes + g, features[g]);
                     }
                 }
             }
 
             //3. Create and build tree using all the features. Feature selection
-            Classifier tree = AbstractClassifier.makeCopy(base);
+            Classifier tree = ClassifierTools.makeCopy(base);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (i + 1));
 
@@ -1660,18 +1874,11 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                             continue;
 
                         for (int j = 0; j < numIntervals; j++) {
-                            double[] series = dimensions[n][intervalDimensions[j]];
-                            double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
-
+                            //process features
+                            intervalFeatures(c22, n, intervalDimensions[j], interval[j],
+                                    dimensions[n][intervalDimensions[j]], subsampleAtts, features);
                             for (int g = 0; g < numAttributes; g++) {
-                                if (subsampleAtts[g] < 22) {
-                                    result.instance(0).setValue(j * numAttributes + g,
-                                            c22.getSummaryStatByIndex(subsampleAtts[g], j, intervalArray));
-                                } else {
-                                    result.instance(0).setValue(j * numAttributes + g,
-                                            FeatureSet.calcFeatureByIndex(subsampleAtts[g], interval[j][0],
-                                                    interval[j][1], series));
-                                }
+                                result.instance(0).setValue(j * numAttributes + g, features[g]);
                             }
                         }
 
@@ -1740,20 +1947,12 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 Catch22 c22 = new Catch22();
                 c22.setOutlierNormalise(outlierNorm);
 
+                double[] features = new double[numAttributes];
                 for (int j = 0; j < numIntervals; j++) {
-                    double[] series = dimensions[intervalDimensions.get(i)[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[j][0],
-                            intervals.get(i)[j][1] + 1);
-
+                    intervalFeatures(c22, intervals.get(i)[j], dimensions[intervalDimensions.get(i)[j]],
+                            subsampleAtts.get(i), features);
                     for (int g = 0; g < numAttributes; g++) {
-                        if (subsampleAtts.get(i)[g] < 22) {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(i)[g], j, intervalArray));
-                        } else {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[g], intervals.get(i)[j][0],
-                                            intervals.get(i)[j][1], series));
-                        }
+                        testHolder.instance(0).setValue(j * numAttributes + g, features[g]);
                     }
                 }
 
@@ -34,6 +34,7 @@ import weka.classifiers.Classifier;
 import weka.core.*;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -51,7 +52,7 @@ import static utilities.StatisticalUtilities.median;
  * @author Matthew Middlehurst
  **/
 public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInformationHandler, TrainTimeContractable,
-        Checkpointable, Tuneable, MultiThreadable {
+        Checkpointable, Tuneable, MultiThreadable, ConfigurationCopyable {
 
     /**
      * Paper defining DrCIF.
@@ -144,6 +145,8 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
     private long lastCheckpointTime = 0;
     private long checkpointTimeDiff = 0;
     private boolean internalContractCheckpointHandling = false;
+    private transient CheckpointLog checkpointLog;
+    private transient int checkpointedTrees = 0;
 
     /**
      * Flags and data required if Contracting
@@ -182,6 +185,12 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
     private transient Fast_FFT fft;
     private transient Differences di;
 
+    /**
+     * Memo of train interval features shared between trees, bounded by a memory budget
+     */
+    private long intervalCacheMemoryBudget = Runtime.getRuntime().maxMemory() / 8;
+    private transient IntervalFeatureCache intervalCache;
+
     protected static final long serialVersionUID = 1L;
 
     /**
@@ -263,6 +272,16 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         base = c;
     }
 
+    /**
+     * Set the memory budget for the train interval features shared between trees. Caching is disabled if not
+     * positive.
+     *
+     * @param b max number of bytes to use
+     */
+    public void setIntervalCacheMemoryBudget(long b) {
+        intervalCacheMemoryBudget = b;
+    }
+
     /**
      * Set whether to perform bagging with replacement.
      *
@@ -360,8 +379,17 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         representations[2] = di.transform(representations[0]);
 
         File file = new File(checkpointPath + "DrCIF" + seed + ".ser");
-        //if checkpointing and serialised files exist load said files
-        if (checkpoint && file.exists()) {
+        checkpointedTrees = 0;
+        if (checkpoint)
+            checkpointLog = new CheckpointLog(checkpointPath + "DrCIF" + seed + ".log");
+        CheckpointLog.Contents checkpointed = checkpoint && checkpointLog.exists() ? checkpointLog.load() : null;
+        //if checkpointing and a checkpoint log or serialised file exist load said files
+        if (checkpointed != null) {
+            if (debug)
+                System.out.println("Loading from checkpoint log");
+            loadCheckpoint(checkpointed);
+        }
+        else if (checkpoint && file.exists()) {
             //path checkpoint files will be saved to
             if (debug)
                 System.out.println("Loading from checkpoint file");
@@ -439,9 +467,14 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             intervalDimensions = new ArrayList<>();
         }
 
+        int maxLength = 0;
+        for (TimeSeriesInstances representation : representations)
+            maxLength = Math.max(maxLength, representation.getMaxLength());
+        intervalCache = new IntervalFeatureCache(numInstances, representations.length, numDimensions, maxLength,
+                startNumAttributes, intervalCacheMemoryBudget);
+
         if (multiThread) {
-            ex = Executors.newFixedThreadPool(numThreads);
-            if (checkpoint) System.out.println("Unable to checkpoint until end of build when multi threading.");
+            ex = MultiThreadable.getSharedExecutor(numThreads);
         }
 
         //Set up instances size and format.
@@ -475,6 +508,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         } else {
             buildDrCIF(representations, result);
         }
+        intervalCache = null;
 
         if (trees.size() == 0) {//Not enough time to build a single classifier
             throw new Exception((" ERROR in DrCIF, no trees built, contract time probably too low. Contract time = "
@@ -482,7 +516,9 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         }
 
         if (checkpoint) {
-            saveToFile(checkpointPath);
+            if (checkpointedTrees < trees.size())
+                checkpoint();
+            checkpointLog.close();
         }
 
         trainResults.setTimeUnit(TimeUnit.NANOSECONDS);
@@ -607,6 +643,8 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             int instIdx = 0;
             int lastIdx = -1;
 
+            double[] features = new double[numAttributes];
+
             //2. Generate and store attributes
             for (int k = 0; k < numInstances; k++) {
                 //For each instance
@@ -640,21 +678,11 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                 int p = 0;
                 for (int r = 0; r < representations.length; r++) {
                     for (int j = 0; j < numIntervals[r]; j++) {
-                        //extract the interval
-                        double[] series = dimensions[instIdx][r][intervalDimension[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0], interval[r][j][1] + 1);
-
                         //process features
+                        intervalFeatures(c22, instIdx, r, intervalDimension[r][j], interval[r][j],
+                                dimensions[instIdx][r][intervalDimension[r][j]], subsampleAtt, features);
                         for (int a = 0; a < numAttributes; a++) {
-                            if (subsampleAtt[a] < 22) {
-                                result.instance(k).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtt[a], j, intervalArray));
-                            } else {
-                                result.instance(k).setValue(p,
-                                        FeatureSet.calcFeatureByIndex(subsampleAtt[a], interval[r][j][0],
-                                                interval[r][j][1], series));
-                            }
-
+                            result.instance(k).setValue(p, features[a]);
                             p++;
                         }
                     }
@@ -662,7 +690,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             }
 
             //3. Create and build tree using all the features. Feature selection
-            Classifier tree = AbstractClassifier.makeCopy(base);
+            Classifier tree = ClassifierTools.makeCopy(base);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (i + 1));
 
@@ -690,20 +718,10 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                         int p = 0;
                         for (int r = 0; r < representations.length; r++) {
                             for (int j = 0; j < numIntervals[r]; j++) {
-                                double[] series = dimensions[n][r][intervalDimension[r][j]];
-                                double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0],
-                                        interval[r][j][1] + 1);
-
+                                intervalFeatures(c22, n, r, intervalDimension[r][j], interval[r][j],
+                                        dimensions[n][r][intervalDimension[r][j]], subsampleAtt, features);
                                 for (int a = 0; a < numAttributes; a++) {
-                                    if (subsampleAtt[a] < 22) {
-                                        testHolder.instance(0).setValue(p,
-                                                c22.getSummaryStatByIndex(subsampleAtt[a], j, intervalArray));
-                                    } else {
-                                        testHolder.instance(0).setValue(p,
-                                                FeatureSet.calcFeatureByIndex(subsampleAtt[a],
-                                                        interval[r][j][0], interval[r][j][1], series));
-                                    }
-
+                                    testHolder.instance(0).setValue(p, features[a]);
                                     p++;
                                 }
                             }
@@ -735,7 +753,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                 if (seedClassifier)
                     cv.setSeed(seed * 5 * i);
                 cv.setNumFolds(numFolds);
-                Classifier cvtree = AbstractClassifier.makeCopy(base);
+                Classifier cvtree = ClassifierTools.makeCopy(base);
                 if (seedClassifier && cvtree instanceof Randomizable)
                     ((Randomizable) cvtree).setSeed(seed * (i + 1));
 
@@ -755,10 +773,8 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             subsampleAtts.add(subsampleAtt);
             intervalDimensions.add(intervalDimension);
 
-            //Timed checkpointing if enabled, else checkpoint every 100 trees
-            if (checkpoint && ((checkpointTime > 0 && System.nanoTime() - lastCheckpointTime > checkpointTime)
-                    || trees.size() % 100 == 0)) {
-                saveToFile(checkpointPath);
+            if (checkpoint && checkpointDue()) {
+                checkpoint();
             }
 
             underContractTime = withinTrainContract(trainResults.getBuildTime());
@@ -767,7 +783,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
 
     /**
      * Build the DrCIF classifier using multiple threads.
-     * Unable to checkpoint until after the build process while using multiple threads.
+     * Trees are added and checkpointed in order as they finish.
      * For each base classifier
      * generate random intervals
      * do the transfrorms
@@ -819,6 +835,10 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                             trainDistributions[n][k] += h.trainDistribution[n][k];
                     }
                 }
+
+                if (checkpoint && checkpointDue()) {
+                    checkpoint();
+                }
             }
         }
     }
@@ -935,6 +955,27 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         this.bagging = other.bagging;
         this.trainTimeContract = other.trainTimeContract;
         this.contractTime = other.contractTime;
+        this.intervalCacheMemoryBudget = other.intervalCacheMemoryBudget;
+    }
+
+    /**
+     * Creates an untrained DrCIF with the same parameters as this, sharing the base classifier template.
+     *
+     * @return untrained copy of this DrCIF
+     */
+    @Override //ConfigurationCopyable
+    public DrCIF copyConfiguration() {
+        DrCIF cif = new DrCIF();
+        cif.copyConfigurationFrom(this);
+        cif.copyParameters(this);
+        cif.checkpoint = checkpoint;
+        cif.checkpointPath = checkpointPath;
+        cif.checkpointTime = checkpointTime;
+        cif.internalContractCheckpointHandling = internalContractCheckpointHandling;
+        cif.maxClassifiers = maxClassifiers;
+        cif.numThreads = numThreads;
+        cif.multiThread = multiThread;
+        return cif;
     }
 
     /**
@@ -983,22 +1024,13 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                 c22.setOutlierNormalise(outlierNorm);
 
                 int p = 0;
+                double[] features = new double[numAttributes];
                 for (int r = 0; r < dimensions.length; r++) {
                     for (int j = 0; j < intervals.get(i)[r].length; j++) {
-                        double[] series = dimensions[r][intervalDimensions.get(i)[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[r][j][0],
-                                intervals.get(i)[r][j][1] + 1);
-
+                        intervalFeatures(c22, intervals.get(i)[r][j], dimensions[r][intervalDimensions.get(i)[r][j]],
+                                subsampleAtts.get(i), features);
                         for (int a = 0; a < numAttributes; a++) {
-                            if (subsampleAtts.get(i)[a] < 22) {
-                                testHolder.instance(0).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtts.get(i)[a], j, intervalArray));
-                            } else {
-                                testHolder.instance(0).setValue(p,
-                                        FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[a],
-                                                intervals.get(i)[r][j][0], intervals.get(i)[r][j][1], series));
-                            }
-
+                            testHolder.instance(0).setValue(p, features[a]);
                             p++;
                         }
                     }
@@ -1124,6 +1156,98 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         if (internalContractCheckpointHandling) checkpointTimeDiff += System.nanoTime() - lastCheckpointTime;
     }
 
+    /**
+     * Timed checkpointing if enabled, else checkpoint every 100 trees.
+     *
+     * @return true if a checkpoint should be made after the tree just added
+     */
+    private boolean checkpointDue() {
+        return (checkpointTime > 0 && System.nanoTime() - lastCheckpointTime > checkpointTime)
+                || trees.size() % 100 == 0;
+    }
+
+    /**
+     * Appends the trees built since the last checkpoint and the current build state to the checkpoint log. The state
+     * is serialised before returning, the trees are written in the background while the build continues.
+     *
+     * @throws Exception unable to serialise the state or an earlier write failed
+     */
+    private void checkpoint() throws Exception {
+        lastCheckpointTime = System.nanoTime();
+
+        ArrayList<CheckpointedTree> newTrees = new ArrayList<>(trees.size() - checkpointedTrees);
+        for (int i = checkpointedTrees; i < trees.size(); i++) {
+            newTrees.add(new CheckpointedTree(trees.get(i), intervals.get(i), subsampleAtts.get(i),
+                    intervalDimensions.get(i)));
+        }
+        checkpointLog.append(newTrees, checkpointState());
+        checkpointedTrees = trees.size();
+
+        if (internalContractCheckpointHandling) checkpointTimeDiff += System.nanoTime() - lastCheckpointTime;
+    }
+
+    /**
+     * Copy of the values restored by copyFromSerObject without the ensemble, which is held in the checkpoint log.
+     *
+     * @return DrCIF object holding the build state
+     */
+    private DrCIF checkpointState() {
+        DrCIF state = new DrCIF();
+        state.numClassifiers = numClassifiers;
+        state.attSubsampleSize = attSubsampleSize;
+        state.numAttributes = numAttributes;
+        state.startNumAttributes = startNumAttributes;
+        state.outlierNorm = outlierNorm;
+        state.useSummaryStats = useSummaryStats;
+        state.numIntervals = numIntervals;
+        state.minIntervalLength = minIntervalLength;
+        state.maxIntervalLength = maxIntervalLength;
+        state.base = base;
+        state.bagging = bagging;
+        state.oobCounts = oobCounts;
+        state.trainDistributions = trainDistributions;
+        state.trainTimeContract = trainTimeContract;
+        state.contractTime = contractTime;
+        state.underContractTime = underContractTime;
+        state.maxClassifiers = maxClassifiers;
+        state.numInstances = numInstances;
+        state.numDimensions = numDimensions;
+        state.trainResults = trainResults;
+        state.seedClassifier = seedClassifier;
+        state.seed = seed;
+        state.rand = rand;
+        state.estimateOwnPerformance = estimateOwnPerformance;
+        state.trainEstimateMethod = trainEstimateMethod;
+        state.numClasses = numClasses;
+        state.checkpointTimeDiff = checkpointTimeDiff;
+        state.lastCheckpointTime = lastCheckpointTime;
+        return state;
+    }
+
+    /**
+     * Restores the build state and trees read from the checkpoint log.
+     *
+     * @param checkpointed contents of the checkpoint log
+     * @throws Exception if the state is not a DrCIF object
+     */
+    private void loadCheckpoint(CheckpointLog.Contents checkpointed) throws Exception {
+        copyFromSerObject(checkpointed.getState());
+
+        int size = Math.max(numClassifiers, checkpointed.getMembers().size());
+        trees = new ArrayList<>(size);
+        intervals = new ArrayList<>(size);
+        subsampleAtts = new ArrayList<>(size);
+        intervalDimensions = new ArrayList<>(size);
+        for (Object member : checkpointed.getMembers()) {
+            CheckpointedTree t = (CheckpointedTree) member;
+            trees.add(t.tree);
+            intervals.add(t.interval);
+            subsampleAtts.add(t.subsampleAtts);
+            intervalDimensions.add(t.intervalDimensions);
+        }
+        checkpointedTrees = trees.size();
+    }
+
     /**
      * Copies values from a loaded DrCIF object into this object.
      *
@@ -1252,6 +1376,80 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         }
     }
 
+    /**
+     * Extract the subsampled features of an interval of a train instance, reusing any features already computed for
+     * the same interval by other trees.
+     *
+     * @param c22            catch22 transformer for the calling thread
+     * @param instance       index of the train instance
+     * @param representation index of the representation
+     * @param dimension      index of the dimension
+     * @param interval       start and end points of the interval
+     * @param series         the dimension of the instance to extract the interval from
+     * @param subsampleAtts  the attributes to extract
+     * @param features       array to write the extracted features to
+     * @throws Exception unable to extract features
+     */
+    private void intervalFeatures(Catch22 c22, int instance, int representation, int dimension, int[] interval,
+                                  double[] series, int[] subsampleAtts, double[] features) throws Exception {
+        long intervalKey = intervalCache.intervalKey(instance, representation, dimension, interval[0], interval[1]);
+        int[] missingAtts = new int[subsampleAtts.length];
+        int[] missingPositions = new int[subsampleAtts.length];
+        int numMissing = 0;
+
+        for (int a = 0; a < subsampleAtts.length; a++) {
+            features[a] = intervalCache.get(intervalKey, subsampleAtts[a]);
+            if (Double.isNaN(features[a])) {
+                missingAtts[numMissing] = subsampleAtts[a];
+                missingPositions[numMissing++] = a;
+            }
+        }
+
+        if (numMissing > 0) {
+            double[] missingFeatures = new double[numMissing];
+            intervalFeatures(c22, interval, series, Arrays.copyOf(missingAtts, numMissing), missingFeatures);
+            for (int i = 0; i < numMissing; i++) {
+                features[missingPositions[i]] = missingFeatures[i];
+                intervalCache.put(intervalKey, missingAtts[i], missingFeatures[i]);
+            }
+        }
+    }
+
+    /**
+     * Extract features of an interval. The catch22 features are calculated together so intermediate values are shared
+     * between them.
+     *
+     * @param c22      catch22 transformer for the calling thread
+     * @param interval start and end points of the interval
+     * @param series   the dimension of the instance to extract the interval from
+     * @param atts     the attributes to extract
+     * @param features array to write the extracted features to
+     * @throws Exception unable to extract features
+     */
+    private static void intervalFeatures(Catch22 c22, int[] interval, double[] series, int[] atts,
+                                         double[] features) throws Exception {
+        int[] c22Atts = new int[atts.length];
+        int[] c22Positions = new int[atts.length];
+        int numC22Atts = 0;
+
+        for (int a = 0; a < atts.length; a++) {
+            if (atts[a] < 22) {
+                c22Atts[numC22Atts] = atts[a];
+                c22Positions[numC22Atts++] = a;
+            } else {
+                features[a] = FeatureSet.calcFeatureByIndex(atts[a], interval[0], interval[1], series);
+            }
+        }
+
+        if (numC22Atts > 0) {
+            double[] intervalArray = Arrays.copyOfRange(series, interval[0], interval[1] + 1);
+            double[] c22Features = c22.getSummaryStats(intervalArray, Arrays.copyOf(c22Atts, numC22Atts), null);
+            for (int i = 0; i < numC22Atts; i++) {
+                features[c22Positions[i]] = c22Features[i];
+            }
+        }
+    }
+
     /**
      * Nested class to find and store seven simple summary features for an interval
      */
@@ -1371,6 +1569,24 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         }
     }
 
+    /**
+     * A tree and the intervals, attributes and dimensions it uses, as written to the checkpoint log.
+     */
+    private static class CheckpointedTree implements Serializable {
+        private final Classifier tree;
+        private final int[][][] interval;
+        private final int[] subsampleAtts;
+        private final int[][] intervalDimensions;
+
+        private CheckpointedTree(Classifier tree, int[][][] interval, int[] subsampleAtts,
+                                 int[][] intervalDimensions) {
+            this.tree = tree;
+            this.interval = interval;
+            this.subsampleAtts = subsampleAtts;
+            this.intervalDimensions = intervalDimensions;
+        }
+    }
+
     /**
      * Class to hold data about a DrCIF tree when multi threading.
      */
@@ -1494,6 +1710,8 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             int instIdx = 0;
             int lastIdx = -1;
 
+            double[] features = new double[numAttributes];
+
             //2. Generate and store attributes
             for (int k = 0; k < numInstances; k++) {
                 //For each instance
@@ -1527,21 +1745,11 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                 int p = 0;
                 for (int r = 0; r < dimensions[0].length; r++) {
                     for (int j = 0; j < numIntervals[r]; j++) {
-                        //extract the interval
-                        double[] series = dimensions[instIdx][r][intervalDimensions[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0], interval[r][j][1] + 1);
-
                         //process features
+                        intervalFeatures(c22, instIdx, r, intervalDimensions[r][j], interval[r][j],
+                                dimensions[instIdx][r][intervalDimensions[r][j]], subsampleAtts, features);
                         for (int a = 0; a < numAttributes; a++) {
-                            if (subsampleAtts[a] < 22) {
-                                result.instance(k).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtts[a], j, intervalArray));
-                            } else {
-                                result.instance(k).setValue(p,
-                                        FeatureSet.calcFeatureByIndex(subsampleAtts[a], interval[r][j][0],
-                                                interval[r][j][1], series));
-                            }
-
+                            result.instance(k).setValue(p, features[a]);
                             p++;
                         }
                     }
@@ -1549,7 +1757,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             }
 
             //3. Create and build tree using all the features. Feature selection
-            Classifier tree = AbstractClassifier.makeCopy(base);
+            Classifier tree = ClassifierTools.makeCopy(base);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (i + 1));
 
@@ -1579,20 +1787,10 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                         int p = 0;
                         for (int r = 0; r < dimensions[0].length; r++) {
                             for (int j = 0; j < numIntervals[r]; j++) {
-                                double[] series = dimensions[n][r][intervalDimensions[r][j]];
-                                double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0],
-                                        interval[r][j][1] + 1);
-
+                                intervalFeatures(c22, n, r, intervalDimensions[r][j], interval[r][j],
+                                        dimensions[n][r][intervalDimensions[r][j]], subsampleAtts, features);
                                 for (int a = 0; a < numAttributes; a++) {
-                                    if (subsampleAtts[a] < 22) {
-                                        result.instance(0).setValue(p,
-                                                c22.getSummaryStatByIndex(subsampleAtts[a], j, intervalArray));
-                                    } else {
-                                        result.instance(0).setValue(p,
-                                                FeatureSet.calcFeatureByIndex(subsampleAtts[a],
-                                                        interval[r][j][0], interval[r][j][1], series));
-                                    }
-
+                                    result.instance(0).setValue(p, features[a]);
                                     p++;
                                 }
                             }
@@ -1629,7 +1827,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                 if (seedClassifier)
                     cv.setSeed(seed * 5 * i);
                 cv.setNumFolds(numFolds);
-                Classifier cvtree = AbstractClassifier.makeCopy(base);
+                Classifier cvtree = ClassifierTools.makeCopy(base);
                 if (seedClassifier && cvtree instanceof Randomizable)
                     ((Randomizable) cvtree).setSeed(seed * (i + 1));
 
@@ -1689,22 +1887,13 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                 c22.setOutlierNormalise(outlierNorm);
 
                 int p = 0;
+                double[] features = new double[numAttributes];
                 for (int r = 0; r < dimensions.length; r++) {
                     for (int j = 0; j < intervals.get(i)[r].length; j++) {
-                        double[] series = dimensions[r][intervalDimensions.get(i)[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[r][j][0],
-                                intervals.get(i)[r][j][1] + 1);
-
+                        intervalFeatures(c22, intervals.get(i)[r][j], dimensions[r][intervalDimensions.get(i)[r][j]],
+                                subsampleAtts.get(i), features);
                         for (int a = 0; a < numAttributes; a++) {
-                            if (subsampleAtts.get(i)[a] < 22) {
-                                testHolder.instance(0).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtts.get(i)[a], j, intervalArray));
-                            } else {
-                                testHolder.instance(0).setValue(p,
-                                        FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[a],
-                                                intervals.get(i)[r][j][0], intervals.get(i)[r][j][1], series));
-                            }
-
+                            testHolder.instance(0).setValue(p, features[a]);
                             p++;
                         }
                     }
@@ -0,0 +1,99 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.interval_based;
+
+import tsml.classifiers.distance_based.utils.collections.cache.LongDoubleCache;
+
+import java.io.Serializable;
+
+/**
+ * Memo of the features extracted from intervals of the train instances, shared between the trees of an interval
+ * forest such as CIF or DrCIF. Features are keyed on the instance, representation, dimension, start and end points of
+ * the interval and the feature index. Trees which sample the same interval of the same instance reuse the features
+ * computed by previous trees rather than recomputing them.
+ * <p>
+ * The key components are bit packed into a single long so the memo can be held in primitive arrays, which avoids
+ * allocating objects per interval. The memo is bounded by a memory budget, evicting the least recently used features,
+ * and is thread safe so trees built in parallel can share it.
+ */
+public class IntervalFeatureCache implements Serializable {
+
+    // null if caching is disabled
+    private final LongDoubleCache cache;
+    private final int representationShift, dimensionShift, startShift, endShift, featureShift;
+
+    /**
+     * @param numInstances       the number of train instances
+     * @param numRepresentations the number of series representations, e.g. 1 if there is only the raw series
+     * @param numDimensions      the number of dimensions
+     * @param seriesLength       the max length of the series over all representations
+     * @param numFeatures        the number of features which can be extracted from an interval
+     * @param memoryBudget       the max number of bytes to use storing features. Caching is disabled if not positive.
+     */
+    public IntervalFeatureCache(int numInstances, int numRepresentations, int numDimensions, int seriesLength,
+                                int numFeatures, long memoryBudget) {
+        representationShift = bitsFor(numInstances);
+        dimensionShift = representationShift + bitsFor(numRepresentations);
+        startShift = dimensionShift + bitsFor(numDimensions);
+        endShift = startShift + bitsFor(seriesLength);
+        featureShift = endShift + bitsFor(seriesLength);
+        final int numBits = featureShift + bitsFor(numFeatures);
+        // cannot pack the key for very large data, so do not cache
+        if (memoryBudget > 0 && numBits <= Long.SIZE) {
+            cache = new LongDoubleCache(memoryBudget);
+        } else {
+            cache = null;
+        }
+    }
+
+    private static int bitsFor(int numValues) {
+        return numValues <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(numValues - 1);
+    }
+
+    /**
+     * Get the key of an interval of a train instance.
+     *
+     * @param instance       index of the instance
+     * @param representation index of the series representation
+     * @param dimension      index of the dimension
+     * @param start          start point of the interval, inclusive
+     * @param end            end point of the interval, inclusive
+     * @return the key for the features of the interval
+     */
+    public long intervalKey(int instance, int representation, int dimension, int start, int end) {
+        return instance | (long) representation << representationShift | (long) dimension << dimensionShift
+                | (long) start << startShift | (long) end << endShift;
+    }
+
+    /**
+     * @return the feature of the interval or NaN if it has not been computed
+     */
+    public double get(long intervalKey, int feature) {
+        return cache == null ? Double.NaN : cache.get(intervalKey | (long) feature << featureShift);
+    }
+
+    public void put(long intervalKey, int feature, double value) {
+        if (cache != null) {
+            cache.put(intervalKey | (long) feature << featureShift, value);
+        }
+    }
+
+    public LongDoubleCache getCache() {
+        return cache;
+    }
+}
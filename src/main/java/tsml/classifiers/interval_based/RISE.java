@@ -28,7 +28,7 @@ import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.Tuneable;
 import tsml.transformers.*;
 import tsml.transformers.FFT;
-import weka.classifiers.AbstractClassifier;
+import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
 import weka.classifiers.trees.RandomTree;
 import weka.core.*;
@@ -705,7 +705,7 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
             if(classifier instanceof RandomTree){
                 ((RandomTree)classifier).setKValue(intervalInstances.numAttributes() - 1);
             }
-            baseClassifiers.add(AbstractClassifier.makeCopy(classifier));
+            baseClassifiers.add(ClassifierTools.makeCopy(classifier));
             baseClassifiers.get(baseClassifiers.size()-1).buildClassifier(intervalInstances);
 
             //Add dependent variable to model (time taken).
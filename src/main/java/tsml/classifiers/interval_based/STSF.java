@@ -29,7 +29,6 @@ import tsml.transformers.Differences;
 import tsml.transformers.PowerSpectrum;
 import tsml.transformers.Resizer;
 import utilities.ClassifierTools;
-import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.*;
 
@@ -393,7 +392,7 @@ public class STSF extends EnhancedAbstractClassifier implements TechnicalInforma
             }
 
             //3. Create and build tree using all the features.
-            Classifier tree = AbstractClassifier.makeCopy(classifier);
+            Classifier tree = ClassifierTools.makeCopy(classifier);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (classifiersBuilt + 1));
 
@@ -579,7 +578,7 @@ public class STSF extends EnhancedAbstractClassifier implements TechnicalInforma
             }
 
             //3. Create and build tree using all the features.
-            Classifier tree = AbstractClassifier.makeCopy(classifier);
+            Classifier tree = ClassifierTools.makeCopy(classifier);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (classifiersBuilt + 1));
 
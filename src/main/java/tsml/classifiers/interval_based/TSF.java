@@ -29,7 +29,6 @@ import tsml.data_containers.utilities.Converter;
 import tsml.data_containers.utilities.TimeSeriesSummaryStatistics;
 import tsml.transformers.Resizer;
 import utilities.ClassifierTools;
-import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.*;
 
@@ -111,7 +110,7 @@ import java.util.function.Function;
  */
 
 public class TSF extends EnhancedAbstractClassifier implements TechnicalInformationHandler,
-        TrainTimeContractable, Checkpointable, Tuneable, Visualisable, TSCapabilitiesHandler {
+        TrainTimeContractable, Checkpointable, Tuneable, Visualisable, TSCapabilitiesHandler, ConfigurationCopyable {
     protected static final long serialVersionUID = 32554L;
     //Static defaults
     private final static int DEFAULT_NUM_CLASSIFIERS = 500;
@@ -494,7 +493,7 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
             /*
              * 3. Create and build tree using all the features
              */
-            Classifier tree = AbstractClassifier.makeCopy(classifier);
+            Classifier tree = ClassifierTools.makeCopy(classifier);
 
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (classifiersBuilt + 1));
@@ -701,7 +700,7 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
                 }
             }
             //3. Create and build tree using all the features.
-            Classifier tree = AbstractClassifier.makeCopy(classifier);
+            Classifier tree = ClassifierTools.makeCopy(classifier);
             if (seedClassifier && tree instanceof Randomizable)
                 ((Randomizable) tree).setSeed(seed * (classifiersBuilt + 1));
 
@@ -858,6 +857,28 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         this.numIntervalsFinder = other.numIntervalsFinder;
     }
 
+    /**
+     * Creates an untrained TSF with the same parameters as this, sharing the base classifier template.
+     *
+     * @return untrained copy of this TSF
+     */
+    @Override //ConfigurationCopyable
+    public TSF copyConfiguration() {
+        TSF tsf = new TSF();
+        tsf.copyConfigurationFrom(this);
+        tsf.copyParameters(this);
+        tsf.classifier = classifier;
+        tsf.voteEnsemble = voteEnsemble;
+        tsf.bagging = bagging;
+        tsf.checkpoint = checkpoint;
+        tsf.checkpointPath = checkpointPath;
+        tsf.checkpointTime = checkpointTime;
+        tsf.trainTimeContract = trainTimeContract;
+        tsf.trainContractTimeNanos = trainContractTimeNanos;
+        tsf.visSavePath = visSavePath;
+        return tsf;
+    }
+
     @Override
     public long getTrainContractTimeNanos() {
         return trainContractTimeNanos;
@@ -26,7 +26,6 @@ import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import tsml.transformers.ROCKET;
 import utilities.ClassifierTools;
-import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.Capabilities;
 import weka.core.Instance;
@@ -193,7 +192,7 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
             Instances transformedData = r.fitTransform(newData);
             if (header == null) header = new Instances(transformedData, 0);
 
-            Classifier c = AbstractClassifier.makeCopy(cls);
+            Classifier c = ClassifierTools.makeCopy(cls);
             if (seedClassifier && c instanceof Randomizable) {
                 ((Randomizable) c).setSeed(seed + (i + 1) * 47);
             }
@@ -227,7 +226,7 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
                         cv.setSeed(seed + (i + 1) * 67);
                     cv.setNumFolds(numFolds);
 
-                    Classifier cvCls = AbstractClassifier.makeCopy(cls);
+                    Classifier cvCls = ClassifierTools.makeCopy(cls);
                     if (seedClassifier && cls instanceof Randomizable)
                         ((Randomizable) cvCls).setSeed(seed + (i + 1) * 67);
 
@@ -25,7 +25,6 @@ import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import tsml.transformers.ROCKET;
 import utilities.ClassifierTools;
-import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.*;
 
@@ -222,7 +221,7 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
         if (seedClassifier)
             cv.setSeed(seed * 5);
         cv.setNumFolds(numFolds);
-        Classifier newCls = AbstractClassifier.makeCopy(cls);
+        Classifier newCls = ClassifierTools.makeCopy(cls);
         if (seedClassifier && cls instanceof Randomizable)
             ((Randomizable) newCls).setSeed(seed * 100);
         long tt = trainResults.getBuildTime();
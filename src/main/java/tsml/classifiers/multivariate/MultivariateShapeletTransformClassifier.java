@@ -54,7 +54,7 @@ import tsml.classifiers.TrainTimeContractable;
  * If can be contracted to a maximum run time for shapelets, and can be configured for a different 
  * 
  */
-public class MultivariateShapeletTransformClassifier  extends EnhancedAbstractClassifier implements TrainTimeContractable, Checkpointable{
+public class MultivariateShapeletTransformClassifier  extends EnhancedAbstractClassifier implements TrainTimeContractable, Checkpointable, MultiThreadable{
 
     //Minimum number of instances per class in the train set
     public static final int minimumRepresentation = 25;
@@ -76,6 +76,10 @@ public class MultivariateShapeletTransformClassifier  extends EnhancedAbstractCl
     private long trainContractTimeNanos = Long.MAX_VALUE;
     private boolean trainTimeContract = false;
 
+    //Threads used to evaluate candidate shapelets in the transform search
+    private int numThreads = 1;
+    private boolean multiThread = false;
+
 
     private String checkpointFullPath; //location to check point 
     private boolean checkpoint=false;
@@ -106,6 +110,22 @@ public class MultivariateShapeletTransformClassifier  extends EnhancedAbstractCl
         configureDefaultEnsemble();
     }
   
+    /**
+     * Enables multi threading with a set number of threads to use. Only the shapelet search is multithreaded.
+     *
+     * @param numThreads number of threads available for multi threading
+     */
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        } else {
+            this.numThreads = 1;
+            multiThread = false;
+        }
+    }
+
     //careful when setting search type as you could set a type that violates the contract.
     public void setSearchType(ShapeletSearch.SearchType type) {
         searchType = type;
@@ -362,6 +382,8 @@ public class MultivariateShapeletTransformClassifier  extends EnhancedAbstractCl
         }
         
         transform = new ShapeletTransformFactory(options).getFilter();
+        if(multiThread)
+            transform.enableMultiThreading(numThreads);
         if(shapeletOutputPath != null)
             transform.setLogOutputFile(shapeletOutputPath);
         
@@ -31,6 +31,7 @@ import evaluation.evaluators.CrossValidationEvaluator;
 import evaluation.tuning.ParameterSpace;
 import experiments.data.DatasetLoading;
 import machine_learning.classifiers.ensembles.EnhancedRotationForest;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.Tuneable;
 import tsml.transformers.shapelet_tools.DefaultShapeletOptions;
 import tsml.transformers.shapelet_tools.ShapeletTransformFactoryOptions;
@@ -72,7 +73,7 @@ import fileIO.OutFile;
  *
  */
 public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
-        implements TrainTimeContractable, Tuneable {
+        implements TrainTimeContractable, Tuneable, MultiThreadable {
     private ShapeletTransform transform;    //Configurable ST
     private Instances shapeletData;         //Transformed shapelets header info stored here
     private Classifier classifier;          //Final classifier built on transformed shapelet data
@@ -118,6 +119,10 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
 
     private boolean multivariate=false;     //Quick hack to test if I can get it to work.
 
+    //Threads used to evaluate candidate shapelets in the transform search
+    private int numThreads = 1;
+    private boolean multiThread = false;
+
     public void setTransformTime(long t){
         transformContractTime=t;
     }
@@ -218,6 +223,8 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         }
         transform= constructShapeletTransform(data);
         transform.setSuppressOutput(true);
+        if(multiThread)
+            transform.enableMultiThreading(numThreads);
         if(transformContractTime >0) {
             printLineDebug(" Shapelet search contract = "+transformContractTime/1000000000.0);
             printLineDebug(" Classifier contract = "+classifierContractTime/1000000000.0);
@@ -705,6 +712,23 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         classifier=c;
     }
 
+    /**
+     * Enables multi threading with a set number of threads to use. Only the shapelet search is multithreaded, and
+     * without a contract the shapelets found are the same as with a single thread.
+     *
+     * @param numThreads number of threads available for multi threading
+     */
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        } else {
+            this.numThreads = 1;
+            multiThread = false;
+        }
+    }
+
     public TechnicalInformation getTechnicalInformation() {
         TechnicalInformation    result;
         result = new TechnicalInformation(TechnicalInformation.Type.ARTICLE);
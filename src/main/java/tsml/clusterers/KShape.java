@@ -18,21 +18,21 @@
 package tsml.clusterers;
 
 import experiments.data.DatasetLoading;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import tsml.classifiers.MultiThreadable;
+import utilities.FFTPlan;
+import utilities.ThreadingUtilities;
 import weka.clusterers.NumberOfClustersRequestable;
-import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.matrix.EigenvalueDecomposition;
-import weka.core.matrix.Matrix;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import static utilities.ClusteringUtilities.randIndex;
 import static utilities.ClusteringUtilities.zNormalise;
@@ -44,7 +44,7 @@ import static utilities.InstanceTools.deleteClassAttribute;
  *
  * @author Matthew Middlehurst
  */
-public class KShape extends EnhancedAbstractClusterer implements NumberOfClustersRequestable {
+public class KShape extends EnhancedAbstractClusterer implements NumberOfClustersRequestable, MultiThreadable {
 
     //Paparrizos, John, and Luis Gravano.
     //"k-shape: Efficient and accurate clustering of time series."
@@ -53,7 +53,14 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
     private int k = 2;
     private int maxIterations = 100;
 
-    private Instances centroids;
+    private double[][] centroids;
+    private Spectrum[] centroidSpectra;
+
+    private int numThreads = 1;
+    private boolean multiThread = false;
+
+    private static final int EIGEN_MAX_ITERATIONS = 1000;
+    private static final double EIGEN_TOLERANCE = 1e-10;
 
     public KShape() {
     }
@@ -78,15 +85,17 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
 
         zNormalise(train);
 
-        ArrayList<Attribute> atts = new ArrayList(train.numAttributes());
-        for (int i = 0; i < train.numAttributes(); i++) {
-            atts.add(new Attribute("att" + i));
+        //Spectrum of each series is found once and reused for every centroid and iteration
+        int nfft = nfft(train.numAttributes());
+        double[][] series = new double[train.numInstances()][];
+        Spectrum[] spectra = new Spectrum[train.numInstances()];
+        for (int i = 0; i < train.numInstances(); i++) {
+            series[i] = train.get(i).toDoubleArray();
+            spectra[i] = spectrum(series[i], nfft);
         }
 
-        centroids = new Instances("centroids", atts, k);
-        for (int i = 0; i < k; i++) {
-            centroids.add(new DenseInstance(1, new double[train.numAttributes()]));
-        }
+        centroids = new double[k][train.numAttributes()];
+        centroidSpectra = new Spectrum[k];
 
         Random rand;
         if (!seedClusterer) {
@@ -101,7 +110,7 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
             assignments[i] = (int) Math.ceil(rand.nextDouble() * k) - 1;
         }
 
-        SBD sbd = new SBD();
+        ExecutorService ex = multiThread ? MultiThreadable.getSharedExecutor(numThreads) : null;
 
         int iterations = 0;
         double[] prevCluster = new double[train.numInstances()];
@@ -111,27 +120,50 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
             prevCluster = Arrays.copyOf(assignments, assignments.length);
 
             //Select centroids
+            if (multiThread) {
+                List<Callable<double[]>> jobs = new ArrayList<>(k);
+                for (int i = 0; i < k; i++) {
+                    final int centroidNum = i;
+                    jobs.add(() -> shapeExtraction(series, spectra, centroidNum));
+                }
+                List<double[]> newCentroids = ThreadingUtilities.computeAll(ex, jobs, false);
+                for (int i = 0; i < k; i++) {
+                    centroids[i] = newCentroids.get(i);
+                }
+            } else {
+                for (int i = 0; i < k; i++) {
+                    centroids[i] = shapeExtraction(series, spectra, i);
+                }
+            }
+
             for (int i = 0; i < k; i++) {
-                centroids.set(i, shapeExtraction(train, centroids.get(i), i));
+                centroidSpectra[i] = spectrum(centroids[i], nfft);
             }
 
             //Set each instance to the cluster of its closest centroid using shape based distance
-            for (int i = 0; i < train.numInstances(); i++) {
-                double minDist = Double.MAX_VALUE;
-
-                for (int n = 0; n < k; n++) {
-                    double dist = sbd.calculateDistance(centroids.get(n), train.get(i));
-
-                    if (dist < minDist) {
-                        minDist = dist;
-                        assignments[i] = n;
-                    }
+            if (multiThread) {
+                int chunkSize = (spectra.length + numThreads - 1) / numThreads;
+                List<Callable<Void>> jobs = new ArrayList<>(numThreads);
+                for (int i = 0; i < spectra.length; i += chunkSize) {
+                    final int from = i;
+                    final int to = Math.min(i + chunkSize, spectra.length);
+                    jobs.add(() -> {
+                        assignClusters(spectra, from, to);
+                        return null;
+                    });
                 }
+                ThreadingUtilities.computeAll(ex, jobs, false);
+            } else {
+                assignClusters(spectra, 0, spectra.length);
             }
 
             iterations++;
         }
 
+        if (ex != null) {
+            ex.shutdown();
+        }
+
         //Create and store an ArrayList for each cluster containing indexes of
         //points inside the cluster.
         clusters = new ArrayList[k];
@@ -156,13 +188,20 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
 
         zNormalise(newInst);
 
+        double[] values = newInst.toDoubleArray();
+        int nfft = nfft(Math.max(values.length, centroids[0].length));
+        Spectrum spectrum = spectrum(values, nfft);
+
+        SBD sbd = new SBD();
         double minDist = Double.MAX_VALUE;
         int closestCluster = 0;
-        for (int i = 0; i < centroids.size(); ++i) {
-            SBD sbd = new SBD(newInst, centroids.get(i), false);
+        for (int i = 0; i < centroids.length; ++i) {
+            Spectrum centroidSpectrum = centroidSpectra[i].re.length == nfft ? centroidSpectra[i] :
+                    spectrum(centroids[i], nfft);
+            double dist = sbd.calculateDistance(spectrum, centroidSpectrum);
 
-            if (sbd.dist < minDist) {
-                minDist = sbd.dist;
+            if (dist < minDist) {
+                minDist = dist;
                 closestCluster = i;
             }
         }
@@ -170,99 +209,203 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
         return closestCluster;
     }
 
-    private Instance shapeExtraction(Instances data, Instance centroid, int centroidNum) {
-        Instances subsample = new Instances(data, 0);
-        int seriesSize = centroid.numAttributes();
+    /**
+     * Enables multi threading with a set number of threads to use. Centroids are extracted and instances assigned to
+     * clusters in parallel.
+     *
+     * @param numThreads number of threads available for multi threading
+     */
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        } else {
+            this.numThreads = 1;
+            multiThread = false;
+        }
+    }
+
+    //Assign instances in [from, to) to the closest centroid, cross correlating against the cached centroid spectra
+    private void assignClusters(Spectrum[] spectra, int from, int to) {
+        SBD sbd = new SBD();
+
+        for (int i = from; i < to; i++) {
+            double minDist = Double.MAX_VALUE;
+
+            for (int n = 0; n < k; n++) {
+                double dist = sbd.calculateDistance(centroidSpectra[n], spectra[i]);
+
+                if (dist < minDist) {
+                    minDist = dist;
+                    assignments[i] = n;
+                }
+            }
+        }
+    }
+
+    private double[] shapeExtraction(double[][] series, Spectrum[] spectra, int centroidNum) {
+        double[] centroid = centroids[centroidNum];
+        int seriesSize = centroid.length;
 
         double sum = 0;
         for (int i = 0; i < seriesSize; i++) {
-            sum += centroid.value(i);
+            sum += centroid[i];
         }
         boolean sumZero = sum == 0;
 
         //Take subsample of instances in centroids cluster
-        for (int i = 0; i < data.numInstances(); i++) {
+        SBD sbd = new SBD();
+        ArrayList<double[]> subsample = new ArrayList<>();
+        for (int i = 0; i < series.length; i++) {
             if (assignments[i] == centroidNum) {
                 //If the centroid sums to 0 add full instance to the subsample
                 if (sumZero) {
-                    subsample.add(data.get(i));
+                    subsample.add(Arrays.copyOf(series[i], seriesSize));
                 } else {
-                    SBD sbd = new SBD(centroid, data.get(i), true);
-                    subsample.add(sbd.yShift);
+                    sbd.calculateDistance(centroidSpectra[centroidNum], spectra[i]);
+                    subsample.add(sbd.shiftedSeries(series[i], seriesSize));
                 }
             }
         }
 
         //Return instances of 0s as centroid if subsample empty
-        if (subsample.numInstances() == 0) {
-            return new DenseInstance(1, new double[centroid.numAttributes()]);
+        if (subsample.isEmpty()) {
+            return new double[seriesSize];
         }
 
-        zNormalise(subsample);
+        for (double[] inst : subsample) {
+            zNormalise(inst);
+        }
 
-        double[][] subsampleArray = new double[subsample.numInstances()][];
+        //Dominant eigenvector of Q * S^T * S * Q, Q being the centering matrix I - 1/n, started from the last centroid
+        double[] eigVector = dominantEigenvector(subsample, sumZero ? subsample.get(0) : centroid);
+        double[] eigVectorNeg = new double[seriesSize];
 
-        for (int i = 0; i < subsample.numInstances(); i++) {
-            subsampleArray[i] = subsample.get(i).toDoubleArray();
-        }
+        double eigSum = 0;
+        double eigSumNeg = 0;
 
-        //Calculate eignenvectors for subsample
-        Matrix matrix = new Matrix(subsampleArray);
-        Matrix matrixT = matrix.transpose();
+        double[] first = subsample.get(0);
+        for (int i = 0; i < seriesSize; i++) {
+            eigVectorNeg[i] = -eigVector[i];
 
-        matrix = matrixT.times(matrix);
+            eigSum += (first[i] - eigVector[i]) * (first[i] - eigVector[i]);
+            eigSumNeg += (first[i] - eigVectorNeg[i]) * (first[i] - eigVectorNeg[i]);
+        }
 
-        Matrix identity = Matrix.identity(seriesSize, seriesSize);
-        Matrix ones = new Matrix(seriesSize, seriesSize, 1);
-        ones = ones.times(1.0 / seriesSize);
-        identity = identity.minus(ones);
+        double[] newCent = eigSum < eigSumNeg ? eigVector : eigVectorNeg;
 
-        matrix = identity.times(matrix).times(identity);
+        //Normalise and return eigenvector as new centroid
+        zNormalise(newCent);
+
+        return newCent;
+    }
 
-        // todo If we dont add a max iterations it can fail to converge
-//        EigenvalueDecomposition.maxIter = 100000;
-        EigenvalueDecomposition eig = matrix.eig();
-//        EigenvalueDecomposition.maxIter = -1;
-        Matrix v = eig.getV();
-        double[] eigVector = new double[centroid.numAttributes()];
-        double[] eigVectorNeg = new double[centroid.numAttributes()];
+    //Power iteration, applying the matrix as Q * S^T * (S * (Q * v)) so the n x n matrix is never formed
+    static double[] dominantEigenvector(List<double[]> subsample, double[] start) {
+        int seriesSize = start.length;
+        double[] v = new double[seriesSize];
+        double[] w = new double[seriesSize];
+        if (!startVector(subsample, start, v, w)) {
+            //Every series in the subsample is constant, so the matrix is zero
+            return new double[seriesSize];
+        }
 
-        double eigSum = 0;
-        double eigSumNeg = 0;
+        for (int iteration = 0; iteration < EIGEN_MAX_ITERATIONS; iteration++) {
+            multiply(subsample, v, w);
+            if (!centreAndNormalise(w)) {
+                break;
+            }
 
-        int col = 0;
-        while (true) {
+            double change = 0;
             for (int i = 0; i < seriesSize; i++) {
-                eigVector[i] = v.get(i, col);
-                eigVectorNeg[i] = -eigVector[i];
+                change = Math.max(change, Math.abs(w[i] - v[i]));
+            }
 
-                double firstVal = subsample.get(0).value(i);
+            double[] temp = v;
+            v = w;
+            w = temp;
 
-                eigSum += (firstVal - eigVector[i]) * (firstVal - eigVector[i]);
-                eigSumNeg += (firstVal - eigVectorNeg[i]) * (firstVal - eigVectorNeg[i]);
+            if (change < EIGEN_TOLERANCE) {
+                break;
             }
+        }
 
-            //Hack to move to next column if the correct values dont appear on the first one for some reason
-            //I have no idea why this happens or which datasets this may happen in
-            if (Math.round(eigSum) == subsample.get(0).numAttributes() &&
-                    Math.round(eigSumNeg) == subsample.get(0).numAttributes()) {
-                col++;
-            } else {
-                break;
+        return v;
+    }
+
+    //Write a unit length start vector to v which the matrix does not map to zero, trying the given start and then
+    //each series in the subsample. A constant start, such as an empty centroid, centres to zero and is skipped
+    private static boolean startVector(List<double[]> subsample, double[] start, double[] v, double[] w) {
+        for (int i = -1; i < subsample.size(); i++) {
+            System.arraycopy(i < 0 ? start : subsample.get(i), 0, v, 0, v.length);
+            if (!centreAndNormalise(v)) {
+                continue;
+            }
+
+            multiply(subsample, v, w);
+            if (centreAndNormalise(w)) {
+                return true;
             }
         }
+        return false;
+    }
 
-        Instance newCent;
-        if (eigSum < eigSumNeg) {
-            newCent = new DenseInstance(1, eigVector);
-        } else {
-            newCent = new DenseInstance(1, eigVectorNeg);
+    //w = S^T * S * v
+    private static void multiply(List<double[]> subsample, double[] v, double[] w) {
+        Arrays.fill(w, 0);
+        for (double[] inst : subsample) {
+            double dot = 0;
+            for (int i = 0; i < v.length; i++) {
+                dot += inst[i] * v[i];
+            }
+            for (int i = 0; i < v.length; i++) {
+                w[i] += dot * inst[i];
+            }
         }
+    }
 
-        //Normalise and return eigenvector as new centroid
-        zNormalise(newCent);
+    //Subtract the mean and scale to unit length, false if nothing remains
+    private static boolean centreAndNormalise(double[] v) {
+        double mean = 0;
+        for (double d : v) {
+            mean += d;
+        }
+        mean /= v.length;
 
-        return newCent;
+        double norm = 0;
+        for (int i = 0; i < v.length; i++) {
+            v[i] -= mean;
+            norm += v[i] * v[i];
+        }
+
+        if (norm == 0) {
+            return false;
+        }
+
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < v.length; i++) {
+            v[i] /= norm;
+        }
+        return true;
+    }
+
+    //Smallest power of 2 FFT length which fits a series of the given length
+    private static int nfft(int maxLength) {
+        return (int) Math.pow(2.0, (int) Math.ceil(Math.log(maxLength) / Math.log(2)));
+    }
+
+    private static Spectrum spectrum(double[] series, int nfft) {
+        double[] re = Arrays.copyOf(series, nfft);
+        double[] im = new double[nfft];
+        FFTPlan.forLength(nfft).forward(re, im);
+
+        double sumSquare = 0;
+        for (double d : series) {
+            sumSquare += d * d;
+        }
+
+        return new Spectrum(re, im, sumSquare, series.length);
     }
 
     public static void main(String[] args) throws Exception {
@@ -285,30 +428,43 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
         System.out.println(randIndex(k.assignments, inst));
     }
 
+    //FFT of a series zero padded to a power of 2, with the values needed to turn cross correlations into NCCc
+    private static class Spectrum implements Serializable {
+
+        private final double[] re;
+        private final double[] im;
+        private final double sumSquare;
+        private final int length;
+
+        private Spectrum(double[] re, double[] im, double sumSquare, int length) {
+            this.re = re;
+            this.im = im;
+            this.sumSquare = sumSquare;
+            this.length = length;
+        }
+    }
+
     //Class for calculating Shape Based Distance
     public static class SBD {
 
         private double dist;
-        private Instance yShift;
+        private int shift;
 
-        private FastFourierTransformer fft;
+        private double[] re;
+        private double[] im;
 
         public SBD() {
         }
 
-        private SBD(Instance first, Instance second, boolean calcShift) {
-            calculateDistance(first, second, calcShift);
-        }
-
         public double[][] createDistanceMatrix(Instances data){
+            Spectrum[] spectra = spectra(data);
             double[][] distMatrix = new double[data.numInstances()][];
 
             for (int i = 0; i < data.numInstances(); i++){
                 distMatrix[i] = new double[data.numInstances()];
-                Instance first = data.get(i);
 
                 for (int n = 0; n < data.numInstances(); n++){
-                    distMatrix[i][n] = calculateDistance(first, data.get(n));
+                    distMatrix[i][n] = calculateDistance(spectra[i], spectra[n]);
                 }
             }
 
@@ -316,14 +472,14 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
         }
 
         public double[][] createBottomHalfDistanceMatrix(Instances data){
+            Spectrum[] spectra = spectra(data);
             double[][] distMatrix = new double[data.numInstances()][];
 
             for (int i = 0; i < data.numInstances(); i++){
                 distMatrix[i] = new double[i + 1];
-                Instance first = data.get(i);
 
                 for (int n = 0; n < i; n++){
-                    distMatrix[i][n] = calculateDistance(first, data.get(n));
+                    distMatrix[i][n] = calculateDistance(spectra[i], spectra[n]);
                 }
             }
 
@@ -331,95 +487,77 @@ public class KShape extends EnhancedAbstractClusterer implements NumberOfCluster
         }
 
         public double calculateDistance(Instance first, Instance second) {
-            calculateDistance(first, second, false);
-            return dist;
+            int nfft = nfft(Math.max(first.numAttributes(), second.numAttributes()));
+            return calculateDistance(spectrum(first.toDoubleArray(), nfft), spectrum(second.toDoubleArray(), nfft));
         }
 
-        private void calculateDistance(Instance first, Instance second, boolean calcShift) {
-            int oldLength = first.numAttributes();
-            int oldLengthY = second.numAttributes();
-            int maxLength = Math.max(oldLength, oldLengthY);
-
-            int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(maxLength) / Math.log(2)));
+        private Spectrum[] spectra(Instances data) {
+            int nfft = nfft(data.numAttributes());
+            Spectrum[] spectra = new Spectrum[data.numInstances()];
+            for (int i = 0; i < data.numInstances(); i++) {
+                spectra[i] = spectrum(data.get(i).toDoubleArray(), nfft);
+            }
+            return spectra;
+        }
 
-            //FFT and IFFT
-            fft = new FastFourierTransformer(DftNormalization.STANDARD);
+        //Both spectra must share an FFT length
+        private double calculateDistance(Spectrum first, Spectrum second) {
+            int nfft = first.re.length;
+            if (re == null || re.length != nfft) {
+                re = new double[nfft];
+                im = new double[nfft];
+            }
 
-            Complex[] firstC = fft(first, oldLength, nfft);
-            Complex[] secondC = fft(second, oldLengthY, nfft);
             for (int i = 0; i < nfft; i++) {
-                firstC[i] = firstC[i].multiply(secondC[i].conjugate());
+                //first * conjugate(second)
+                re[i] = first.re[i] * second.re[i] + first.im[i] * second.im[i];
+                im[i] = first.im[i] * second.re[i] - first.re[i] * second.im[i];
             }
 
-            firstC = fft.transform(firstC, TransformType.INVERSE);
-
-            //Calculate NCCc values
-            double firstNorm = sumSquare(first);
-            double secondNorm = sumSquare(second);
-            double norm = Math.sqrt(firstNorm * secondNorm);
+            FFTPlan.forLength(nfft).inverse(re, im);
 
-            double[] ncc = new double[oldLength * 2 - 1];
+            //Largest NCCc value and index
+            double norm = Math.sqrt(first.sumSquare * second.sumSquare);
+            double maxValue = 0;
+            shift = -1;
             int idx = 0;
 
-            for (int i = nfft - oldLength + 1; i < nfft; i++) {
-                ncc[idx++] = firstC[i].getReal() / norm;
-            }
-
-            for (int i = 0; i < oldLength; i++) {
-                ncc[idx++] = firstC[i].getReal() / norm;
+            for (int i = nfft - first.length + 1; i < nfft; i++, idx++) {
+                double ncc = re[i] / norm;
+                if (ncc > maxValue) {
+                    maxValue = ncc;
+                    shift = idx;
+                }
             }
 
-            double maxValue = 0;
-            int shift = -1;
-            //Largest NCCc value and index
-            for (int i = 0; i < ncc.length; i++) {
-                if (ncc[i] > maxValue) {
-                    maxValue = ncc[i];
-                    shift = i;
+            for (int i = 0; i < first.length; i++, idx++) {
+                double ncc = re[i] / norm;
+                if (ncc > maxValue) {
+                    maxValue = ncc;
+                    shift = idx;
                 }
             }
 
             dist = 1 - maxValue;
-
-            //Create y', shifting the second instance in a direction and padding with 0s
-            if (calcShift) {
-                shift -= maxLength - 1;
-
-                yShift = new DenseInstance(1, new double[oldLengthY]);
-
-                if (shift >= 0) {
-                    for (int i = 0; i < oldLengthY - shift; i++) {
-                        yShift.setValue(i + shift, second.value(i));
-                    }
-                } else {
-                    for (int i = 0; i < oldLengthY + shift; i++) {
-                        yShift.setValue(i, second.value(i - shift));
-                    }
-                }
-            }
+            return dist;
         }
 
-        //Run FFT and return array of complex numbers
-        private Complex[] fft(Instance inst, int oldLength, int nfft) {
-            Complex[] complex = new Complex[nfft];
-
-            for (int i = 0; i < oldLength; i++) {
-                complex[i] = new Complex(inst.value(i), 0);
-            }
+        //Create y' from the last distance calculation, shifting the second series in a direction and padding with 0s
+        private double[] shiftedSeries(double[] second, int maxLength) {
+            int s = shift - (maxLength - 1);
+            double[] yShift = new double[second.length];
 
-            for (int i = oldLength; i < nfft; i++) {
-                complex[i] = new Complex(0, 0);
+            if (s >= 0) {
+                for (int i = 0; i < second.length - s; i++) {
+                    yShift[i + s] = second[i];
+                }
+            } else {
+                for (int i = 0; i < second.length + s; i++) {
+                    yShift[i] = second[i - s];
+                }
             }
 
-            return fft.transform(complex, TransformType.FORWARD);
-        }
-
-        private double sumSquare(Instance inst) {
-            double sum = 0;
-            for (int i = 0; i < inst.numAttributes(); i++) {
-                sum += inst.value(i) * inst.value(i);
-            }
-            return sum;
+            return yShift;
         }
     }
 }
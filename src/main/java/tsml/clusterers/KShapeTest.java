@@ -0,0 +1,118 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.clusterers;
+
+import experiments.data.DatasetLoading;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static utilities.ClusteringUtilities.zNormalise;
+
+public class KShapeTest {
+
+    @Test
+    public void testDominantEigenvector() {
+        Random rand = new Random(0);
+        int seriesSize = 12;
+        List<double[]> subsample = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            double[] series = new double[seriesSize];
+            for (int n = 0; n < seriesSize; n++) {
+                series[n] = Math.sin(n * 0.5 + i * 0.2) + rand.nextGaussian() * 0.3;
+            }
+            zNormalise(series);
+            subsample.add(series);
+        }
+
+        //Q * S^T * S * Q, Q being the centering matrix I - 1/n
+        RealMatrix s = MatrixUtils.createRealMatrix(subsample.toArray(new double[0][]));
+        RealMatrix q = MatrixUtils.createRealIdentityMatrix(seriesSize).scalarAdd(-1.0 / seriesSize);
+        RealMatrix m = q.multiply(s.transpose()).multiply(s).multiply(q);
+        EigenDecomposition eigen = new EigenDecomposition(m);
+        double[] eigenvalues = eigen.getRealEigenvalues();
+        int largest = 0;
+        for (int i = 1; i < eigenvalues.length; i++) {
+            if (eigenvalues[i] > eigenvalues[largest]) {
+                largest = i;
+            }
+        }
+        double[] expected = eigen.getEigenvector(largest).toArray();
+
+        double[] randomStart = new double[seriesSize];
+        for (int i = 0; i < seriesSize; i++) {
+            randomStart[i] = rand.nextDouble();
+        }
+        double[] constantStart = new double[seriesSize];
+        Arrays.fill(constantStart, 1);
+
+        for (double[] start : new double[][] { randomStart, constantStart, new double[seriesSize] }) {
+            double[] actual = KShape.dominantEigenvector(subsample, start);
+            double sign = Math.signum(dot(expected, actual));
+            for (int i = 0; i < seriesSize; i++) {
+                Assert.assertEquals(expected[i], sign * actual[i], 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testConstantSubsample() {
+        List<double[]> subsample = new ArrayList<>();
+        subsample.add(new double[8]);
+        subsample.add(new double[8]);
+
+        Assert.assertArrayEquals(new double[8], KShape.dominantEigenvector(subsample, new double[8]), 0);
+    }
+
+    @Test
+    public void testThreadsAgree() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+
+        KShape single = new KShape();
+        single.setSeed(0);
+        single.setNumClusters(3);
+        single.buildClusterer(train);
+
+        KShape threaded = new KShape();
+        threaded.setSeed(0);
+        threaded.setNumClusters(3);
+        threaded.enableMultiThreading(4);
+        threaded.buildClusterer(train);
+
+        Assert.assertArrayEquals(single.getAssignments(), threaded.getAssignments(), 0);
+        for (int i = 0; i < train.numInstances(); i++) {
+            Assert.assertEquals(single.clusterInstance(train.get(i)), threaded.clusterInstance(train.get(i)));
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+}
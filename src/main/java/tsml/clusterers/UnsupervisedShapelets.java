@@ -19,10 +19,7 @@ package tsml.clusterers;
 
 import experiments.data.DatasetLoading;
 import machine_learning.clusterers.KMeans;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import utilities.FFTPlan;
 import weka.clusterers.NumberOfClustersRequestable;
 import weka.core.DenseInstance;
 import weka.core.Instance;
@@ -489,19 +486,11 @@ public class UnsupervisedShapelets extends EnhancedAbstractClusterer implements
             double sumy2 = sumPow2(shapelet);
 
             int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(data.numAttributes()) / Math.log(2)));
-            Complex[] yfft = new Complex[nfft];
-            for (int n = 0; n < nfft; n++) {
-                if (n < length)
-                    yfft[n] = new Complex(shapelet[length - n - 1], 0);
-                else
-                    yfft[n] = new Complex(0, 0);
-            }
-
-            FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-            yfft = fft.transform(yfft, TransformType.FORWARD);
+            FFTPlan fft = FFTPlan.forLength(nfft);
+            double[][] yfft = reversedSpectrum(shapelet, fft);
 
             for (int i = 0; i < data.numInstances(); i++) {
-                distances[i] = computeDistance(data.get(i).toDoubleArray(), sumy, sumy2, nfft, fft, yfft);
+                distances[i] = computeDistance(data.get(i).toDoubleArray(), sumy, sumy2, fft, yfft[0], yfft[1]);
             }
 
             return distances;
@@ -514,38 +503,39 @@ public class UnsupervisedShapelets extends EnhancedAbstractClusterer implements
             double sumy2 = sumPow2(shapelet);
 
             int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(data.numAttributes()) / Math.log(2)));
-            Complex[] yfft = new Complex[nfft];
-            for (int n = 0; n < nfft; n++) {
-                if (n < length)
-                    yfft[n] = new Complex(shapelet[length - n - 1], 0);
-                else
-                    yfft[n] = new Complex(0, 0);
-            }
+            FFTPlan fft = FFTPlan.forLength(nfft);
+            double[][] yfft = reversedSpectrum(shapelet, fft);
 
-            FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-            yfft = fft.transform(yfft, TransformType.FORWARD);
+            return computeDistance(data.toDoubleArray(), sumy, sumy2, fft, yfft[0], yfft[1]);
+        }
+
+        //transform of the reversed shapelet zero padded to the plan length, as {real, imaginary}
+        double[][] reversedSpectrum(double[] shapelet, FFTPlan fft) {
+            int nfft = fft.length();
+            double[] yRe = new double[nfft];
+            double[] yIm = new double[nfft];
+            for (int n = 0; n < length; n++)
+                yRe[n] = shapelet[length - n - 1];
 
-            return computeDistance(data.toDoubleArray(), sumy, sumy2, nfft, fft, yfft);
+            fft.forward(yRe, yIm);
+            return new double[][] { yRe, yIm };
         }
 
-        double computeDistance(double[] inst, double sumy, double sumy2, int nfft, FastFourierTransformer fft,
-                               Complex[] yfft) {
-            Complex[] xfft = new Complex[nfft];
-            for (int n = 0; n < nfft; n++) {
-                if (n < inst.length)
-                    xfft[n] = new Complex(inst[n], 0);
-                else
-                    xfft[n] = new Complex(0, 0);
-            }
+        double computeDistance(double[] inst, double sumy, double sumy2, FFTPlan fft, double[] yRe, double[] yIm) {
+            int nfft = fft.length();
+            double[] zRe = new double[nfft];
+            double[] zIm = new double[nfft];
+            System.arraycopy(inst, 0, zRe, 0, Math.min(inst.length, nfft));
 
-            xfft = fft.transform(xfft, TransformType.FORWARD);
+            fft.forward(zRe, zIm);
 
-            Complex[] zfft = new Complex[nfft];
             for (int n = 0; n < nfft; n++) {
-                zfft[n] = xfft[n].multiply(yfft[n]);
+                double re = zRe[n] * yRe[n] - zIm[n] * yIm[n];
+                zIm[n] = zRe[n] * yIm[n] + zIm[n] * yRe[n];
+                zRe[n] = re;
             }
 
-            zfft = fft.transform(zfft, TransformType.INVERSE);
+            fft.inverse(zRe, zIm);
 
             double[] cumsumx = cumsum(inst);
             double[] cumsumx2 = cumsumPow2(inst);
@@ -559,7 +549,7 @@ public class UnsupervisedShapelets extends EnhancedAbstractClusterer implements
                 double sigmax = Math.sqrt(sigmax2);
 
                 dists[i] = (sumx2 - 2 * sumx * meanx + length * Math.pow(meanx, 2)) / sigmax2 - 2 *
-                        (zfft[i + length].getReal() - sumy * meanx) / sigmax + sumy2;
+                        (zRe[i + length] - sumy * meanx) / sigmax + sumy2;
             }
 
             return Math.sqrt(min(dists)) / Math.sqrt(length);
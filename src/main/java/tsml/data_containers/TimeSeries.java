@@ -34,10 +34,14 @@ import java.util.stream.Stream;
 public class TimeSeries implements Iterable<Double>, Serializable {
 
     public final static double DEFAULT_VALUE = Double.NaN;
-    private final static List<Double> EMPTY_INDICES = Collections.emptyList();
+    private final static double[] EMPTY_INDICES = new double[0];
 
-    private List<Double> series;
-    private List<Double> indices = EMPTY_INDICES;
+    // the values are held in a primitive array to avoid boxing. The series occupies [offset, offset + length) of the
+    // array, which lets slices share the same storage rather than copying
+    private double[] series;
+    private int offset;
+    private int length;
+    private double[] indices = EMPTY_INDICES;
 
     // just for internal use
     private TimeSeries() {}
@@ -48,9 +52,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @param data time series raw data
      */
     public TimeSeries(double[] data){
-        series = new ArrayList<Double>();
-        for(double value : data)
-            series.add(value);
+        this(data.clone(), 0, data.length);
     }
 
     /**
@@ -59,7 +61,12 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @param data time series raw data
      */
     public TimeSeries(List<Double> data) {
-        series = new ArrayList<>(data);
+        series = new double[data.size()];
+        int i = 0;
+        for(Double value : data) {
+            series[i++] = value;
+        }
+        length = series.length;
     }
 
     /**
@@ -68,7 +75,34 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @param other TimeSeries object
      */
     public TimeSeries(TimeSeries other) {
-        this(other.series);
+        this(other.toValueArray(), 0, other.length);
+    }
+
+    /**
+     * Create a TimeSeries object as a view over a region of an array. The array is not copied, so is shared with
+     * the caller. Only for internal use where the array is known not to be modified afterwards.
+     *
+     * @param data   backing array
+     * @param offset index of the first value in the array
+     * @param length number of values in the series
+     */
+    TimeSeries(double[] data, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " and length " + length + " out of bounds for array of length " + data.length);
+        }
+        this.series = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Wrap an array as a TimeSeries without copying it. The array must not be modified afterwards.
+     *
+     * @param data time series raw data
+     * @return a TimeSeries backed by the given array
+     */
+    static TimeSeries wrap(double[] data) {
+        return new TimeSeries(data, 0, data.length);
     }
 
     /**
@@ -77,7 +111,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return int length of series
      */
     public int getSeriesLength() {
-        return series.size();
+        return length;
     }
 
     /**
@@ -89,7 +123,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      */
     public boolean hasValidValueAt(int index) {
         // test whether its out of range, or NaN
-        return index < series.size() && Double.isFinite(series.get(index));
+        return index < length && Double.isFinite(series[offset + index]);
     }
 
     /**
@@ -99,7 +133,10 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return value at index
      */
     public double getValue(int index){
-        return series.get(index);
+        if(index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+        return series[offset + index];
     }
 
     /**
@@ -109,7 +146,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return value at index
      */
     public Double get(int index) {
-        return series.get(index);
+        return getValue(index);
     }
 
     /**
@@ -128,7 +165,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return stream of values in series
      */
     public DoubleStream streamValues() {
-        return series.stream().mapToDouble(Double::doubleValue);
+        return Arrays.stream(series, offset, offset + length);
     }
 
     /**
@@ -137,23 +174,39 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return stream of doubles in series
      */
     public Stream<Double> stream() {
-        return series.stream();
+        return streamValues().boxed();
     }
 
     /**
-     * Returns all values in series.
+     * Returns all values in series. The list is a read-only view over the underlying values, boxing on access, so
+     * use getValue or toValueArray if you care about performance.
      *
      * @return values in series
      */
     public List<Double> getSeries() {
-        return series;
+        return new DoubleArrayView(series, offset, length);
     }
 
     /**
      * @return List<Double>
      */
     public List<Double> getIndices() {
-        return indices;
+        return new DoubleArrayView(indices, 0, indices.length);
+    }
+
+    /**
+     * Copies the values of the series into the destination array without allocating.
+     *
+     * @param srcPos  index in the series to start copying from
+     * @param dest    array to copy into
+     * @param destPos index in dest to start copying to
+     * @param length  number of values to copy
+     */
+    public void copyValues(int srcPos, double[] dest, int destPos, int length) {
+        if(srcPos < 0 || length < 0 || srcPos + length > this.length) {
+            throw new IndexOutOfBoundsException("srcPos " + srcPos + " and length " + length + " out of bounds for length " + this.length);
+        }
+        System.arraycopy(series, offset + srcPos, dest, destPos, length);
     }
 
     /**
@@ -165,8 +218,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
     public String toString(){
         StringBuilder sb = new StringBuilder();
 
-        for(double val : series) {
-            sb.append(val).append(',');
+        for(int i = 0; i < length; i++) {
+            sb.append(series[offset + i]).append(',');
         }
 
         return sb.substring(0, sb.length() - 1);
@@ -178,7 +231,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return values in series
      */
 	public double[] toValueArray() {
-		return getSeries().stream().mapToDouble(Double::doubleValue).toArray();
+		return Arrays.copyOfRange(series, offset, offset + length);
     }
 
     /**
@@ -188,7 +241,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a new TimeSeries object
      */
     public TimeSeries getVSlice(int[] indexesToKeep) {
-        return new TimeSeries(getVSliceArray(indexesToKeep));
+        return wrap(getVSliceArray(indexesToKeep));
     }
 
     /**
@@ -231,7 +284,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a new TimeSeries object
      */
     public TimeSeries getVSliceComplement(int[] indexesToRemove) {
-        return new TimeSeries(getVSliceComplementArray(indexesToRemove));
+        return wrap(getVSliceComplementArray(indexesToRemove));
     }
 
     /**
@@ -388,7 +441,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return series iterator
      */
     @Override public Iterator<Double> iterator() {
-        return series.iterator();
+        return getSeries().iterator();
     }
 
     /**
@@ -400,7 +453,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return Sliding window of series
      */
     public List<Double> getVSliceList(int startInclusive, int endExclusive) {
-        return series.subList(startInclusive, endExclusive);
+        return getSeries().subList(startInclusive, endExclusive);
     }
 
     /**
@@ -412,7 +465,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return Sliding window of series
      */
     public double[] getVSliceArray(int startInclusive, int endExclusive) {
-        return getVSliceList(startInclusive, endExclusive).stream().mapToDouble(d -> d).toArray();
+        checkRange(startInclusive, endExclusive);
+        return Arrays.copyOfRange(series, offset + startInclusive, offset + endExclusive);
     }
 
     /**
@@ -424,11 +478,21 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return Sliding window of series
      */
     public TimeSeries getVSlice(int startInclusive, int endExclusive) {
+        checkRange(startInclusive, endExclusive);
+        // share the underlying array rather than copying
         final TimeSeries ts = new TimeSeries();
-        ts.series = getVSliceList(startInclusive, endExclusive);
+        ts.series = series;
+        ts.offset = offset + startInclusive;
+        ts.length = endExclusive - startInclusive;
         return ts;
     }
 
+    private void checkRange(int startInclusive, int endExclusive) {
+        if(startInclusive < 0 || endExclusive > length || startInclusive > endExclusive) {
+            throw new IndexOutOfBoundsException("range [" + startInclusive + ", " + endExclusive + ") out of bounds for length " + length);
+        }
+    }
+
     /**
      * Returns whether a TimeSeries object is equal to another based if the series
      * are exactly the same.
@@ -442,7 +506,16 @@ public class TimeSeries implements Iterable<Double>, Serializable {
             return false;
         }
         final TimeSeries that = (TimeSeries) other;
-        return Objects.equals(series, that.series);
+        if(length != that.length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            // compare as Double.equals would, i.e. NaN equals NaN
+            if(Double.doubleToLongBits(series[offset + i]) != Double.doubleToLongBits(that.series[that.offset + i])) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -451,7 +524,46 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return hash code
      */
     @Override public int hashCode() {
-        return Objects.hash(series);
+        // matches the hash of the equivalent List<Double>
+        int hash = 1;
+        for(int i = 0; i < length; i++) {
+            hash = 31 * hash + Double.hashCode(series[offset + i]);
+        }
+        return Objects.hash(hash);
+    }
+
+    /**
+     * Read-only List view over a region of a primitive array.
+     */
+    private static class DoubleArrayView extends AbstractList<Double> implements RandomAccess, Serializable {
+
+        private final double[] array;
+        private final int offset;
+        private final int length;
+
+        private DoubleArrayView(double[] array, int offset, int length) {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override public Double get(final int index) {
+            if(index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+            }
+            return array[offset + index];
+        }
+
+        @Override public int size() {
+            return length;
+        }
+
+        @Override public List<Double> subList(final int fromIndex, final int toIndex) {
+            if(fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("range [" + fromIndex + ", " + toIndex + ") out of bounds for length " + length);
+            }
+            return new DoubleArrayView(array, offset + fromIndex, toIndex - fromIndex);
+        }
     }
 
     /**
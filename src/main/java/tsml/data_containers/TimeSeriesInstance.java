@@ -280,7 +280,11 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      * @param other TimeSeriesInstance
      */
     private TimeSeriesInstance(double[][] data, TimeSeriesInstance other) {
-        this(data, Double.NaN);
+        // the data has been freshly sliced so can be wrapped rather than copied
+        seriesDimensions = new ArrayList<>(data.length);
+        for (double[] in : data) {
+            seriesDimensions.add(TimeSeries.wrap(in));
+        }
         labelIndex = other.labelIndex;
         targetValue = other.targetValue;
 
@@ -351,7 +355,12 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      */
     private void calculateIfMissing() {
         // if any of the series have a NaN value, across all dimensions then this is true.
-        hasMissing = seriesDimensions.stream().anyMatch(e -> e.streamValues().anyMatch(Double::isNaN));
+        hasMissing = false;
+        for (TimeSeries ts : seriesDimensions) {
+            for (int i = 0; i < ts.getSeriesLength() && !hasMissing; i++) {
+                hasMissing = Double.isNaN(ts.getValue(i));
+            }
+        }
     }
 
     /**
@@ -766,7 +775,7 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      * @return 2d array
      */
     public double[][] getHSliceArray(int startInclusive, int endExclusive) {
-        return getHSliceList(startInclusive, endExclusive).stream().map(dim -> dim.stream().mapToDouble(d -> d).toArray()).toArray(double[][]::new);
+        return seriesDimensions.subList(startInclusive, endExclusive).stream().map(TimeSeries::toValueArray).toArray(double[][]::new);
     }
 
     /**
@@ -790,7 +799,7 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      * @return 2d array
      */
     public double[][] getVSliceArray(int startInclusive, int endExclusive) {
-        return getVSliceList(startInclusive, endExclusive).stream().map(dim -> dim.stream().mapToDouble(d -> d).toArray()).toArray(double[][]::new);
+        return seriesDimensions.stream().map(dim -> dim.getVSliceArray(startInclusive, endExclusive)).toArray(double[][]::new);
     }
 
     /**
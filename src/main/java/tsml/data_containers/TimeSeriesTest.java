@@ -89,6 +89,44 @@ public class TimeSeriesTest {
         }
     }
     
+    @Test
+    public void testSeriesView() {
+        final List<Double> series = ts.getSeries();
+        assertEquals(list, series);
+        try {
+            series.set(0, 1d);
+            fail("series view should be read-only");
+        } catch(UnsupportedOperationException ignored) {}
+        assertEquals(first, ts.getValue(0), 0d);
+    }
+
+    @Test
+    public void testVSliceRange() {
+        final TimeSeries slice = ts.getVSlice(1, 3);
+        assertEquals(2, slice.getSeriesLength());
+        assertArrayEquals(new double[] {second, third}, slice.toValueArray(), 0d);
+        assertEquals(list.subList(1, 3), slice.getSeries());
+        assertEquals(new TimeSeries(new double[] {second, third}), slice);
+        assertEquals(new TimeSeries(new double[] {second, third}).hashCode(), slice.hashCode());
+        assertFalse(slice.hasValidValueAt(1));
+        assertFalse(slice.hasValidValueAt(2));
+    }
+
+    @Test
+    public void testCopyValues() {
+        final double[] dest = new double[3];
+        ts.getVSlice(1, 4).copyValues(0, dest, 0, 3);
+        assertArrayEquals(new double[] {second, third, fourth}, dest, 0d);
+    }
+
+    @Test
+    public void testArrayNotShared() {
+        final double[] copy = array.clone();
+        ts = new TimeSeries(copy);
+        copy[0] = 100;
+        assertEquals(first, ts.getValue(0), 0d);
+    }
+
     // todo test hslice
     // todo test vslice
     // todo test metadata / stats
@@ -79,7 +79,7 @@ public class BalancedClassShapeletFilter extends ShapeletFilter implements Seria
             //set the clas value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
             
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(data.get(casesSoFar));
             numShapeletsEvaluated+=seriesShapelets.size();
 //            outputPrint("BalancedClassST: data : " + casesSoFar+" has "+seriesShapelets.size()+" candidates"+ " cumulative early abandons "+numEarlyAbandons);
             if(seriesShapelets != null){
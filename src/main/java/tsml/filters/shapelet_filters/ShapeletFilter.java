@@ -35,6 +35,7 @@ import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import tsml.classifiers.MultiThreadable;
 import tsml.transformers.shapelet_tools.*;
 import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance;
 import utilities.ClassifierTools;
@@ -75,7 +76,7 @@ import utilities.rescalers.SeriesRescaler;
  *
  * @author Aaron Bostrom
  */
-public class ShapeletFilter extends SimpleBatchFilter implements Serializable,TechnicalInformationHandler{
+public class ShapeletFilter extends SimpleBatchFilter implements Serializable,TechnicalInformationHandler,MultiThreadable{
 //Global defaults. Max should be a lambda set to series length
     public final static int DEFAULT_NUMSHAPELETS = 500;
     public final static int DEFAULT_MINSHAPELETLENGTH = 3;
@@ -125,6 +126,11 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
     
     protected long count;
 
+    //Multithreading. Candidates from each series are evaluated in parallel, see ParallelCandidateEvaluator
+    private boolean multithreading = false;
+    private int numThreads = 1;
+    private transient ParallelCandidateEvaluator candidateEvaluator;
+
 
     public void setSubSeqDistance(ShapeletDistance ssd) {
         subseqDistance = ssd;
@@ -134,6 +140,12 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
         return count;
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+        multithreading = this.numThreads > 1;
+    }
+
 
 
     protected int candidatePruningStartPercentage;
@@ -369,6 +381,10 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
      * @return
      */
     protected void initQualityBound(ClassCounts classDist) {
+        initQualityBound(quality, classDist);
+    }
+
+    private void initQualityBound(ShapeletQuality quality, ClassCounts classDist) {
         if (!useCandidatePruning) return;
         quality.initQualityBound(classDist, candidatePruningStartPercentage);
     }
@@ -481,6 +497,8 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
             //we log the count from the subsequence distance before we reset it in the transform.
             //we only care about the count from the train. What is it counting?
             count = subseqDistance.getCount();
+            if(candidateEvaluator != null)
+                count += candidateEvaluator.getCount();
 
         }
 
@@ -499,7 +517,11 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
         classValue.init(inputData);
         outputPrint("num shapelets before search "+numShapelets);
 
+        candidateEvaluator = multithreading
+                ? new ParallelCandidateEvaluator(numThreads, subseqDistance, quality.getChoice()) : null;
         shapelets = findBestKShapeletsCache(inputData); // get k shapelets
+        if(candidateEvaluator != null)
+            candidateEvaluator.shutdown();
         m_FirstBatchDone = true;
         outputPrint(shapelets.size() + " Shapelets have been generated num shapelets now "+numShapelets);
         
@@ -597,7 +619,7 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
             //set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
 
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(data.get(casesSoFar));
             numShapeletsEvaluated+=seriesShapelets.size();
             outputPrint("data : " + casesSoFar+" has "+seriesShapelets.size()+" candidates"+ " cumulative early abandons "+numEarlyAbandons+" worst so far ="+worstShapelet);
             if(seriesShapelets != null){
@@ -813,9 +835,35 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
         return outputShapelets;
     }
 
+    /**
+     * Searches a single series for candidate shapelets, evaluating the candidates over multiple threads if
+     * multithreading is enabled and the search function allows it.
+     * @param series the series to search
+     * @return the shapelets found, in the order they were visited
+     */
+    protected ArrayList<Shapelet> searchForShapeletsInSeries(Instance series) {
+        if(candidateEvaluator == null || !ParallelCandidateEvaluator.canEvaluateInParallel(searchFunction))
+            return searchFunction.searchForShapeletsInSeries(series, this::checkCandidate);
+
+        ArrayList<Shapelet> seriesShapelets = candidateEvaluator.searchForShapeletsInSeries(searchFunction, series,
+                casesSoFar, this::checkCandidate);
+        numEarlyAbandons += candidateEvaluator.getNumEarlyAbandons();
+        return seriesShapelets;
+    }
+
     protected Shapelet checkCandidate(Instance series, int start, int length, int dimension) {
+        Shapelet shapelet = checkCandidate(series, start, length, dimension, quality, subseqDistance);
+        if (shapelet == null)
+            numEarlyAbandons++;
+        return shapelet;
+    }
+
+    //evaluates a candidate with the quality measure and distance passed, which are separate for each thread when
+    //multithreaded. Returns null if the candidate is early abandoned.
+    private Shapelet checkCandidate(Instance series, int start, int length, int dimension, ShapeletQuality quality,
+                                    ShapeletDistance subseqDistance) {
         //init qualityBound.        
-        initQualityBound(classValue.getClassDistributions());        
+        initQualityBound(quality, classValue.getClassDistributions());        
         
         //Set bound of the bounding algorithm
         if (worstShapelet != null) {
@@ -835,7 +883,6 @@ public class ShapeletFilter extends SimpleBatchFilter implements Serializable,Te
             
             //Check if it is possible to prune the candidate
             if (quality.pruneCandidate()) {
-                numEarlyAbandons++;
                 return null;
             }
 
@@ -105,7 +105,7 @@ public class cShapeletFilter extends BalancedClassShapeletFilter {
             subseqDistance.setSeries(casesSoFar);
             //set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(data.get(casesSoFar));
 
 //Here we can tweak the the number of shapelets to do per series, although it would be much easier with time.
             numShapeletsEvaluated+=seriesShapelets.size();
@@ -175,7 +175,7 @@ public class cShapeletFilter extends BalancedClassShapeletFilter {
             //set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
 
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(data.get(casesSoFar));
             numShapeletsEvaluated+=seriesShapelets.size();
             outputPrint("data : " + casesSoFar+" has "+seriesShapelets.size()+" candidates"+ " cumulative early abandons "+numEarlyAbandons+" worst so far ="+worstShapelet);
             if(seriesShapelets != null){
@@ -23,6 +23,7 @@ import fileIO.OutFile;
 import tsml.data_containers.TSCapabilities;
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.FFTPlan;
 import utilities.InstanceTools;
 
 import java.text.DecimalFormat;
@@ -74,6 +75,9 @@ public class ACF implements Transformer {
      */
     public static final int DEFAULT_MAXLAG = 100;
     private int maxLag = DEFAULT_MAXLAG;
+    /** Lags and series length from which the FFT is cheaper than the direct loops */
+    private static final int FFT_MIN_LAG = 64;
+    private static final int FFT_MIN_LENGTH = 512;
     /** Currently assumed constant for all series. Have to, using instances* */
     private int seriesLength;
 
@@ -200,13 +204,15 @@ public class ACF implements Transformer {
     }
 
     /**
-     * Note it is possible to do this with FFT in O(nlogn) BUT requires 2^n
-     * attributes
+     * For long lags the lagged products are found for all lags at once with an
+     * FFT in O(nlogn), see fitAutoCorrelationsFFT
      * 
      * @param data
      * @return
      */
     public double[] fitAutoCorrelations(double[] data) {
+        if (maxLag >= FFT_MIN_LAG && data.length >= FFT_MIN_LENGTH && maxLag < data.length)
+            return fitAutoCorrelationsFFT(data, maxLag, normalized, true);
         double[] a = new double[maxLag];
         if (!normalized) {
             for (int i = 1; i <= maxLag; i++) {
@@ -256,6 +262,8 @@ public class ACF implements Transformer {
     }
 
     public static double[] fitAutoCorrelations(double[] data, int mLag, boolean normalised) {
+        if (mLag >= FFT_MIN_LAG && data.length >= FFT_MIN_LENGTH && mLag < data.length)
+            return fitAutoCorrelationsFFT(data, mLag, normalised, false);
         double[] a = new double[mLag];
 
         if (!normalised) {
@@ -291,6 +299,84 @@ public class ACF implements Transformer {
         return a;
     }
 
+    /**
+     * Autocorrelations up to lag mLag from a single FFT. The series is centred
+     * on its mean and zero padded to at least data.length + mLag so the inverse
+     * transform of the power spectrum gives the non circular lagged products
+     * sum_j x_j*x_{j+i}. The per lag means and variances of the two overlapping
+     * windows come from prefix sums, so the results match the direct loops up to
+     * rounding.
+     * 
+     * @param data           series, must be longer than mLag
+     * @param mLag           number of lags to find
+     * @param normalised     if true return the raw lagged products divided by n
+     * @param zeroVarianceOne if true a lag where both windows have zero variance
+     *                       is given correlation 1 and where one does, 0.
+     *                       Otherwise the covariance is left unscaled.
+     * @return first mLag autocorrelations
+     */
+    private static double[] fitAutoCorrelationsFFT(double[] data, int mLag, boolean normalised,
+            boolean zeroVarianceOne) {
+        int n = data.length;
+        double mean = 0;
+        if (!normalised) {
+            for (double d : data)
+                mean += d;
+            mean /= n;
+        }
+        double[] x = new double[n];
+        for (int j = 0; j < n; j++)
+            x[j] = data[j] - mean;
+
+        FFTPlan plan = FFTPlan.forLength(FFTPlan.nextPowerOf2(n + mLag));
+        int m = plan.length();
+        double[] re = new double[m];
+        double[] im = new double[m];
+        plan.realForward(x, re, im);
+        for (int k = 0; k <= m / 2; k++) {
+            re[k] = re[k] * re[k] + im[k] * im[k];
+            im[k] = 0;
+        }
+        for (int k = m / 2 + 1; k < m; k++) {
+            re[k] = re[m - k];
+            im[k] = 0;
+        }
+        plan.inverse(re, im);
+
+        double[] a = new double[mLag];
+        if (normalised) {
+            for (int i = 1; i <= mLag; i++)
+                a[i - 1] = re[i] / n;
+            return a;
+        }
+
+        double[] sum = new double[n + 1];
+        double[] sumSq = new double[n + 1];
+        for (int j = 0; j < n; j++) {
+            sum[j + 1] = sum[j] + x[j];
+            sumSq[j + 1] = sumSq[j] + x[j] * x[j];
+        }
+        for (int i = 1; i <= mLag; i++) {
+            int len = n - i;
+            double s1 = sum[len] / len;
+            double s2 = (sum[n] - sum[i]) / len;
+            double v1 = sumSq[len] / len - s1 * s1;
+            double v2 = (sumSq[n] - sumSq[i]) / len - s2 * s2;
+            a[i - 1] = re[i] / len - s1 * s2;
+            if (zeroVarianceOne) {
+                if (v1 == 0 && v2 == 0)
+                    a[i - 1] = 1;
+                else if (v1 == 0 || v2 == 0)
+                    a[i - 1] = 0;
+                else
+                    a[i - 1] /= Math.sqrt(v1) * Math.sqrt(v2);
+            } else if (v1 != 0 && v2 != 0) {
+                a[i - 1] /= Math.sqrt(v1) * Math.sqrt(v2);
+            }
+        }
+        return a;
+    }
+
     public String getRevision() {
         return "Revision 2: 2019";
     }
@@ -20,11 +20,9 @@ package tsml.transformers;
 import experiments.data.DatasetLists;
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.FFTPlan;
 import utilities.InstanceTools;
 
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
@@ -33,7 +31,6 @@ import weka.core.Instances;
 import java.util.ArrayList;
 
 import static experiments.data.DatasetLoading.loadDataNullable;
-import static org.apache.commons.math3.transform.TransformType.FORWARD;
 
 public class AudioFeatures implements Transformer {
 
@@ -81,13 +78,8 @@ public class AudioFeatures implements Transformer {
 
         int nfft = fs;
         nfft = nearestPowerOF2(nfft);
-        Complex[] complexData = new Complex[nfft];
+        double[] padded = new double[nfft];
         double[] spectralMag = new double[nfft / 2];
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-
-        for (int i = 0; i < complexData.length; i++) {
-            complexData[i] = new Complex(0.0, 0.0);
-        }
 
         double mean = 0;
         if (series.length < nfft) {
@@ -99,15 +91,17 @@ public class AudioFeatures implements Transformer {
 
         for (int i = 0; i < nfft; i++) {
             if (i < series.length)
-                complexData[i] = new Complex(series[i], 0);
+                padded[i] = series[i];
             else
-                complexData[i] = new Complex(mean, 0);
+                padded[i] = mean;
         }
 
-        complexData = fft.transform(complexData, FORWARD);
+        double[] re = new double[nfft / 2 + 1];
+        double[] im = new double[nfft / 2 + 1];
+        FFTPlan.forLength(nfft).realForward(padded, re, im);
 
         for (int i = 0; i < (nfft / 2); i++) {
-            spectralMag[i] = complexData[i].abs();
+            spectralMag[i] = Math.sqrt(re[i] * re[i] + im[i] * im[i]);
         }
 
 
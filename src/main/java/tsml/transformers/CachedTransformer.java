@@ -17,13 +17,16 @@
  
 package tsml.transformers;
 
+import java.io.File;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import experiments.data.DatasetLoading;
+import tsml.classifiers.distance_based.utils.collections.cache.BoundedCache;
+import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 
@@ -38,19 +41,38 @@ import weka.core.Instances;
  * be hashed first to use the cache reliably otherwise issues occur with
  * instance copying changing the hashcode due to memory locations.
  * <p>
+ * Instances are keyed by value by default, i.e. every lookup hashes the content of the instance. Keying by identity
+ * avoids this when the same instance objects are transformed repeatedly. The cache is bounded by a memory budget,
+ * 1/8 of the max heap by default, evicting the least recently used transforms, which can optionally be spilled to
+ * disk. The cache is thread safe.
+ * <p>
  * Contributors: goastler, abostrom
  */
 public class CachedTransformer extends BaseTrainableTransformer {
 
+    public enum KeyMode {
+        EQUALITY, // key instances by equals / hashCode, i.e. by content
+        IDENTITY, // key instances by reference, i.e. only the exact same object is a hit
+        ;
+    }
+
     // the filter to cache the output of
     private Transformer transformer;
     // whether to only cache instances from the fit() call OR all instances handed
     // to the transform method
     private boolean cacheFittedDataOnly;
+    // how instances are keyed in the cache
+    private KeyMode keyMode = KeyMode.EQUALITY;
+    // the max bytes of transformed instances to hold in memory
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 8;
+    // where to spill transformed instances evicted from memory, or null to discard them
+    private File spillDirectory;
 
     // the cache to store instances against their corresponding transform output
-    private Map<TimeSeriesInstance, TimeSeriesInstance> tsCache; // use object as key so we can accept either inst or tsinst
-    private Map<Instance, Instance> arffCache;
+    private BoundedCache<Object, TimeSeriesInstance> tsCache; // use object as key so we can accept either inst or identity key
+    private BoundedCache<Object, Instance> arffCache;
+    // the keys of the instances handed to fit()
+    private Set<Object> fittedKeys;
 
     public CachedTransformer(final Transformer transformer) {
         setTransformer(transformer);
@@ -66,10 +88,86 @@ public class CachedTransformer extends BaseTrainableTransformer {
         this.cacheFittedDataOnly = cacheFittedDataOnly;
     }
 
+    public KeyMode getKeyMode() {
+        return keyMode;
+    }
+
+    /**
+     * Set how instances are keyed. Clears the cache.
+     */
+    public void setKeyMode(final KeyMode keyMode) {
+        Assert.assertNotNull(keyMode);
+        this.keyMode = keyMode;
+        reset();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Set the max number of bytes of transformed instances to hold in memory. Clears the cache.
+     */
+    public void setMemoryBudget(final long memoryBudget) {
+        Assert.assertTrue(memoryBudget > 0);
+        this.memoryBudget = memoryBudget;
+        reset();
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Set the directory to spill transformed instances evicted from memory to, or null to discard them.
+     */
+    public void setSpillDirectory(final File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        tsCache.setSpillDirectory(spillDirectory);
+        arffCache.setSpillDirectory(spillDirectory);
+    }
+
+    public BoundedCache<Object, TimeSeriesInstance> getTimeSeriesCache() {
+        return tsCache;
+    }
+
+    public BoundedCache<Object, Instance> getArffCache() {
+        return arffCache;
+    }
+
     public void reset() {
         super.reset();
-        tsCache = new HashMap<>();
-        arffCache = new HashMap<>();
+        if(tsCache != null) {
+            // remove any spilled files
+            tsCache.clear();
+            arffCache.clear();
+        }
+        tsCache = new BoundedCache<>(memoryBudget, CachedTransformer::weigh);
+        arffCache = new BoundedCache<>(memoryBudget, CachedTransformer::weigh);
+        tsCache.setSpillDirectory(spillDirectory);
+        arffCache.setSpillDirectory(spillDirectory);
+        fittedKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    private static long weigh(TimeSeriesInstance inst) {
+        // approximate object overheads plus the primitive values of each dimension
+        long bytes = 64;
+        for(TimeSeries series : inst) {
+            bytes += 48 + (long) series.getSeriesLength() * Double.BYTES;
+        }
+        return bytes;
+    }
+
+    private static long weigh(Instance inst) {
+        return 48 + (long) inst.numAttributes() * Double.BYTES;
+    }
+
+    private Object key(Object inst) {
+        if(KeyMode.IDENTITY.equals(keyMode)) {
+            return new BoundedCache.IdentityKey<>(inst);
+        } else {
+            return inst;
+        }
     }
 
     @Override
@@ -79,7 +177,7 @@ public class CachedTransformer extends BaseTrainableTransformer {
             ((TrainableTransformer) transformer).fit(data);
         }
         for (final Instance instance : data) {
-            arffCache.put(instance, null);
+            fittedKeys.add(key(instance));
         }
     }
 
@@ -90,7 +188,7 @@ public class CachedTransformer extends BaseTrainableTransformer {
             ((TrainableTransformer) transformer).fit(data);
         }
         for (final TimeSeriesInstance instance : data) {
-            tsCache.put(instance, null);
+            fittedKeys.add(key(instance));
         }
     }
 
@@ -104,30 +202,35 @@ public class CachedTransformer extends BaseTrainableTransformer {
         this.transformer = transformer;
     }
 
-    @Override
-    public TimeSeriesInstance transform(TimeSeriesInstance inst) {
-        if(!isFit()) {
+    private void checkFit() {
+        // transformers which don't require fitting are pure functions, so can be cached without fitting
+        if(!isFit() && transformer instanceof TrainableTransformer) {
             throw new IllegalStateException("must be fitted first");
         }
-        TimeSeriesInstance transformed = tsCache.get(inst);
+    }
+
+    @Override
+    public TimeSeriesInstance transform(TimeSeriesInstance inst) {
+        checkFit();
+        final Object key = key(inst);
+        TimeSeriesInstance transformed = tsCache.get(key);
         if(transformed == null) {
             transformed = transformer.transform(inst);
-            if(!cacheFittedDataOnly || tsCache.containsKey(inst)) {
-                tsCache.put(inst, transformed);
+            if(!cacheFittedDataOnly || fittedKeys.contains(key)) {
+                tsCache.put(key, transformed);
             }
         }
         return transformed;
     }
 
     @Override public Instance transform(final Instance inst) {
-        if(!isFit()) {
-            throw new IllegalStateException("must be fitted first");
-        }
-        Instance transformed = arffCache.get(inst);
+        checkFit();
+        final Object key = key(inst);
+        Instance transformed = arffCache.get(key);
         if(transformed == null) {
             transformed = transformer.transform(inst);
-            if(!cacheFittedDataOnly || arffCache.containsKey(inst)) {
-                arffCache.put(inst, transformed);
+            if(!cacheFittedDataOnly || fittedKeys.contains(key)) {
+                arffCache.put(key, transformed);
             }
         }
         return transformed;
@@ -21,7 +21,6 @@ import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.transform.DftNormalization;
 import org.apache.commons.math3.transform.FastFourierTransformer;
 import org.apache.commons.math3.transform.TransformType;
-import utilities.GenericTools;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
@@ -60,16 +59,29 @@ public class Catch22 implements Transformer {
     // large positive/negative values
     private boolean outlierNorm = false;
 
-    // for summary stat by index
+    // indices of all features, in the order output by transform
+    private static final int[] ALL_FEATURES = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19,
+            20, 21 };
+
+    // intermediate values for the current series, shared between the features
     private int currentSeriesID = Integer.MIN_VALUE;
+    private double[] idxSeries;
+    private boolean idxHasMinMax;
     private double idxMin;
     private double idxMax;
+    private boolean idxHasMean;
     private double idxMean;
     private Complex[] idxFFT;
+    private double[] idxSpectrum;
     private double[] idxAC;
     private int idxACFZ;
     private double[] idxOutlierSeries;
-    private double[] idxSeries;
+    private double[] idxDiffs;
+
+    // scratch buffers reused between series
+    private transient int[] indexBuffer;
+    private transient int[] sortBuffer;
+    private transient int[] binaryBuffer;
 
     public Catch22() { }
 
@@ -123,270 +135,144 @@ public class Catch22 implements Transformer {
         int atts = classValue == Double.MIN_VALUE ? 22 : 23;
         double[] featureSet = new double[atts];
 
-        double[] arr;
-        double[] outlierArr;
-        if (norm) {
-            arr = new double[series.length];
-            System.arraycopy(series, 0, arr, 0, series.length);
-            zNormalise(arr);
-            outlierArr = arr;
-        } else if (outlierNorm) {
-            arr = series;
-            outlierArr = new double[series.length];
-            System.arraycopy(series, 0, outlierArr, 0, series.length);
-            zNormalise(outlierArr);
-        } else {
-            arr = series;
-            outlierArr = series;
-        }
+        getSummaryStats(series, ALL_FEATURES, featureSet);
 
-        // can reduce amount of computation by pre-computing stats and transforms
-        double min = Double.MAX_VALUE;
-        double max = -99999999;
-        double mean = 0;
-        for (double v : arr) {
-            if (v < min) {
-                min = v;
-            }
-            if (v > max) {
-                max = v;
-            }
-            mean += v;
-        }
-        mean /= arr.length;
+        if (classValue > Double.MIN_VALUE) featureSet[22] = classValue;
 
-        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(series.length) / Math.log(2)));
-        Complex[] fft = new Complex[nfft];
-        for (int j = 0; j < nfft; j++) {
-            if (j < series.length)
-                fft[j] = new Complex(series[j] - mean, 0);
-            else
-                fft[j] = new Complex(0, 0);
-        }
+        return featureSet;
+    }
 
-        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-        fft = f.transform(fft, TransformType.FORWARD);
-
-        double[] ac = autoCorr(arr, fft);
-
-        int acfz = acFirstZero(ac);
-
-        featureSet[0] = histMode5DN(arr, min, max);
-        featureSet[1] = histMode10DN(arr, min, max);
-        featureSet[2] = binaryStatsMeanLongstretch1SB(arr, mean);
-        featureSet[3] = outlierIncludeP001mdrmdDN(outlierArr);
-        featureSet[4] = outlierIncludeN001mdrmdDN(outlierArr);
-        featureSet[5] = f1ecacCO(ac);
-        featureSet[6] = firstMinacCO(ac);
-        featureSet[7] = summariesWelchRectArea51SP(arr, fft);
-        featureSet[8] = summariesWelchRectCentroidSP(arr, fft);
-        featureSet[9] = localSimpleMean3StderrFC(arr);
-        featureSet[10] = trev1NumCO(arr);
-        featureSet[11] = histogramAMIeven25CO(arr, min, max);
-        featureSet[12] = autoMutualInfoStats40GaussianFmmiIN(ac);
-        featureSet[13] = hrvClassicPnn40MD(arr);
-        featureSet[14] = binaryStatsDiffLongstretch0SB(arr);
-        featureSet[15] = motifThreeQuantileHhSB(arr);
-        featureSet[16] = localSimpleMean1TauresratFC(arr, acfz);
-        featureSet[17] = embed2DistTauDExpfitMeandiffCO(arr, acfz);
-        featureSet[18] = fluctAnal2Dfa5012LogiPropR1SC(arr);
-        featureSet[19] = fluctAnal2Rsrangefit501LogiPropR1SC(arr);
-        featureSet[20] = transitionMatrix3acSumdiagcovSB(arr, acfz);
-        featureSet[21] = periodicityWangTh001PD(arr);
+    /**
+     * Calculate a subset of the catch22 features for a series. Intermediate values used by multiple features, such as
+     * the z-normalised series, mean, fft and autocorrelation, are only calculated once.
+     *
+     * @param series             the series to calculate features for
+     * @param summaryStatIndices indices of the features to calculate
+     * @param features           array to write the features to, in the order of the indices. Allocated if null.
+     * @return the features
+     */
+    public double[] getSummaryStats(double[] series, int[] summaryStatIndices, double[] features) {
+        if (features == null) {
+            features = new double[summaryStatIndices.length];
+        }
 
-        if (classValue > Double.MIN_VALUE) featureSet[22] = classValue;
+        setSeries(series);
+        // the intermediate values are not associated with a series id
+        currentSeriesID = Integer.MIN_VALUE;
 
-        for (int i = 0; i < featureSet.length; i++){
-            if (Double.isNaN(featureSet[i]) || Double.isInfinite(featureSet[i])){
-                featureSet[i] = 0;
-            }
+        for (int i = 0; i < summaryStatIndices.length; i++) {
+            features[i] = summaryStat(summaryStatIndices[i]);
         }
 
-        return featureSet;
+        return features;
     }
 
+    /**
+     * Calculate a single catch22 feature for a series. Intermediate values are kept between calls with the same
+     * series id, so they are shared between the features of a series.
+     *
+     * @param summaryStatIndex index of the feature
+     * @param seriesID         id of the series, must be different for each series
+     * @param series           the series to calculate the feature for
+     * @return the feature
+     * @throws Exception invalid feature index
+     */
     public double getSummaryStatByIndex(int summaryStatIndex, int seriesID, double[] series) throws Exception {
         if (seriesID != currentSeriesID) {
             currentSeriesID = seriesID;
-            idxMin = Double.MAX_VALUE;
-            idxMax = -99999999;
-            idxMean = Double.MIN_VALUE;
-            idxFFT = null;
-            idxAC = null;
-            idxACFZ = -1;
-            idxOutlierSeries = null;
-
-            if (norm) {
-                idxSeries = new double[series.length];
-                System.arraycopy(series, 0, idxSeries, 0, series.length);
-                zNormalise(idxSeries);
-            } else {
-                idxSeries = series;
-            }
+            setSeries(series);
         }
 
-        switch (summaryStatIndex) {
-            case 0:
-            case 1:
-            case 11:
-                if (idxMin == Double.MAX_VALUE) {
-                    for (double v : idxSeries) {
-                        if (v < idxMin) {
-                            idxMin = v;
-                        }
-                        if (v > idxMax) {
-                            idxMax = v;
-                        }
-                    }
-                }
-                break;
-            case 2:
-                if (idxMean == Double.MIN_VALUE) {
-                    idxMean = mean(idxSeries);
-                }
-                break;
-            case 3:
-            case 4:
-                if (idxOutlierSeries == null) {
-                    if (outlierNorm && !norm) {
-                        idxOutlierSeries = new double[idxSeries.length];
-                        System.arraycopy(idxSeries, 0, idxOutlierSeries, 0, idxSeries.length);
-                        zNormalise(idxOutlierSeries);
-                    } else {
-                        idxOutlierSeries = idxSeries;
-                    }
-                }
-                break;
-            case 7:
-            case 8:
-                if (idxFFT == null) {
-                    if (idxMean == Double.MIN_VALUE) {
-                        idxMean = mean(idxSeries);
-                    }
+        return summaryStat(summaryStatIndex);
+    }
 
-                    int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(idxSeries.length) / Math.log(2)));
-                    idxFFT = new Complex[nfft];
-                    for (int j = 0; j < nfft; j++) {
-                        if (j < idxSeries.length)
-                            idxFFT[j] = new Complex(idxSeries[j] - idxMean, 0);
-                        else
-                            idxFFT[j] = new Complex(0, 0);
-                    }
+    public static double getSummaryStatByIndex(int summaryStatIndex, double[] series, boolean outlierNorm) {
+        if (summaryStatIndex < 0 || summaryStatIndex > 21){
+            System.err.println("Invalid Catch22 summary stat index.");
+            return Double.MAX_VALUE;
+        }
 
-                    FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                    idxFFT = f.transform(idxFFT, TransformType.FORWARD);
-                }
-                break;
-            case 5:
-            case 6:
-            case 12:
-                if (idxAC == null) {
-                    if (idxFFT == null) {
-                        if (idxMean == Double.MIN_VALUE) {
-                            idxMean = mean(idxSeries);
-                        }
-
-                        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(idxSeries.length) / Math.log(2)));
-                        idxFFT = new Complex[nfft];
-                        for (int j = 0; j < nfft; j++) {
-                            if (j < idxSeries.length)
-                                idxFFT[j] = new Complex(idxSeries[j] - idxMean, 0);
-                            else
-                                idxFFT[j] = new Complex(0, 0);
-                        }
-
-                        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                        idxFFT = f.transform(idxFFT, TransformType.FORWARD);
-                    }
+        Catch22 c22 = new Catch22();
+        c22.setOutlierNormalise(outlierNorm);
+        c22.setSeries(series);
+        return c22.summaryStat(summaryStatIndex);
+    }
 
-                    idxAC = autoCorr(idxSeries, idxFFT);
-                }
-                break;
-            case 16:
-            case 17:
-            case 20:
-                if (idxACFZ == -1){
-                    if (idxAC == null) {
-                        if (idxFFT == null) {
-                            if (idxMean == Double.MIN_VALUE) {
-                                idxMean = mean(idxSeries);
-                            }
-
-                            int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(idxSeries.length) / Math.log(2)));
-                            idxFFT = new Complex[nfft];
-                            for (int j = 0; j < nfft; j++) {
-                                if (j < idxSeries.length)
-                                    idxFFT[j] = new Complex(idxSeries[j] - idxMean, 0);
-                                else
-                                    idxFFT[j] = new Complex(0, 0);
-                            }
-
-                            FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                            idxFFT = f.transform(idxFFT, TransformType.FORWARD);
-                        }
-
-                        idxAC = autoCorr(idxSeries, idxFFT);
-                    }
-                    idxACFZ = acFirstZero(idxAC);
-                }
-                break;
+    private void setSeries(double[] series) {
+        idxHasMinMax = false;
+        idxHasMean = false;
+        idxFFT = null;
+        idxSpectrum = null;
+        idxAC = null;
+        idxACFZ = -1;
+        idxOutlierSeries = null;
+        idxDiffs = null;
+
+        if (norm) {
+            idxSeries = Arrays.copyOf(series, series.length);
+            zNormalise(idxSeries);
+        } else {
+            idxSeries = series;
         }
+    }
 
+    private double summaryStat(int summaryStatIndex) {
         double feature;
         switch (summaryStatIndex) {
             case 0:
-                feature = histMode5DN(idxSeries, idxMin, idxMax);
+                feature = histMode5DN(idxSeries, seriesMin(), seriesMax());
                 break;
             case 1:
-                feature = histMode10DN(idxSeries, idxMin, idxMax);
+                feature = histMode10DN(idxSeries, seriesMin(), seriesMax());
                 break;
             case 2:
-                feature = binaryStatsMeanLongstretch1SB(idxSeries, idxMean);
+                feature = binaryStatsMeanLongstretch1SB(idxSeries, seriesMean(), binaryBuffer(idxSeries.length));
                 break;
             case 3:
-                feature = outlierIncludeP001mdrmdDN(idxOutlierSeries);
+                feature = outlierIncludeP001mdrmdDN(outlierSeries(), indexBuffer(idxSeries.length));
                 break;
             case 4:
-                feature = outlierIncludeN001mdrmdDN(idxOutlierSeries);
+                feature = outlierIncludeN001mdrmdDN(outlierSeries(), indexBuffer(idxSeries.length));
                 break;
             case 5:
-                feature = f1ecacCO(idxAC);
+                feature = f1ecacCO(autoCorr());
                 break;
             case 6:
-                feature = firstMinacCO(idxAC);
+                feature = firstMinacCO(autoCorr());
                 break;
             case 7:
-                feature = summariesWelchRectArea51SP(idxSeries, idxFFT);
+                feature = summariesWelchRectArea51SP(spectrum(), fft().length);
                 break;
             case 8:
-                feature = summariesWelchRectCentroidSP(idxSeries, idxFFT);
+                feature = summariesWelchRectCentroidSP(spectrum(), fft().length);
                 break;
             case 9:
                 feature = localSimpleMean3StderrFC(idxSeries);
                 break;
             case 10:
-                feature = trev1NumCO(idxSeries);
+                feature = trev1NumCO(diffs());
                 break;
             case 11:
-                feature = histogramAMIeven25CO(idxSeries, idxMin, idxMax);
+                feature = histogramAMIeven25CO(idxSeries, seriesMin(), seriesMax());
                 break;
             case 12:
-                feature = autoMutualInfoStats40GaussianFmmiIN(idxAC);
+                feature = autoMutualInfoStats40GaussianFmmiIN(autoCorr());
                 break;
             case 13:
-                feature = hrvClassicPnn40MD(idxSeries);
+                feature = hrvClassicPnn40MD(diffs());
                 break;
             case 14:
-                feature = binaryStatsDiffLongstretch0SB(idxSeries);
+                feature = binaryStatsDiffLongstretch0SB(diffs(), binaryBuffer(idxSeries.length));
                 break;
             case 15:
-                feature = motifThreeQuantileHhSB(idxSeries);
+                feature = motifThreeQuantileHhSB(idxSeries, indexBuffer(idxSeries.length),
+                        sortBuffer(idxSeries.length), binaryBuffer(idxSeries.length));
                 break;
             case 16:
-                feature = localSimpleMean1TauresratFC(idxSeries, idxACFZ);
+                feature = localSimpleMean1TauresratFC(diffs(), acFirstZero());
                 break;
             case 17:
-                feature = embed2DistTauDExpfitMeandiffCO(idxSeries, idxACFZ);
+                feature = embed2DistTauDExpfitMeandiffCO(diffs(), acFirstZero());
                 break;
             case 18:
                 feature = fluctAnal2Dfa5012LogiPropR1SC(idxSeries);
@@ -395,13 +281,14 @@ public class Catch22 implements Transformer {
                 feature = fluctAnal2Rsrangefit501LogiPropR1SC(idxSeries);
                 break;
             case 20:
-                feature = transitionMatrix3acSumdiagcovSB(idxSeries, idxACFZ);
+                feature = transitionMatrix3acSumdiagcovSB(idxSeries, acFirstZero(), indexBuffer(idxSeries.length),
+                        sortBuffer(idxSeries.length), binaryBuffer(idxSeries.length));
                 break;
             case 21:
                 feature = periodicityWangTh001PD(idxSeries);
                 break;
             default:
-                throw new Exception("Invalid Catch22 summary stat index.");
+                throw new IllegalArgumentException("Invalid Catch22 summary stat index.");
         }
 
         if (Double.isNaN(feature) || Double.isInfinite(feature)){
@@ -411,180 +298,107 @@ public class Catch22 implements Transformer {
         return feature;
     }
 
-    public static double getSummaryStatByIndex(int summaryStatIndex, double[] series, boolean outlierNorm) {
-        double min = Double.MAX_VALUE;
-        double max = -99999999;
-        double mean = Double.MIN_VALUE;
-        Complex[] fft = null;
-        double[] ac = null;
-        int acfz = -1;
-        double[] newSeries = series;
-
-        if (summaryStatIndex < 0 || summaryStatIndex > 21){
-            System.err.println("Invalid Catch22 summary stat index.");
-            return Double.MAX_VALUE;
-        }
-
-        switch (summaryStatIndex) {
-            case 0:
-            case 1:
-            case 11:
-                for (double v : newSeries) {
-                    if (v < min) {
-                        min = v;
-                    }
-                    if (v > max) {
-                        max = v;
-                    }
-                }
-                break;
-            case 2:
-                mean = mean(newSeries);
-                break;
-            case 3:
-            case 4:
-                if (outlierNorm) {
-                    newSeries = new double[newSeries.length];
-                    System.arraycopy(series, 0, newSeries, 0, series.length);
-                    zNormalise(newSeries);
+    private double seriesMin() {
+        if (!idxHasMinMax) {
+            idxMin = Double.MAX_VALUE;
+            idxMax = -99999999;
+            for (double v : idxSeries) {
+                if (v < idxMin) {
+                    idxMin = v;
                 }
-                break;
-            case 7:
-            case 8:
-                mean = mean(newSeries);
-
-                int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(newSeries.length) / Math.log(2)));
-                fft = new Complex[nfft];
-                for (int j = 0; j < nfft; j++) {
-                    if (j < newSeries.length)
-                        fft[j] = new Complex(newSeries[j] - mean, 0);
-                    else
-                        fft[j] = new Complex(0, 0);
+                if (v > idxMax) {
+                    idxMax = v;
                 }
+            }
+            idxHasMinMax = true;
+        }
+        return idxMin;
+    }
 
-                FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                fft = f.transform(fft, TransformType.FORWARD);
-                break;
-            case 5:
-            case 6:
-            case 12:
-                mean = mean(newSeries);
-
-                int nfft2 = (int) Math.pow(2.0, (int) Math.ceil(Math.log(newSeries.length) / Math.log(2)));
-                fft = new Complex[nfft2];
-                for (int j = 0; j < nfft2; j++) {
-                    if (j < newSeries.length)
-                        fft[j] = new Complex(newSeries[j] - mean, 0);
-                    else
-                        fft[j] = new Complex(0, 0);
-                }
+    private double seriesMax() {
+        seriesMin();
+        return idxMax;
+    }
 
-                FastFourierTransformer f2 = new FastFourierTransformer(DftNormalization.STANDARD);
-                fft = f2.transform(fft, TransformType.FORWARD);
+    private double seriesMean() {
+        if (!idxHasMean) {
+            idxMean = mean(idxSeries);
+            idxHasMean = true;
+        }
+        return idxMean;
+    }
 
-                ac = autoCorr(newSeries, fft);
-                break;
-            case 16:
-            case 17:
-            case 20:
-                mean = mean(newSeries);
-
-                int nfft3 = (int) Math.pow(2.0, (int) Math.ceil(Math.log(newSeries.length) / Math.log(2)));
-                fft = new Complex[nfft3];
-                for (int j = 0; j < nfft3; j++) {
-                    if (j < newSeries.length)
-                        fft[j] = new Complex(newSeries[j] - mean, 0);
-                    else
-                        fft[j] = new Complex(0, 0);
-                }
+    private Complex[] fft() {
+        if (idxFFT == null) {
+            idxFFT = fft(idxSeries, seriesMean());
+        }
+        return idxFFT;
+    }
 
-                FastFourierTransformer f3 = new FastFourierTransformer(DftNormalization.STANDARD);
-                fft = f3.transform(fft, TransformType.FORWARD);
+    // power spectrum of the series
+    private double[] spectrum() {
+        if (idxSpectrum == null) {
+            idxSpectrum = welchRectSpectrum(idxSeries, fft());
+        }
+        return idxSpectrum;
+    }
 
-                ac = autoCorr(newSeries, fft);
+    private double[] autoCorr() {
+        if (idxAC == null) {
+            idxAC = autoCorr(idxSeries, fft());
+        }
+        return idxAC;
+    }
 
-                acfz = acFirstZero(ac);
-                break;
+    private int acFirstZero() {
+        if (idxACFZ == -1) {
+            idxACFZ = acFirstZero(autoCorr());
         }
+        return idxACFZ;
+    }
 
+    private double[] outlierSeries() {
+        if (idxOutlierSeries == null) {
+            if (outlierNorm && !norm) {
+                idxOutlierSeries = Arrays.copyOf(idxSeries, idxSeries.length);
+                zNormalise(idxOutlierSeries);
+            } else {
+                idxOutlierSeries = idxSeries;
+            }
+        }
+        return idxOutlierSeries;
+    }
 
-        double feature;
-        switch (summaryStatIndex) {
-            case 0:
-                feature = histMode5DN(newSeries, min, max);
-                break;
-            case 1:
-                feature = histMode10DN(newSeries, min, max);
-                break;
-            case 2:
-                feature = binaryStatsMeanLongstretch1SB(newSeries, mean);
-                break;
-            case 3:
-                feature = outlierIncludeP001mdrmdDN(newSeries);
-                break;
-            case 4:
-                feature = outlierIncludeN001mdrmdDN(newSeries);
-                break;
-            case 5:
-                feature = f1ecacCO(ac);
-                break;
-            case 6:
-                feature = firstMinacCO(ac);
-                break;
-            case 7:
-                feature = summariesWelchRectArea51SP(newSeries, fft);
-                break;
-            case 8:
-                feature = summariesWelchRectCentroidSP(newSeries, fft);
-                break;
-            case 9:
-                feature = localSimpleMean3StderrFC(newSeries);
-                break;
-            case 10:
-                feature = trev1NumCO(newSeries);
-                break;
-            case 11:
-                feature = histogramAMIeven25CO(newSeries, min, max);
-                break;
-            case 12:
-                feature = autoMutualInfoStats40GaussianFmmiIN(ac);
-                break;
-            case 13:
-                feature = hrvClassicPnn40MD(newSeries);
-                break;
-            case 14:
-                feature = binaryStatsDiffLongstretch0SB(newSeries);
-                break;
-            case 15:
-                feature = motifThreeQuantileHhSB(newSeries);
-                break;
-            case 16:
-                feature = localSimpleMean1TauresratFC(newSeries, acfz);
-                break;
-            case 17:
-                feature = embed2DistTauDExpfitMeandiffCO(newSeries, acfz);
-                break;
-            case 18:
-                feature = fluctAnal2Dfa5012LogiPropR1SC(newSeries);
-                break;
-            case 19:
-                feature = fluctAnal2Rsrangefit501LogiPropR1SC(newSeries);
-                break;
-            case 20:
-                feature = transitionMatrix3acSumdiagcovSB(newSeries, acfz);
-                break;
-            case 21:
-                feature = periodicityWangTh001PD(newSeries);
-                break;
-            default:
-                feature = Double.MAX_VALUE;
+    // successive differences of the series, x_t+1 − x_t
+    private double[] diffs() {
+        if (idxDiffs == null) {
+            idxDiffs = new double[Math.max(0, idxSeries.length - 1)];
+            for (int i = 0; i < idxDiffs.length; i++) {
+                idxDiffs[i] = idxSeries[i + 1] - idxSeries[i];
+            }
         }
+        return idxDiffs;
+    }
 
-        if (Double.isNaN(feature) || Double.isInfinite(feature)){
-            feature = 0;
+    private int[] indexBuffer(int length) {
+        if (indexBuffer == null || indexBuffer.length < length) {
+            indexBuffer = new int[length];
         }
+        return indexBuffer;
+    }
 
-        return feature;
+    private int[] sortBuffer(int length) {
+        if (sortBuffer == null || sortBuffer.length < length) {
+            sortBuffer = new int[length];
+        }
+        return sortBuffer;
+    }
+
+    private int[] binaryBuffer(int length) {
+        if (binaryBuffer == null || binaryBuffer.length < length) {
+            binaryBuffer = new int[length];
+        }
+        return binaryBuffer;
     }
 
     public static String getSummaryStatNameByIndex(int summaryStatIndex) throws Exception {
@@ -626,30 +440,22 @@ public class Catch22 implements Transformer {
     }
 
     // Longest period of consecutive values above the mean
-    private static double binaryStatsMeanLongstretch1SB(double[] arr, double mean) {
-        int[] meanBinary = new int[arr.length];
+    private static double binaryStatsMeanLongstretch1SB(double[] arr, double mean, int[] binary) {
         for (int i = 0; i < arr.length; i++) {
-            if (arr[i] - mean > 0) {
-                meanBinary[i] = 1;
-            }
+            binary[i] = arr[i] - mean > 0 ? 1 : 0;
         }
 
-        return longStretch(meanBinary, 1);
+        return longStretch(binary, arr.length, 1);
     }
 
     // Time intervals between successive extreme events above the mean
-    private static double outlierIncludeP001mdrmdDN(double[] arr) {
-        return outlierInclude(arr);
+    private static double outlierIncludeP001mdrmdDN(double[] arr, int[] indices) {
+        return outlierInclude(arr, false, indices);
     }
 
     // Time intervals between successive extreme events below the mean
-    private static double outlierIncludeN001mdrmdDN(double[] arr) {
-        double[] newArr = new double[arr.length];
-        for (int i = 0; i < arr.length; i++) {
-            newArr[i] = -arr[i];
-        }
-
-        return outlierInclude(newArr);
+    private static double outlierIncludeN001mdrmdDN(double[] arr, int[] indices) {
+        return outlierInclude(arr, true, indices);
     }
 
     // First 1/e crossing of autocorrelation function
@@ -677,13 +483,34 @@ public class Catch22 implements Transformer {
     }
 
     // Total power in lowest fifth of frequencies in the Fourier power spectrum
-    private static double summariesWelchRectArea51SP(double[] arr, Complex[] fft) {
-        return summariesWelchRect(arr, false, fft);
+    private static double summariesWelchRectArea51SP(double[] p, int nfft) {
+        double tau = Math.floor(p.length / 5);
+        double sum = 0;
+        for (int i = 0; i < tau; i++) {
+            sum += p[i];
+        }
+
+        // width of a frequency bin
+        return sum * (1.0 / nfft * Math.PI * 2);
     }
 
     // Centroid of the Fourier power spectrum
-    private static double summariesWelchRectCentroidSP(double[] arr, Complex[] fft) {
-        return summariesWelchRect(arr, true, fft);
+    private static double summariesWelchRectCentroidSP(double[] p, int nfft) {
+        double threshold = 0;
+        for (double v : p) {
+            threshold += v;
+        }
+        threshold /= 2;
+
+        double a = 1.0 / nfft;
+        double cs = 0;
+        for (int i = 0; i < p.length; i++) {
+            cs += p[i];
+            if (cs > threshold) {
+                return i * a * Math.PI * 2;
+            }
+        }
+        return Double.NaN;
     }
 
     // Mean error from a rolling 3-sample mean forecasting
@@ -696,14 +523,13 @@ public class Catch22 implements Transformer {
     }
 
     // Time-reversibility statistic, ((x_t+1 − x_t)^3)_t
-    private static double trev1NumCO(double[] arr) {
-        double[] y = new double[arr.length - 1];
-
-        for (int i = 0; i < y.length; i++) {
-            y[i] = Math.pow(arr[i + 1] - arr[i], 3);
+    private static double trev1NumCO(double[] diffs) {
+        double sum = 0;
+        for (double diff : diffs) {
+            sum += Math.pow(diff, 3);
         }
 
-        return mean(y);
+        return sum / diffs.length;
     }
 
     // Automutual information, m = 2, τ = 5
@@ -759,15 +585,10 @@ public class Catch22 implements Transformer {
     }
 
     // Proportion of successive differences exceeding 0.04σ (Mietus 2002)
-    private static double hrvClassicPnn40MD(double[] arr) {
-        double[] diffs = new double[arr.length - 1];
-        for (int i = 0; i < diffs.length; i++) {
-            diffs[i] = Math.abs(arr[i + 1] - arr[i]) * 1000;
-        }
-
+    private static double hrvClassicPnn40MD(double[] diffs) {
         double sum = 0;
         for (double diff : diffs) {
-            if (diff > 40) {
+            if (Math.abs(diff) * 1000 > 40) {
                 sum++;
             }
         }
@@ -776,56 +597,30 @@ public class Catch22 implements Transformer {
     }
 
     // Longest period of successive incremental decreases
-    private static double binaryStatsDiffLongstretch0SB(double[] arr) {
-        int[] diffBinary = new int[arr.length - 1];
-        for (int i = 0; i < diffBinary.length; i++) {
-            if (arr[i + 1] - arr[i] >= 0) {
-                diffBinary[i] = 1;
-            }
+    private static double binaryStatsDiffLongstretch0SB(double[] diffs, int[] binary) {
+        for (int i = 0; i < diffs.length; i++) {
+            binary[i] = diffs[i] >= 0 ? 1 : 0;
         }
 
-        return longStretch(diffBinary, 0);
+        return longStretch(binary, diffs.length, 0);
     }
 
     // Shannon entropy of two successive letters in equiprobable 3-letter
     // symbolization
-    private static double motifThreeQuantileHhSB(double[] arr) {
-        GenericTools.SortIndexAscending sort = new GenericTools.SortIndexAscending(arr);
-        Integer[] indicies = sort.getIndicies();
-        Arrays.sort(indicies, sort);
-
-        ArrayList<ArrayList<Integer>> p = new ArrayList<>();
-        int[] bins = new int[arr.length];
-        int q1 = arr.length / 3;
-        int q2 = q1 * 2;
-        p.add(new ArrayList<>());
-        for (int i = 0; i <= q1; i++) {
-            p.get(0).add(indicies[i]);
-        }
-        p.add(new ArrayList<>());
-        for (int i = q1 + 1; i <= q2; i++) {
-            bins[indicies[i]] = 1;
-            p.get(1).add(indicies[i]);
-        }
-        p.add(new ArrayList<>());
-        for (int i = q2 + 1; i < indicies.length; i++) {
-            bins[indicies[i]] = 2;
-            p.get(2).add(indicies[i]);
+    private static double motifThreeQuantileHhSB(double[] arr, int[] indexBuffer, int[] sortBuffer, int[] bins) {
+        int[] indices = sortIndices(arr, arr.length, indexBuffer, sortBuffer);
+        quantileBins(indices, arr.length, bins);
+
+        // count the transitions between letters, the last value has no successor
+        double[][] counts = new double[3][3];
+        for (int i = 0; i < arr.length - 1; i++) {
+            counts[bins[i]][bins[i + 1]]++;
         }
 
         double sum = 0;
         for (int i = 0; i < 3; i++) {
-            ArrayList<Integer> o = p.get(i);
-            o.remove((Integer) (arr.length - 1));
-
             for (int n = 0; n < 3; n++) {
-                double sum2 = 0;
-
-                for (Integer v : o) {
-                    if (bins[v + 1] == n) {
-                        sum2++;
-                    }
-                }
+                double sum2 = counts[i][n];
 
                 if (sum2 > 0) {
                     sum2 /= (arr.length - 1);
@@ -838,44 +633,31 @@ public class Catch22 implements Transformer {
     }
 
     // Change in correlation length after iterative differencing
-    private static double localSimpleMean1TauresratFC(double[] arr, int acfz) {
-        if (arr.length - 1 < 1)
+    private static double localSimpleMean1TauresratFC(double[] diffs, int acfz) {
+        if (diffs.length < 1)
             return 0;
-        double[] res = localSimpleMean(arr, 1);
-        double mean = mean(res);
-
-        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(res.length) / Math.log(2)));
-        Complex[] fft = new Complex[nfft];
-        for (int j = 0; j < nfft; j++) {
-            if (j < res.length)
-                fft[j] = new Complex(res[j] - mean, 0);
-            else
-                fft[j] = new Complex(0, 0);
-        }
-
-        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-        fft = f.transform(fft, TransformType.FORWARD);
-
-        double[] resAc = autoCorr(res, fft);
+        // the residuals of a 1-sample mean forecast are the successive differences
+        double[] resAc = autoCorr(diffs, fft(diffs, mean(diffs)));
 
         return (double) acFirstZero(resAc) / acfz;
     }
 
     // Exponential fit to successive distances in 2-d embedding space
-    private static double embed2DistTauDExpfitMeandiffCO(double[] arr, int acfz) {
+    private static double embed2DistTauDExpfitMeandiffCO(double[] diffs, int acfz) {
+        int length = diffs.length + 1;
         int tau = acfz;
-        if (tau > arr.length / 10) {
-            tau = arr.length / 10;
+        if (tau > length / 10) {
+            tau = length / 10;
         }
 
-        double[] d = new double[arr.length - tau - 1];
+        double[] d = new double[length - tau - 1];
         double dMean = 0;
         for (int i = 0; i < d.length; i++) {
-            double n = Math.sqrt(Math.pow(arr[i + 1] - arr[i], 2) + Math.pow(arr[i + tau + 1] - arr[i + tau], 2));
+            double n = Math.sqrt(Math.pow(diffs[i], 2) + Math.pow(diffs[i + tau], 2));
             d[i] = n;
             dMean += n;
         }
-        dMean /= arr.length - tau - 1;
+        dMean /= length - tau - 1;
 
         double min = min(d);
         double max = max(d);
@@ -939,26 +721,16 @@ public class Catch22 implements Transformer {
     }
 
     // Trace of covariance of transition matrix between symbols in 3-letter alphabet
-    private static double transitionMatrix3acSumdiagcovSB(double[] arr, int acfz) {
+    private static double transitionMatrix3acSumdiagcovSB(double[] arr, int acfz, int[] indexBuffer,
+                                                          int[] sortBuffer, int[] bins) {
         // int numGroups = 3;
         double[] ds = new double[(arr.length - 1) / acfz + 1];
         for (int i = 0; i < ds.length; i++) {
             ds[i] = arr[i * acfz];
         }
 
-        GenericTools.SortIndexAscending sort = new GenericTools.SortIndexAscending(ds);
-        Integer[] indicies = sort.getIndicies();
-        Arrays.sort(indicies, sort);
-
-        int[] bins = new int[ds.length];
-        int q1 = ds.length / 3;
-        int q2 = q1 * 2;
-        for (int i = q1 + 1; i <= q2; i++) {
-            bins[indicies[i]] = 1;
-        }
-        for (int i = q2 + 1; i < indicies.length; i++) {
-            bins[indicies[i]] = 2;
-        }
+        int[] indices = sortIndices(ds, ds.length, indexBuffer, sortBuffer);
+        quantileBins(indices, ds.length, bins);
 
         double[][] t = new double[3][3];
         for (int i = 0; i < ds.length - 1; i++) {
@@ -1090,11 +862,11 @@ public class Catch22 implements Transformer {
         return maxSum / numMaxs;
     }
 
-    private static double longStretch(int[] binary, int val) {
+    private static double longStretch(int[] binary, int length, int val) {
         double lastVal = 0;
         double maxStretch = 0;
-        for (int i = 0; i < binary.length; i++) {
-            if (binary[i] != val || i == binary.length - 1) {
+        for (int i = 0; i < length; i++) {
+            if (binary[i] != val || i == length - 1) {
                 double stretch = i - lastVal;
                 if (stretch > maxStretch) {
                     maxStretch = stretch;
@@ -1106,10 +878,13 @@ public class Catch22 implements Transformer {
         return maxStretch;
     }
 
-    private static double outlierInclude(double[] arr) {
+    private static double outlierInclude(double[] arr, boolean negate, int[] indices) {
         double total = 0;
         double threshold = 0;
         for (double v : arr) {
+            if (negate) {
+                v = -v;
+            }
             if (v >= 0) {
                 total++;
                 if (v > threshold) {
@@ -1125,27 +900,35 @@ public class Catch22 implements Transformer {
         double[] means = new double[numThresholds];
         double[] dists = new double[numThresholds];
         double[] medians = new double[numThresholds];
+
+        // the positions of values over the threshold. The thresholds increase, so the positions for each threshold
+        // are a subset of the previous ones and can be filtered in place.
+        int size = arr.length;
+        for (int n = 0; n < size; n++) {
+            indices[n] = n;
+        }
+
         for (int i = 0; i < numThresholds; i++) {
             double d = i * 0.01;
 
-            ArrayList<Double> r = new ArrayList<>(arr.length);
-            for (int n = 0; n < arr.length; n++) {
-                if (arr[n] >= d) {
-                    r.add(n + 1.0);
+            int newSize = 0;
+            for (int n = 0; n < size; n++) {
+                double v = negate ? -arr[indices[n]] : arr[indices[n]];
+                if (v >= d) {
+                    indices[newSize++] = indices[n];
                 }
             }
+            size = newSize;
 
-            if (r.size() == 0)
+            if (size == 0)
                 continue;
 
-            double[] diff = new double[r.size() - 1];
-            for (int n = 0; n < diff.length; n++) {
-                diff[n] = r.get(n + 1) - r.get(n);
-            }
-
-            means[i] = mean(diff);
-            dists[i] = diff.length * 100.0 / total;
-            medians[i] = median(r, false) / (arr.length / 2.0) - 1;
+            // the positions are ascending, so the differences between successive positions sum to the range
+            means[i] = (double) (indices[size - 1] - indices[0]) / (size - 1);
+            dists[i] = (size - 1) * 100.0 / total;
+            double median = size % 2 == 1 ? indices[size / 2] + 1.0
+                    : ((indices[size / 2 - 1] + 1.0) + (indices[size / 2] + 1.0)) / 2;
+            medians[i] = median / (arr.length / 2.0) - 1;
         }
 
         int mj = 0;
@@ -1184,7 +967,21 @@ public class Catch22 implements Transformer {
         return acf;
     }
 
-    private static double summariesWelchRect(double[] arr, boolean centroid, Complex[] fft) {
+    private static Complex[] fft(double[] arr, double mean) {
+        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(arr.length) / Math.log(2)));
+        Complex[] fft = new Complex[nfft];
+        for (int j = 0; j < nfft; j++) {
+            if (j < arr.length)
+                fft[j] = new Complex(arr[j] - mean, 0);
+            else
+                fft[j] = new Complex(0, 0);
+        }
+
+        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
+        return f.transform(fft, TransformType.FORWARD);
+    }
+
+    private static double[] welchRectSpectrum(double[] arr, Complex[] fft) {
         int newLength = fft.length / 2 + 1;
         double[] p = new double[newLength];
         double pi2 = 2 * Math.PI;
@@ -1193,35 +990,50 @@ public class Catch22 implements Transformer {
             p[i] = ((Math.pow(complexMagnitude(fft[i]), 2) / arr.length) * 2) / pi2;
         }
         p[newLength - 1] = (Math.pow(complexMagnitude(fft[newLength - 1]), 2) / arr.length) / pi2;
+        return p;
+    }
 
-        double[] w = new double[newLength];
-        double a = 1.0 / fft.length;
-        for (int i = 0; i < newLength; i++) {
-            w[i] = i * a * Math.PI * 2;
-        }
-
-        if (centroid) {
-            double[] cs = new double[newLength];
-            cs[0] = p[0];
-            for (int i = 1; i < newLength; i++) {
-                cs[i] = cs[i - 1] + p[i];
-            }
-
-            double threshold = cs[newLength - 1] / 2;
-            for (int i = 0; i < newLength; i++) {
-                if (cs[i] > threshold) {
-                    return w[i];
+    // stable sort of the indices of the first length values into ascending order of value, i.e. the same order as
+    // sorting with GenericTools.SortIndexAscending. Returns whichever of the two buffers holds the result.
+    private static int[] sortIndices(double[] values, int length, int[] indices, int[] buffer) {
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+        }
+
+        int[] src = indices;
+        int[] dst = buffer;
+        for (int width = 1; width < length; width *= 2) {
+            for (int lo = 0; lo < length; lo += 2 * width) {
+                int mid = Math.min(lo + width, length);
+                int hi = Math.min(lo + 2 * width, length);
+                int l = lo;
+                int r = mid;
+                int k = lo;
+                while (l < mid && r < hi) {
+                    dst[k++] = values[src[r]] < values[src[l]] ? src[r++] : src[l++];
+                }
+                while (l < mid) {
+                    dst[k++] = src[l++];
+                }
+                while (r < hi) {
+                    dst[k++] = src[r++];
                 }
             }
-            return Double.NaN;
-        } else {
-            double tau = Math.floor(newLength / 5);
-            double sum = 0;
-            for (int i = 0; i < tau; i++) {
-                sum += p[i];
-            }
 
-            return sum * (w[1] - w[0]);
+            int[] temp = src;
+            src = dst;
+            dst = temp;
+        }
+
+        return src;
+    }
+
+    // assign sorted positions to the letters of an equiprobable 3-letter alphabet
+    private static void quantileBins(int[] indices, int length, int[] bins) {
+        int q1 = length / 3;
+        int q2 = q1 * 2;
+        for (int i = 0; i < length; i++) {
+            bins[indices[i]] = i <= q1 ? 0 : i <= q2 ? 1 : 2;
         }
     }
 
@@ -0,0 +1,110 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.Arrays;
+
+import static utilities.Utilities.extractTimeSeries;
+
+public class Catch22Test {
+
+    private static void assertBatchMatchesByIndex(Catch22 c22) throws Exception {
+        Instances data = DatasetLoading.loadGunPoint();
+        int seriesID = 0;
+        for(int i = 0; i < data.numInstances(); i += 10) {
+            double[] series = extractTimeSeries(data.get(i));
+            // an interval of the series, as extracted by the interval forests
+            double[] interval = Arrays.copyOfRange(series, i % 50, series.length - i % 30);
+            double[] features = c22.getSummaryStats(interval, new int[] {21, 3, 15, 7, 0, 16}, null);
+            Assert.assertEquals(Catch22.getSummaryStatByIndex(21, interval, true), features[0], 0);
+            Assert.assertEquals(Catch22.getSummaryStatByIndex(3, interval, true), features[1], 0);
+            Assert.assertEquals(Catch22.getSummaryStatByIndex(15, interval, true), features[2], 0);
+            Assert.assertEquals(Catch22.getSummaryStatByIndex(7, interval, true), features[3], 0);
+            Assert.assertEquals(Catch22.getSummaryStatByIndex(0, interval, true), features[4], 0);
+            Assert.assertEquals(Catch22.getSummaryStatByIndex(16, interval, true), features[5], 0);
+
+            double[] all = c22.transform(interval);
+            seriesID++;
+            for(int f = 0; f < 22; f++) {
+                Assert.assertEquals(c22.getSummaryStatByIndex(f, seriesID, interval), all[f], 0);
+            }
+        }
+    }
+
+    // features of GunPoint series 0, values 20 to 119, from the catch22 implementation before features were batched
+    private static final double[] REFERENCE = {
+            -0.519633617, -0.6510472235, 45.0, 0.25, -0.48, 15.0, 40.0, 1.1675952245575976, 0.04908738521234052,
+            0.18163678934786484, -4.114343473556444E-5, 0.8721143226687864, 21.0, 0.3333333333333333, 29.0,
+            1.3409212400261534, 0.782608695652174, 2.5666799929151507, 0.37142857142857144, 0.8285714285714286,
+            0.0625, 0.0
+    };
+    // only the outlier feature differs with outlier normalisation
+    private static final double REFERENCE_OUTLIER_NORM_4 = -0.45999999999999996;
+
+    @Test
+    public void testMatchesReference() throws Exception {
+        double[] series = Arrays.copyOfRange(extractTimeSeries(DatasetLoading.loadGunPoint().get(0)), 20, 120);
+        int[] atts = new int[22];
+        for(int f = 0; f < 22; f++) {
+            atts[f] = f;
+        }
+
+        for(boolean outlierNorm : new boolean[] {false, true}) {
+            double[] expected = REFERENCE.clone();
+            if(outlierNorm) {
+                expected[4] = REFERENCE_OUTLIER_NORM_4;
+            }
+            Catch22 c22 = new Catch22();
+            c22.setOutlierNormalise(outlierNorm);
+            Assert.assertArrayEquals(expected, c22.transform(series), 1e-12);
+            Assert.assertArrayEquals(expected, c22.getSummaryStats(series, atts, null), 1e-12);
+            for(int f = 0; f < 22; f++) {
+                Assert.assertEquals(expected[f], Catch22.getSummaryStatByIndex(f, series, outlierNorm), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesByIndex() throws Exception {
+        Catch22 c22 = new Catch22();
+        c22.setOutlierNormalise(true);
+        assertBatchMatchesByIndex(c22);
+    }
+
+    @Test
+    public void testSharedIntermediatesResetBetweenSeries() throws Exception {
+        Catch22 c22 = new Catch22();
+        double[] a = {1, 5, 2, 8, 3, 9, 4, 7, 6, 0, 2, 5, 1, 8};
+        double[] b = {9, 1, 8, 2, 7, 3, 6, 4, 5, 5, 4, 6, 3, 7};
+        double[] expected = new Catch22().transform(b);
+        c22.transform(a);
+        Assert.assertArrayEquals(expected, c22.transform(b), 0);
+        c22.getSummaryStatByIndex(5, 0, a);
+        Assert.assertEquals(expected[5], c22.getSummaryStatByIndex(5, 1, b), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIndex() {
+        new Catch22().getSummaryStats(new double[] {1, 2, 3, 4}, new int[] {22}, null);
+    }
+}
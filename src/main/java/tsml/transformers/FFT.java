@@ -19,9 +19,11 @@ package tsml.transformers;
 
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.FFTPlan;
+import utilities.InstanceTools;
 /* Performs a FFT of the data set. NOTE:
- * 1. If algorithm type is set to DFT, then this will only perform a FFT if the series is length power of 2.
- * otherwise it will perform the order m^2 DFT.
+ * 1. If algorithm type is set to DFT, the transform is of the full series, whatever its length. All lengths are
+ * transformed in O(m log m) by utilities.FFTPlan.
  * 2. If algorithm type is set to FFT, then, if the length is not a powerr of 2, it either truncates or pads
  * (determined by the variable pad) with the mean the each series (i.e. each Instance)
  * so that the new length is power of 2 by flag pad (default true)
@@ -52,7 +54,6 @@ public class FFT implements Transformer {
 	// 2
 	private static final long serialVersionUID = 1L;
 	private boolean pad = true;
-	private static final double TWOPI = (Math.PI * 2);
 
 	private int fullLength = -1;
 
@@ -212,54 +213,51 @@ public class FFT implements Transformer {
 
 	@Override
 	public Instance transform(Instance inst) {
-
-		int originalLength = inst.numAttributes();
-		if (inst.classIndex() >= 0) {
-			originalLength--;
-		}
-
 		// if we haven't been calculated before. if we're attached to a dataset then do
 		// it normally else do it from the single series.
 		if (fullLength <= 0)
 			fullLength = inst.dataset() != null ? findLength(inst.dataset()) : findLength(inst);
 
-		// 1. Get original series stored in a complex array. This may be padded or
-		// truncated
-		// depending on the original length. If DFT is being used, it is neither.
-		Complex[] c = new Complex[fullLength];
-		int count = 0;
-		double seriesTotal = 0;
-		for (int j = 0; j < originalLength && count < c.length; j++) { // May cut off the trailing values
-			if (inst.classIndex() != j) {
-				c[count] = new Complex(inst.value(j), 0.0);
-				seriesTotal += inst.value(j);
-				count++;
-			}
-		}
-		// Add any Padding required
-		double mean = seriesTotal / count;
-		while (count < c.length)
-			c[count++] = new Complex(mean, 0);
-		// 2. Find FFT/DFT of series.
-		if (algo == AlgorithmType.FFT)
-			fft(c, c.length);
-		else
-			c = dft(c);
-		// Extract out the terms and set the attributes.
+		double[] terms = transformSeries(InstanceTools.ConvertInstanceToArrayRemovingClassValue(inst));
 
-		Instance out = new DenseInstance(c.length + 1);
-		for (int j = 0; j < c.length / 2; j++) {
-			out.setValue(2 * j, c[j].real);
-			out.setValue(2 * j + 1, c[j].imag);
-		}
-		// Set class value.
+		Instance out = new DenseInstance(fullLength + 1);
+		for (int j = 0; j < fullLength; j++)
+			out.setValue(j, terms[j]);
 		// Set class value.
 		if (inst.classIndex() >= 0)
-			out.setValue(c.length, inst.classValue());
+			out.setValue(fullLength, inst.classValue());
 
 		return out;
 	}
 
+	/**
+	 * 1. Pads (with the series mean) or truncates the series to fullLength. 2. Finds its Fourier transform. 3. Returns
+	 * the real and imaginary parts of the first fullLength/2 terms, alternating.
+	 */
+	private double[] transformSeries(double[] series) {
+		double[] x = new double[fullLength];
+		int count = Math.min(series.length, fullLength); // May cut off the trailing values
+		double seriesTotal = 0;
+		for (int j = 0; j < count; j++) {
+			x[j] = series[j];
+			seriesTotal += series[j];
+		}
+		// Add any Padding required
+		double mean = seriesTotal / count;
+		for (int j = count; j < fullLength; j++)
+			x[j] = mean;
+
+		double[] re = new double[fullLength / 2 + 1];
+		double[] im = new double[fullLength / 2 + 1];
+		FFTPlan.forLength(fullLength).realForward(x, re, im);
+
+		double[] terms = new double[fullLength];
+		for (int j = 0; j < fullLength / 2; j++) {
+			terms[2 * j] = re[j];
+			terms[2 * j + 1] = im[j];
+		}
+		return terms;
+	}
 
 	@Override
 	public TimeSeriesInstance transform(TimeSeriesInstance inst) {
@@ -289,81 +287,50 @@ public class FFT implements Transformer {
 
 		int i = 0;
 		for (TimeSeries ts : inst) {
-			Complex[] c = new Complex[fullLength];
-			int count = 0;
-			double seriesTotal = 0;
-			for (int j = 0; j < ts.getSeriesLength() && count < c.length; j++) { // May cut off the trailing values
-				c[count] = new Complex(ts.getValue(j), 0.0);
-				seriesTotal += ts.getValue(j);
-				count++;
-			}
-			// Add any Padding required
-			double mean = seriesTotal / count;
-			while (count < c.length)
-				c[count++] = new Complex(mean, 0);
-			// 2. Find FFT/DFT of series.
-			if (algo == AlgorithmType.FFT)
-				fft(c, c.length);
-			else
-				c = dft(c);
-			// Extract out the terms and set the attributes.
-
 			//construct the sequence of real/imaginary alternating values.
-			out[i] = new double[c.length];
-			for (int j = 0; j < c.length / 2; j++) {
-				out[i][2 * j] = c[j].real;
-				out[i][2 * j + 1] = c[j].imag;
-			}
-
-			i++;
+			out[i++] = transformSeries(ts.toValueArray());
 		}
 
 		return new TimeSeriesInstance(out, inst.getLabelIndex());
 	}
 
 	/**
-	 * Perform a discrete fourier transform, O(n^2)
+	 * Perform a discrete fourier transform of the whole series
 	 *
 	 */
 	public Complex[] dft(double[] series) {
 		int n = series.length;
+		double[] re = series.clone();
+		double[] im = new double[n];
+		FFTPlan.forLength(n).forward(re, im);
+
 		Complex[] dft = new Complex[n];
-		for (int k = 0; k < n; k++) { // For each output element
-			float sumreal = 0;
-			float sumimag = 0;
-			for (int t = 0; t < series.length; t++) { // For each input element
-				sumreal += series[t] * Math.cos(2 * Math.PI * t * k / n);
-				sumimag += -series[t] * Math.sin(2 * Math.PI * t * k / n);
-			}
-			dft[k] = new Complex(sumreal, sumimag);
-		}
+		for (int k = 0; k < n; k++)
+			dft[k] = new Complex(re[k], im[k]);
 		return dft;
-
 	}
 
 	public Complex[] dft(Complex[] complex) {
 		int n = complex.length;
-		Complex[] dft = new Complex[n];
-		for (int k = 0; k < n; k++) { // For each output element
-			float sumreal = 0;
-			float sumimag = 0;
-			for (int t = 0; t < complex.length; t++) { // For each input element
-				sumreal += complex[t].real * Math.cos(2 * Math.PI * t * k / n)
-						+ complex[t].imag * Math.sin(2 * Math.PI * t * k / n);
-				sumimag += -complex[t].real * Math.sin(2 * Math.PI * t * k / n)
-						+ complex[t].imag * Math.cos(2 * Math.PI * t * k / n);
-			}
-			dft[k] = new Complex(sumreal, sumimag);
+		double[] re = new double[n];
+		double[] im = new double[n];
+		for (int t = 0; t < n; t++) {
+			re[t] = complex[t].real;
+			im[t] = complex[t].imag;
 		}
-		return dft;
+		FFTPlan.forLength(n).forward(re, im);
 
+		Complex[] dft = new Complex[n];
+		for (int k = 0; k < n; k++)
+			dft[k] = new Complex(re[k], im[k]);
+		return dft;
 	}
 
 	/**
-	 * Perform an in-place mixed-radix inverse Fast Fourier Transform on the first
+	 * Perform an in-place Fast Fourier Transform on the first
 	 * <code>n</code> elements of the given set of <code>Complex</code> numbers. If
-	 * <code>n</code> is not a power of two then the inverse FFT is performed on the
-	 * first N numbers where N is largest power of two less than <code>n</code>
+	 * <code>n</code> is not a power of two then the FFT is performed on the
+	 * first N numbers where N is the nearest power of two to <code>n</code>
 	 */
 	public void fft(Complex[] complex, int n) {
 		fft(1, complex, n);
@@ -395,7 +362,7 @@ public class FFT implements Transformer {
 	}
 
 	/**
-	 * Perform an in-place mixed-radix inverse Fast Fourier Transform on the first
+	 * Perform an in-place inverse Fast Fourier Transform on the first
 	 * <code>n</code> elements of the given set of <code>Complex</code> numbers. If
 	 * <code>n</code> is not a power of two then the inverse FFT is performed on the
 	 * first N numbers where N is largest power of two less than <code>n</code>
@@ -404,206 +371,26 @@ public class FFT implements Transformer {
 		fft(-1, complex, n);
 	}
 
-	// Perform an in-place mixed-radix FFT (if sign is 1) or inverse
-	// FFT (if sign is -1) on the first n elements of the given set of
-	// Complex numbers. Round n to the nearest power of two.
-	//
-	// This method performs the FFT in-place on the given set.
-
+	// Perform an in-place FFT (if sign is 1) or inverse FFT (if sign is -1) on
+	// the first n elements of the given set of Complex numbers. Round n to the
+	// nearest power of two.
 	private void fft(int sign, Complex[] complex, int n) {
-		// n is number of data elements upon which FFT will be
-		// performed. Round number of data elements to nearest power
-		// of 2
 		n = (int) MathsPower2.roundPow2(n);
-		// Sort the first n elements into bit-reversed order
-		bitReverse(complex, n);
-		if (n == 2) {
-			// Perform a radix-2 FFT
-			radix2FFT(sign, complex, n, 0);
-		} else if (((float) Math.log(n) % (float) Math.log(4)) == 0) {
-			// Perform a radix-4 FFT
-			radix4FFT(sign, complex, n, 0);
-		} else {
-			// n is a multiple or two or four [8, 32, 128, ...]
-			// Perform a mixed-radix FFT
-			int halfN = n / 2;
-			// Do a radix-4 transform on elements 0..halfN - 1 which
-			// contains even-indexed elements from the original
-			// unsorted set of numbers by definition of the bit
-			// reversal operation
-			radix4FFT(sign, complex, halfN, 0);
-			// Do a radix-4 transform on elements halfN - 1 .. n - 1
-			// which contains odd-indexed elements from the original
-			// unsorted set of numbers by definition of the bit
-			// reversal operation
-			radix4FFT(sign, complex, halfN, halfN);
-			// Pair off even and odd elements and do final radix-2
-			// transforms, multiplying by twiddle factors as required
-			// Loop variables used to point to pairs of even and odd
-			// elements
-			int g, h;
-			// Array of two complex numbers for performing radix-2
-			// FFTs on pairs of elements
-			Complex[] radix2x2 = new Complex[2];
-			// Twiddle factor
-			Complex twiddle = new Complex();
-			// Values defining twiddle factor
-			double delta = -sign * TWOPI / n;
-			double w = 0;
-			for (g = 0, h = halfN; g < halfN; g++, h++) {
-				// Twiddle factors...
-				twiddle.setRealImag((float) Math.cos(w), (float) Math.sin(w));
-				complex[h].multiply(twiddle);
-				radix2x2[0] = complex[g];
-				radix2x2[1] = complex[h];
-				// Perform the radix-2 FFT
-				radix2FFT(sign, radix2x2, 2, 0);
-				complex[g] = radix2x2[0];
-				complex[h] = radix2x2[1];
-				w += delta;
-			}
-			radix2x2 = null;
-			twiddle = null;
-		}
-		if (sign == -1) {
-			// Divide all values by n
-			for (int g = 0; g < n; g++) {
-				complex[g].divide(n);
-			}
+		double[] re = new double[n];
+		double[] im = new double[n];
+		for (int g = 0; g < n; g++) {
+			re[g] = complex[g].real;
+			im[g] = complex[g].imag;
 		}
-	}
 
-	// Perform an in-place radix-4 FFT (if sign is 1) or inverse
-	// FFT (if sign is -1). FFT is performed in the n elements
-	// starting at index lower
-	//
-	// Assumes that n is a power of 2 and that lower + n is less than
-	// or equal to the number of complex numbers given
-	//
-	// This method performs the FFT in-place on the given set.
-
-	private static void radix4FFT(int sign, Complex[] complex, int n, int lower) {
-		// Index of last element in array which will take part in the
-		// FFT
-		int upper = n + lower;
-		// Variables used to hold the indicies of the elements forming
-		// the four inputs to a butterfly
-		int i, j, k, l;
-		// Variables holding the results of the four main operations
-		// performed when processing a butterfly
-		Complex ijAdd = new Complex();
-		Complex klAdd = new Complex();
-		Complex ijSub = new Complex();
-		Complex klSub = new Complex();
-		// Twiddle factor
-		Complex twiddle = new Complex();
-		// Values defining twiddle factor
-		double delta, w, w2, w3;
-		double deltaLower = -sign * TWOPI;
-		// intraGap is number of array elements between the
-		// two inputs to a butterfly (equivalent to the number of
-		// butterflies in a cluster)
-		int intraGap;
-		// interGap is the number of array elements between the first
-		// input of the ith butterfly in two adjacent clusters
-		int interGap;
-		for (intraGap = 1, interGap = 4 * intraGap; intraGap < n; intraGap = interGap, interGap = 4 * intraGap) {
-			delta = deltaLower / (float) interGap;
-			// For each butterfly in a cluster
-			w = w2 = w3 = 0;
-			for (int but = 0; but < intraGap; ++but) {
-				// Process the intraGap-th butterfly in each cluster
-				// i is the top input to a butterfly and j the second,
-				// k third and l fourth
-				for (i = (but + lower), j = i + intraGap, k = j + intraGap, l = k
-						+ intraGap; i < upper; i += interGap, j += interGap, k += interGap, l += interGap) {
-					// Calculate and apply twiddle factors
-					// cos(0) = 1 and sin(0) = 0
-					twiddle.setRealImag(1, 0);
-					complex[i].multiply(twiddle);
-					twiddle.setRealImag((float) Math.cos(w2), (float) Math.sin(w2));
-					complex[j].multiply(twiddle);
-					twiddle.setRealImag((float) Math.cos(w), (float) Math.sin(w));
-					complex[k].multiply(twiddle);
-					twiddle.setRealImag((float) Math.cos(w3), (float) Math.sin(w3));
-					complex[l].multiply(twiddle);
-					// Compute the butterfly
-					Complex.add(complex[i], complex[j], ijAdd);
-					Complex.subtract(complex[i], complex[j], ijSub);
-					Complex.add(complex[k], complex[l], klAdd);
-					Complex.subtract(complex[k], complex[l], klSub);
-					// Assign values
-					Complex.add(ijAdd, klAdd, complex[i]);
-					klSub.multiply(sign);
-					complex[j].setRealImag(ijSub.getReal() + klSub.getImag(), ijSub.getImag() - klSub.getReal());
-					Complex.subtract(ijAdd, klAdd, complex[k]);
-					complex[l].setRealImag(ijSub.getReal() - klSub.getImag(), ijSub.getImag() + klSub.getReal());
-				}
-				w += delta;
-				w2 = w + w;
-				w3 = w2 + w;
-			}
-			intraGap = interGap;
-		}
-		ijAdd = klAdd = ijSub = klSub = twiddle = null;
-	}
+		FFTPlan plan = FFTPlan.forLength(n);
+		if (sign == 1)
+			plan.forward(re, im);
+		else
+			plan.inverse(re, im);
 
-	// Perform an in-place radix-2 FFT (if sign is 1) or inverse
-	// FFT (if sign is -1). FFT is performed in the n elements
-	// starting at index lower
-	//
-	// Assumes that n is a power of 2 and that lower + n is less than
-	// or equal to the number of complex numbers given...
-	//
-	// This method performs the FFT in-place on the given set.
-
-	private static void radix2FFT(int sign, Complex[] complex, int n, int lower) {
-		// Index of last element in array which will take part in the
-		// FFT
-		int upper = n + lower;
-		// Variables used to hold the indicies of the elements forming
-		// the two inputs to a butterfly
-		int i, j;
-		// intraGap is number of array elements between the
-		// two inputs to a butterfly (equivalent to the number of
-		// butterflies in a cluster)
-		int intraGap;
-		// interGap is the number of array elements between the first
-		// input of the ith butterfly in two adjacent clusters
-		int interGap;
-		// The twiddle factor
-		Complex twiddle = new Complex();
-		// Values defining twiddle factor
-		float deltaLower = -(float) (sign * Math.PI);
-		float w, delta;
-		// Variable used to hold result of multiplying butterfly input
-		// by a twiddle factor
-		Complex twiddledInput = new Complex();
-		for (intraGap = 1, interGap = intraGap + intraGap; intraGap < n; intraGap = interGap, interGap = intraGap
-				+ intraGap) {
-			delta = deltaLower / (float) intraGap;
-			// For each butterfly in a cluster
-			w = 0;
-			for (int butterfly = 0; butterfly < intraGap; ++butterfly) {
-				// Calculate the twiddle factor
-				twiddle.setRealImag((float) Math.cos(w), (float) Math.sin(w));
-				// i is the top input to a butterfly and j the
-				// bottom
-				for (i = (butterfly + lower), j = i + intraGap; i < upper; i += interGap, j += interGap) {
-					// Calculate the butterfly-th butterfly in
-					// each cluster
-					// Apply the twiddle factor
-					Complex.multiply(complex[j], twiddle, twiddledInput);
-					// Subtraction part of butterfly
-					Complex.subtract(complex[i], twiddledInput, complex[j]);
-					// Addition part of butterfly
-					complex[i].add(twiddledInput);
-				}
-				w += delta;
-			}
-			intraGap = interGap;
-		}
-		twiddle = twiddledInput = null;
+		for (int g = 0; g < n; g++)
+			complex[g].setRealImag((float) re[g], (float) im[g]);
 	}
 
 	public String getRevision() {
@@ -693,18 +480,9 @@ public class FFT implements Transformer {
 
 	public static void computeDft(double[] inreal, double[] inimag, double[] outreal, double[] outimag) {
 		int n = inreal.length;
-		for (int k = 0; k < n; k++) { // For each output element
-			double sumreal = 0;
-			double sumimag = 0;
-			for (int t = 0; t < n; t++) { // For each input element
-				sumreal += inreal[t] * Math.cos(2 * Math.PI * t * k / n)
-						+ inimag[t] * Math.sin(2 * Math.PI * t * k / n);
-				sumimag += -inreal[t] * Math.sin(2 * Math.PI * t * k / n)
-						+ inimag[t] * Math.cos(2 * Math.PI * t * k / n);
-			}
-			outreal[k] = sumreal;
-			outimag[k] = sumimag;
-		}
+		System.arraycopy(inreal, 0, outreal, 0, n);
+		System.arraycopy(inimag, 0, outimag, 0, n);
+		FFTPlan.forLength(n).forward(outreal, outimag);
 	}
 
 	/** Author Mike Jackson - University of Edinburgh - 1999-2001 */
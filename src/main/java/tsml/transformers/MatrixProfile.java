@@ -18,10 +18,16 @@
 package tsml.transformers;
 
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
@@ -37,16 +43,23 @@ import weka.core.Instances;
  *         using the values, rather than having to extract the data back from
  *         the output Instances of process
  * 
- *         To-do: - Cache distances that will be reused (is it worth it?
- *         Probably not since it's offline, but might be important for very
- *         large problems and small windows) - Implement 'stride' - not sure if
+ *         The profile is found by walking the diagonals of the distance
+ *         matrix, updating the dot product between windows incrementally
+ *         (STOMP/SCRIMP), so a series of length n takes O(n^2) rather than
+ *         O(n^2 * windowSize). Diagonals can optionally be split between
+ *         threads with enableMultiThreading.
+ * 
+ *         To-do: - Implement 'stride' - not sure if
  *         this makes sense particularly, but we could allow it so the user can
  *         change the step between comparison subseries that are evaluated when
  *         calculating the profile (e.g. not every 1 index, every 2, 3, ...
  *         etc.)
  * 
  */
-public class MatrixProfile implements Transformer {
+public class MatrixProfile implements Transformer, MultiThreadable {
+
+    // number of diagonals of the distance matrix a thread takes at a time when multithreading
+    private static final int DIAGONAL_BLOCK_SIZE = 16;
 
     private int windowSize = 10;
     private final int stride = 1; // to-do later (maybe!)
@@ -54,6 +67,10 @@ public class MatrixProfile implements Transformer {
     private int[][] indices;
     private boolean m_Debug = false;
 
+    private boolean multithreading = false;
+    private int numThreads = 1;
+    private transient ExecutorService ex;
+
     public MatrixProfile() {
         this(10);
     }
@@ -62,10 +79,22 @@ public class MatrixProfile implements Transformer {
         this.windowSize = windowSize;
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        numThreads = Math.max(1, numThreads);
+        if (ex != null && numThreads != this.numThreads) {
+            ex.shutdown();
+            ex = null;
+        }
+        this.numThreads = numThreads;
+        multithreading = true;
+    }
+
     @Override
     public Instance transform(Instance inst) {
 
-        SingleInstanceMatrixProfile mpIns = new SingleInstanceMatrixProfile(inst, this.windowSize, this.stride);
+        SingleInstanceMatrixProfile mpIns = new SingleInstanceMatrixProfile(inst, this.windowSize, this.stride,
+                getExecutor(), numThreads);
         Instance out = new DenseInstance(inst.numAttributes() + 1 - windowSize);
 
         for (int i = 0; i < mpIns.distances.length; i++) {
@@ -85,7 +114,8 @@ public class MatrixProfile implements Transformer {
         double[][] out = new double[inst.getNumDimensions()][];
         int i = 0;
         for (TimeSeries ts : inst) {
-            out[i++] = new SingleInstanceMatrixProfile(ts.toValueArray(), this.windowSize, this.stride).series;
+            out[i++] = new SingleInstanceMatrixProfile(ts.toValueArray(), this.windowSize, this.stride,
+                    getExecutor(), numThreads).distances;
         }
         return new TimeSeriesInstance(out, inst.getLabelIndex()); 
     }
@@ -157,7 +187,8 @@ public class MatrixProfile implements Transformer {
         outputIndices.setRelationName(outputIndices.relationName() + "_indices");
 
         for (int ins = 0; ins < instances.numInstances(); ins++) {
-            mpIns = new SingleInstanceMatrixProfile(instances.get(ins), this.windowSize, this.stride);
+            mpIns = new SingleInstanceMatrixProfile(instances.get(ins), this.windowSize, this.stride, getExecutor(),
+                    numThreads);
             outDist = new DenseInstance(outputDistances.numAttributes());
             outIdx = new DenseInstance(outputIndices.numAttributes());
 
@@ -180,6 +211,16 @@ public class MatrixProfile implements Transformer {
         return new Instances[] { outputDistances, outputIndices };
     }
 
+    private ExecutorService getExecutor() {
+        if (!multithreading || numThreads <= 1) {
+            return null;
+        }
+        if (ex == null) {
+            ex = MultiThreadable.getSharedExecutor(numThreads);
+        }
+        return ex;
+    }
+
     public double[][] getDistances() throws Exception {
         if (this.distances == null) {
             throw new Exception("Error: must process instances before accessing distances");
@@ -203,6 +244,11 @@ public class MatrixProfile implements Transformer {
         private final int seriesLength;
 
         public SingleInstanceMatrixProfile(Instance series, int windowSize, int stride) {
+            this(series, windowSize, stride, null, 1);
+        }
+
+        public SingleInstanceMatrixProfile(Instance series, int windowSize, int stride, ExecutorService ex,
+                                           int numThreads) {
             this.series = series.toDoubleArray();
             this.seriesLength = series.classIndex() > 0 ? series.numAttributes() - 1 : series.numAttributes();
             this.windowSize = windowSize;
@@ -210,12 +256,15 @@ public class MatrixProfile implements Transformer {
             this.distances = new double[seriesLength + 1 - windowSize];
             this.indices = new int[seriesLength + 1 - windowSize];
 
-            for (int a = 0; a <= seriesLength - windowSize; a++) {
-                this.locateBestMatch(a);
-            }
+            this.computeProfile(ex, numThreads);
         }
 
         public SingleInstanceMatrixProfile(double[] series, int windowSize, int stride) {
+            this(series, windowSize, stride, null, 1);
+        }
+
+        public SingleInstanceMatrixProfile(double[] series, int windowSize, int stride, ExecutorService ex,
+                                           int numThreads) {
             this.series = series;
             this.seriesLength = series.length;
             this.windowSize = windowSize;
@@ -223,52 +272,134 @@ public class MatrixProfile implements Transformer {
             this.distances = new double[seriesLength + 1 - windowSize];
             this.indices = new int[seriesLength + 1 - windowSize];
 
-            for (int a = 0; a <= seriesLength - windowSize; a++) {
-                this.locateBestMatch(a);
-            }
+            this.computeProfile(ex, numThreads);
         }
 
-        // query is fixed, comparison is every possible match within the series
-        private void locateBestMatch(int queryStartIdx) {
+        // every pair of windows a fixed distance apart lies on the same diagonal of the distance matrix, so walking
+        // down a diagonal the dot product of the two windows is updated from the previous one in constant time
+        // rather than recalculated (as in SCRIMP). Each pair is only visited once, updating the profile of both
+        // windows. Diagonals can be walked in any order, and ties are broken by the lowest index, so the result
+        // does not depend on the number of threads used.
+        private void computeProfile(ExecutorService ex, int numThreads) {
+            int numWindows = distances.length;
+
+            // distances are invariant to the offset of the series, centring it reduces the cancellation error in
+            // the dot product distance
+            double[] centred = new double[seriesLength];
+            double offset = 0;
+            for (int i = 0; i < seriesLength; i++) {
+                offset += series[i];
+            }
+            offset /= seriesLength;
+            for (int i = 0; i < seriesLength; i++) {
+                centred[i] = series[i] - offset;
+            }
 
-            double dist;
-            double bsfDist = Double.MAX_VALUE;
-            int bsfIdx = -1;
+            double[] means = new double[numWindows];
+            double[] stdvs = new double[numWindows];
+            for (int i = 0; i < numWindows; i++) {
+                double sum = 0;
+                for (int j = i; j < i + windowSize; j++) {
+                    sum += centred[j];
+                }
+                means[i] = sum / windowSize;
 
-            double[] query = zNormalise(series, queryStartIdx, this.windowSize, false);
-            double[] comparison;
+                double var = 0;
+                for (int j = i; j < i + windowSize; j++) {
+                    double temp = centred[j] - means[i];
+                    var += temp * temp;
+                }
+                var /= windowSize;
+                stdvs[i] = var < ROUNDING_ERROR_CORRECTION ? 0.0 : Math.sqrt(var);
+            }
 
-            for (int comparisonStartIdx = 0; comparisonStartIdx <= seriesLength
-                    - windowSize; comparisonStartIdx += stride) {
+            // exclusion zone +/- windowSize*1.5 around the window
+            int firstDiagonal = windowSize * 3 / 2 + 1;
 
-                // exclusion zone +/- windowSize/2 around the window
-                if (comparisonStartIdx >= queryStartIdx - windowSize * 1.5
-                        && comparisonStartIdx <= queryStartIdx + windowSize * 1.5) {
-                    continue;
-                }
+            Arrays.fill(distances, Double.MAX_VALUE);
+            Arrays.fill(indices, -1);
+            if (firstDiagonal >= numWindows) {
+                return;
+            }
 
-                // using a bespoke version of this, rather than the shapelet version, for
-                // efficiency - see notes with method
-                comparison = zNormalise(series, comparisonStartIdx, windowSize, false);
-                dist = 0;
+            if (ex == null || numThreads <= 1) {
+                computeDiagonals(centred, means, stdvs, firstDiagonal, numWindows, distances, indices);
+                return;
+            }
 
-                for (int j = 0; j < windowSize; j++) {
-                    dist += (query[j] - comparison[j]) * (query[j] - comparison[j]);
-                    if (dist > bsfDist) {
-                        dist = Double.MAX_VALUE;
-                        break;
+            AtomicInteger nextDiagonal = new AtomicInteger(firstDiagonal);
+            ArrayList<Future<Object[]>> futures = new ArrayList<>(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                futures.add(ex.submit(() -> {
+                    double[] threadDistances = new double[numWindows];
+                    int[] threadIndices = new int[numWindows];
+                    Arrays.fill(threadDistances, Double.MAX_VALUE);
+                    Arrays.fill(threadIndices, -1);
+
+                    int from;
+                    while ((from = nextDiagonal.getAndAdd(DIAGONAL_BLOCK_SIZE)) < numWindows) {
+                        computeDiagonals(centred, means, stdvs, from, Math.min(from + DIAGONAL_BLOCK_SIZE,
+                                numWindows), threadDistances, threadIndices);
+                    }
+                    return new Object[]{ threadDistances, threadIndices };
+                }));
+            }
+
+            try {
+                for (Future<Object[]> future : futures) {
+                    Object[] result = future.get();
+                    double[] threadDistances = (double[]) result[0];
+                    int[] threadIndices = (int[]) result[1];
+                    for (int i = 0; i < numWindows; i++) {
+                        update(distances, indices, i, threadDistances[i], threadIndices[i]);
                     }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
 
-                if (dist < bsfDist) {
-                    bsfDist = dist;
-                    bsfIdx = comparisonStartIdx;
+        // walks the diagonals [from, to), where diagonal k pairs window i with window i+k
+        private void computeDiagonals(double[] centred, double[] means, double[] stdvs, int from, int to,
+                                      double[] distances, int[] indices) {
+            int numWindows = means.length;
+
+            for (int k = from; k < to; k++) {
+                double dotProduct = 0;
+                for (int j = 0; j < windowSize; j++) {
+                    dotProduct += centred[j] * centred[k + j];
                 }
 
+                for (int i = 0, j = k; j < numWindows; i++, j++) {
+                    if (i > 0) {
+                        dotProduct += centred[i + windowSize - 1] * centred[j + windowSize - 1]
+                                - centred[i - 1] * centred[j - 1];
+                    }
+
+                    double dist;
+                    if (stdvs[i] == 0.0 || stdvs[j] == 0.0) {
+                        // a window with no variance normalises to all zeros
+                        dist = stdvs[i] == stdvs[j] ? 0.0 : windowSize;
+                    } else {
+                        double correlation = (dotProduct - windowSize * means[i] * means[j])
+                                / (windowSize * stdvs[i] * stdvs[j]);
+                        dist = Math.max(0, 2 * windowSize * (1 - correlation));
+                    }
+
+                    update(distances, indices, i, dist, j);
+                    update(distances, indices, j, dist, i);
+                }
             }
+        }
 
-            this.distances[queryStartIdx] = bsfDist;
-            this.indices[queryStartIdx] = bsfIdx;
+        private static void update(double[] distances, int[] indices, int i, double dist, int idx) {
+            if (dist < distances[i] || (dist == distances[i] && idx < indices[i] && idx >= 0)) {
+                distances[i] = dist;
+                indices[i] = idx;
+            }
         }
     }
 
@@ -391,9 +522,6 @@ public class MatrixProfile implements Transformer {
                     };
                     int windowSize = 10;
                     SingleInstanceMatrixProfile simp = new SingleInstanceMatrixProfile(exampleSeries, windowSize, 1);
-                    for (int i = 0; i < exampleSeries.length - windowSize + 1; i++) {
-                        simp.locateBestMatch(i);
-                    }
                     System.out.println("Example series:");
                     for (int a = 0; a < exampleSeries.length; a++) {
                         System.out.print(exampleSeries[a] + ",");
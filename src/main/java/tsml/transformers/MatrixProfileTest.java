@@ -0,0 +1,120 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.utilities.Converter;
+import weka.core.Instances;
+
+import java.util.Arrays;
+
+public class MatrixProfileTest {
+
+    private static final double DELTA = 1e-8;
+
+    // distance from every window to every other window outside the exclusion zone, comparing z-normalised copies
+    private static double[][] bruteForceDistances(double[] series, int seriesLength, int windowSize) {
+        int numWindows = seriesLength + 1 - windowSize;
+        double[][] dists = new double[numWindows][numWindows];
+        for (int a = 0; a < numWindows; a++) {
+            double[] query = MatrixProfile.zNormalise(series, a, windowSize, false);
+            for (int b = 0; b < numWindows; b++) {
+                if (Math.abs(a - b) <= windowSize * 1.5) {
+                    dists[a][b] = Double.MAX_VALUE;
+                    continue;
+                }
+                double[] candidate = MatrixProfile.zNormalise(series, b, windowSize, false);
+                double dist = 0;
+                for (int i = 0; i < windowSize; i++) {
+                    dist += (query[i] - candidate[i]) * (query[i] - candidate[i]);
+                }
+                dists[a][b] = dist;
+            }
+        }
+        return dists;
+    }
+
+    private static void assertMatchesBruteForce(Instances data, int windowSize) throws Exception {
+        MatrixProfile mp = new MatrixProfile(windowSize);
+        mp.processDistancesAndIndices(data);
+        double[][] distances = mp.getDistances();
+        int[][] indices = mp.getIndices();
+        int seriesLength = data.numAttributes() - 1;
+
+        for (int i = 0; i < data.numInstances(); i++) {
+            double[][] expected = bruteForceDistances(data.get(i).toDoubleArray(), seriesLength, windowSize);
+            for (int a = 0; a < expected.length; a++) {
+                double min = Double.MAX_VALUE;
+                for (double dist : expected[a]) {
+                    min = Math.min(min, dist);
+                }
+                Assert.assertEquals(min, distances[i][a], DELTA);
+                // near ties may resolve to a different index, but it must be to an equally close window
+                Assert.assertEquals(min, expected[a][indices[i][a]], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        Instances data = DatasetLoading.loadItalyPowerDemand();
+        assertMatchesBruteForce(data, 5);
+    }
+
+    @Test
+    public void testMatchesBruteForceWithFlatWindows() throws Exception {
+        Instances data = new Instances(DatasetLoading.loadGunPoint(), 0, 10);
+        // flatten part of each series so some windows have no variance
+        for (int i = 0; i < data.numInstances(); i++) {
+            for (int j = 40; j < 70; j++) {
+                data.get(i).setValue(j, 1.5);
+            }
+        }
+        assertMatchesBruteForce(data, 10);
+    }
+
+    @Test
+    public void testMultithreadingMatchesSerial() throws Exception {
+        Instances data = new Instances(DatasetLoading.loadGunPoint(), 0, 20);
+        MatrixProfile serial = new MatrixProfile(10);
+        serial.processDistancesAndIndices(data);
+        MatrixProfile multi = new MatrixProfile(10);
+        multi.enableMultiThreading(4);
+        multi.processDistancesAndIndices(data);
+
+        for (int i = 0; i < data.numInstances(); i++) {
+            Assert.assertArrayEquals(serial.getDistances()[i], multi.getDistances()[i], 0);
+            Assert.assertArrayEquals(serial.getIndices()[i], multi.getIndices()[i]);
+        }
+    }
+
+    @Test
+    public void testTimeSeriesInstanceMatchesInstance() throws Exception {
+        Instances data = new Instances(DatasetLoading.loadGunPoint(), 0, 5);
+        MatrixProfile mp = new MatrixProfile(10);
+        Instances transformed = mp.transform(data);
+        for (int i = 0; i < data.numInstances(); i++) {
+            TimeSeriesInstance inst = mp.transform(Converter.fromArff(data.get(i)));
+            double[] expected = transformed.get(i).toDoubleArray();
+            Assert.assertArrayEquals(Arrays.copyOf(expected, expected.length - 1),
+                    inst.toValueArray()[0], 0);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import weka.core.Instances;
 import java.util.ArrayList;
 
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.FFTPlan;
 
 /**
  *
@@ -75,22 +76,9 @@ public class PowerCepstrum extends PowerSpectrum{
         }
 
         double[] ar=out.toDoubleArray();
-        //Have to pad
-        int n = (int)MathsPower2.roundPow2(ar.length-1);
-        if(n<ar.length-1)
-            n*=2;
-        FFT.Complex[] complex=new FFT.Complex[n];
-        for(int j=0;j<ar.length-1;j++)
-            complex[j]=new FFT.Complex(ar[j],0);
-        for(int j=ar.length-1;j<n;j++)
-            complex[j]=new FFT.Complex(0,0);
-
-
-        //Take inverse FFT
-        inverseFFT(complex,complex.length);
-        //Square the terms for the PowerCepstrum 
+        double[] cepstrum=powerCepstrum(ar,ar.length-1);
         for(int j=0;j<ar.length-1;j++)
-            out.setValue(j,complex[j].real*complex[j].real+complex[j].imag*complex[j].imag);
+            out.setValue(j,cepstrum[j]);
 
         return out;
     }
@@ -109,25 +97,32 @@ public class PowerCepstrum extends PowerSpectrum{
             for(int j=0; j<length; j++)
                 values[i][j] = Math.log(values[i][j]);
             
-            //Have to pad
-            int n = (int)MathsPower2.roundPow2(length);
-            if(n<length)
-                n*=2;
-            FFT.Complex[] complex=new FFT.Complex[n];
-            for(int j=0;j<length;j++)
-                complex[j]=new FFT.Complex(values[i][j],0);
-            for(int j=length;j<n;j++)
-                complex[j]=new FFT.Complex(0,0);
-
-            //Take inverse FFT
-            inverseFFT(complex,complex.length);
-            //Square the terms for the PowerCepstrum 
-            for(int j=0; j<length; j++)
-                values[i][j] = complex[j].real*complex[j].real+complex[j].imag*complex[j].imag;
+            values[i] = powerCepstrum(values[i], length);
         }
 
         return new TimeSeriesInstance(values, inst.getLabelIndex());
     }
+
+    /**
+     * Squared terms of the inverse FFT of the first length values of the log power spectrum, zero padded to a power of 2
+     */
+    private static double[] powerCepstrum(double[] logSpectrum, int length){
+        //Have to pad
+        int n = (int)MathsPower2.roundPow2(length);
+        if(n<length)
+            n*=2;
+        double[] re=new double[n];
+        double[] im=new double[n];
+        System.arraycopy(logSpectrum,0,re,0,length);
+
+        //Take inverse FFT
+        FFTPlan.forLength(n).inverse(re,im);
+        //Square the terms for the PowerCepstrum 
+        double[] cepstrum=new double[length];
+        for(int j=0;j<length;j++)
+            cepstrum[j]=re[j]*re[j]+im[j]*im[j];
+        return cepstrum;
+    }
     
 
 
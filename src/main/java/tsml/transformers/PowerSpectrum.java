@@ -27,6 +27,7 @@ import experiments.data.DatasetLoading;
 import fileIO.OutFile;
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.FFTPlan;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
@@ -170,15 +171,12 @@ public class PowerSpectrum extends FFT {
         // Check power of 2
         if (((d.length) & (d.length - 1)) != 0) // Not a power of 2
             return null;
-        FFT.Complex[] c = new FFT.Complex[d.length];
-        for (int j = 0; j < d.length; j++) {
-            c[j] = new FFT.Complex(d[j], 0.0);
-        }
-        FFT f = new FFT();
-        f.fft(c, c.length);
-        double[] ps = new double[c.length];
-        for (int i = 0; i < c.length; i++)
-            ps[i] = c[i].getReal() * c[i].getReal() + c[i].getImag() * c[i].getImag();
+        double[] re = d.clone();
+        double[] im = new double[d.length];
+        FFTPlan.forLength(d.length).forward(re, im);
+        double[] ps = new double[d.length];
+        for (int i = 0; i < d.length; i++)
+            ps[i] = re[i] * re[i] + im[i] * im[i];
         return ps;
     }
 
@@ -19,6 +19,7 @@ package tsml.transformers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.*;
 
@@ -28,7 +29,6 @@ import tsml.classifiers.MultiThreadable;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.TimeSeriesSummaryStatistics;
-import utilities.generic_storage.Pair;
 import weka.core.*;
 
 import static utilities.ClusteringUtilities.zNormalise;
@@ -58,13 +58,19 @@ import static utilities.multivariate_tools.MultivariateInstanceTools.*;
  */
 public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadable {
 
+    // number of instances the batch transform applies each kernel to before moving onto the next kernel
+    private static final int INSTANCE_BLOCK_SIZE = 32;
+    // number of tasks per thread the multithreaded transform and fit split their work into, to balance load
+    private static final int TASKS_PER_THREAD = 4;
+
     private int numKernels = 10000;
     private boolean normalise = true;
 
     private int seed;
 
     private boolean multithreading = false;
-    private ExecutorService ex;
+    private int numThreads = 1;
+    private transient ExecutorService ex;
 
     private boolean fit = false;
     private int[] candidateLengths = { 7, 9, 11 };
@@ -72,6 +78,9 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     private int[] lengths, dilations, paddings;
     private double[] weights, biases;
 
+    // start of each kernel in the packed weights and dimensions arrays, rebuilt lazily when the kernels change
+    private transient int[] weightOffsets, dimensionOffsets;
+
     public ROCKET(){ }
 
     public ROCKET(int numKernels){
@@ -103,8 +112,13 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
 
     @Override
     public void enableMultiThreading(int numThreads){
+        numThreads = Math.max(1, numThreads);
+        if (ex != null && numThreads != this.numThreads) {
+            ex.shutdown();
+            ex = null;
+        }
+        this.numThreads = numThreads;
         multithreading = true;
-        ex = Executors.newFixedThreadPool(numThreads);
     }
 
     @Override
@@ -122,12 +136,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     @Override
     public TimeSeriesInstance transform(TimeSeriesInstance inst) {
         double[][] output = new double[1][];
-        if (multithreading){
-            output[0] = transformRocketMultithread(inst.toValueArray());
-        }
-        else {
-            output[0] = transformRocket(inst.toValueArray());
-        }
+        output[0] = transformRocket(inst.toValueArray());
 
         return new TimeSeriesInstance(output, inst.getLabelIndex());
     }
@@ -139,22 +148,9 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
             return null;
         }
 
-        double[][] data;
-        if (inst.dataset().checkForAttributeType(Attribute.RELATIONAL)) {
-            data = convertMultiInstanceToArrays(splitMultivariateInstance(inst));
-        }
-        else{
-            data = new double[1][];
-            data[0] = extractTimeSeries(inst);
-        }
+        double[][] data = toArrays(inst, inst.dataset().checkForAttributeType(Attribute.RELATIONAL));
 
-        double[] transform;
-        if (multithreading){
-            transform = transformRocketMultithread(data);
-        }
-        else{
-            transform = transformRocket(data);
-        }
+        double[] transform = transformRocket(data);
 
         double[] output = new double[numKernels * 2 + 1];
         System.arraycopy(transform, 0, output, 0, numKernels * 2);
@@ -163,75 +159,144 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         return new DenseInstance(1, output);
     }
 
-    private double[] transformRocket(double[][] inst) {
-        if (normalise){
-            for (double[] dim : inst) {
-                zNormalise(dim);
-            }
+    @Override
+    public Instances transform(Instances data) {
+        if (!fit)
+            fit(data);
+
+        boolean multivariate = data.checkForAttributeType(Attribute.RELATIONAL);
+        double[][][] insts = new double[data.numInstances()][][];
+        for (int i = 0; i < insts.length; i++) {
+            insts[i] = toArrays(data.get(i), multivariate);
         }
 
-        // apply kernels to the dataset.
-        double[] output = new double[numKernels * 2]; // 2 features per kernel
+        Instances output = determineOutputFormat(data);
+        // the class value, if any, sits after the 2 features per kernel
+        double[][] transformed = new double[insts.length][output.numAttributes()];
+        transformRocket(insts, transformed);
 
-        int a1 = 0, a2 = 0, a3 = 0, b1, b2; // for weights, channel indices and features
-        for (int i = 0; i < numKernels; i++) {
-            b1 = a1 + numSampledDimensions[i] * lengths[i];
-            b2 = a2 + numSampledDimensions[i];
+        for (int i = 0; i < insts.length; i++) {
+            if (data.classIndex() >= 0)
+                transformed[i][numKernels * 2] = data.get(i).classValue();
+            output.add(new DenseInstance(1, transformed[i]));
+        }
 
-            Pair<Double, Double> out = applyKernel(inst, ArrayUtils.subarray(weights, a1, b1), lengths[i],
-                    biases[i], dilations[i], paddings[i], numSampledDimensions[i],
-                    ArrayUtils.subarray(dimensions, a2, b2));
-            output[a3] = out.var1;
-            output[a3 + 1] = out.var2;
+        return output;
+    }
+
+    @Override
+    public TimeSeriesInstances transform(TimeSeriesInstances data) {
+        if (!fit)
+            fit(data);
+
+        double[][][] insts = new double[data.numInstances()][][];
+        for (int i = 0; i < insts.length; i++) {
+            insts[i] = data.get(i).toValueArray();
+        }
+
+        double[][] transformed = new double[insts.length][numKernels * 2];
+        transformRocket(insts, transformed);
 
-            a1 = b1;
-            a2 = b2;
-            a3 += 2;
+        TimeSeriesInstances output = new TimeSeriesInstances(data.getClassLabels());
+        for (int i = 0; i < insts.length; i++) {
+            output.add(new TimeSeriesInstance(new double[][] { transformed[i] }, data.get(i).getLabelIndex()));
         }
 
         return output;
     }
 
-    private double[] transformRocketMultithread(double[][] inst){
-        if (normalise){
-            for (double[] dim : inst) {
-                zNormalise(dim);
-            }
+    private static double[][] toArrays(Instance inst, boolean multivariate) {
+        if (multivariate) {
+            return convertMultiInstanceToArrays(splitMultivariateInstance(inst));
         }
+        else {
+            return new double[][] { extractTimeSeries(inst) };
+        }
+    }
 
-        ArrayList<Future<Pair<Double, Double>>> futures = new ArrayList<>(numKernels);
+    private double[] transformRocket(double[][] inst) {
+        double[] output = new double[numKernels * 2]; // 2 features per kernel
+        transformRocket(new double[][][] { inst }, new double[][] { output });
+        return output;
+    }
 
-        int a1 = 0, a2 = 0, b1, b2;
-        for (int i = 0; i < numKernels; ++i) {
-            b1 = a1 + numSampledDimensions[i] * lengths[i];
-            b2 = a2 + numSampledDimensions[i];
+    /**
+     * Applies every kernel to every instance, writing the ppv and max of kernel i to columns 2i and 2i + 1 of the
+     * corresponding output row. Instances are normalised in place if required. When multithreading, the
+     * instances x kernels grid is split into chunks with one task per chunk, splitting the kernels as well when
+     * there are too few instances to keep every thread busy.
+     */
+    private void transformRocket(double[][][] insts, double[][] output) {
+        unpackKernels();
 
-            Kernel k = new Kernel(ArrayUtils.subarray(weights, a1, b1), lengths[i], biases[i], dilations[i],
-                    paddings[i], numSampledDimensions[i], ArrayUtils.subarray(dimensions, a2, b2));
+        if (normalise){
+            for (double[][] inst : insts) {
+                for (double[] dim : inst) {
+                    zNormalise(dim);
+                }
+            }
+        }
+
+        if (!multithreading || numThreads <= 1) {
+            applyKernels(insts, output, 0, insts.length, 0, numKernels);
+            return;
+        }
 
-            futures.add(ex.submit(new TransformThread(i, inst, k)));
+        int numTasks = numThreads * TASKS_PER_THREAD;
+        int numInstanceChunks = Math.max(1, Math.min(insts.length, numTasks));
+        int numKernelChunks = Math.max(1, Math.min(numKernels, (numTasks + numInstanceChunks - 1) / numInstanceChunks));
+        int instanceChunkSize = (insts.length + numInstanceChunks - 1) / numInstanceChunks;
+        int kernelChunkSize = (numKernels + numKernelChunks - 1) / numKernelChunks;
 
-            a1 = b1;
-            a2 = b2;
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(numInstanceChunks * numKernelChunks);
+        for (int i = 0; i < insts.length; i += instanceChunkSize) {
+            int instanceFrom = i, instanceTo = Math.min(i + instanceChunkSize, insts.length);
+            for (int k = 0; k < numKernels; k += kernelChunkSize) {
+                int kernelFrom = k, kernelTo = Math.min(k + kernelChunkSize, numKernels);
+                tasks.add(() -> {
+                    applyKernels(insts, output, instanceFrom, instanceTo, kernelFrom, kernelTo);
+                    return null;
+                });
+            }
         }
 
-        double[] output = new double[numKernels * 2];
-        int a3 = 0;
-        for (Future<Pair<Double, Double>> f : futures) {
-            Pair<Double, Double> out;
-            try {
-                out = f.get();
-            } catch (Exception e) {
-                e.printStackTrace();
-                return null;
+        invokeAll(tasks);
+    }
+
+    /**
+     * Applies kernels [kernelFrom, kernelTo) to instances [instanceFrom, instanceTo). Kernels are applied to a block
+     * of instances at a time so the kernel parameters are read once per block rather than once per instance.
+     */
+    private void applyKernels(double[][][] insts, double[][] output, int instanceFrom, int instanceTo,
+                              int kernelFrom, int kernelTo) {
+        for (int blockStart = instanceFrom; blockStart < instanceTo; blockStart += INSTANCE_BLOCK_SIZE) {
+            int blockEnd = Math.min(blockStart + INSTANCE_BLOCK_SIZE, instanceTo);
+
+            for (int k = kernelFrom; k < kernelTo; k++) {
+                for (int i = blockStart; i < blockEnd; i++) {
+                    applyKernel(insts[i], k, output[i], k * 2);
+                }
             }
+        }
+    }
 
-            output[a3] = out.var1;
-            output[a3 + 1] = out.var2;
-            a3 += 2;
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (ex == null) {
+            ex = MultiThreadable.getSharedExecutor(numThreads);
         }
 
-        return output;
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : ex.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
     }
 
     @Override
@@ -242,6 +307,8 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         else {
             fitRocket(data.getMaxLength(), data.getMaxNumDimensions());
         }
+
+        fit = true;
     }
 
     @Override
@@ -267,6 +334,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     }
 
     private void fitRocket(int inputLength, int numDimensions){
+        weightOffsets = null;
         Random random = new Random(seed);
         // generate random kernel lengths between 7,9 or 11, for numKernels.
         lengths = sampleLengths(random, candidateLengths, numKernels);
@@ -338,7 +406,15 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     }
 
     private void fitRocketMultithread(int inputLength, int numDimensions) {
-        ArrayList<Future<Kernel>> futures = new ArrayList<>(numKernels);
+        weightOffsets = null;
+
+        // kernels are sampled in chunks, each kernel seeded by its index so the result is independent of the chunking
+        int numChunks = Math.max(1, Math.min(numKernels, numThreads * TASKS_PER_THREAD));
+        int chunkSize = (numKernels + numChunks - 1) / numChunks;
+        ArrayList<Callable<Kernel[]>> tasks = new ArrayList<>(numChunks);
+        for (int i = 0; i < numKernels; i += chunkSize) {
+            tasks.add(new FitThread(i, Math.min(i + chunkSize, numKernels), inputLength, numDimensions));
+        }
 
         lengths = new int[numKernels];
         numSampledDimensions = new int[numKernels];
@@ -348,29 +424,19 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         dilations = new int[numKernels];
         paddings = new int[numKernels];
 
-        for (int i = 0; i < numKernels; ++i) {
-            futures.add(ex.submit(new FitThread(i, inputLength, numDimensions)));
-        }
-
         int idx = 0;
-        for (Future<Kernel> f : futures) {
-            Kernel k;
-            try {
-                k = f.get();
-            } catch (Exception e) {
-                e.printStackTrace();
-                return;
+        for (Kernel[] chunk : invokeAll(tasks)) {
+            for (Kernel k : chunk) {
+                lengths[idx] = k.length;
+                numSampledDimensions[idx] = k.numSampledDimensions;
+                tempDimensions[idx] = k.dimensions;
+                tempWeights[idx] = k.weights;
+                biases[idx] = k.bias;
+                dilations[idx] = k.dilation;
+                paddings[idx] = k.padding;
+
+                idx++;
             }
-
-            lengths[idx] = k.length;
-            numSampledDimensions[idx] = k.numSampledDimensions;
-            tempDimensions[idx] = k.dimensions;
-            tempWeights[idx] = k.weights;
-            biases[idx] = k.bias;
-            dilations[idx] = k.dilation;
-            paddings[idx] = k.padding;
-
-            idx++;
         }
 
         dimensions = new int[Arrays.stream(numSampledDimensions).sum()];
@@ -386,8 +452,33 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         }
     }
 
-    private static Pair<Double, Double> applyKernel(double[][] inst, double[] weights, int length, double bias,
-                                            int dilation, int padding, int numSampledDimensions, int[] dimensions) {
+    private void unpackKernels() {
+        if (weightOffsets != null)
+            return;
+
+        int[] weightOffsets = new int[numKernels];
+        int[] dimensionOffsets = new int[numKernels];
+        int a1 = 0, a2 = 0; // for weights and channel indices
+        for (int i = 0; i < numKernels; i++) {
+            weightOffsets[i] = a1;
+            dimensionOffsets[i] = a2;
+            a1 += numSampledDimensions[i] * lengths[i];
+            a2 += numSampledDimensions[i];
+        }
+
+        this.dimensionOffsets = dimensionOffsets;
+        this.weightOffsets = weightOffsets;
+    }
+
+    private void applyKernel(double[][] inst, int kernel, double[] output, int outputIndex) {
+        int length = lengths[kernel];
+        int dilation = dilations[kernel];
+        int padding = paddings[kernel];
+        int numSampledDimensions = this.numSampledDimensions[kernel];
+        int weightOffset = weightOffsets[kernel];
+        int dimensionOffset = dimensionOffsets[kernel];
+        double bias = biases[kernel];
+
         int inputLength = inst[0].length;
         int outputLength = (inputLength + (2 * padding)) - ((length - 1) * dilation);
 
@@ -397,15 +488,17 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
 
         for (int i = -padding; i < end; i++) {
             double _sum = bias;
-            int index = i;
 
-            for (int j = 0; j < length; j++) {
-                if (index > -1 && index < inputLength) {
-                    for (int n = 0; n < numSampledDimensions; n++) {
-                        _sum = _sum + weights[j + n * numSampledDimensions] * inst[dimensions[n]][index];
-                    }
+            // only the kernel positions which land inside the series contribute to the sum
+            int jStart = i < 0 ? (-i + dilation - 1) / dilation : 0;
+            int jEnd = Math.min(length, (inputLength - i + dilation - 1) / dilation);
+
+            for (int j = jStart; j < jEnd; j++) {
+                int index = i + j * dilation;
+                for (int n = 0; n < numSampledDimensions; n++) {
+                    _sum = _sum + weights[weightOffset + j + n * numSampledDimensions]
+                            * inst[dimensions[dimensionOffset + n]][index];
                 }
-                index = index + dilation;
             }
 
             if (_sum > _max)
@@ -415,7 +508,8 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
                 _ppv += 1;
         }
 
-        return new Pair<>(_ppv / outputLength, _max);
+        output[outputIndex] = _ppv / outputLength;
+        output[outputIndex + 1] = _max;
     }
 
     private static double uniform(Random rand, double a, double b) {
@@ -457,6 +551,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         paddings = ArrayUtils.addAll(paddings, rocket.paddings);
 
         numKernels += rocket.numKernels;
+        weightOffsets = null;
     }
 
     private static class Kernel {
@@ -467,76 +562,30 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         double bias;
 
         public Kernel() { }
-
-        public Kernel(double[] weights, int length, double bias, int dilation, int padding, int numSampledDimensions,
-                      int[] dimensions) {
-            this.weights = weights;
-            this.length = length;
-            this.bias = bias;
-            this.dilation = dilation;
-            this.padding = padding;
-            this.numSampledDimensions = numSampledDimensions;
-            this.dimensions = dimensions;
-        }
-    }
-
-    private class TransformThread implements Callable<Pair<Double, Double>> {
-        int i;
-        double[][] inst;
-        Kernel k;
-
-        public TransformThread(int i, double[][] inst, Kernel k){
-            this.i = i;
-            this.inst = inst;
-            this.k = k;
-        }
-
-        @Override
-        public Pair<Double, Double> call() {
-            int inputLength = inst[0].length;
-            int outputLength = (inputLength + (2 * k.padding)) - ((k.length - 1) * k.dilation);
-
-            double _ppv = 0;
-            double _max = -99999999;
-            int end = (inputLength + k.padding) - ((k.length - 1) * k.dilation);
-
-            for (int i = -k.padding; i < end; i++) {
-                double _sum = k.bias;
-                int index = i;
-
-                for (int j = 0; j < k.length; j++) {
-                    if (index > -1 && index < inputLength) {
-                        for (int n = 0; n < k.numSampledDimensions; n++) {
-                            _sum = _sum + k.weights[j + n * k.numSampledDimensions] * inst[k.dimensions[n]][index];
-                        }
-                    }
-                    index = index + k.dilation;
-                }
-
-                if (_sum > _max)
-                    _max = _sum;
-
-                if (_sum > 0)
-                    _ppv += 1;
-            }
-
-            return new Pair<>(_ppv / outputLength, _max);
-        }
     }
 
-    private class FitThread implements Callable<Kernel>{
-        int i;
+    private class FitThread implements Callable<Kernel[]>{
+        int from, to;
         int inputLength;
         int numDimensions;
 
-        public FitThread(int i, int inputLength, int numDimensions){
-            this.i = i;
+        public FitThread(int from, int to, int inputLength, int numDimensions){
+            this.from = from;
+            this.to = to;
             this.inputLength = inputLength;
             this.numDimensions = numDimensions;
         }
 
         @Override
-        public Kernel call() {
+        public Kernel[] call() {
+            Kernel[] kernels = new Kernel[to - from];
+            for (int i = from; i < to; i++) {
+                kernels[i - from] = sampleKernel(i);
+            }
+            return kernels;
+        }
+
+        private Kernel sampleKernel(int i) {
             Kernel k = new Kernel();
             Random random = new Random(seed + i * numKernels);
 
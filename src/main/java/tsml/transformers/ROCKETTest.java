@@ -0,0 +1,118 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class ROCKETTest {
+
+    private static ROCKET buildRocket() {
+        ROCKET rocket = new ROCKET(500);
+        rocket.setSeed(0);
+        return rocket;
+    }
+
+    private static void assertBatchMatchesInstance(Instances data) {
+        ROCKET rocket = buildRocket();
+        Instances batch = rocket.fitTransform(data);
+        Assert.assertEquals(data.numInstances(), batch.numInstances());
+        for(int i = 0; i < data.numInstances(); i++) {
+            Instance inst = rocket.transform(data.get(i));
+            Assert.assertArrayEquals(inst.toDoubleArray(), batch.get(i).toDoubleArray(), 0);
+        }
+    }
+
+    @Test
+    public void testUnivariateBatchMatchesInstance() throws Exception {
+        assertBatchMatchesInstance(DatasetLoading.loadGunPoint());
+    }
+
+    @Test
+    public void testMultivariateBatchMatchesInstance() throws Exception {
+        assertBatchMatchesInstance(DatasetLoading.loadBasicMotions());
+    }
+
+    @Test
+    public void testTimeSeriesInstancesBatchMatchesInstance() throws Exception {
+        TimeSeriesInstances data = Converter.fromArff(DatasetLoading.loadBasicMotions());
+        ROCKET rocket = buildRocket();
+        TimeSeriesInstances batch = rocket.fitTransform(data);
+        Assert.assertTrue(rocket.isFit());
+        Assert.assertArrayEquals(data.getClassLabels(), batch.getClassLabels());
+        for(int i = 0; i < data.numInstances(); i++) {
+            TimeSeriesInstance inst = rocket.transform(data.get(i));
+            Assert.assertEquals(data.get(i).getLabelIndex(), batch.get(i).getLabelIndex());
+            Assert.assertArrayEquals(inst.toValueArray()[0], batch.get(i).toValueArray()[0], 0);
+        }
+    }
+
+    @Test
+    public void testAddKernels() throws Exception {
+        Instances data = DatasetLoading.loadGunPoint();
+        ROCKET first = buildRocket();
+        Instances firstData = first.fitTransform(data);
+        ROCKET second = buildRocket();
+        second.setSeed(1);
+        Instances secondData = second.fitTransform(data);
+
+        ROCKET combined = new ROCKET(0);
+        combined.addKernels(first);
+        combined.addKernels(second);
+        Instances combinedData = combined.transform(data);
+        for(int i = 0; i < data.numInstances(); i++) {
+            for(int j = 0; j < 1000; j++) {
+                Assert.assertEquals(firstData.get(i).value(j), combinedData.get(i).value(j), 0);
+                Assert.assertEquals(secondData.get(i).value(j), combinedData.get(i).value(j + 1000), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMultithreadedTransformMatchesSerial() throws Exception {
+        TimeSeriesInstances data = Converter.fromArff(DatasetLoading.loadBasicMotions());
+        ROCKET rocket = buildRocket();
+        TimeSeriesInstances serial = rocket.fitTransform(data);
+        rocket.enableMultiThreading(3);
+        TimeSeriesInstances parallel = rocket.transform(data);
+        for(int i = 0; i < data.numInstances(); i++) {
+            Assert.assertArrayEquals(serial.get(i).toValueArray()[0], parallel.get(i).toValueArray()[0], 0);
+            // a single instance is split over the kernels instead
+            Assert.assertArrayEquals(serial.get(i).toValueArray()[0], rocket.transform(data.get(i)).toValueArray()[0], 0);
+        }
+    }
+
+    @Test
+    public void testMultithreadedFitIndependentOfNumThreads() throws Exception {
+        Instances data = DatasetLoading.loadGunPoint();
+        ROCKET a = buildRocket();
+        a.enableMultiThreading(2);
+        Instances aData = a.fitTransform(data);
+        ROCKET b = buildRocket();
+        b.enableMultiThreading(5);
+        Instances bData = b.fitTransform(data);
+        for(int i = 0; i < data.numInstances(); i++) {
+            Assert.assertArrayEquals(aData.get(i).toDoubleArray(), bData.get(i).toDoubleArray(), 0);
+        }
+    }
+}
@@ -17,10 +17,12 @@
  
 package tsml.transformers;
 
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.transformers.shapelet_tools.OrderLineObj;
+import tsml.transformers.shapelet_tools.ParallelCandidateEvaluator;
 import tsml.transformers.shapelet_tools.Shapelet;
 import tsml.transformers.shapelet_tools.ShapeletCandidate;
 import tsml.transformers.shapelet_tools.ShapeletTransformTimingUtilities;
@@ -69,7 +71,8 @@ import java.util.logging.Logger;
  *
  *         Refactored version for
  */
-public class ShapeletTransform implements Serializable, TechnicalInformationHandler, TrainableTransformer {
+public class ShapeletTransform implements Serializable, TechnicalInformationHandler, TrainableTransformer,
+        MultiThreadable {
     // Global defaults. Max should be a lambda set to series length
     public final static int MAXTRANSFORMSIZE = 1000;
     public final static int DEFAULT_MINSHAPELETLENGTH = 3;
@@ -137,6 +140,13 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
                                    // BalancedClassShapeletTransform
     private double beta = 0.2;
 
+    /**
+     * Multithreading. Candidates from each series are evaluated in parallel, see ParallelCandidateEvaluator
+     */
+    private boolean multithreading = false;
+    private int numThreads = 1;
+    private transient ParallelCandidateEvaluator candidateEvaluator;
+
     /**
      * Default constructor; Quality measure defaults to information gain.
      */
@@ -201,6 +211,10 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
     }
 
     protected void initQualityBound(ClassCounts classDist) {
+        initQualityBound(quality, classDist);
+    }
+
+    private void initQualityBound(ShapeletQuality quality, ClassCounts classDist) {
         if (!useCandidatePruning)
             return;
         quality.initQualityBound(classDist, candidatePruningStartPercentage);
@@ -267,6 +281,8 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // transform.
         // we only care about the count from the train. What is it counting?
         count = shapeletDistance.getCount();
+        if (candidateEvaluator != null)
+            count += candidateEvaluator.getCount();
     }
 
     @Override
@@ -324,6 +340,8 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // transform.
         // we only care about the count from the train. What is it counting?
         count = shapeletDistance.getCount();
+        if (candidateEvaluator != null)
+            count += candidateEvaluator.getCount();
     }
 
     protected void trainShapelets(Instances data) {
@@ -341,7 +359,11 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         classValue.init(inputData);
         // Contract is controlled by restricting number of shapelets per series.
         shapeletsSearchedPerSeries = searchFunction.getNumShapeletsPerSeries();
+        candidateEvaluator = multithreading
+                ? new ParallelCandidateEvaluator(numThreads, shapeletDistance, quality.getChoice()) : null;
         shapelets = findBestKShapelets(inputData); // get k shapelets
+        if (candidateEvaluator != null)
+            candidateEvaluator.shutdown();
 
     }
 
@@ -361,7 +383,11 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         outputPrint("num shapelets before search " + numShapelets);
         // Contract is controlled by restricting number of shapelets per series.
         shapeletsSearchedPerSeries = searchFunction.getNumShapeletsPerSeries();
+        candidateEvaluator = multithreading
+                ? new ParallelCandidateEvaluator(numThreads, shapeletDistance, quality.getChoice()) : null;
         shapelets = findBestKShapelets(inputDataTS); // get k shapelets
+        if (candidateEvaluator != null)
+            candidateEvaluator.shutdown();
         outputPrint(shapelets.size() + " Shapelets have been generated num shapelets now " + numShapelets);
 
     }
@@ -581,7 +607,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             // set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
             long t1 = System.nanoTime();
-            seriesShapelets = current.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(current, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -686,7 +712,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             // set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
             long t1 = System.nanoTime();
-            seriesShapelets = current.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(current, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
             if (adaptiveTiming && contracted && passes == 0) {
@@ -799,7 +825,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             classValue.setShapeletValue(data.get(casesSoFar));
 
             long t1 = System.nanoTime();
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(searchFunction, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -878,7 +904,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             classValue.setShapeletValue(data.get(casesSoFar));
 
             long t1 = System.nanoTime();
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(searchFunction, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -922,6 +948,31 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         return kShapelets;
     }
 
+    /**
+     * Searches a single series for candidate shapelets, evaluating the candidates over multiple threads if
+     * multithreading is enabled and the search allows it. The shapelets found are the same either way, so the time
+     * taken is all that changes for the contract.
+     */
+    private ArrayList<Shapelet> searchForShapeletsInSeries(ShapeletSearch search, Instance series) {
+        if (candidateEvaluator == null || !ParallelCandidateEvaluator.canEvaluateInParallel(search))
+            return search.searchForShapeletsInSeries(series, this::checkCandidate);
+
+        ArrayList<Shapelet> seriesShapelets = candidateEvaluator.searchForShapeletsInSeries(search, series,
+                casesSoFar, this::checkCandidate);
+        numEarlyAbandons += candidateEvaluator.getNumEarlyAbandons();
+        return seriesShapelets;
+    }
+
+    private ArrayList<Shapelet> searchForShapeletsInSeries(ShapeletSearch search, TimeSeriesInstance series) {
+        if (candidateEvaluator == null || !ParallelCandidateEvaluator.canEvaluateInParallel(search))
+            return search.searchForShapeletsInSeries(series, this::checkCandidate);
+
+        ArrayList<Shapelet> seriesShapelets = candidateEvaluator.searchForShapeletsInSeries(search, series,
+                casesSoFar, this::checkCandidate);
+        numEarlyAbandons += candidateEvaluator.getNumEarlyAbandons();
+        return seriesShapelets;
+    }
+
     private long adjustNumberPerSeries(long timeRemaining, int seriesRemaining, double lastTimePerShapelet) {
         // reinforce time per shapelet
         timePerShapelet = (1 - beta) * timePerShapelet + beta * lastTimePerShapelet;
@@ -1124,8 +1175,20 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
     }
 
     protected Shapelet checkCandidate(TimeSeriesInstance series, int start, int length, int dimension) {
+        Shapelet shapelet = checkCandidate(series, start, length, dimension, quality, shapeletDistance);
+        if (shapelet == null)
+            numEarlyAbandons++;
+        return shapelet;
+    }
+
+    /**
+     * Evaluates a candidate with the quality measure and distance function passed, which are separate for each
+     * thread when the search is multithreaded. Returns null if the candidate is early abandoned.
+     */
+    private Shapelet checkCandidate(TimeSeriesInstance series, int start, int length, int dimension, ShapeletQuality quality,
+                                    ShapeletDistance shapeletDistance) {
         // init qualityBound.
-        initQualityBound(classValue.getClassDistributions());
+        initQualityBound(quality, classValue.getClassDistributions());
 
         // Set bound of the bounding algorithm
         if (worstShapelet != null) {
@@ -1145,7 +1208,6 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
 
             // Check if it is possible to prune the candidate
             if (quality.pruneCandidate()) {
-                numEarlyAbandons++;
                 return null;
             }
 
@@ -1178,8 +1240,20 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
     }
 
     protected Shapelet checkCandidate(Instance series, int start, int length, int dimension) {
+        Shapelet shapelet = checkCandidate(series, start, length, dimension, quality, shapeletDistance);
+        if (shapelet == null)
+            numEarlyAbandons++;
+        return shapelet;
+    }
+
+    /**
+     * Evaluates a candidate with the quality measure and distance function passed, which are separate for each
+     * thread when the search is multithreaded. Returns null if the candidate is early abandoned.
+     */
+    private Shapelet checkCandidate(Instance series, int start, int length, int dimension, ShapeletQuality quality,
+                                    ShapeletDistance shapeletDistance) {
         // init qualityBound.
-        initQualityBound(classValue.getClassDistributions());
+        initQualityBound(quality, classValue.getClassDistributions());
 
         // Set bound of the bounding algorithm
         if (worstShapelet != null) {
@@ -1199,7 +1273,6 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
 
             // Check if it is possible to prune the candidate
             if (quality.pruneCandidate()) {
-                numEarlyAbandons++;
                 return null;
             }
 
@@ -1855,6 +1928,12 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         shapeletDistance = ssd;
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+        multithreading = this.numThreads > 1;
+    }
+
     /*************** GETTERS *************/
     public long getCount() {
         return count;
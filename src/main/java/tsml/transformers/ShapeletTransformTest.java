@@ -0,0 +1,99 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.utilities.Converter;
+import tsml.transformers.shapelet_tools.Shapelet;
+import tsml.transformers.shapelet_tools.ShapeletTransformFactory;
+import tsml.transformers.shapelet_tools.ShapeletTransformFactoryOptions.ShapeletTransformOptions;
+import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType;
+import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch.SearchType;
+import tsml.transformers.shapelet_tools.search_functions.ShapeletSearchOptions;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+
+public class ShapeletTransformTest {
+
+    private static ShapeletTransform buildTransform(SearchType searchType, DistanceType distanceType) {
+        ShapeletSearchOptions searchOptions = new ShapeletSearchOptions.Builder().setMin(3).setMax(12)
+                .setSearchType(searchType).setNumShapeletsToEvaluate(40).setSeed(0).build();
+        ShapeletTransformOptions options = new ShapeletTransformOptions().setKShapelets(20).setMinLength(3)
+                .setMaxLength(12).setDistanceType(distanceType).setSearchOptions(searchOptions)
+                .useClassBalancing().useBinaryClassValue().useCandidatePruning();
+        ShapeletTransform transform = new ShapeletTransformFactory(options.build()).getTransform();
+        transform.setSuppressOutput(true);
+        return transform;
+    }
+
+    private static void assertSameShapelets(ArrayList<Shapelet> expected, ArrayList<Shapelet> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).qualityValue, actual.get(i).qualityValue, 0);
+            Assert.assertEquals(expected.get(i).seriesId, actual.get(i).seriesId);
+            Assert.assertEquals(expected.get(i).startPos, actual.get(i).startPos);
+            Assert.assertEquals(expected.get(i).length, actual.get(i).length);
+        }
+    }
+
+    private static void assertMultithreadedMatchesSerial(SearchType searchType, DistanceType distanceType)
+            throws Exception {
+        Instances data = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        ShapeletTransform serial = buildTransform(searchType, distanceType);
+        Instances serialData = serial.fitTransform(data);
+        ShapeletTransform parallel = buildTransform(searchType, distanceType);
+        parallel.enableMultiThreading(3);
+        Instances parallelData = parallel.fitTransform(data);
+
+        assertSameShapelets(serial.getShapelets(), parallel.getShapelets());
+        Assert.assertEquals(serial.getCount(), parallel.getCount());
+        for (int i = 0; i < data.numInstances(); i++) {
+            Assert.assertArrayEquals(serialData.get(i).toDoubleArray(), parallelData.get(i).toDoubleArray(), 0);
+        }
+    }
+
+    @Test
+    public void testMultithreadedFullSearchMatchesSerial() throws Exception {
+        assertMultithreadedMatchesSerial(SearchType.FULL, DistanceType.NORMAL);
+    }
+
+    @Test
+    public void testMultithreadedRandomSearchMatchesSerial() throws Exception {
+        assertMultithreadedMatchesSerial(SearchType.RANDOM, DistanceType.ONLINE);
+    }
+
+    @Test
+    public void testMultithreadedCachedDistanceMatchesSerial() throws Exception {
+        assertMultithreadedMatchesSerial(SearchType.FULL, DistanceType.CACHED);
+    }
+
+    @Test
+    public void testMultithreadedTimeSeriesInstancesMatchesSerial() throws Exception {
+        Instances data = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        ShapeletTransform serial = buildTransform(SearchType.FULL, DistanceType.NORMAL);
+        serial.fit(Converter.fromArff(data));
+        ShapeletTransform parallel = buildTransform(SearchType.FULL, DistanceType.NORMAL);
+        parallel.enableMultiThreading(3);
+        parallel.fit(Converter.fromArff(data));
+
+        assertSameShapelets(serial.getShapelets(), parallel.getShapelets());
+    }
+}
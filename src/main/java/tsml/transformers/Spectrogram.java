@@ -18,13 +18,10 @@
 package tsml.transformers;
 
 import org.apache.commons.lang3.NotImplementedException;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.FFTPlan;
 import utilities.multivariate_tools.MultivariateInstanceTools;
 import weka.core.*;
 
@@ -154,22 +151,23 @@ public class Spectrogram implements Transformer {
     public double[][] spectrogram(double[] signal, int windowWidth, int overlap, int nfft) {
         checkParameters(signal.length);
         int numWindows = getNumWindows(signal.length);
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
+        FFTPlan fft = FFTPlan.forLength(nfft);
         double[][] spectrogram = new double[numWindows][nfft / 2];
-        Complex[] STFFT = null;
+
+        double[] hamming = new double[windowLength];
+        for (int j = 0; j < windowLength; j++)
+            hamming[j] = 0.56 - 0.46 * Math.cos(2 * Math.PI * ((double) j / (double) this.windowLength));
+
+        //each window is zero padded to nfft by the transform
+        double[] window = new double[windowLength];
+        double[] re = new double[nfft / 2 + 1];
+        double[] im = new double[nfft / 2 + 1];
         for (int i = 0; i < numWindows; i++) {
-            STFFT = new Complex[nfft];
-            for (int j = 0; j < nfft; j++) {
-                STFFT[j] = new Complex(0.0, 0.0);
-            }
-            for (int j = 0; j < windowLength; j++) {
-                double temp = signal[j + (i * (this.windowLength - this.overlap))]
-                        * (0.56 - 0.46 * Math.cos(2 * Math.PI * ((double) j / (double) this.windowLength)));
-                STFFT[j] = new Complex(temp, 0.0);
-            }
-            STFFT = fft.transform(STFFT, TransformType.FORWARD);
+            for (int j = 0; j < windowLength; j++)
+                window[j] = signal[j + (i * (this.windowLength - this.overlap))] * hamming[j];
+            fft.realForward(window, re, im);
             for (int j = 0; j < nfft / 2; j++) {
-                spectrogram[i][j] = STFFT[j].abs();
+                spectrogram[i][j] = Math.sqrt(re[j] * re[j] + im[j] * im[j]);
             }
         }
         return spectrogram;
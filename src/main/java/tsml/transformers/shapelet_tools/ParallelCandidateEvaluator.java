@@ -0,0 +1,211 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers.shapelet_tools;
+
+import tsml.classifiers.MultiThreadable;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance;
+import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality;
+import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality.ShapeletQualityChoice;
+import tsml.transformers.shapelet_tools.search_functions.RandomSearch;
+import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch;
+import weka.core.Instance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates the candidate shapelets of a series over multiple threads for the shapelet transform and filter.
+ *
+ * Full enumeration and random search choose which candidates to visit without looking at the quality of earlier
+ * ones, so the search is first run without evaluating anything to record the candidates in the order they are
+ * visited. Threads then take blocks of candidates from the list until it is used up, each with its own copy of the
+ * distance function and quality measure. Shapelets are returned in the order they were visited, and the bound used
+ * for early abandoning is fixed for the whole series, so the result is the same as searching on a single thread.
+ *
+ * The other search functions use the results of earlier candidates to decide where to look next, so are left to
+ * the single threaded search.
+ */
+public class ParallelCandidateEvaluator {
+
+    // number of candidates a thread evaluates before taking the next block from the list
+    private static final int CANDIDATE_BLOCK_SIZE = 16;
+
+    public interface CandidateCheck {
+        Shapelet check(Instance series, int start, int length, int dimension, ShapeletQuality quality,
+                       ShapeletDistance distance);
+    }
+
+    public interface CandidateCheckTS {
+        Shapelet check(TimeSeriesInstance series, int start, int length, int dimension, ShapeletQuality quality,
+                       ShapeletDistance distance);
+    }
+
+    private interface IndexedCheck {
+        Shapelet check(int candidate, ShapeletQuality quality, ShapeletDistance distance);
+    }
+
+    private final int numThreads;
+    private final ShapeletDistance[] distances;
+    private final ShapeletQuality[] qualities;
+    private ExecutorService ex;
+
+    private long numEarlyAbandons;
+
+    /**
+     * @param numThreads number of threads to evaluate candidates with
+     * @param distance   distance function the search uses, already initialised with the data
+     * @param choice     quality measure the search uses
+     */
+    public ParallelCandidateEvaluator(int numThreads, ShapeletDistance distance, ShapeletQualityChoice choice) {
+        this.numThreads = Math.max(1, numThreads);
+        distances = new ShapeletDistance[this.numThreads];
+        qualities = new ShapeletQuality[this.numThreads];
+        for (int i = 0; i < this.numThreads; i++) {
+            distances[i] = distance.threadCopy();
+            qualities[i] = new ShapeletQuality(choice);
+        }
+    }
+
+    /**
+     * @return true if the candidates the search visits do not depend on the ones evaluated before them
+     */
+    public static boolean canEvaluateInParallel(ShapeletSearch search) {
+        return search.getClass() == ShapeletSearch.class || search.getClass() == RandomSearch.class;
+    }
+
+    public ArrayList<Shapelet> searchForShapeletsInSeries(ShapeletSearch search, Instance series, int seriesId,
+                                                          CandidateCheck check) {
+        // multivariate searches split out the dimension for every candidate, so only keep the first copy of each
+        ArrayList<Instance> dimensions = new ArrayList<>();
+        ArrayList<int[]> candidates = new ArrayList<>();
+        search.searchForShapeletsInSeries(series, (candidate, start, length, dimension) -> {
+            while (dimensions.size() <= dimension)
+                dimensions.add(null);
+            if (dimensions.get(dimension) == null)
+                dimensions.set(dimension, candidate);
+            candidates.add(new int[]{start, length, dimension});
+            return null;
+        });
+
+        return evaluate(candidates.size(), seriesId, (i, quality, distance) -> {
+            int[] candidate = candidates.get(i);
+            return check.check(dimensions.get(candidate[2]), candidate[0], candidate[1], candidate[2], quality,
+                    distance);
+        });
+    }
+
+    public ArrayList<Shapelet> searchForShapeletsInSeries(ShapeletSearch search, TimeSeriesInstance series,
+                                                          int seriesId, CandidateCheckTS check) {
+        ArrayList<int[]> candidates = new ArrayList<>();
+        search.searchForShapeletsInSeries(series, (candidate, start, length, dimension) -> {
+            candidates.add(new int[]{start, length, dimension});
+            return null;
+        });
+
+        return evaluate(candidates.size(), seriesId, (i, quality, distance) -> {
+            int[] candidate = candidates.get(i);
+            return check.check(series, candidate[0], candidate[1], candidate[2], quality, distance);
+        });
+    }
+
+    private ArrayList<Shapelet> evaluate(int numCandidates, int seriesId, IndexedCheck check) {
+        Shapelet[] results = new Shapelet[numCandidates];
+        AtomicInteger nextBlock = new AtomicInteger();
+
+        ArrayList<Callable<Long>> tasks = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            ShapeletQuality quality = qualities[t];
+            ShapeletDistance distance = distances[t];
+            tasks.add(() -> {
+                distance.setSeries(seriesId);
+
+                long earlyAbandons = 0;
+                int from;
+                while ((from = nextBlock.getAndAdd(CANDIDATE_BLOCK_SIZE)) < numCandidates) {
+                    int to = Math.min(from + CANDIDATE_BLOCK_SIZE, numCandidates);
+                    for (int i = from; i < to; i++) {
+                        results[i] = check.check(i, quality, distance);
+                        if (results[i] == null)
+                            earlyAbandons++;
+                    }
+                }
+                return earlyAbandons;
+            });
+        }
+
+        numEarlyAbandons = 0;
+        for (long earlyAbandons : invokeAll(tasks))
+            numEarlyAbandons += earlyAbandons;
+
+        ArrayList<Shapelet> seriesShapelets = new ArrayList<>();
+        for (Shapelet shapelet : results) {
+            if (shapelet != null)
+                seriesShapelets.add(shapelet);
+        }
+        return seriesShapelets;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (ex == null) {
+            ex = MultiThreadable.getSharedExecutor(numThreads);
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : ex.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * @return number of candidates early abandoned in the last series searched
+     */
+    public long getNumEarlyAbandons() {
+        return numEarlyAbandons;
+    }
+
+    /**
+     * @return operation count of the distance functions used by the threads
+     */
+    public long getCount() {
+        long count = 0;
+        for (ShapeletDistance distance : distances)
+            count += distance.getCount();
+        return count;
+    }
+
+    /**
+     * Stops the threads once the search is finished.
+     */
+    public void shutdown() {
+        if (ex != null) {
+            ex.shutdown();
+            ex = null;
+        }
+    }
+}
@@ -54,6 +54,16 @@ public class CachedShapeletDistance extends ShapeletDistance {
         stats = null;
     }
     
+    @Override
+    public ShapeletDistance threadCopy() {
+        CachedShapeletDistance copy = (CachedShapeletDistance) super.threadCopy();
+        
+        //the stats are worked out for the series being searched, so each copy needs its own.
+        if(stats != null)
+            copy.stats = new Stats();
+        return copy;
+    }
+    
     @Override
     public void setSeries(int seriesId) {
         super.setSeries(seriesId);
@@ -61,6 +61,16 @@ public class OnlineCachedShapeletDistance extends ShapeletDistance {
         stats = null;
     }
     
+    @Override
+    public ShapeletDistance threadCopy() {
+        OnlineCachedShapeletDistance copy = (OnlineCachedShapeletDistance) super.threadCopy();
+        
+        //the stats are worked out for the series being searched, so each copy needs its own.
+        if(stats != null)
+            copy.stats = new Stats();
+        return copy;
+    }
+    
     @Override
     public void setSeries(int seriesId) {
         super.setSeries(seriesId);
@@ -34,7 +34,7 @@ import weka.core.Instance;
  *
  * this implements the basic functionality of sDist in various ways
  */
-public class ShapeletDistance implements Serializable{
+public class ShapeletDistance implements Serializable, Cloneable{
 
 //Each enum represents a class in this package
     public enum DistanceType{
@@ -78,6 +78,20 @@ public class ShapeletDistance implements Serializable{
     }
     
     final void incrementCount(){ count++;}
+
+    /**
+     * Returns a copy of this distance that can evaluate candidates on another thread. Anything set up in init is
+     * shared with the original, the candidate being evaluated and the operation count are not.
+     */
+    public ShapeletDistance threadCopy(){
+        try {
+            ShapeletDistance copy = (ShapeletDistance) super.clone();
+            copy.count = 0;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
     
     public long getCount() {return count;}
     
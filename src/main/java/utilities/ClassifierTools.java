@@ -30,9 +30,11 @@ import experiments.data.DatasetLoading;
 import fileIO.OutFile;
 import machine_learning.classifiers.kNN;
 import statistics.distributions.NormalDistribution;
+import tsml.classifiers.ConfigurationCopyable;
 import tsml.classifiers.TSClassifier;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.bayes.NaiveBayes;
 import java.util.logging.Level;
@@ -399,6 +401,39 @@ public class ClassifierTools {
         return sc;
     }
 
+    /**
+     * Creates an untrained copy of a classifier for building on new data. Classifiers implementing
+     * ConfigurationCopyable are copied from their parameters, any other classifier is deep copied through
+     * serialisation with AbstractClassifier.makeCopy.
+     *
+     * @param classifier classifier to copy
+     * @return copy of the classifier
+     * @throws Exception unable to copy the classifier
+     */
+    public static Classifier makeCopy(Classifier classifier) throws Exception {
+        if (classifier instanceof ConfigurationCopyable)
+            return ((ConfigurationCopyable) classifier).copyConfiguration();
+        return AbstractClassifier.makeCopy(classifier);
+    }
+
+    /**
+     * Creates a number of untrained copies of a classifier, see makeCopy.
+     *
+     * @param classifier classifier to copy
+     * @param num        number of copies
+     * @return array of copies of the classifier
+     * @throws Exception unable to copy the classifier
+     */
+    public static Classifier[] makeCopies(Classifier classifier, int num) throws Exception {
+        if (!(classifier instanceof ConfigurationCopyable))
+            return AbstractClassifier.makeCopies(classifier, num);
+
+        Classifier[] classifiers = new Classifier[num];
+        for (int i = 0; i < num; i++)
+            classifiers[i] = ((ConfigurationCopyable) classifier).copyConfiguration();
+        return classifiers;
+    }
+
     public static double singleTrainTestSplitAccuracy(Classifier c, Instances train, Instances test){
         //Perform a simple experiment,
         double acc=0;
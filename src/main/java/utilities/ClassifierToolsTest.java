@@ -0,0 +1,109 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package utilities;
+
+import experiments.data.DatasetLoading;
+import machine_learning.classifiers.ContinuousIntervalTree;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.interval_based.CIF;
+import tsml.classifiers.interval_based.DrCIF;
+import tsml.classifiers.interval_based.TSF;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class ClassifierToolsTest {
+
+    @Test
+    public void testConfigurationCopyMatchesSerialisedCopy() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+
+        ContinuousIntervalTree tree = new ContinuousIntervalTree();
+        tree.setSeed(1);
+        tree.setK(5);
+
+        TSF tsf = new TSF();
+        tsf.setSeed(0);
+        tsf.setNumTrees(50);
+        tsf.setBaseClassifier(tree);
+
+        CIF cif = new CIF();
+        cif.setSeed(0);
+        cif.setNumTrees(20);
+
+        DrCIF drcif = new DrCIF();
+        drcif.setSeed(0);
+        drcif.setNumTrees(20);
+
+        for (Classifier c : new Classifier[] { tree, tsf, cif, drcif }) {
+            Classifier copy = ClassifierTools.makeCopy(c);
+            Assert.assertNotSame(c, copy);
+            Assert.assertSame(c.getClass(), copy.getClass());
+            assertSamePredictions(AbstractClassifier.makeCopy(c), copy, data);
+        }
+    }
+
+    @Test
+    public void testCopyOfTrainedClassifierIsUntrained() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        TSF tsf = new TSF();
+        tsf.setSeed(0);
+        tsf.setNumTrees(50);
+        tsf.buildClassifier(data[0]);
+
+        TSF copy = (TSF) ClassifierTools.makeCopy(tsf);
+        Assert.assertEquals(tsf.getSeed(), copy.getSeed());
+        try {
+            copy.distributionForInstance(data[1].get(0));
+            Assert.fail("Copy should not hold the trained model");
+        } catch (Exception | Error e) {
+            //expected, untrained
+        }
+
+        copy.buildClassifier(data[0]);
+        for (Instance i : data[1]) {
+            Assert.assertArrayEquals(tsf.distributionForInstance(i), copy.distributionForInstance(i), 0);
+        }
+    }
+
+    @Test
+    public void testSerialisationFallback() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        J48 j48 = new J48();
+        j48.setMinNumObj(5);
+
+        Classifier[] copies = ClassifierTools.makeCopies(j48, 3);
+        Assert.assertEquals(3, copies.length);
+        for (Classifier copy : copies) {
+            Assert.assertNotSame(j48, copy);
+            Assert.assertEquals(5, ((J48) copy).getMinNumObj());
+            assertSamePredictions(j48, copy, data);
+        }
+    }
+
+    private static void assertSamePredictions(Classifier a, Classifier b, Instances[] data) throws Exception {
+        a.buildClassifier(data[0]);
+        b.buildClassifier(data[0]);
+        for (Instance i : data[1]) {
+            Assert.assertArrayEquals(a.distributionForInstance(i), b.distributionForInstance(i), 0);
+        }
+    }
+}
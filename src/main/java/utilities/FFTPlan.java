@@ -0,0 +1,288 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package utilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fast Fourier transforms of a single length on primitive arrays, with the bit reversal permutation and twiddle
+ * factors worked out once per length and shared by every transform of that length. Plans are cached, so
+ * forLength(n) is cheap after the first call and plans may be shared across threads.
+ *
+ * Power of 2 lengths use an iterative radix-2 transform, any other length uses Bluestein's algorithm on a power of 2
+ * plan, so all lengths are O(n log n) and give the exact DFT of the series, without padding or truncating.
+ *
+ * The forward transform is X[k] = sum_j x[j] exp(-2 pi i jk / n), unscaled, the same convention as the commons-math
+ * FastFourierTransformer with DftNormalization.STANDARD. The inverse is scaled by 1/n.
+ */
+public final class FFTPlan {
+
+    private static final ConcurrentHashMap<Integer, FFTPlan> plans = new ConcurrentHashMap<>();
+
+    private final int n;
+    private final boolean powerOf2;
+
+    //cos(2 pi k / n) and sin(2 pi k / n) for k = 0..n/2
+    private final double[] cos;
+    private final double[] sin;
+
+    //radix-2
+    private final int[] bitReversed;
+
+    //bluestein
+    private final FFTPlan convolutionPlan;
+    private final double[] chirpRe;
+    private final double[] chirpIm;
+    private final double[] filterRe;
+    private final double[] filterIm;
+
+    //half length complex plan used for real transforms of even lengths
+    private final FFTPlan halfPlan;
+
+    /**
+     * @return the cached plan for transforms of length n, creating it if needed
+     */
+    public static FFTPlan forLength(int n) {
+        if (n < 1)
+            throw new IllegalArgumentException("FFT length must be positive, given: " + n);
+
+        FFTPlan plan = plans.get(n);
+        if (plan == null) {
+            //not computeIfAbsent, building a plan may build the plans it is made of
+            plan = new FFTPlan(n);
+            FFTPlan existing = plans.putIfAbsent(n, plan);
+            if (existing != null)
+                plan = existing;
+        }
+        return plan;
+    }
+
+    public static boolean isPowerOf2(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * @return the smallest power of 2 greater than or equal to n
+     */
+    public static int nextPowerOf2(int n) {
+        int p = 1;
+        while (p < n)
+            p <<= 1;
+        return p;
+    }
+
+    private FFTPlan(int n) {
+        this.n = n;
+        this.powerOf2 = isPowerOf2(n);
+
+        cos = new double[n / 2 + 1];
+        sin = new double[n / 2 + 1];
+        for (int k = 0; k <= n / 2; k++) {
+            double angle = 2 * Math.PI * k / n;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+
+        if (powerOf2) {
+            bitReversed = new int[n];
+            int bits = Integer.numberOfTrailingZeros(n);
+            for (int i = 0; i < n && bits > 0; i++)
+                bitReversed[i] = Integer.reverse(i) >>> (32 - bits);
+
+            convolutionPlan = null;
+            chirpRe = chirpIm = filterRe = filterIm = null;
+        }
+        else {
+            bitReversed = null;
+
+            //chirp w[k] = exp(-pi i k^2 / n), k^2 taken mod 2n to keep the angle accurate for long series
+            chirpRe = new double[n];
+            chirpIm = new double[n];
+            long twoN = 2L * n;
+            for (int k = 0; k < n; k++) {
+                double angle = Math.PI * (((long) k * k) % twoN) / n;
+                chirpRe[k] = Math.cos(angle);
+                chirpIm[k] = -Math.sin(angle);
+            }
+
+            //transform of the conjugate chirp, wrapped around the convolution length
+            int m = nextPowerOf2(2 * n - 1);
+            convolutionPlan = forLength(m);
+            filterRe = new double[m];
+            filterIm = new double[m];
+            filterRe[0] = chirpRe[0];
+            filterIm[0] = -chirpIm[0];
+            for (int k = 1; k < n; k++) {
+                filterRe[k] = filterRe[m - k] = chirpRe[k];
+                filterIm[k] = filterIm[m - k] = -chirpIm[k];
+            }
+            convolutionPlan.forward(filterRe, filterIm);
+        }
+
+        halfPlan = n % 2 == 0 && n > 2 ? forLength(n / 2) : null;
+    }
+
+    public int length() {
+        return n;
+    }
+
+    /**
+     * In place forward transform of the complex series (re, im), both of which must have length n
+     */
+    public void forward(double[] re, double[] im) {
+        transform(re, im, false);
+    }
+
+    /**
+     * In place inverse transform of the complex series (re, im), both of which must have length n
+     */
+    public void inverse(double[] re, double[] im) {
+        transform(re, im, true);
+
+        double scale = 1.0 / n;
+        for (int i = 0; i < n; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+    /**
+     * Forward transform of the real series x, zero padded to length n if shorter. As the transform of a real series is
+     * conjugate symmetric only the terms 0..n/2 are found, written to re and im which must have length at least
+     * n/2+1. For even n this costs a complex transform of half the length.
+     */
+    public void realForward(double[] x, double[] re, double[] im) {
+        if (x.length > n)
+            throw new IllegalArgumentException("Series of length " + x.length + " is longer than the FFT length " + n);
+
+        int numTerms = n / 2 + 1;
+        if (halfPlan == null) {
+            //odd or tiny lengths, just do the full complex transform
+            double[] fullRe = new double[n];
+            double[] fullIm = new double[n];
+            System.arraycopy(x, 0, fullRe, 0, x.length);
+            forward(fullRe, fullIm);
+            System.arraycopy(fullRe, 0, re, 0, numTerms);
+            System.arraycopy(fullIm, 0, im, 0, numTerms);
+            return;
+        }
+
+        //pack the even and odd samples as the real and imaginary parts of a half length series
+        int h = n / 2;
+        double[] zRe = new double[h];
+        double[] zIm = new double[h];
+        for (int j = 0; j < h; j++) {
+            int even = 2 * j;
+            if (even < x.length)
+                zRe[j] = x[even];
+            if (even + 1 < x.length)
+                zIm[j] = x[even + 1];
+        }
+        halfPlan.forward(zRe, zIm);
+
+        //then separate the transforms of the even and odd samples, E[k] and O[k], and combine as
+        //X[k] = E[k] + exp(-2 pi i k / n) O[k]
+        for (int k = 0; k <= h; k++) {
+            int k1 = k == h ? 0 : k;
+            int k2 = k == 0 ? 0 : h - k;
+            double aRe = zRe[k1], aIm = zIm[k1];
+            double bRe = zRe[k2], bIm = -zIm[k2];
+
+            double eRe = (aRe + bRe) / 2, eIm = (aIm + bIm) / 2;
+            double oRe = (aIm - bIm) / 2, oIm = -(aRe - bRe) / 2;
+
+            double wRe = cos[k], wIm = -sin[k];
+            re[k] = eRe + wRe * oRe - wIm * oIm;
+            im[k] = eIm + wRe * oIm + wIm * oRe;
+        }
+    }
+
+    private void transform(double[] re, double[] im, boolean inverse) {
+        if (re.length != n || im.length != n)
+            throw new IllegalArgumentException("Series must have length " + n + ", given: " + re.length + " and " + im.length);
+        if (n == 1)
+            return;
+
+        if (powerOf2)
+            radix2(re, im, inverse);
+        else if (inverse) {
+            //inverse(x) = conj(forward(conj(x))), scaled by the caller
+            for (int i = 0; i < n; i++)
+                im[i] = -im[i];
+            bluestein(re, im);
+            for (int i = 0; i < n; i++)
+                im[i] = -im[i];
+        }
+        else
+            bluestein(re, im);
+    }
+
+    private void radix2(double[] re, double[] im, boolean inverse) {
+        for (int i = 0; i < n; i++) {
+            int j = bitReversed[i];
+            if (j > i) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+
+        double sign = inverse ? 1 : -1;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size / 2;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int j = 0, k = 0; j < half; j++, k += step) {
+                    double wRe = cos[k], wIm = sign * sin[k];
+                    int a = start + j, b = a + half;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+    }
+
+    /**
+     * X[k] = w[k] * sum_j (x[j] w[j]) conj(w[k-j]), the sum being a convolution done with power of 2 transforms
+     */
+    private void bluestein(double[] re, double[] im) {
+        int m = convolutionPlan.n;
+        double[] aRe = new double[m];
+        double[] aIm = new double[m];
+        for (int j = 0; j < n; j++) {
+            aRe[j] = re[j] * chirpRe[j] - im[j] * chirpIm[j];
+            aIm[j] = re[j] * chirpIm[j] + im[j] * chirpRe[j];
+        }
+
+        convolutionPlan.forward(aRe, aIm);
+        for (int k = 0; k < m; k++) {
+            double r = aRe[k] * filterRe[k] - aIm[k] * filterIm[k];
+            aIm[k] = aRe[k] * filterIm[k] + aIm[k] * filterRe[k];
+            aRe[k] = r;
+        }
+        convolutionPlan.inverse(aRe, aIm);
+
+        for (int k = 0; k < n; k++) {
+            re[k] = aRe[k] * chirpRe[k] - aIm[k] * chirpIm[k];
+            im[k] = aRe[k] * chirpIm[k] + aIm[k] * chirpRe[k];
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package utilities;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FFTPlanTest {
+
+    private static final int[] lengths = { 1, 2, 3, 4, 5, 7, 8, 12, 24, 31, 64, 100, 128, 150, 257, 1024 };
+
+    private static double[][] naiveDFT(double[] re, double[] im) {
+        int n = re.length;
+        double[][] out = new double[2][n];
+        for (int k = 0; k < n; k++) {
+            for (int j = 0; j < n; j++) {
+                double angle = -2 * Math.PI * (((long) j * k) % n) / n;
+                out[0][k] += re[j] * Math.cos(angle) - im[j] * Math.sin(angle);
+                out[1][k] += re[j] * Math.sin(angle) + im[j] * Math.cos(angle);
+            }
+        }
+        return out;
+    }
+
+    private static double[] randomSeries(Random rand, int n) {
+        double[] d = new double[n];
+        for (int i = 0; i < n; i++)
+            d[i] = rand.nextGaussian() * 10 + 3;
+        return d;
+    }
+
+    @Test
+    public void testForwardMatchesDFT() {
+        Random rand = new Random(0);
+        for (int n : lengths) {
+            double[] re = randomSeries(rand, n);
+            double[] im = randomSeries(rand, n);
+            double[][] expected = naiveDFT(re, im);
+
+            FFTPlan.forLength(n).forward(re, im);
+            Assert.assertArrayEquals("length " + n, expected[0], re, 1e-8 * n);
+            Assert.assertArrayEquals("length " + n, expected[1], im, 1e-8 * n);
+        }
+    }
+
+    @Test
+    public void testInverseRoundTrip() {
+        Random rand = new Random(1);
+        for (int n : lengths) {
+            double[] re = randomSeries(rand, n);
+            double[] im = randomSeries(rand, n);
+            double[] re2 = re.clone();
+            double[] im2 = im.clone();
+
+            FFTPlan plan = FFTPlan.forLength(n);
+            plan.forward(re2, im2);
+            plan.inverse(re2, im2);
+            Assert.assertArrayEquals(re, re2, 1e-10);
+            Assert.assertArrayEquals(im, im2, 1e-10);
+        }
+    }
+
+    @Test
+    public void testRealForwardMatchesComplex() {
+        Random rand = new Random(2);
+        for (int n : lengths) {
+            for (int seriesLength : new int[] { n, n / 2 + 1 }) {
+                double[] x = randomSeries(rand, seriesLength);
+                double[] re = new double[n];
+                double[] im = new double[n];
+                System.arraycopy(x, 0, re, 0, seriesLength);
+                FFTPlan plan = FFTPlan.forLength(n);
+                plan.forward(re, im);
+
+                double[] realRe = new double[n / 2 + 1];
+                double[] realIm = new double[n / 2 + 1];
+                plan.realForward(x, realRe, realIm);
+                for (int k = 0; k <= n / 2; k++) {
+                    Assert.assertEquals(re[k], realRe[k], 1e-9 * n);
+                    Assert.assertEquals(im[k], realIm[k], 1e-9 * n);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesCommonsMath() {
+        Random rand = new Random(3);
+        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
+        for (int n : new int[] { 2, 16, 256, 4096 }) {
+            double[] x = randomSeries(rand, n);
+            Complex[] expected = fft.transform(x, TransformType.FORWARD);
+
+            double[] re = x.clone();
+            double[] im = new double[n];
+            FFTPlan.forLength(n).forward(re, im);
+            for (int k = 0; k < n; k++) {
+                Assert.assertEquals(expected[k].getReal(), re[k], 1e-9 * n);
+                Assert.assertEquals(expected[k].getImaginary(), im[k], 1e-9 * n);
+            }
+        }
+    }
+
+    @Test
+    public void testPlansAreCached() {
+        Assert.assertSame(FFTPlan.forLength(100), FFTPlan.forLength(100));
+        Assert.assertEquals(100, FFTPlan.forLength(100).length());
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package utilities;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.SerializerFactory;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.ClosureSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import evaluation.storage.ClassifierResults;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import tsml.data_containers.TimeSeries;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary serialisation of classifiers, data and results through Kryo, as an opt-in replacement for gzipped Java
+ * serialisation in checkpointing and ClassifierExperiments.serialiseClassifier.
+ *
+ * Files start with a short header followed by the Kryo stream, deflated at the fastest compression level. Common data
+ * and collection classes are registered so they are written as small ids rather than class names. Classes which
+ * define their own Java serialisation (writeObject, readObject, readResolve, writeReplace or Externalizable) and JDK
+ * classes Kryo does not handle itself are written with Java serialisation, so they come back the same as with
+ * ObjectOutputStream.
+ *
+ * Kryo instances are not thread safe, each thread gets its own.
+ */
+public class KryoSerialisation {
+
+    private static final byte[] MAGIC = { 'T', 'S', 'K', 'R' };
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static volatile boolean enabled = Boolean.getBoolean("tsml.kryo");
+
+    private static final ThreadLocal<Kryo> KRYO = ThreadLocal.withInitial(KryoSerialisation::createKryo);
+
+    private KryoSerialisation() {
+    }
+
+    /**
+     * @return whether checkpoints and serialised classifiers are written with Kryo. Off by default, can be turned on
+     * with the system property tsml.kryo=true
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        KryoSerialisation.enabled = enabled;
+    }
+
+    public static void writeObject(Object obj, OutputStream os) throws IOException {
+        os.write(MAGIC);
+        os.write(VERSION);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream dos = new DeflaterOutputStream(os, deflater, BUFFER_SIZE);
+            Output output = new Output(dos, BUFFER_SIZE);
+            KRYO.get().writeClassAndObject(output, obj);
+            output.flush();
+            dos.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static Object readObject(InputStream is) throws IOException {
+        byte[] header = new byte[MAGIC.length + 1];
+        if (readFully(is, header) < header.length || !hasMagic(header))
+            throw new IOException("Not a Kryo serialised stream");
+        if (header[MAGIC.length] != VERSION)
+            throw new IOException("Unsupported Kryo serialisation version " + header[MAGIC.length]);
+
+        Inflater inflater = new Inflater();
+        try {
+            Input input = new Input(new InflaterInputStream(is, inflater, BUFFER_SIZE), BUFFER_SIZE);
+            return KRYO.get().readClassAndObject(input);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static void saveToFile(Object obj, String filename) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE)) {
+            writeObject(obj, os);
+        }
+    }
+
+    public static Object loadFromFile(String filename) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE)) {
+            return readObject(is);
+        }
+    }
+
+    /**
+     * Checks for the Kryo header without consuming the stream, which must support mark and reset
+     */
+    public static boolean isKryoStream(InputStream is) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        is.mark(header.length);
+        int read = readFully(is, header);
+        is.reset();
+        return read == header.length && hasMagic(header);
+    }
+
+    public static boolean isKryoFile(String filename) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(filename))) {
+            return isKryoStream(is);
+        }
+    }
+
+    private static boolean hasMagic(byte[] header) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream is, byte[] b) throws IOException {
+        int read = 0;
+        while (read < b.length) {
+            int n = is.read(b, read, b.length - read);
+            if (n < 0)
+                break;
+            read += n;
+        }
+        return read;
+    }
+
+    private static Kryo createKryo() {
+        //keep references to enclosing instances, Java serialisation does
+        FieldSerializer.FieldSerializerConfig config = new FieldSerializer.FieldSerializerConfig();
+        config.setIgnoreSyntheticFields(false);
+
+        Kryo kryo = new SerialisationKryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setReferences(true);
+        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        kryo.setDefaultSerializer(new SerializerFactory.FieldSerializerFactory(config));
+
+        //serialisable lambdas through their Java serialised form, ClosureSerializer needs JDK internals opened on 9+
+        kryo.register(ClosureSerializer.Closure.class, new JavaSerializer());
+
+        //ids are written in place of class names, only append to this list so old files stay readable
+        Class<?>[] registered = {
+                boolean[].class, byte[].class, char[].class, short[].class, int[].class, long[].class, float[].class,
+                double[].class, double[][].class, double[][][].class, int[][].class, String[].class, Object[].class,
+                ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class, HashSet.class,
+                LinkedHashSet.class, TreeSet.class, ArrayDeque.class,
+                Instances.class, DenseInstance.class, SparseInstance.class, Attribute.class,
+                TimeSeriesInstances.class, TimeSeriesInstance.class, TimeSeries.class,
+                ClassifierResults.class,
+        };
+        for (Class<?> c : registered) {
+            kryo.register(c);
+        }
+
+        return kryo;
+    }
+
+    //JDK classes which Kryo serialises itself, any other serialisable JDK class goes through Java serialisation
+    private static final Set<Class<?>> KRYO_JDK_CLASSES = new HashSet<>(Arrays.asList(
+            Object.class, String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, Class.class, StringBuilder.class, StringBuffer.class,
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class, HashSet.class,
+            LinkedHashSet.class, TreeSet.class, ArrayDeque.class, Date.class, Locale.class
+    ));
+
+    private static boolean requiresJavaSerialisation(Class<?> type) {
+        if (type.isArray() || type.isPrimitive() || type.isEnum() || KRYO_JDK_CLASSES.contains(type))
+            return false;
+        if (isJdkClass(type))
+            return Serializable.class.isAssignableFrom(type);
+        if (Externalizable.class.isAssignableFrom(type))
+            return true;
+
+        for (Class<?> c = type; c != null && !isJdkClass(c); c = c.getSuperclass()) {
+            if (declares(c, "writeObject", ObjectOutputStream.class) || declares(c, "readObject", ObjectInputStream.class)
+                    || declares(c, "writeReplace") || declares(c, "readResolve"))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isJdkClass(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")
+                || name.startsWith("jdk.");
+    }
+
+    private static boolean declares(Class<?> type, String method, Class<?>... params) {
+        try {
+            type.getDeclaredMethod(method, params);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static class SerialisationKryo extends Kryo {
+
+        //Kryo declares the parameter as a raw Class, so the override must too
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Serializer<?> getDefaultSerializer(Class type) {
+            if (type == Instances.class)
+                return new InstancesSerializer();
+            //Kryo rebuilds collections through add and put on an instance with no constructor run, and writing them
+            //field by field reaches into JDK internals
+            if (requiresJavaSerialisation(type) || (!isJdkClass(type)
+                    && (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))))
+                return new JavaSerializer();
+            return super.getDefaultSerializer(type);
+        }
+    }
+
+    //Header then each instance, instances refer back to the Instances so it is referenced before they are read
+    private static class InstancesSerializer extends Serializer<Instances> {
+
+        private static final Field INSTANCE_LIST = instanceListField();
+
+        @Override
+        public void write(Kryo kryo, Output output, Instances data) {
+            ArrayList<Attribute> atts = new ArrayList<>(data.numAttributes());
+            for (int i = 0; i < data.numAttributes(); i++) {
+                atts.add(data.attribute(i));
+            }
+
+            output.writeString(data.relationName());
+            kryo.writeObject(output, atts);
+            output.writeInt(data.classIndex() + 1, true);
+            output.writeInt(data.numInstances(), true);
+            for (Instance inst : data) {
+                kryo.writeClassAndObject(output, inst);
+            }
+        }
+
+        @Override
+        public Instances read(Kryo kryo, Input input, Class<? extends Instances> type) {
+            String relationName = input.readString();
+            @SuppressWarnings("unchecked")
+            ArrayList<Attribute> atts = kryo.readObject(input, ArrayList.class);
+            int classIndex = input.readInt(true) - 1;
+            int numInstances = input.readInt(true);
+
+            Instances data = new Instances(relationName, atts, numInstances);
+            kryo.reference(data);
+            data.setClassIndex(classIndex);
+            //add would copy each instance, breaking any other reference to it in the graph, so the list is filled
+            //directly. The instances already refer back to data
+            List<Instance> list = instanceList(data);
+            for (int i = 0; i < numInstances; i++) {
+                list.add((Instance) kryo.readClassAndObject(input));
+            }
+            return data;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Instance> instanceList(Instances data) {
+            try {
+                return (List<Instance>) INSTANCE_LIST.get(data);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static Field instanceListField() {
+            try {
+                Field field = Instances.class.getDeclaredField("m_Instances");
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package utilities;
+
+import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetLoading;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.Checkpointable;
+import tsml.classifiers.interval_based.TSF;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.*;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+public class KryoSerialisationTest {
+
+    @After
+    public void disable() {
+        KryoSerialisation.setEnabled(false);
+    }
+
+    @Test
+    public void testDataAndResultsRoundTrip() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        Instances train = data[0];
+
+        Instances inst = (Instances) roundTrip(train);
+        Assert.assertEquals(train.toString(), inst.toString());
+        Assert.assertEquals(train.classIndex(), inst.classIndex());
+
+        TimeSeriesInstances ts = Converter.fromArff(train);
+        Assert.assertEquals(ts, roundTrip(ts));
+
+        ClassifierResults results = new ClassifierResults(train.numClasses());
+        results.setEstimatorName("test");
+        for (Instance i : data[1]) {
+            double[] dist = new double[train.numClasses()];
+            dist[(int) i.classValue()] = 1;
+            results.addPrediction(i.classValue(), dist, i.classValue(), 1, "");
+        }
+        results.finaliseResults();
+        Assert.assertEquals(results.writeFullResultsToString(),
+                ((ClassifierResults) roundTrip(results)).writeFullResultsToString());
+    }
+
+    @Test
+    public void testInstanceReferencesKept() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        Object[] graph = { train, train.get(3) };
+
+        Object[] copy = (Object[]) roundTrip(graph);
+        Instances inst = (Instances) copy[0];
+        Assert.assertSame(inst.get(3), copy[1]);
+        Assert.assertSame(inst, inst.get(3).dataset());
+        Assert.assertEquals(train.toString(), inst.toString());
+    }
+
+    @Test
+    public void testTrainedClassifierRoundTrip() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        TSF tsf = new TSF();
+        tsf.setSeed(0);
+        tsf.buildClassifier(data[0]);
+
+        TSF copy = (TSF) roundTrip(tsf);
+        for (Instance i : data[1]) {
+            Assert.assertArrayEquals(tsf.distributionForInstance(i), copy.distributionForInstance(i), 0);
+        }
+    }
+
+    @Test
+    public void testCheckpointableReadsEitherFormat() throws Exception {
+        File file = File.createTempFile("kryo", ".ser");
+        file.deleteOnExit();
+
+        State state = new State();
+        state.values = new double[] { 1, 2, 3 };
+        state.rand = new Random(0);
+        state.rand.nextInt();
+
+        KryoSerialisation.setEnabled(true);
+        state.saveToFile(file.getPath());
+        Assert.assertTrue(KryoSerialisation.isKryoFile(file.getPath()));
+
+        State loaded = new State();
+        loaded.loadFromFile(file.getPath());
+        Assert.assertArrayEquals(state.values, loaded.values, 0);
+        Assert.assertEquals(state.rand.nextInt(), loaded.rand.nextInt());
+
+        //gzipped Java serialisation from before Kryo was enabled
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(state);
+        }
+        Assert.assertFalse(KryoSerialisation.isKryoFile(file.getPath()));
+
+        loaded = new State();
+        loaded.loadFromFile(file.getPath());
+        Assert.assertArrayEquals(state.values, loaded.values, 0);
+        Assert.assertEquals(state.rand.nextInt(), loaded.rand.nextInt());
+    }
+
+    private static Object roundTrip(Object obj) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        KryoSerialisation.writeObject(obj, bos);
+        return KryoSerialisation.readObject(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    private static class State implements Checkpointable {
+        private double[] values;
+        private Random rand;
+
+        @Override
+        public boolean setCheckpointPath(String path) {
+            return false;
+        }
+
+        @Override
+        public void copyFromSerObject(Object obj) {
+            State other = (State) obj;
+            values = other.values;
+            rand = other.rand;
+        }
+    }
+}
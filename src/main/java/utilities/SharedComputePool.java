@@ -0,0 +1,295 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package utilities;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide work-stealing pool shared by all multithreaded classes, so that components running at the same time
+ * (e.g. the modules of HIVE_COTE) share a fixed number of cores rather than each starting threads of its own.
+ *
+ * Each component submits its work through its own executor from getExecutor(numThreads), which runs at most
+ * numThreads of the component's tasks at once on the shared pool and records the CPU time they use. Tasks may
+ * themselves use a shared executor: a pool thread waiting on a task which has not started yet runs the queued tasks
+ * of that executor itself rather than blocking, so nested parallelism cannot starve the pool of threads.
+ *
+ * The pool threads are daemon threads, executors do not need to be shut down.
+ */
+public class SharedComputePool {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool pool;
+
+    /**
+     * Sets the number of threads in the shared pool, by default the number of available processors. Tasks already
+     * submitted finish on the old pool.
+     */
+    public static synchronized void setParallelism(int numThreads) {
+        numThreads = Math.max(1, numThreads);
+        if (pool != null && numThreads != parallelism) {
+            pool.shutdown();
+            pool = null;
+        }
+        parallelism = numThreads;
+    }
+
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null)
+            pool = new ForkJoinPool(parallelism);
+        return pool;
+    }
+
+    /**
+     * @return new executor for a single component, running at most numThreads of its tasks at once
+     */
+    public static ComponentExecutor getExecutor(int numThreads) {
+        return new ComponentExecutor(numThreads);
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREAD_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_BEAN.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Executor for the tasks of a single component. Tasks are queued here and drained by at most maxConcurrency
+     * runners on the shared pool.
+     */
+    public static class ComponentExecutor extends AbstractExecutorService {
+
+        private final int maxConcurrency;
+
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger runners = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong cpuTime = new AtomicLong();
+        private final AtomicInteger tasksRun = new AtomicInteger();
+        private volatile boolean shutdown = false;
+
+        private ComponentExecutor(int maxConcurrency) {
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        /**
+         * @return CPU time in nanoseconds used by the tasks of this executor so far, including any nested tasks of
+         * other executors they ran while waiting
+         */
+        public long getCpuTime() {
+            return cpuTime.get();
+        }
+
+        public int getNumTasksRun() {
+            return tasksRun.get();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown)
+                throw new RejectedExecutionException("Executor has been shut down");
+
+            pending.incrementAndGet();
+            queue.add(command);
+            startRunners();
+        }
+
+        private void startRunners() {
+            while (!queue.isEmpty()) {
+                int n = runners.get();
+                if (n >= maxConcurrency)
+                    return;
+                if (runners.compareAndSet(n, n + 1)) {
+                    try {
+                        getPool().execute(this::runQueued);
+                    } catch (RejectedExecutionException e) {
+                        //the pool was replaced between getting and using it, try the new one
+                        runners.decrementAndGet();
+                    }
+                }
+            }
+        }
+
+        private void runQueued() {
+            try {
+                Runnable task;
+                while ((task = queue.poll()) != null)
+                    run(task);
+            } finally {
+                runners.decrementAndGet();
+                //a task may have been queued after the last poll but seen no free runner
+                startRunners();
+            }
+        }
+
+        private void run(Runnable task) {
+            long start = currentThreadCpuTime();
+            try {
+                task.run();
+            } finally {
+                cpuTime.addAndGet(currentThreadCpuTime() - start);
+                tasksRun.incrementAndGet();
+                if (pending.decrementAndGet() == 0 && shutdown) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return new ComponentTask<>(runnable, value);
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new ComponentTask<>(callable);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> notRun = new ArrayList<>();
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                notRun.add(task);
+                pending.decrementAndGet();
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+            return notRun;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && pending.get() == 0;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long end = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                long remaining = end - System.nanoTime();
+                if (remaining <= 0)
+                    return false;
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+
+        /**
+         * Future which, when waited on from a pool thread, runs the queued tasks of its executor in the waiting
+         * thread until it completes, and otherwise lets the pool make up for the blocked thread.
+         */
+        private class ComponentTask<T> extends FutureTask<T> {
+
+            ComponentTask(Callable<T> callable) {
+                super(callable);
+            }
+
+            ComponentTask(Runnable runnable, T value) {
+                super(runnable, value);
+            }
+
+            @Override
+            public T get() throws InterruptedException, ExecutionException {
+                awaitInPool();
+                return super.get();
+            }
+
+            @Override
+            public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                    TimeoutException {
+                if (!isDone() && Thread.currentThread() instanceof ForkJoinWorkerThread)
+                    helpQueued();
+                return super.get(timeout, unit);
+            }
+
+            private void helpQueued() {
+                Runnable task;
+                while (!isDone() && (task = queue.poll()) != null)
+                    ComponentExecutor.this.run(task);
+            }
+
+            private void awaitInPool() throws InterruptedException {
+                if (isDone() || !(Thread.currentThread() instanceof ForkJoinWorkerThread))
+                    return;
+
+                //this task has either been run here or is running on another thread
+                helpQueued();
+                if (!isDone()) {
+                    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                        @Override
+                        public boolean block() throws InterruptedException {
+                            try {
+                                ComponentTask.super.get();
+                            } catch (ExecutionException | CancellationException e) {
+                                //reported by the caller of get()
+                            }
+                            return true;
+                        }
+
+                        @Override
+                        public boolean isReleasable() {
+                            return isDone();
+                        }
+                    });
+                }
+            }
+        }
+    }
+}
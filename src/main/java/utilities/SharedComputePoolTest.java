@@ -0,0 +1,107 @@
+package utilities;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SharedComputePoolTest {
+
+    private final int defaultParallelism = SharedComputePool.getParallelism();
+
+    @After
+    public void restoreParallelism() {
+        SharedComputePool.setParallelism(defaultParallelism);
+    }
+
+    @Test
+    public void testResultsInSubmissionOrder() throws Exception {
+        SharedComputePool.setParallelism(4);
+        ExecutorService executor = SharedComputePool.getExecutor(3);
+        List<Callable<Integer>> jobs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final int n = i;
+            jobs.add(() -> n * n);
+        }
+        List<Future<Integer>> futures = executor.invokeAll(jobs);
+        for (int i = 0; i < futures.size(); i++)
+            Assert.assertEquals(i * i, (int) futures.get(i).get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        SharedComputePool.setParallelism(4);
+        SharedComputePool.ComponentExecutor executor = SharedComputePool.getExecutor(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            jobs.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                return null;
+            });
+        }
+        for (Future<Void> f : executor.invokeAll(jobs))
+            f.get();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(maxRunning.get() <= 2);
+        Assert.assertEquals(20, executor.getNumTasksRun());
+    }
+
+    @Test
+    public void testNestedExecutorsDoNotDeadlock() throws Exception {
+        SharedComputePool.setParallelism(1);
+        ExecutorService outer = SharedComputePool.getExecutor(2);
+        List<Callable<Integer>> jobs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            jobs.add(() -> {
+                ExecutorService inner = SharedComputePool.getExecutor(2);
+                List<Callable<Integer>> innerJobs = new ArrayList<>();
+                for (int j = 0; j < 10; j++) {
+                    final int n = j;
+                    innerJobs.add(() -> n);
+                }
+                int sum = 0;
+                for (Future<Integer> f : inner.invokeAll(innerJobs))
+                    sum += f.get();
+                return sum;
+            });
+        }
+        Future<List<Future<Integer>>> all = SharedComputePool.getExecutor(1).submit(() -> outer.invokeAll(jobs));
+        for (Future<Integer> f : all.get(30, TimeUnit.SECONDS))
+            Assert.assertEquals(45, (int) f.get());
+    }
+
+    @Test
+    public void testShutdownNow() throws Exception {
+        SharedComputePool.setParallelism(1);
+        ExecutorService executor = SharedComputePool.getExecutor(1);
+        Object lock = new Object();
+        synchronized (lock) {
+            executor.submit(() -> {
+                synchronized (lock) {
+                    return null;
+                }
+            });
+            for (int i = 0; i < 5; i++)
+                executor.submit(() -> null);
+            List<Runnable> notRun = executor.shutdownNow();
+            Assert.assertTrue(executor.isShutdown());
+            Assert.assertTrue(notRun.size() >= 5);
+        }
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
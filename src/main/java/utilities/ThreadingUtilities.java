@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -35,8 +34,7 @@ import java.util.concurrent.TimeUnit;
 public class ThreadingUtilities {
 
     public static ExecutorService buildExecutorService(int numThreads) { 
-        //todo look into queues etc
-        return Executors.newFixedThreadPool(numThreads);
+        return SharedComputePool.getExecutor(numThreads);
     }
         
     public static void shutdownExecutor(ExecutorService executor) {